@@ -18,6 +18,9 @@ import org.alvearie.dream.cql.processors.DiabetesTypeProcessor;
 import org.alvearie.dream.cql.processors.LabTypeProcessor;
 import org.alvearie.dream.cql.processors.NoPregnancyNursingTypeProcessor;
 import org.alvearie.dream.cql.processors.RMETypeProcessor;
+import org.alvearie.dream.service.AdmissionController;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -38,6 +41,36 @@ public class CQLGenerator {
 			new ConditionTypeProcessor(),
 			new LabTypeProcessor()));
 
+	private volatile AdmissionController admission = null;
+
+	@ConfigProperty(name = "cql.admission.max-concurrent", defaultValue = "32")
+	int maxConcurrentRequests = 32;
+
+	@ConfigProperty(name = "cql.admission.max-queued", defaultValue = "64")
+	int maxQueuedRequests = 64;
+
+	@ConfigProperty(name = "cql.admission.max-queue-wait-ms", defaultValue = "500")
+	long maxQueueWaitMillis = 500;
+
+	@ConfigProperty(name = "cql.admission.retry-after-seconds", defaultValue = "1")
+	long retryAfterSeconds = 1;
+
+	/**
+	 * Gets the admission controller of the CQL generation endpoint, creating it from the configuration if needed.
+	 *
+	 * @return the admission controller
+	 */
+	AdmissionController getAdmission() {
+		if (admission == null) {
+			synchronized (this) {
+				if (admission == null) {
+					admission = new AdmissionController("cql", maxConcurrentRequests, maxQueuedRequests, maxQueueWaitMillis, retryAfterSeconds);
+				}
+			}
+		}
+		return admission;
+	}
+
 	@GET
 	@Path("/health")
 	@Produces(MediaType.TEXT_PLAIN)
@@ -49,6 +82,26 @@ public class CQLGenerator {
 	@Path("/generate")
 	@Produces(MediaType.TEXT_PLAIN)
 	public String generate(@FormParam("conceptSet") String conceptSetJSON) {
+		AdmissionController admission = getAdmission();
+		admission.admit();
+		try {
+			return process(conceptSetJSON);
+		} finally {
+			admission.release();
+		}
+	}
+
+	/**
+	 * @return the admission gauges and counters of the CQL generation endpoint, in the Prometheus text format
+	 */
+	@GET
+	@Path("/admission")
+	@Produces(MediaType.TEXT_PLAIN)
+	public String admission() {
+		return getAdmission().getMetrics();
+	}
+
+	private String process(String conceptSetJSON) {
 		try {
 			ConceptSet conceptSet = mapper.readValue(conceptSetJSON, ConceptSet.class);
 
@@ -0,0 +1,59 @@
+package org.alvearie.dream.cql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import javax.ws.rs.ServiceUnavailableException;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for the admission control of {@link CQLGenerator}.
+ */
+public class CQLGeneratorAdmissionTest {
+
+	private static final String UNSUPPORTED_CONCEPT_SET = "{\"concepts\":[],\"negated\":false,\"type\":\"unsupported\"}";
+
+	/**
+	 * @return a generator processing one request at a time and rejecting the others right away
+	 */
+	private static CQLGenerator createGenerator() {
+		CQLGenerator generator = new CQLGenerator();
+		generator.maxConcurrentRequests = 1;
+		generator.maxQueuedRequests = 0;
+		generator.maxQueueWaitMillis = 0;
+		generator.retryAfterSeconds = 5;
+		return generator;
+	}
+
+	/**
+	 * An admitted request releases its slot once its CQL is generated.
+	 */
+	@Test
+	public void testAdmitted() {
+		CQLGenerator generator = createGenerator();
+		String cql = generator.generate(UNSUPPORTED_CONCEPT_SET);
+		assertTrue(cql.contains("Learned intent not supported"));
+		cql = generator.generate(UNSUPPORTED_CONCEPT_SET);
+		assertTrue(cql.contains("Learned intent not supported"));
+		assertEquals(2, generator.getAdmission().getAdmitted());
+		assertEquals(0, generator.getAdmission().getInFlight());
+		assertTrue(generator.admission().contains("admission_admitted_total{endpoint=\"cql\"} 2\n"));
+	}
+
+	/**
+	 * A request arriving while all the slots are taken and the queue is full is rejected with a 503.
+	 */
+	@Test
+	public void testRejected() {
+		CQLGenerator generator = createGenerator();
+		generator.getAdmission().admit();
+		ServiceUnavailableException e = assertThrows(ServiceUnavailableException.class, () -> generator.generate(UNSUPPORTED_CONCEPT_SET));
+		assertEquals(503, e.getResponse().getStatus());
+		assertEquals("5", e.getResponse().getHeaderString("Retry-After"));
+		assertTrue(generator.admission().contains("admission_rejected_total{endpoint=\"cql\"} 1\n"));
+		generator.getAdmission().release();
+		assertTrue(generator.generate(UNSUPPORTED_CONCEPT_SET).contains("Learned intent not supported"));
+	}
+}
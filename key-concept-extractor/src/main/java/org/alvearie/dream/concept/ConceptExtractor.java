@@ -16,6 +16,9 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 
+import org.alvearie.dream.service.AdmissionController;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -89,6 +92,36 @@ public class ConceptExtractor {
 
 	private ObjectMapper mapper = new ObjectMapper();
 
+	private volatile AdmissionController admission = null;
+
+	@ConfigProperty(name = "concepts.admission.max-concurrent", defaultValue = "16")
+	int maxConcurrentRequests = 16;
+
+	@ConfigProperty(name = "concepts.admission.max-queued", defaultValue = "32")
+	int maxQueuedRequests = 32;
+
+	@ConfigProperty(name = "concepts.admission.max-queue-wait-ms", defaultValue = "2000")
+	long maxQueueWaitMillis = 2000;
+
+	@ConfigProperty(name = "concepts.admission.retry-after-seconds", defaultValue = "2")
+	long retryAfterSeconds = 2;
+
+	/**
+	 * Gets the admission controller of the concept extraction endpoint, creating it from the configuration if needed.
+	 *
+	 * @return the admission controller
+	 */
+	AdmissionController getAdmission() {
+		if (admission == null) {
+			synchronized (this) {
+				if (admission == null) {
+					admission = new AdmissionController("concepts", maxConcurrentRequests, maxQueuedRequests, maxQueueWaitMillis, retryAfterSeconds);
+				}
+			}
+		}
+		return admission;
+	}
+
 	// TODO FIXME (not sure about ranges- will need to look at one of those)
 	private void addConceptValues(ContainerGroup resp, ConceptSet conceptSet) {
 		if (resp.getConceptValues() != null) {
@@ -237,6 +270,26 @@ public class ConceptExtractor {
 	@GET
 	@Produces(MediaType.APPLICATION_JSON)
 	public String extractConcepts(@QueryParam("intent") String intent, @QueryParam("text") String text) {
+		AdmissionController admission = getAdmission();
+		admission.admit();
+		try {
+			return extract(intent, text);
+		} finally {
+			admission.release();
+		}
+	}
+
+	/**
+	 * @return the admission gauges and counters of the concept extraction endpoint, in the Prometheus text format
+	 */
+	@GET
+	@Path("/admission")
+	@Produces(MediaType.TEXT_PLAIN)
+	public String admission() {
+		return getAdmission().getMetrics();
+	}
+
+	private String extract(String intent, String text) {
 		ContainerGroup resp = runACD(text);
 
 		ConceptSet conceptSet = new ConceptSet();
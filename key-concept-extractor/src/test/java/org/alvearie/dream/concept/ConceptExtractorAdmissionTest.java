@@ -0,0 +1,50 @@
+package org.alvearie.dream.concept;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import javax.ws.rs.ServiceUnavailableException;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for the admission control of {@link ConceptExtractor}.
+ */
+public class ConceptExtractorAdmissionTest {
+
+	/**
+	 * A request arriving while all the slots are taken and the queue is full is rejected with a 503, before ACD is
+	 * called.
+	 */
+	@Test
+	public void testRejected() {
+		ConceptExtractor extractor = new ConceptExtractor();
+		extractor.maxConcurrentRequests = 1;
+		extractor.maxQueuedRequests = 0;
+		extractor.maxQueueWaitMillis = 0;
+		extractor.retryAfterSeconds = 5;
+		extractor.getAdmission().admit();
+		ServiceUnavailableException e = assertThrows(ServiceUnavailableException.class,
+				() -> extractor.extractConcepts("other", "No history of bronchitis"));
+		assertEquals(503, e.getResponse().getStatus());
+		assertEquals("5", e.getResponse().getHeaderString("Retry-After"));
+		assertEquals(1, extractor.getAdmission().getInFlight());
+		String metrics = extractor.admission();
+		assertTrue(metrics.contains("admission_rejected_total{endpoint=\"concepts\"} 1\n"));
+		assertTrue(metrics.contains("admission_admitted_total{endpoint=\"concepts\"} 1\n"));
+		extractor.getAdmission().release();
+		assertEquals(0, extractor.getAdmission().getInFlight());
+	}
+
+	/**
+	 * The limits are read from the configuration.
+	 */
+	@Test
+	public void testConfiguration() {
+		ConceptExtractor extractor = new ConceptExtractor();
+		extractor.maxConcurrentRequests = 3;
+		assertEquals(3, extractor.getAdmission().getMaxConcurrent());
+		assertEquals("concepts", extractor.getAdmission().getName());
+	}
+}
@@ -1,18 +1,54 @@
 package org.alvearie.dream.intent;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
+import javax.enterprise.event.Observes;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
+import org.alvearie.dream.intent.nlp.TrainCriteriaClassification;
 import org.alvearie.dream.intent.nlp.classification.Classification;
+import org.alvearie.dream.intent.nlp.classification.ClassificationBatcher;
 import org.alvearie.dream.intent.nlp.classification.Classifier;
 import org.alvearie.dream.intent.nlp.classification.ClassifierManager;
+import org.alvearie.dream.intent.nlp.classification.ModelRegistry;
+import org.alvearie.dream.intent.nlp.classification.OnlineClassifier;
+import org.alvearie.dream.intent.nlp.classification.OnlineLearner;
+import org.alvearie.dream.intent.nlp.classification.ShadowEvaluator;
+import org.alvearie.dream.intent.nlp.classification.gt.io.CSVGroundTruthReader;
+import org.alvearie.dream.intent.nlp.classification.gt.io.GroundTruthUtils;
+import org.alvearie.dream.intent.nlp.classification.gt.io.SamplingGroundTruthReader;
+import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.alvearie.dream.intent.nlp.text.ParallelExecutor;
+import org.alvearie.dream.intent.nlp.text.ParallelExecutor.StageMetrics;
+import org.alvearie.dream.intent.nlp.text.processors.smile.SmileDocumentNGrammer;
+import org.alvearie.dream.intent.nlp.utils.Histogram;
+import org.alvearie.dream.intent.nlp.utils.Metrics;
+import org.alvearie.dream.service.AdmissionController;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
 
 //run ./mvnw package
 //
@@ -22,98 +58,258 @@ import org.alvearie.dream.intent.nlp.classification.ClassifierManager;
 public class CalculateIntent {
 	public static final String CRITERIA_CLASSIFICATION_MODEL = "criteria-classification.model";
 
+	/**
+	 * The name of the criteria classification model in the model registry, which requests without a model are routed
+	 * to.
+	 */
+	public static final String DEFAULT_MODEL = "default";
+
+	/**
+	 * The header naming the model a request is routed to, e.g. the model of the therapeutic area of the tenant.
+	 */
+	public static final String MODEL_HEADER = "X-Intent-Model";
+
+	/**
+	 * Classifies a text with the criteria classification model.
+	 *
+	 * @param text the text
+	 * @return the intent of the text
+	 */
+	public String calculateIntent(String text) {
+		return calculateIntent(text, null, null);
+	}
+
+	/**
+	 * Classifies a text with the criteria classification model, or with another model of the registry, see
+	 * {@link #models()}.
+	 *
+	 * @param text the text
+	 * @param modelHeader the name of the model, from the {@value #MODEL_HEADER} header
+	 * @param model the name of the model, from the query, which takes precedence over the header
+	 * @return the intent of the text
+	 * @throws WebApplicationException with a 404 status if no model is registered with the name, or a 503 status if the
+	 *         criteria classification model could not be loaded
+	 */
 	@GET
 	@POST
 	@Produces(MediaType.TEXT_PLAIN)
 	public String calculateIntent(
-			@QueryParam("text") String text) {
+			@QueryParam("text") String text, @HeaderParam(MODEL_HEADER) String modelHeader, @QueryParam("model") String model) {
 		org.alvearie.dream.intent.nlp.text.Document nlpDocument = new org.alvearie.dream.intent.nlp.text.Document(text);
+		String modelName = model != null ? model : modelHeader;
+		boolean defaultModel = modelName == null || modelName.equals(DEFAULT_MODEL);
+		// Fails fast, before admission, if the model is unknown or unavailable
+		if (defaultModel) {
+			getBatcher();
+		} else {
+			getBatcher(modelName);
+		}
 		List<Classification> classifications;
-		synchronized (getClassifier()) {
-			classifications = getClassifier().classify(nlpDocument);
-			System.err.println(classifications);
-			return classifications.get(0).getCategory();
+		AdmissionController admission = getAdmission();
+		admission.admit();
+		try {
+			classifications = submit(nlpDocument, defaultModel ? null : modelName).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while classifying: " + text, e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Could not classify: " + text, e.getCause());
+		} finally {
+			admission.release();
 		}
+		System.err.println(classifications);
+		String category = classifications.get(0).getCategory();
+		ShadowEvaluator currentShadow = shadow;
+		if (currentShadow != null && defaultModel) {
+			// Only queues the request, the shadow classification happens in the background
+			currentShadow.offer(text, category);
+		}
+		return category;
 	}
 
-//	@GET
-//	@POST
-//	@Produces(MediaType.TEXT_PLAIN)
-//	public String updateIntent(@QueryParam("text") String text, @QueryParam("intent") String intent) {
-//
-//		// Load second GT file and merge
-//		Map<String, Collection<Document>> groundTruth = new HashMap<>();
-//		try {
-//		GroundTruthReader reader = new CSVGroundTruthReader(new File(TrainCriteriaClassification.class
-//				.getResource(TrainCriteriaClassification.CRITERIA_CLASSIFICATION_GROUND_TRUTH_USER_CSV).getFile()));
-//			groundTruth = reader.read();
-//		} catch (IOException e) {
-//			e.printStackTrace();
-//		}
-//		Collection<Document> criteriaForIntent=groundTruth.computeIfAbsent(intent, i -> new HashSet<Document>());
-//		if (!criteriaForIntent.stream().anyMatch(d -> d.getOriginalText().equals(text))) {
-//			criteriaForIntent.add(new org.alvearie.nlp.text.Document(text));
-//		}
-//
-////		File destinationFile = new File(TrainCriteriaClassification.CRITERIA_CLASSIFICATION_GROUND_TRUTH_USER_CSV);
-//		URL userCSVURL = TrainCriteriaClassification.class.getResource(TrainCriteriaClassification.CRITERIA_CLASSIFICATION_GROUND_TRUTH_USER_CSV);
-//		File destinationFile = new File(userCSVURL.getFile());
-//		
-//		// Sort GT by classification
-//		groundTruth = new TreeMap<>(groundTruth);
-//		List<String> csvFileContents = new ArrayList<>();
-//		csvFileContents.add(String.join(",", CSVGroundTruthReader.CSV_FILE_HEADER));
-//		Set<Entry<String, Collection<Document>>> entries = groundTruth.entrySet();
-//		for (Entry<String, Collection<Document>> entry : entries) {
-//			String classification = entry.getKey();
-//			Collection<Document> documents = entry.getValue();
-//			List<String> documentsText = new ArrayList<>(Document.toStringCollection(documents));
-//			// Sort documents alphabetically
-//			Collections.sort(documentsText);
-//			for (String documentText : documentsText) {
-//				String quotedText = quote(documentText);
-//				csvFileContents.add(quotedText + "," + classification);
-//			}
-//		}
-//		try {
-//			Files.write(destinationFile.toPath(), csvFileContents);
-//		} catch (IOException e) {
-//			e.printStackTrace();
-//		}
-//		System.out.println("Created GT CSV file with a total of " + (csvFileContents.size() - 1) + " documents: "
-//				+ destinationFile);
-//
-//		try {
-//			TrainCriteriaClassification.main(null);
-//		} catch (Exception e) {
-//			e.printStackTrace();
-//		}
-//
-//		return "";
-//	}
-
-//	/**
-//	 * Quotes the given text if needed, that is it the text contains commas.
-//	 * 
-//	 * @param documentText the text to quote
-//	 * @return the quoted text
-//	 */
-//	private String quote(String documentText) {
-//		if (!documentText.contains(",")) {
-//			return documentText;
-//		}
-//		// If we are going to quote the text, we also need to escape any possible
-//		// existing quotes
-//		return "\"" + documentText.replaceAll("\"", "\\\"") + "\"";
-//	}
+	/**
+	 * @return the models requests can be routed to, with their number of features, the number of features they share
+	 *         with the models loaded before them, and the heap each one takes on top of the others
+	 */
+	@GET
+	@Path("/models")
+	@Produces(MediaType.TEXT_PLAIN)
+	public String models() {
+		ModelRegistry currentRegistry = registry;
+		if (currentRegistry == null) {
+			return DEFAULT_MODEL + "\n";
+		}
+		StringBuilder output = new StringBuilder();
+		for (ModelRegistry.Model registeredModel : currentRegistry.getModels()) {
+			output.append(registeredModel).append('\n');
+		}
+		return output.toString();
+	}
+
+	/**
+	 * @return the shadow evaluation of the candidate model: its agreement with the current model, its latency, and the
+	 *         latest texts the two models disagree on
+	 * @throws WebApplicationException with a 404 status if no shadow model is loaded
+	 */
+	@GET
+	@Path("/shadow")
+	@Produces(MediaType.TEXT_PLAIN)
+	public String shadow() {
+		ShadowEvaluator currentShadow = shadow;
+		if (currentShadow == null) {
+			throw new WebApplicationException("No shadow model is loaded.", Response.Status.NOT_FOUND);
+		}
+		StringBuilder output = new StringBuilder(currentShadow.getMetrics());
+		for (ShadowEvaluator.Disagreement disagreement : currentShadow.getDisagreements()) {
+			// A disagreement is formatted on a single line, so its text cannot break out of the comment
+			output.append("# ").append(disagreement).append('\n');
+		}
+		return output.toString();
+	}
+
+	/**
+	 * @return the admission gauges and counters of the intent endpoint, in the Prometheus text format
+	 */
+	@GET
+	@Path("/admission")
+	@Produces(MediaType.TEXT_PLAIN)
+	public String admission() {
+		return getAdmission().getMetrics();
+	}
+
+	/**
+	 * @return the intent pipeline metrics in the Prometheus text format: the latency histograms of each classification
+	 *         stage, the classification counters, the feature space hit ratio, the batcher histograms, the admission
+	 *         gauges, the NLP worker stage counters and the shadow evaluation metrics, if a shadow model is loaded
+	 */
+	@GET
+	@Path("/metrics")
+	@Produces(MediaType.TEXT_PLAIN)
+	public String metrics() {
+		StringBuilder output = new StringBuilder();
+		Metrics metrics = Metrics.getDefault();
+		metrics.format(output);
+		long lookups = metrics.getCount(SmileDocumentNGrammer.FEATURE_SPACE_LOOKUPS);
+		double hitRatio = lookups == 0 ? 0.0 : (double) metrics.getCount(SmileDocumentNGrammer.FEATURE_SPACE_HITS) / lookups;
+		output.append("# TYPE feature_space_hit_ratio gauge\n");
+		output.append("feature_space_hit_ratio ").append(hitRatio).append('\n');
+		for (Histogram histogram : getBatchHistograms()) {
+			Metrics.format(output, histogram);
+		}
+		output.append(getAdmission().getMetrics());
+		ShadowEvaluator currentShadow = shadow;
+		if (currentShadow != null) {
+			output.append(currentShadow.getMetrics());
+		}
+		ModelRegistry currentRegistry = registry;
+		if (currentRegistry != null) {
+			output.append(currentRegistry.getMetrics());
+		}
+		// The samples of a metric follow its HELP and TYPE lines, one sample per stage
+		Collection<StageMetrics> stages = ParallelExecutor.getDefault().getStageMetrics().values();
+		output.append("# HELP executor_stage_items_total The number of items processed by each NLP worker stage\n");
+		output.append("# TYPE executor_stage_items_total counter\n");
+		for (StageMetrics stage : stages) {
+			output.append("executor_stage_items_total{stage=\"").append(stage.getStage()).append("\"} ").append(stage.getItems()).append('\n');
+		}
+		output.append("# HELP executor_stage_busy_ms_total The time spent by the tasks of each NLP worker stage, in milliseconds\n");
+		output.append("# TYPE executor_stage_busy_ms_total counter\n");
+		for (StageMetrics stage : stages) {
+			output.append("executor_stage_busy_ms_total{stage=\"").append(stage.getStage()).append("\"} ").append(stage.getBusyTime()).append('\n');
+		}
+		return output.toString();
+	}
+
+	/**
+	 * Learns a user correction of the intent of a text, without retraining the model. The model is checkpointed
+	 * periodically, see {@link OnlineLearner}, and the checkpoint is only loaded back on startup if
+	 * intent.online.load-checkpoint is true.
+	 * <p>
+	 * Only a model trained with an {@link OnlineClassifier} can learn online: with the default MaxEnt model this returns
+	 * a 501 status.
+	 *
+	 * @param text the text
+	 * @param intent the correct intent of the text
+	 * @return true if the correction was learned, false if the text has no features known to the model
+	 * @throws WebApplicationException with a 501 status if the model cannot learn online, e.g. the default MaxEnt model
+	 */
+	@POST
+	@Path("/learn")
+	@Produces(MediaType.TEXT_PLAIN)
+	public String learnIntent(@QueryParam("text") String text, @QueryParam("intent") String intent) {
+		if (text == null || intent == null) {
+			throw new WebApplicationException("The text and the intent are required.", Response.Status.BAD_REQUEST);
+		}
+		return String.valueOf(getLearner().learn(text, intent));
+	}
+
+	/**
+	 * Starts retraining the model in the background on the criteria classification ground truth and all the corrections
+	 * learned so far. The retrained model replaces the current one once it is trained.
+	 *
+	 * @return a message with the number of corrections the model is retrained with
+	 * @throws WebApplicationException with a 501 status if the model cannot learn online, or a 409 status if a retrain is
+	 *         already running
+	 */
+	@POST
+	@Path("/retrain")
+	@Produces(MediaType.TEXT_PLAIN)
+	public String retrain() {
+		OnlineLearner currentLearner = getLearner();
+		Map<String, Collection<org.alvearie.dream.intent.nlp.text.Document>> groundTruth;
+		try (InputStream main = getClass().getResourceAsStream(TrainCriteriaClassification.CRITERIA_CLASSIFICATION_GROUND_TRUTH_CSV);
+				InputStream user = getClass().getResourceAsStream(TrainCriteriaClassification.CRITERIA_CLASSIFICATION_GROUND_TRUTH_USER_CSV)) {
+			// Sampled as by TrainCriteriaClassification, so that the retrained model sees the same ground truth
+			groundTruth = GroundTruthUtils.add(new SamplingGroundTruthReader(new CSVGroundTruthReader(main), Configuration.getDefault()).read(),
+					new SamplingGroundTruthReader(new CSVGroundTruthReader(user), Configuration.getDefault()).read());
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not read the criteria classification ground truth.", e);
+		}
+		try {
+			currentLearner.retrain(groundTruth).thenAccept(this::setClassifier);
+		} catch (IllegalStateException e) {
+			throw new WebApplicationException(e.getMessage(), Response.Status.CONFLICT);
+		}
+		return "Retraining with " + currentLearner.getCorrectionCount() + " corrections";
+	}
+
+	/**
+	 * Submits a document to the batcher of its model. The batcher of the criteria classification model is replaced when
+	 * the model is, see {@link #setClassifier(Classifier)}: a document submitted to the replaced batcher after it was
+	 * closed is submitted again to the new one.
+	 *
+	 * @param document the document
+	 * @param modelName the name of the model of the registry, or null for the criteria classification model
+	 * @return the future classifications of the document
+	 */
+	private CompletableFuture<List<Classification>> submit(org.alvearie.dream.intent.nlp.text.Document document, String modelName) {
+		if (modelName != null) {
+			return getBatcher(modelName).submit(document);
+		}
+		while (true) {
+			ClassificationBatcher modelBatcher = getBatcher();
+			CompletableFuture<List<Classification>> future = modelBatcher.submit(document);
+			// A batcher that was closed before the document reached it fails it right away
+			boolean rejected = modelBatcher.isClosed() && future.isCompletedExceptionally();
+			if (!rejected || batcher == modelBatcher) {
+				return future;
+			}
+		}
+	}
 
 	private Classifier getClassifier() {
 		if (classifier == null) {
 			synchronized (this) {
 				if (classifier == null) {
-					try (InputStream inputStream = getClass()
+					File checkpoint = new File(checkpointFile);
+					boolean useCheckpoint = loadCheckpoint && checkpoint.isFile();
+					if (!loadCheckpoint && checkpoint.isFile()) {
+						System.err.println("Ignoring the online checkpoint " + checkpoint.getAbsolutePath() + ", intent.online.load-checkpoint is false");
+					}
+					try (InputStream inputStream = useCheckpoint ? new FileInputStream(checkpoint) : getClass()
 							.getResourceAsStream("/" + CRITERIA_CLASSIFICATION_MODEL)) {
-						// Use model generated previously during ingestion
+						// Use the online checkpoint if asked to and there is one, the model generated previously during ingestion otherwise,
+						// so that a checkpoint left behind never silently overrides a newly deployed model
 						classifier = ClassifierManager.load(inputStream);
 					} catch (Throwable t) {
 						classifier = null;
@@ -126,10 +322,274 @@ public class CalculateIntent {
 		return classifier;
 	}
 
-	private Classifier classifier = null;
+	/**
+	 * Gets the current classifier, loading it if needed.
+	 *
+	 * @return the current classifier
+	 * @throws WebApplicationException with a 503 status if the criteria classification model could not be loaded
+	 */
+	private Classifier getAvailableClassifier() {
+		Classifier currentClassifier = getClassifier();
+		if (currentClassifier == null) {
+			throw new WebApplicationException("The criteria classification model is not available.", Response.Status.SERVICE_UNAVAILABLE);
+		}
+		return currentClassifier;
+	}
 
+	/**
+	 * Gets the batcher that classifies concurrent requests together, creating it for the current classifier if needed.
+	 *
+	 * @return the batcher
+	 * @throws WebApplicationException with a 503 status if the criteria classification model could not be loaded
+	 */
+	private ClassificationBatcher getBatcher() {
+		ClassificationBatcher currentBatcher = batcher;
+		if (currentBatcher == null) {
+			synchronized (this) {
+				if (batcher == null) {
+					// Read under the lock so that the batcher is never created for a classifier that was just replaced
+					batcher = new ClassificationBatcher(getAvailableClassifier(), maxBatchSize, maxBatchWaitMillis, TimeUnit.MILLISECONDS);
+				}
+				currentBatcher = batcher;
+			}
+		}
+		return currentBatcher;
+	}
+
+	/**
+	 * Gets the batcher of a model of the registry, creating it if needed.
+	 *
+	 * @param modelName the name of the model
+	 * @return the batcher
+	 * @throws WebApplicationException with a 404 status if no model is registered with the name
+	 */
+	private ClassificationBatcher getBatcher(String modelName) {
+		ModelRegistry currentRegistry = registry;
+		Classifier modelClassifier = currentRegistry == null ? null : currentRegistry.getClassifier(modelName);
+		if (modelClassifier == null) {
+			throw new WebApplicationException("No model is registered as " + modelName, Response.Status.NOT_FOUND);
+		}
+		return modelBatchers.computeIfAbsent(modelName,
+				name -> new ClassificationBatcher(modelClassifier, maxBatchSize, maxBatchWaitMillis, TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * Gets the online learner of the current classifier, creating it if needed.
+	 *
+	 * @return the online learner
+	 * @throws WebApplicationException with a 501 status if the classifier cannot learn online, or a 503 status if the
+	 *         criteria classification model could not be loaded
+	 */
+	private OnlineLearner getLearner() {
+		Classifier currentClassifier = getAvailableClassifier();
+		synchronized (this) {
+			if (learner == null) {
+				if (!(currentClassifier instanceof OnlineClassifier)) {
+					throw new WebApplicationException("The criteria classification model cannot learn online.", Response.Status.NOT_IMPLEMENTED);
+				}
+				learner = new OnlineLearner((OnlineClassifier) currentClassifier, new File(checkpointFile), checkpointInterval, maxCorrections);
+				learner.setRetrainParallelism(retrainParallelism);
+			}
+			return learner;
+		}
+	}
+
+	/**
+	 * Gets the admission controller of the intent endpoint, creating it from the configuration if needed.
+	 *
+	 * @return the admission controller
+	 */
+	private AdmissionController getAdmission() {
+		if (admission == null) {
+			synchronized (this) {
+				if (admission == null) {
+					admission = new AdmissionController("intent", maxConcurrentRequests, maxQueuedRequests, maxQueueWaitMillis, retryAfterSeconds);
+				}
+			}
+		}
+		return admission;
+	}
+
+	private volatile Classifier classifier = null;
+
+	private volatile ClassificationBatcher batcher = null;
+
+	@ConfigProperty(name = "intent.batch.max-size", defaultValue = "16")
+	int maxBatchSize = 16;
+
+	@ConfigProperty(name = "intent.batch.max-wait-ms", defaultValue = "5")
+	long maxBatchWaitMillis = 5;
+
+	private volatile AdmissionController admission = null;
+
+	private OnlineLearner learner = null;
+
+	private volatile ShadowEvaluator shadow = null;
+
+	private volatile ModelRegistry registry = null;
+
+	private final Map<String, ClassificationBatcher> modelBatchers = new ConcurrentHashMap<>();
+
+	@ConfigProperty(name = "intent.models")
+	Optional<String> models = Optional.empty();
+
+	@ConfigProperty(name = "intent.shadow.model-file")
+	Optional<String> shadowModelFile = Optional.empty();
+
+	@ConfigProperty(name = "intent.shadow.sample-rate", defaultValue = "0.1")
+	double shadowSampleRate = 0.1;
+
+	@ConfigProperty(name = "intent.shadow.max-queued", defaultValue = "100")
+	int shadowMaxQueued = 100;
+
+	@ConfigProperty(name = "intent.shadow.max-disagreements", defaultValue = "100")
+	int shadowMaxDisagreements = 100;
+
+	@ConfigProperty(name = "intent.online.checkpoint-file", defaultValue = "criteria-classification-online.model")
+	String checkpointFile = "criteria-classification-online.model";
+
+	@ConfigProperty(name = "intent.online.checkpoint-interval", defaultValue = "100")
+	int checkpointInterval = 100;
+
+	@ConfigProperty(name = "intent.online.load-checkpoint", defaultValue = "false")
+	boolean loadCheckpoint = false;
+
+	@ConfigProperty(name = "intent.online.max-corrections", defaultValue = "10000")
+	int maxCorrections = 10000;
+
+	@ConfigProperty(name = "intent.online.retrain-parallelism", defaultValue = "1")
+	int retrainParallelism = 1;
+
+	@ConfigProperty(name = "intent.admission.max-concurrent", defaultValue = "32")
+	int maxConcurrentRequests = 32;
+
+	@ConfigProperty(name = "intent.admission.max-queued", defaultValue = "64")
+	int maxQueuedRequests = 64;
+
+	@ConfigProperty(name = "intent.admission.max-queue-wait-ms", defaultValue = "200")
+	long maxQueueWaitMillis = 200;
+
+	@ConfigProperty(name = "intent.admission.retry-after-seconds", defaultValue = "1")
+	long retryAfterSeconds = 1;
+
+	/**
+	 * Loads the shadow model, if one is configured, when the application starts so that loading it does not delay a
+	 * request. A shadow model that cannot be loaded only disables the shadow evaluation.
+	 *
+	 * @param event the startup event
+	 */
+	void onStart(@Observes StartupEvent event) {
+		loadModels();
+		if (shadowModelFile.isEmpty()) {
+			return;
+		}
+		File file = new File(shadowModelFile.get());
+		try {
+			shadow = new ShadowEvaluator(ClassifierManager.load(file), shadowSampleRate, shadowMaxQueued, shadowMaxDisagreements);
+			System.err.println("Shadow evaluating " + file.getAbsolutePath() + " on " + shadowSampleRate + " of the requests");
+		} catch (Throwable t) {
+			t.printStackTrace();
+			System.err.println("Disabling shadow evaluation due to initialization failure");
+		}
+	}
+
+	/**
+	 * Loads the models of the registry, if any are configured as comma-separated name=file pairs, after the criteria
+	 * classification model so that the size reported for each model is what it costs on top of it. A model that cannot
+	 * be loaded is skipped.
+	 */
+	private void loadModels() {
+		if (models.isEmpty()) {
+			return;
+		}
+		ModelRegistry newRegistry = new ModelRegistry(DEFAULT_MODEL);
+		Classifier defaultClassifier = getClassifier();
+		if (defaultClassifier != null) {
+			// Only registered for its vocabulary and configuration, requests without a model keep using the current classifier,
+			// and replaced along with it, see setClassifier
+			newRegistry.register(DEFAULT_MODEL, defaultClassifier);
+		}
+		for (String entry : models.get().split(",")) {
+			String[] nameAndFile = entry.trim().split("=", 2);
+			if (nameAndFile.length != 2) {
+				System.err.println("Skipping model " + entry + ", expected name=file");
+				continue;
+			}
+			try {
+				ModelRegistry.Model model = newRegistry.load(nameAndFile[0].trim(), new File(nameAndFile[1].trim()));
+				System.err.println("Loaded model " + model);
+			} catch (Throwable t) {
+				t.printStackTrace();
+				System.err.println("Skipping model " + nameAndFile[0] + " due to initialization failure");
+			}
+		}
+		registry = newRegistry;
+	}
+
+	/**
+	 * Stops the request batcher and the NLP worker threads when the application shuts down, letting running work
+	 * finish.
+	 *
+	 * @param event the shutdown event
+	 */
+	void onStop(@Observes ShutdownEvent event) {
+		if (batcher != null) {
+			batcher.close();
+		}
+		modelBatchers.values().forEach(ClassificationBatcher::close);
+		if (learner != null) {
+			learner.close();
+		}
+		if (shadow != null) {
+			shadow.close();
+		}
+		ParallelExecutor.getDefault().close();
+	}
+
+	/**
+	 * Replaces the criteria classification model. The batcher of the new model is published before the batcher of the
+	 * previous model is closed, which lets the requests already submitted to it finish, so requests are not failed by the
+	 * swap.
+	 *
+	 * @param classifier the new classifier
+	 */
 	public void setClassifier(Classifier classifier) {
-		this.classifier = classifier;
+		ClassificationBatcher previousBatcher;
+		OnlineLearner previousLearner = null;
+		synchronized (this) {
+			this.classifier = classifier;
+			// The registry would otherwise keep the previous classifier, and its vocabulary, in memory
+			ModelRegistry currentRegistry = registry;
+			if (currentRegistry != null && classifier != null) {
+				currentRegistry.replace(DEFAULT_MODEL, classifier);
+			}
+			previousBatcher = batcher;
+			batcher = previousBatcher == null || classifier == null ? null
+					: new ClassificationBatcher(classifier, maxBatchSize, maxBatchWaitMillis, TimeUnit.MILLISECONDS);
+			// A retrain replaces the classifier of the learner, any other classifier needs a new learner
+			if (learner != null && learner.getClassifier() != classifier) {
+				previousLearner = learner;
+				learner = null;
+			}
+		}
+		if (previousBatcher != null) {
+			previousBatcher.close();
+		}
+		if (previousLearner != null) {
+			previousLearner.close();
+		}
+	}
+
+	/**
+	 * @return the batcher metrics: the batch size and batch wait time histograms, or an empty list if no request has been
+	 *         classified yet
+	 */
+	public List<Histogram> getBatchHistograms() {
+		ClassificationBatcher currentBatcher = batcher;
+		if (currentBatcher == null) {
+			return Collections.emptyList();
+		}
+		return Arrays.asList(currentBatcher.getBatchSizes(), currentBatcher.getWaitTimes());
 	}
 
 	public static void main(String[] args) {
@@ -138,7 +598,7 @@ public class CalculateIntent {
 
 		System.err.println(intent + " ---> " + criterion);
 
-//		new CalculateIntent().updateIntent(criterion, "ageGender");
+//		new CalculateIntent().learnIntent(criterion, "ageGender");
 //
 //		intent = new CalculateIntent().calculateIntent(criterion);
 //		System.err.println(intent + " ---> " + criterion);
@@ -0,0 +1,70 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.alvearie.dream.intent.nlp;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.alvearie.dream.intent.nlp.classification.classifiers.OpenNLPClassifier;
+import org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileDecisionTreeClassifier;
+import org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileHogwildClassifier;
+import org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileMaxEntClassifier;
+import org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileNaiveBayesClassifier;
+import org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileNeuralNetClassifier;
+import org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileRandomForestClassifier;
+import org.alvearie.dream.intent.nlp.classification.gt.ClassifierBenchmark;
+import org.alvearie.dream.intent.nlp.classification.gt.io.CSVGroundTruthReader;
+import org.alvearie.dream.intent.nlp.classification.gt.io.SamplingGroundTruthReader;
+import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.alvearie.dream.intent.nlp.text.Document;
+
+/**
+ * Benchmark the classifiers on increasing fractions of the criteria classification ground truth, see
+ * {@link ClassifierBenchmark}. The training time, model size, heap, latencies and F1 of each classifier are saved in
+ * the experiment directory as {@value ClassifierBenchmark#RESULTS_FILE} and {@value ClassifierBenchmark#SUMMARY_FILE}.
+ *
+ *
+ */
+public class BenchmarkCriteriaClassifiersGT {
+
+	/**
+	 * The fractions of the training set to benchmark the classifiers on.
+	 */
+	private static final List<Double> FRACTIONS = Arrays.asList(0.1, 0.25, 0.5, 1.0);
+
+	/**
+	 * The mini-batch size of the neural net, which is too slow to benchmark on the larger fractions otherwise.
+	 */
+	private static final int NEURAL_NET_BATCH_SIZE = 32;
+
+	/**
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		Experiment experiment = Experiment.createExperiment(BenchmarkCriteriaClassifiersGT.class.getSimpleName());
+		Map<String, Collection<Document>> groundTruth = new SamplingGroundTruthReader(new CSVGroundTruthReader(
+				BenchmarkCriteriaClassifiersGT.class.getResourceAsStream(TrainCriteriaClassification.CRITERIA_CLASSIFICATION_GROUND_TRUTH_CSV)),
+				experiment.getConfiguration()).read();
+		ClassifierBenchmark benchmark = new ClassifierBenchmark(groundTruth, experiment.getConfiguration());
+		benchmark.setExperiment(experiment);
+		benchmark.setFractions(FRACTIONS);
+		benchmark.addClassifier(SmileRandomForestClassifier.class);
+		benchmark.addClassifier(SmileMaxEntClassifier.class);
+		benchmark.addClassifier(SmileNaiveBayesClassifier.class);
+		benchmark.addClassifier(SmileDecisionTreeClassifier.class);
+		benchmark.addClassifier(SmileHogwildClassifier.class);
+		benchmark.addClassifier(SmileNeuralNetClassifier.class.getSimpleName(), configuration -> {
+			configuration.setNeuralNetBatchSize(NEURAL_NET_BATCH_SIZE);
+			return new SmileNeuralNetClassifier(configuration);
+		});
+		benchmark.addClassifier(OpenNLPClassifier.class);
+		benchmark.run();
+		experiment.save();
+	}
+}
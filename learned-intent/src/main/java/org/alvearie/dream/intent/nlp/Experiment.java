@@ -10,6 +10,7 @@ import java.io.FileFilter;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.Writer;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
@@ -24,6 +25,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.alvearie.dream.intent.nlp.text.Configuration;
@@ -45,6 +47,11 @@ public class Experiment {
     // code that is agnostic to which experiment is running.
     private static String currentExperimentName = null;
 
+    /**
+     * The experiment of the task the current thread works for, see {@link #callWith(Experiment, Callable)}.
+     */
+    private static final ThreadLocal<Experiment> CURRENT = new ThreadLocal<>();
+
     private static final String DATE_FORMAT = "yyyy-MM-dd-HH-mm-ss-SSS";
 
     /**
@@ -69,10 +76,36 @@ public class Experiment {
     /**
      * Return the most recent experiment for the experiment name last used.
      *
-     * @return the most recent experiment for the experiment name last used
+     * @return the most recent experiment for the experiment name last used, or within a task run with
+     *         {@link #callWith(Experiment, Callable)} the experiment of the task
      */
     public static Experiment getCurrentExperiment() {
-        return getCurrentExperiment(currentExperimentName);
+        Experiment current = CURRENT.get();
+        return current != null ? current : getCurrentExperiment(currentExperimentName);
+    }
+
+    /**
+     * Runs a task for which the given experiment is the current experiment, e.g. a sub-experiment, so that the data the
+     * task saves to the current experiment goes to it. Only the calling thread sees the given experiment, the other
+     * threads keep seeing their own current experiment, so several such tasks can run concurrently.
+     *
+     * @param experiment the experiment of the task
+     * @param task the task
+     * @return the result of the task
+     * @throws Exception the exception thrown by the task
+     */
+    public static <V> V callWith(Experiment experiment, Callable<V> task) throws Exception {
+        Experiment previous = CURRENT.get();
+        CURRENT.set(experiment);
+        try {
+            return task.call();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
     }
 
     /**
@@ -356,6 +389,23 @@ public class Experiment {
         }
     }
 
+    /**
+     * Creates an experiment stored in a sub-directory of this experiment, e.g. for one fold of a cross-validation. The
+     * sub-experiment has its own configuration, and does not become the current experiment nor change the default
+     * configuration, so that several sub-experiments can run concurrently, each within
+     * {@link #callWith(Experiment, Callable)}.
+     *
+     * @param name the name of the sub-directory
+     * @param configuration the configuration of the sub-experiment
+     * @return the sub-experiment
+     */
+    public Experiment createSubExperiment(String name, Configuration configuration) {
+        Experiment subExperiment = new Experiment(experimentName, experimentDate);
+        subExperiment.experimentDirectory = new File(experimentDirectory, name);
+        subExperiment.configuration = configuration;
+        return subExperiment;
+    }
+
     /**
      * Log a message to a log file within the experiment directory.
      *
@@ -388,7 +438,7 @@ public class Experiment {
      * @param serializableObject
      * @param overwrite
      */
-    private void saveObject(String fileName, Serializable serializableObject, boolean overwrite) {
+    public void saveObject(String fileName, Serializable serializableObject, boolean overwrite) {
         if (!experimentDirectory.exists()) {
             experimentDirectory.mkdirs();
         }
@@ -412,6 +462,26 @@ public class Experiment {
         }
     }
 
+    /**
+     * Opens a buffered writer on a file of the experiment directory, for data too large to be built in memory and saved
+     * with {@link #saveObject(String, Serializable, boolean)}.
+     *
+     * @param fileName the name of the file
+     * @param overwrite whether to overwrite the file if it exists
+     * @return the writer, which the caller must close, or null if the file exists and is not to be overwritten
+     * @throws IOException if the file cannot be opened
+     */
+    public Writer createWriter(String fileName, boolean overwrite) throws IOException {
+        if (!experimentDirectory.exists()) {
+            experimentDirectory.mkdirs();
+        }
+        File file = new File(experimentDirectory, fileName);
+        if (!overwrite && file.exists()) {
+            return null;
+        }
+        return Files.newBufferedWriter(file.toPath());
+    }
+
     /**
      * Set the configuration used by this experiment.
      *
@@ -0,0 +1,65 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.alvearie.dream.intent.nlp;
+
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.alvearie.dream.intent.nlp.classification.gt.HyperparameterSweep;
+import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.alvearie.dream.intent.nlp.text.processors.FeatureSelector;
+
+/**
+ * Report the accuracy of the criteria classifier against the size of its vocabulary, by cross-validating it on the
+ * criteria classification ground truth with the features selected by chi-square and by mutual information. The curves
+ * are saved in the experiment directory as a CSV of the selection method, the number of features, the F1 and its
+ * standard deviation over the folds, and the time it took.
+ *
+ *
+ */
+public class FeatureSelectionCriteriaClassificationGT {
+
+	/**
+	 * The name of the CSV file the curves are saved to.
+	 */
+	public static final String CURVES_FILE = "FeatureSelectionCurves.csv";
+
+	/**
+	 * The vocabulary sizes to evaluate, -1 keeps all the features.
+	 */
+	private static final List<Integer> SIZES = Arrays.asList(250, 500, 1000, 2000, 4000, 8000, -1);
+
+	/**
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		Experiment experiment = Experiment.createExperiment(FeatureSelectionCriteriaClassificationGT.class.getSimpleName());
+		byte[] groundTruth;
+		try (InputStream in = FeatureSelectionCriteriaClassificationGT.class.getResourceAsStream(TrainCriteriaClassification.CRITERIA_CLASSIFICATION_GROUND_TRUTH_CSV)) {
+			groundTruth = in.readAllBytes();
+		}
+		HyperparameterSweep sweep = new HyperparameterSweep(groundTruth, experiment.getConfiguration());
+		sweep.setExperiment(experiment);
+		sweep.addParameter("featureSelection", Configuration::setFeatureSelection, Arrays.asList(FeatureSelector.Method.values()));
+		sweep.addParameter("featureSelectionSize", Configuration::setFeatureSelectionSize, SIZES);
+		List<HyperparameterSweep.Candidate> candidates = sweep.grid();
+		List<HyperparameterSweep.Result> results = sweep.run(candidates);
+		results.sort(Comparator.comparingInt(result -> candidates.indexOf(result.getCandidate())));
+		try (Writer writer = experiment.createWriter(CURVES_FILE, true)) {
+			writer.write("method,features,f1,f1StandardDeviation,millis\n");
+			for (HyperparameterSweep.Result result : results) {
+				Configuration configuration = result.getConfiguration();
+				writer.write(configuration.getFeatureSelection() + "," + configuration.getFeatureSelectionSize() + "," + result.getF1() + ","
+						+ result.getF1StandardDeviation() + "," + result.getMillis() + "\n");
+			}
+		}
+		experiment.save();
+	}
+}
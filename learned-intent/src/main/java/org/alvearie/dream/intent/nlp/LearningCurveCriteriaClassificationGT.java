@@ -0,0 +1,63 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.alvearie.dream.intent.nlp;
+
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.alvearie.dream.intent.nlp.classification.gt.HyperparameterSweep;
+import org.alvearie.dream.intent.nlp.classification.gt.io.SamplingGroundTruthReader;
+import org.alvearie.dream.intent.nlp.text.Configuration;
+
+/**
+ * Report the learning curve of the criteria classifier, by cross-validating it on stratified subsamples of increasing
+ * size of the criteria classification ground truth, see {@link SamplingGroundTruthReader}. The curve is saved in the
+ * experiment directory as a CSV of the fraction of the ground truth, the F1 and its standard deviation over the folds,
+ * and the time it took.
+ *
+ *
+ */
+public class LearningCurveCriteriaClassificationGT {
+
+	/**
+	 * The name of the CSV file the curve is saved to.
+	 */
+	public static final String CURVE_FILE = "LearningCurve.csv";
+
+	/**
+	 * The fractions of the ground truth to evaluate.
+	 */
+	private static final List<Double> FRACTIONS = Arrays.asList(0.1, 0.2, 0.4, 0.6, 0.8, 1.0);
+
+	/**
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		Experiment experiment = Experiment.createExperiment(LearningCurveCriteriaClassificationGT.class.getSimpleName());
+		byte[] groundTruth;
+		try (InputStream in = LearningCurveCriteriaClassificationGT.class.getResourceAsStream(TrainCriteriaClassification.CRITERIA_CLASSIFICATION_GROUND_TRUTH_CSV)) {
+			groundTruth = in.readAllBytes();
+		}
+		HyperparameterSweep sweep = new HyperparameterSweep(groundTruth, experiment.getConfiguration());
+		sweep.setExperiment(experiment);
+		sweep.addParameter("trainingDataFraction", Configuration::setTrainingDataFraction, FRACTIONS);
+		List<HyperparameterSweep.Candidate> candidates = sweep.grid();
+		List<HyperparameterSweep.Result> results = sweep.run(candidates);
+		results.sort(Comparator.comparingInt(result -> candidates.indexOf(result.getCandidate())));
+		try (Writer writer = experiment.createWriter(CURVE_FILE, true)) {
+			writer.write("fraction,f1,f1StandardDeviation,millis\n");
+			for (HyperparameterSweep.Result result : results) {
+				writer.write(result.getConfiguration().getTrainingDataFraction() + "," + result.getF1() + "," + result.getF1StandardDeviation() + ","
+						+ result.getMillis() + "\n");
+			}
+		}
+		experiment.save();
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.alvearie.dream.intent.nlp;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.alvearie.dream.intent.nlp.classification.Classifier;
+import org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileMaxEntClassifier;
+import org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileNaiveBayesClassifier;
+import org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileRandomForestClassifier;
+import org.alvearie.dream.intent.nlp.classification.gt.HyperparameterSweep;
+import org.alvearie.dream.intent.nlp.text.Configuration;
+
+/**
+ * Search the hyperparameters of the criteria classifier with a {@link HyperparameterSweep} over the criteria
+ * classification ground truth. The ranked leaderboard is saved in the experiment directory.
+ *
+ *
+ */
+public class SweepCriteriaClassificationGT {
+
+	/**
+	 * The number of candidates drawn from the grid.
+	 */
+	private static final int CANDIDATES = 40;
+
+	/**
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		Experiment experiment = Experiment.createExperiment(SweepCriteriaClassificationGT.class.getSimpleName());
+		byte[] groundTruth;
+		try (InputStream in = SweepCriteriaClassificationGT.class.getResourceAsStream(TrainCriteriaClassification.CRITERIA_CLASSIFICATION_GROUND_TRUTH_CSV)) {
+			groundTruth = in.readAllBytes();
+		}
+		HyperparameterSweep sweep = new HyperparameterSweep(groundTruth, experiment.getConfiguration());
+		sweep.setExperiment(experiment);
+		sweep.addParameter("nGramMinRange", Configuration::setNGramMinRange, Arrays.asList(1, 2));
+		sweep.addParameter("nGramMaxRange", Configuration::setNGramMaxRange, Arrays.asList(2, 3));
+		sweep.addParameter("minimumTokenFrequency", Configuration::setMinimumTokenFrequency, Arrays.asList(1, 2, 3));
+		sweep.addParameter("numberOfTrees", Configuration::setNumberOfTrees, Arrays.asList(50, 100, 200));
+		sweep.addParameter("featuresPerTree", Configuration::setFeaturesPerTree, Arrays.asList(-1, 50, 200));
+		sweep.addParameter("lambda", Configuration::setLambda, Arrays.asList(0.000001, 0.0001, 0.01));
+		List<Class<? extends Classifier>> classifierClasses = Arrays.asList(SmileMaxEntClassifier.class, SmileNaiveBayesClassifier.class, SmileRandomForestClassifier.class);
+		sweep.addParameter("classifierClass", Configuration::setClassifierClass, classifierClasses);
+		List<HyperparameterSweep.Result> results = sweep.run(sweep.random(CANDIDATES, 23));
+		System.out.println("Best candidate: " + results.get(0).getCandidate() + " F1: " + results.get(0).getF1());
+		experiment.save();
+	}
+}
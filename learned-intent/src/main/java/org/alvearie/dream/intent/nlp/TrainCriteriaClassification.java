@@ -14,6 +14,7 @@ import org.alvearie.dream.intent.nlp.classification.Classifier;
 import org.alvearie.dream.intent.nlp.classification.gt.io.CSVGroundTruthReader;
 import org.alvearie.dream.intent.nlp.classification.gt.io.GroundTruthReader;
 import org.alvearie.dream.intent.nlp.classification.gt.io.GroundTruthUtils;
+import org.alvearie.dream.intent.nlp.classification.gt.io.SamplingGroundTruthReader;
 import org.alvearie.dream.intent.nlp.text.Configuration;
 import org.alvearie.dream.intent.nlp.text.Document;
 import org.alvearie.dream.intent.nlp.text.Words;
@@ -53,11 +54,12 @@ public class TrainCriteriaClassification {
 		} catch (IOException e) {
 			System.err.println("Error loading break words.");
 		}
-		GroundTruthReader reader = new CSVGroundTruthReader(TrainCriteriaClassification.class.getResourceAsStream(CRITERIA_CLASSIFICATION_GROUND_TRUTH_CSV));
+		GroundTruthReader reader = new SamplingGroundTruthReader(
+				new CSVGroundTruthReader(TrainCriteriaClassification.class.getResourceAsStream(CRITERIA_CLASSIFICATION_GROUND_TRUTH_CSV)), Configuration.getDefault());
 		Map<String, Collection<Document>> groundTruth = reader.read();
 		// Load second GT file and merge
-		GroundTruthReader reader2 = new CSVGroundTruthReader(TrainCriteriaClassification.class
-				.getResourceAsStream(TrainCriteriaClassification.CRITERIA_CLASSIFICATION_GROUND_TRUTH_USER_CSV));
+		GroundTruthReader reader2 = new SamplingGroundTruthReader(new CSVGroundTruthReader(TrainCriteriaClassification.class
+				.getResourceAsStream(TrainCriteriaClassification.CRITERIA_CLASSIFICATION_GROUND_TRUTH_USER_CSV)), Configuration.getDefault());
 		Map<String, Collection<Document>> groundTruth2 = reader2.read();
 		groundTruth = GroundTruthUtils.add(groundTruth, groundTruth2);
 		Classifier classifier = Configuration.getDefault().getClassifierClass().newInstance();
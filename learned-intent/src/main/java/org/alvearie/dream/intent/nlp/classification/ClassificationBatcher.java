@@ -0,0 +1,264 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.alvearie.dream.intent.nlp.classification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.alvearie.dream.intent.nlp.utils.Histogram;
+import org.apache.log4j.Logger;
+
+/**
+ * Collects concurrent classification requests into batches, so that the per-request text processing overhead is paid
+ * once per batch instead of once per document.
+ * <p>
+ * A single dispatcher thread takes the first waiting request and then keeps collecting requests until the batch is full
+ * or the batch window has elapsed. The window is adaptive: the dispatcher only waits for more requests while they keep
+ * arriving at a rate that makes it likely to get another one, when requests are sparse each one is classified as soon
+ * as it arrives. The batch sizes and the time requests wait before being classified are recorded in histograms, to
+ * tune the maximum batch size and window.
+ * <p>
+ * The batches are submitted one at a time from the dispatcher thread, but {@link Classifier#classifyAll(List)} may
+ * classify the documents of a batch concurrently, as the Smile classifiers do, so the classifier must be thread-safe.
+ *
+ */
+public class ClassificationBatcher implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(ClassificationBatcher.class.getName());
+
+    /**
+     * The weight of the latest inter-arrival time in its moving average.
+     */
+    private static final double ARRIVAL_SMOOTHING = 0.2;
+
+    private final Classifier classifier;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final BlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+    private final Histogram batchSizes;
+    private final Histogram waitTimes;
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+    private long lastArrival;
+    private double averageInterArrivalNanos;
+
+    /**
+     * Creates a {@link ClassificationBatcher} and starts its dispatcher thread.
+     *
+     * @param classifier the trained classifier
+     * @param maxBatchSize the maximum number of documents classified together
+     * @param maxWait the maximum time the first request of a batch waits for other requests
+     * @param unit the unit of the maximum wait
+     * @throws IllegalArgumentException if the maximum batch size is not positive or the maximum wait is negative
+     */
+    public ClassificationBatcher(Classifier classifier, int maxBatchSize, long maxWait, TimeUnit unit) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("The maximum batch size must be positive.");
+        }
+        if (maxWait < 0) {
+            throw new IllegalArgumentException("The maximum wait cannot be negative.");
+        }
+        this.classifier = classifier;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = unit.toNanos(maxWait);
+        // Start as if requests were sparse so that the first ones do not wait
+        averageInterArrivalNanos = Double.MAX_VALUE;
+        lastArrival = System.nanoTime();
+        batchSizes = new Histogram("batch_size", 1, 2, 4, 8, 16, 32, 64, 128, 256);
+        waitTimes = new Histogram("batch_wait_ms", 0.1, 0.5, 1, 2, 5, 10, 20, 50, 100, 500);
+        dispatcher = new Thread(this::dispatch, "classification-batcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Submits a document for classification.
+     *
+     * @param document the document to classify
+     * @return a future completed with the sorted list of classifications of the document, see
+     *         {@link Classifier#classify(Document)}, or completed exceptionally if the classification failed
+     */
+    public CompletableFuture<List<Classification>> submit(Document document) {
+        Request request = new Request(document);
+        if (!running) {
+            request.future.completeExceptionally(new IllegalStateException("The classification batcher is closed."));
+            return request.future;
+        }
+        synchronized (this) {
+            long gap = request.arrival - lastArrival;
+            lastArrival = request.arrival;
+            averageInterArrivalNanos = averageInterArrivalNanos == Double.MAX_VALUE ? gap : ARRIVAL_SMOOTHING * gap + (1 - ARRIVAL_SMOOTHING) * averageInterArrivalNanos;
+        }
+        requests.add(request);
+        if (!running && requests.remove(request)) {
+            // Closed concurrently, after the remaining requests were failed
+            request.future.completeExceptionally(new IllegalStateException("The classification batcher is closed."));
+        }
+        return request.future;
+    }
+
+    /**
+     * @return true once {@link #close()} was called, the requests submitted afterwards fail right away
+     */
+    public boolean isClosed() {
+        return !running;
+    }
+
+    /**
+     * @return the histogram of the number of documents classified together
+     */
+    public Histogram getBatchSizes() {
+        return batchSizes;
+    }
+
+    /**
+     * @return the histogram of the time, in milliseconds, requests wait before being classified
+     */
+    public Histogram getWaitTimes() {
+        return waitTimes;
+    }
+
+    /**
+     * @return the number of requests waiting to be classified
+     */
+    public int getQueueDepth() {
+        return requests.size();
+    }
+
+    /**
+     * The dispatcher loop, collecting and classifying batches until closed.
+     */
+    private void dispatch() {
+        while (running || !requests.isEmpty()) {
+            Request first;
+            try {
+                first = requests.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                // Closing, the remaining requests are failed by close()
+                return;
+            }
+            if (first == null) {
+                continue;
+            }
+            List<Request> batch = new ArrayList<>(maxBatchSize);
+            batch.add(first);
+            collect(batch, first.arrival + maxWaitNanos);
+            classify(batch);
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adds requests to the batch until it is full, the deadline passes, or the next request is not expected soon. If
+     * interrupted, the batch is returned as is with the interrupt flag set.
+     *
+     * @param batch the batch
+     * @param deadline the time at which the batch must be classified
+     */
+    private void collect(List<Request> batch, long deadline) {
+        double averageInterArrival;
+        synchronized (this) {
+            averageInterArrival = averageInterArrivalNanos;
+        }
+        // If requests arrive further apart than the window there is no point in waiting
+        if (averageInterArrival <= maxWaitNanos) {
+            long gapLimit = Math.max(1, (long) (2 * averageInterArrival));
+            while (batch.size() < maxBatchSize) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                Request next;
+                try {
+                    next = requests.poll(Math.min(remaining, gapLimit), TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                if (next == null) {
+                    break;
+                }
+                batch.add(next);
+            }
+        }
+        // Anything that is already waiting goes in the batch anyway
+        requests.drainTo(batch, maxBatchSize - batch.size());
+    }
+
+    /**
+     * Classifies a batch, completing the future of each request.
+     * <p>
+     * The documents are classified together with {@link Classifier#classifyAll(List)}. If that fails, they are classified
+     * one by one, so that a document that cannot be classified only fails its own request.
+     *
+     * @param batch the batch
+     */
+    private void classify(List<Request> batch) {
+        long start = System.nanoTime();
+        batchSizes.record(batch.size());
+        List<Document> documents = new ArrayList<>(batch.size());
+        for (Request request : batch) {
+            waitTimes.record((start - request.arrival) / 1_000_000.0);
+            documents.add(request.document);
+        }
+        List<List<Classification>> classifications = null;
+        try {
+            classifications = classifier.classifyAll(documents);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not classify a batch of " + documents.size() + " documents, classifying them one by one: " + e.getMessage());
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            Request request = batch.get(i);
+            try {
+                request.future.complete(classifications != null ? classifications.get(i) : classifier.classify(request.document));
+            } catch (RuntimeException e) {
+                request.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Stops accepting requests, classifies the requests that are already waiting, and stops the dispatcher thread.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            dispatcher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dispatcher.interrupt();
+        Request request;
+        while ((request = requests.poll()) != null) {
+            request.future.completeExceptionally(new IllegalStateException("The classification batcher is closed."));
+        }
+    }
+
+    /**
+     * A classification request.
+     */
+    private static class Request {
+
+        private final Document document;
+        private final long arrival = System.nanoTime();
+        private final CompletableFuture<List<Classification>> future = new CompletableFuture<>();
+
+        /**
+         * @param document the document to classify
+         */
+        private Request(Document document) {
+            this.document = document;
+        }
+    }
+}
@@ -8,6 +8,7 @@ package org.alvearie.dream.intent.nlp.classification;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -37,6 +38,24 @@ public interface Classifier {
      */
     public List<Classification> classify(Document document);
 
+    /**
+     * Classify the given documents using this classifier.
+     * <p>
+     * The default implementation classifies the documents one by one, implementations should override it when processing
+     * the documents together is cheaper.
+     *
+     * @param documents the documents to classify
+     * @return the sorted list of classifications of each document, in the order of the documents, see
+     *         {@link #classify(Document)}
+     */
+    public default List<List<Classification>> classifyAll(List<Document> documents) {
+        List<List<Classification>> classifications = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            classifications.add(classify(document));
+        }
+        return classifications;
+    }
+
     /**
      * Serialize this classifier to the target file for future use.
      *
@@ -0,0 +1,310 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.alvearie.dream.intent.nlp.classification;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileClassifier;
+import org.alvearie.dream.intent.nlp.text.Feature;
+import org.apache.log4j.Logger;
+
+/**
+ * Hosts several trained classifiers keyed by name, e.g. one intent model per therapeutic area, so that requests can be
+ * routed to the model of their tenant.
+ * <p>
+ * The models share what they have in common rather than each holding a copy of it: the n-grams of their vocabularies
+ * are interned when the models are loaded, so a feature found in several models is held once, and a
+ * {@link SmileClassifier} whose configuration is the same as the configuration of a model already registered uses that
+ * configuration, see {@link SmileClassifier#shareConfiguration(SmileClassifier)}. What each model costs on top of the
+ * others is reported, see {@link #getModels()} and {@link #getMetrics()}.
+ * <p>
+ * Models are expected to be registered when the application starts, before any request is routed, but routing is
+ * thread-safe. A model can be replaced later, e.g. by a retrained one, see {@link #replace(String, Classifier)}, which
+ * releases the vocabulary of the replaced model.
+ *
+ */
+public class ModelRegistry {
+
+    private static final Logger LOGGER = Logger.getLogger(ModelRegistry.class.getName());
+
+    private final Map<String, Model> models = new LinkedHashMap<>();
+    private final Set<Feature> vocabulary = new HashSet<>();
+    private final String defaultName;
+
+    /**
+     * Creates an empty {@link ModelRegistry}.
+     *
+     * @param defaultName the name of the model requests without a model name are routed to
+     */
+    public ModelRegistry(String defaultName) {
+        this.defaultName = defaultName;
+    }
+
+    /**
+     * Loads a model saved with {@link Classifier#save(File)} and registers it, measuring the heap it takes.
+     *
+     * @param name the name of the model
+     * @param file the file of the model
+     * @return the registered model
+     * @throws IOException if the model cannot be read
+     * @throws IllegalArgumentException if a model is already registered with the name
+     */
+    public Model load(String name, File file) throws IOException {
+        checkName(name);
+        long heapBefore = usedHeap();
+        Classifier classifier = ClassifierManager.load(file);
+        long heapBytes = Math.max(0, usedHeap() - heapBefore);
+        return register(name, classifier, heapBytes);
+    }
+
+    /**
+     * Loads a model saved with {@link Classifier#save(File)} and registers it, measuring the heap it takes.
+     *
+     * @param name the name of the model
+     * @param inputStream the stream of the model, which is not closed
+     * @return the registered model
+     * @throws IOException if the model cannot be read
+     * @throws IllegalArgumentException if a model is already registered with the name
+     */
+    public Model load(String name, InputStream inputStream) throws IOException {
+        checkName(name);
+        long heapBefore = usedHeap();
+        Classifier classifier = ClassifierManager.load(inputStream);
+        long heapBytes = Math.max(0, usedHeap() - heapBefore);
+        return register(name, classifier, heapBytes);
+    }
+
+    /**
+     * Registers a classifier that is already in memory, whose heap is unknown.
+     *
+     * @param name the name of the model
+     * @param classifier the trained classifier
+     * @return the registered model
+     * @throws IllegalArgumentException if a model is already registered with the name
+     */
+    public Model register(String name, Classifier classifier) {
+        checkName(name);
+        return register(name, classifier, -1);
+    }
+
+    /**
+     * Replaces the classifier of a model, e.g. once it has been retrained, or registers it if no model is registered with
+     * the name. The shared vocabulary is rebuilt from the models in registration order, so that it no longer holds the
+     * features of the replaced classifier, and the shared features of every model are counted again.
+     *
+     * @param name the name of the model
+     * @param classifier the new trained classifier
+     * @return the registered model
+     */
+    public synchronized Model replace(String name, Classifier classifier) {
+        if (!models.containsKey(name)) {
+            return register(name, classifier, -1);
+        }
+        List<Model> registered = new ArrayList<>(models.values());
+        models.clear();
+        vocabulary.clear();
+        Model replacement = null;
+        for (Model model : registered) {
+            if (model.getName().equals(name)) {
+                replacement = register(name, classifier, -1);
+            } else {
+                register(model.getName(), model.getClassifier(), model.getHeapBytes());
+            }
+        }
+        return replacement;
+    }
+
+    /**
+     * @param name the name of a new model
+     * @throws IllegalArgumentException if a model is already registered with the name
+     */
+    private synchronized void checkName(String name) {
+        if (models.containsKey(name)) {
+            throw new IllegalArgumentException("A model is already registered as " + name);
+        }
+    }
+
+    /**
+     * Registers a classifier, sharing the configuration of a registered model if they are the same.
+     *
+     * @param name the name of the model
+     * @param classifier the trained classifier
+     * @param heapBytes the heap the classifier takes, -1 if unknown
+     * @return the registered model
+     */
+    private synchronized Model register(String name, Classifier classifier, long heapBytes) {
+        checkName(name);
+        int features = -1;
+        int sharedFeatures = -1;
+        String configurationSharedWith = null;
+        if (classifier instanceof SmileClassifier) {
+            SmileClassifier smileClassifier = (SmileClassifier) classifier;
+            List<Feature> modelFeatures = smileClassifier.getFeatures();
+            features = modelFeatures.size();
+            sharedFeatures = 0;
+            for (Feature feature : modelFeatures) {
+                if (!vocabulary.add(feature)) {
+                    sharedFeatures++;
+                }
+            }
+            for (Model model : models.values()) {
+                if (model.getClassifier() instanceof SmileClassifier && smileClassifier.shareConfiguration((SmileClassifier) model.getClassifier())) {
+                    configurationSharedWith = model.getName();
+                    break;
+                }
+            }
+        }
+        Model model = new Model(name, classifier, features, sharedFeatures, heapBytes, configurationSharedWith);
+        models.put(name, model);
+        LOGGER.info("Registered " + model);
+        return model;
+    }
+
+    /**
+     * Gets the classifier of a model.
+     *
+     * @param name the name of the model, or null for the default model
+     * @return the classifier of the model, or null if no model is registered with the name
+     */
+    public synchronized Classifier getClassifier(String name) {
+        Model model = models.get(name == null ? defaultName : name);
+        return model == null ? null : model.getClassifier();
+    }
+
+    /**
+     * @return the name of the model requests without a model name are routed to
+     */
+    public String getDefaultName() {
+        return defaultName;
+    }
+
+    /**
+     * @return the registered models, in registration order
+     */
+    public synchronized List<Model> getModels() {
+        return Collections.unmodifiableList(new ArrayList<>(models.values()));
+    }
+
+    /**
+     * Formats the size of each model in the Prometheus text format: its features, the features it shares with the models
+     * registered before it, and the heap it takes once loaded.
+     *
+     * @return the metrics, one per line
+     */
+    public String getMetrics() {
+        StringBuilder metrics = new StringBuilder();
+        for (Model model : getModels()) {
+            String label = "{model=\"" + model.getName() + "\"}";
+            metrics.append("model_features").append(label).append(' ').append(model.getFeatures()).append('\n');
+            metrics.append("model_shared_features").append(label).append(' ').append(model.getSharedFeatures()).append('\n');
+            metrics.append("model_heap_bytes").append(label).append(' ').append(model.getHeapBytes()).append('\n');
+        }
+        return metrics.toString();
+    }
+
+    /**
+     * @return the heap in use after garbage collection
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * A registered model.
+     */
+    public static class Model {
+
+        private final String name;
+        private final Classifier classifier;
+        private final int features;
+        private final int sharedFeatures;
+        private final long heapBytes;
+        private final String configurationSharedWith;
+
+        /**
+         * @param name the name of the model
+         * @param classifier the classifier
+         * @param features the number of features of the model, -1 if unknown
+         * @param sharedFeatures the number of features of the model already in the models registered before it
+         * @param heapBytes the heap the model takes once loaded, -1 if unknown
+         * @param configurationSharedWith the name of the model whose configuration the model uses, or null
+         */
+        Model(String name, Classifier classifier, int features, int sharedFeatures, long heapBytes, String configurationSharedWith) {
+            this.name = name;
+            this.classifier = classifier;
+            this.features = features;
+            this.sharedFeatures = sharedFeatures;
+            this.heapBytes = heapBytes;
+            this.configurationSharedWith = configurationSharedWith;
+        }
+
+        /**
+         * @return the name of the model
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the classifier of the model
+         */
+        public Classifier getClassifier() {
+            return classifier;
+        }
+
+        /**
+         * @return the number of features of the model, -1 if the classifier does not expose them
+         */
+        public int getFeatures() {
+            return features;
+        }
+
+        /**
+         * @return the number of features of the model that the models registered before it already had, which are held
+         *         once, -1 if the classifier does not expose its features
+         */
+        public int getSharedFeatures() {
+            return sharedFeatures;
+        }
+
+        /**
+         * @return the heap taken by loading the model on top of the models loaded before it, in bytes, as measured after
+         *         garbage collection so approximate, -1 if the model was not loaded by the registry
+         */
+        public long getHeapBytes() {
+            return heapBytes;
+        }
+
+        /**
+         * @return the name of the model whose configuration this model uses, or null if it has its own
+         */
+        public String getConfigurationSharedWith() {
+            return configurationSharedWith;
+        }
+
+        /* (non-Javadoc)
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            return String.format("%s: %d features, %d shared, %d heap bytes, configuration shared with %s", name, features, sharedFeatures, heapBytes,
+                    configurationSharedWith);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.classification;
+
+import org.alvearie.dream.intent.nlp.text.Document;
+
+/**
+ * A {@link Classifier} that keeps learning after it has been trained, one labelled document at a time, without being
+ * retrained on the whole training data.
+ * <p>
+ * Implementations must allow documents to be learned while other documents are being classified.
+ *
+ */
+public interface OnlineClassifier extends Classifier {
+
+    /**
+     * Learns that the given document belongs to the given category. The category does not need to be one the classifier
+     * was trained on.
+     *
+     * @param document the document
+     * @param category the category of the document
+     * @return true if the document was learned, false if it has no features known to this classifier
+     * @throws IllegalStateException if this classifier has not been trained
+     */
+    public boolean learn(Document document, String category);
+
+    /**
+     * Creates an untrained classifier with the same configuration as this one, to be trained in full on updated training
+     * data.
+     *
+     * @return the new classifier
+     */
+    public OnlineClassifier createUntrained();
+}
@@ -0,0 +1,381 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.alvearie.dream.intent.nlp.classification;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.alvearie.dream.intent.nlp.classification.gt.io.CSVGroundTruthReader;
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.alvearie.dream.intent.nlp.text.DocumentWithPrediction;
+import org.alvearie.dream.intent.nlp.text.ParallelExecutor;
+import org.apache.log4j.Logger;
+
+/**
+ * Feeds labelled documents, e.g. user corrections, to an {@link OnlineClassifier} as they come, checkpoints the
+ * classifier periodically, and retrains it in full in the background.
+ * <p>
+ * Each learned document is also kept as a correction, so that a full retrain on the ground truth includes all the
+ * corrections: the retrain happens on a new classifier, the corrections learned while it was training are replayed on
+ * it, and it then replaces the current classifier, see {@link #getClassifier()}. Checkpoints and retrains run one at a
+ * time on a background thread, learning is never blocked by them for longer than the classifier takes to be saved. A
+ * retrain runs its parallel work on its own {@link ParallelExecutor}, see {@link #setRetrainParallelism(int)}, so that
+ * it does not take the cores of the default executor from the classifications being served meanwhile.
+ * <p>
+ * A checkpoint is written to a temporary file which is then moved over the checkpoint file, so that a crash while
+ * checkpointing leaves the previous checkpoint intact.
+ * <p>
+ * The corrections are also appended to a log next to the checkpoint file, in the format of the ground truth CSV, see
+ * {@link #getCorrectionsFile()}, and reloaded from it when a learner is created, so that a retrain after a restart still
+ * includes them. Only the latest corrections are kept, in memory and in the log, which is compacted once it holds twice
+ * as many.
+ *
+ */
+public class OnlineLearner implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(OnlineLearner.class.getName());
+
+    /**
+     * The number of latest corrections kept by default.
+     */
+    public static final int DEFAULT_MAX_CORRECTIONS = 10000;
+
+    /**
+     * The number of threads a retrain works on by default.
+     */
+    public static final int DEFAULT_RETRAIN_PARALLELISM = 1;
+
+    private volatile OnlineClassifier classifier;
+    private final File checkpointFile;
+    private final File correctionsFile;
+    private final int checkpointInterval;
+    private final int maxCorrections;
+    private final Deque<Correction> corrections = new ArrayDeque<>();
+    private final ExecutorService background;
+    private long received;
+    private int logged;
+    private int uncheckpointed;
+    private boolean retraining;
+    private volatile int retrainParallelism = DEFAULT_RETRAIN_PARALLELISM;
+
+    /**
+     * Creates an {@link OnlineLearner} that keeps the {@link #DEFAULT_MAX_CORRECTIONS} latest corrections.
+     *
+     * @param classifier the trained classifier
+     * @param checkpointFile the file the classifier is saved to, or null to never checkpoint it nor log the corrections
+     * @param checkpointInterval the number of learned documents after which the classifier is checkpointed
+     * @throws IllegalArgumentException if the checkpoint interval is not positive
+     */
+    public OnlineLearner(OnlineClassifier classifier, File checkpointFile, int checkpointInterval) {
+        this(classifier, checkpointFile, checkpointInterval, DEFAULT_MAX_CORRECTIONS);
+    }
+
+    /**
+     * Creates an {@link OnlineLearner}, reloading the corrections logged next to the checkpoint file if any.
+     *
+     * @param classifier the trained classifier
+     * @param checkpointFile the file the classifier is saved to, or null to never checkpoint it nor log the corrections
+     * @param checkpointInterval the number of learned documents after which the classifier is checkpointed
+     * @param maxCorrections the number of latest corrections kept for the retrains
+     * @throws IllegalArgumentException if the checkpoint interval or the number of corrections kept is not positive
+     */
+    public OnlineLearner(OnlineClassifier classifier, File checkpointFile, int checkpointInterval, int maxCorrections) {
+        if (checkpointInterval <= 0) {
+            throw new IllegalArgumentException("The checkpoint interval must be positive.");
+        }
+        if (maxCorrections <= 0) {
+            throw new IllegalArgumentException("The number of corrections kept must be positive.");
+        }
+        this.classifier = classifier;
+        this.checkpointFile = checkpointFile;
+        this.checkpointInterval = checkpointInterval;
+        this.maxCorrections = maxCorrections;
+        correctionsFile = checkpointFile == null ? null
+                : new File(checkpointFile.getAbsoluteFile().getParentFile(), checkpointFile.getName() + ".corrections.csv");
+        if (correctionsFile != null && correctionsFile.isFile()) {
+            reloadCorrections();
+        }
+        background = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "online-learner");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Learns that the given text belongs to the given category, see {@link OnlineClassifier#learn(Document, String)}, and
+     * schedules a checkpoint if enough documents have been learned since the last one.
+     *
+     * @param text the text
+     * @param category the category of the text
+     * @return true if the text was learned, false if it has no features known to the classifier
+     */
+    public synchronized boolean learn(String text, String category) {
+        Correction correction = new Correction(text, category);
+        keep(correction);
+        received++;
+        if (correctionsFile != null) {
+            logQuietly(correction);
+        }
+        boolean learned = classifier.learn(new Document(text), category);
+        if (learned && ++uncheckpointed >= checkpointInterval && checkpointFile != null) {
+            uncheckpointed = 0;
+            background.execute(this::checkpointQuietly);
+        }
+        return learned;
+    }
+
+    /**
+     * Keeps a correction, forgetting the oldest one if too many are kept.
+     *
+     * @param correction the correction
+     */
+    private void keep(Correction correction) {
+        if (corrections.size() == maxCorrections) {
+            corrections.removeFirst();
+        }
+        corrections.addLast(correction);
+    }
+
+    /**
+     * Reloads the latest corrections from the corrections log, logging rather than throwing failures so that a corrupt
+     * log does not prevent learning.
+     */
+    private void reloadCorrections() {
+        try (Stream<DocumentWithPrediction> entries = new CSVGroundTruthReader(correctionsFile).stream()) {
+            entries.forEach(entry -> {
+                keep(new Correction(entry.getOriginalText(), entry.getPrediction()));
+                logged++;
+            });
+            LOGGER.info("Reloaded " + corrections.size() + " corrections from " + correctionsFile.getAbsolutePath());
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Could not reload the corrections from " + correctionsFile.getAbsolutePath() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Appends a correction to the corrections log, rewriting the log with the kept corrections only once it holds twice as
+     * many as are kept. Failures are logged rather than thrown, the correction is still learned.
+     *
+     * @param correction the correction
+     */
+    private void logQuietly(Correction correction) {
+        try {
+            if (logged >= 2 * maxCorrections) {
+                File temporaryFile = new File(correctionsFile.getAbsoluteFile().getParentFile(), correctionsFile.getName() + ".tmp");
+                List<String> lines = new ArrayList<>(corrections.size() + 1);
+                lines.add(String.join(",", CSVGroundTruthReader.CSV_FILE_HEADER));
+                for (Correction kept : corrections) {
+                    lines.add(kept.toCSVLine());
+                }
+                Files.write(temporaryFile.toPath(), lines, StandardCharsets.UTF_8);
+                Files.move(temporaryFile.toPath(), correctionsFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                logged = corrections.size();
+                return;
+            }
+            List<String> lines = new ArrayList<>(2);
+            if (!correctionsFile.isFile()) {
+                lines.add(String.join(",", CSVGroundTruthReader.CSV_FILE_HEADER));
+            }
+            lines.add(correction.toCSVLine());
+            Files.write(correctionsFile.toPath(), lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            logged++;
+        } catch (IOException e) {
+            LOGGER.warn("Could not log the correction to " + correctionsFile.getAbsolutePath() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Saves the current classifier to the checkpoint file.
+     *
+     * @throws IOException if the classifier cannot be saved
+     * @throws IllegalStateException if there is no checkpoint file
+     */
+    public void checkpoint() throws IOException {
+        if (checkpointFile == null) {
+            throw new IllegalStateException("No checkpoint file was given.");
+        }
+        File temporaryFile = new File(checkpointFile.getAbsoluteFile().getParentFile(), checkpointFile.getName() + ".tmp");
+        classifier.save(temporaryFile);
+        Files.move(temporaryFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOGGER.info("Checkpointed the online classifier to " + checkpointFile.getAbsolutePath());
+    }
+
+    /**
+     * Checkpoints the classifier, logging rather than throwing failures, for the background checkpoints.
+     */
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Could not checkpoint the online classifier to " + checkpointFile.getAbsolutePath() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Retrains the classifier in full in the background, on the given ground truth and all the corrections learned so far.
+     * <p>
+     * Once trained, the new classifier learns the corrections that came in during the training, replaces the current
+     * classifier and is checkpointed.
+     *
+     * @param groundTruth the ground truth, which is not changed
+     * @return a future completed with the new classifier, or completed exceptionally if the training failed
+     * @throws IllegalStateException if a retrain is already running
+     */
+    public synchronized CompletableFuture<OnlineClassifier> retrain(Map<String, Collection<Document>> groundTruth) {
+        if (retraining) {
+            throw new IllegalStateException("A retrain is already running.");
+        }
+        retraining = true;
+        int learnedCorrections = corrections.size();
+        long receivedBefore = received;
+        Map<String, Collection<Document>> trainingData = new LinkedHashMap<>();
+        for (Entry<String, Collection<Document>> entry : groundTruth.entrySet()) {
+            trainingData.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+        for (Correction correction : corrections) {
+            trainingData.computeIfAbsent(correction.category, category -> new ArrayList<>()).add(new Document(correction.text));
+        }
+        OnlineClassifier newClassifier = classifier.createUntrained();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                long start = System.currentTimeMillis();
+                ParallelExecutor.callWith(retrainParallelism, () -> {
+                    newClassifier.train(trainingData);
+                    return null;
+                });
+                synchronized (this) {
+                    // The corrections that came in during the training are the latest ones, unless they were too many to be kept
+                    long newCorrections = Math.min(received - receivedBefore, corrections.size());
+                    Iterator<Correction> iterator = corrections.iterator();
+                    for (long skipped = corrections.size() - newCorrections; skipped > 0; skipped--) {
+                        iterator.next();
+                    }
+                    while (iterator.hasNext()) {
+                        Correction correction = iterator.next();
+                        newClassifier.learn(new Document(correction.text), correction.category);
+                    }
+                    classifier = newClassifier;
+                    uncheckpointed = 0;
+                }
+                LOGGER.info("Retrained the online classifier on " + learnedCorrections + " corrections in " + (System.currentTimeMillis() - start) + " ms.");
+                if (checkpointFile != null) {
+                    checkpointQuietly();
+                }
+                return newClassifier;
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException("Could not retrain the online classifier.", e);
+            } finally {
+                synchronized (this) {
+                    retraining = false;
+                }
+            }
+        }, background);
+    }
+
+    /**
+     * Sets the number of threads the next retrains work on, including the background thread. They run their parallel work
+     * on their own executor rather than on the default one, see {@link ParallelExecutor#callWith(int, Callable)}.
+     *
+     * @param retrainParallelism the number of threads
+     * @throws IllegalArgumentException if the number of threads is not positive
+     */
+    public void setRetrainParallelism(int retrainParallelism) {
+        if (retrainParallelism <= 0) {
+            throw new IllegalArgumentException("The retrain parallelism must be positive.");
+        }
+        this.retrainParallelism = retrainParallelism;
+    }
+
+    /**
+     * @return the current classifier, which is replaced by the new classifier once a retrain completes
+     */
+    public OnlineClassifier getClassifier() {
+        return classifier;
+    }
+
+    /**
+     * @return the file the corrections are logged to, next to the checkpoint file, or null if there is no checkpoint file
+     */
+    public File getCorrectionsFile() {
+        return correctionsFile;
+    }
+
+    /**
+     * @return the number of corrections kept, including the ones learned before the last retrain or reloaded from the
+     *         corrections log
+     */
+    public synchronized int getCorrectionCount() {
+        return corrections.size();
+    }
+
+    /**
+     * Stops the background thread, letting a running checkpoint or retrain finish.
+     */
+    @Override
+    public void close() {
+        background.shutdown();
+        try {
+            if (!background.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOGGER.warn("The online learner did not finish its background work in time.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A labelled text learned online.
+     */
+    private static class Correction {
+
+        private final String text;
+        private final String category;
+
+        /**
+         * @param text the text
+         * @param category the category of the text
+         */
+        Correction(String text, String category) {
+            this.text = text;
+            this.category = category;
+        }
+
+        /**
+         * Formats the correction as a line of the ground truth CSV, which does not escape quotes nor line breaks: the
+         * double quotes of the text become single quotes, and the line breaks and the commas of the category become
+         * spaces.
+         *
+         * @return the CSV line
+         */
+        String toCSVLine() {
+            String csvText = text.replace('"', '\'').replaceAll("[\\r\\n]+", " ");
+            String csvCategory = category.replaceAll("[\\r\\n,\"]+", " ");
+            return "\"" + csvText + "\"," + csvCategory;
+        }
+    }
+}
@@ -0,0 +1,372 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.alvearie.dream.intent.nlp.classification;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.alvearie.dream.intent.nlp.text.ParallelExecutor;
+import org.alvearie.dream.intent.nlp.utils.Histogram;
+import org.alvearie.dream.intent.nlp.utils.Metrics;
+import org.apache.log4j.Logger;
+
+/**
+ * Evaluates a candidate classifier in the shadow of the primary one, on a sample of the live requests, before it is
+ * promoted.
+ * <p>
+ * The primary path only decides whether to sample a request and hands it over, see {@link #offer(String, String)}: the
+ * shadow classifications run one at a time on a background thread, with a bounded queue in front of it. When the shadow
+ * classifier cannot keep up, the requests that do not fit in the queue are dropped and counted rather than waited for,
+ * so the shadow classifier never adds latency to the primary path, however slow it is.
+ * <p>
+ * The agreement of the shadow classifier with the primary one, the latency of the shadow classifications and the latest
+ * disagreements are recorded, see {@link #getMetrics()} and {@link #getDisagreements()}. Since all the shadow
+ * classifications happen on the background thread, the shadow classifier does not need to be thread-safe.
+ * <p>
+ * The shadow classifications are kept apart from the primary ones: they run serially on the background thread rather
+ * than on the shared {@link ParallelExecutor}, so they do not take cores from the primary classifications, and what the
+ * shadow classifier records in {@link Metrics#getDefault()}, e.g. its classification counters and stage latencies, goes
+ * to a registry of its own, reported with a "shadow_" prefix by {@link #getMetrics()}.
+ *
+ */
+public class ShadowEvaluator implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(ShadowEvaluator.class.getName());
+
+    private final Classifier shadow;
+    private final double sampleRate;
+    private final int maxDisagreements;
+    private final BlockingQueue<Sample> queue;
+    private final Thread evaluator;
+    private volatile boolean running = true;
+    private final Histogram latencies;
+    private final Metrics classifierMetrics = new Metrics();
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder compared = new LongAdder();
+    private final LongAdder agreed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final Deque<Disagreement> disagreements = new ArrayDeque<>();
+
+    /**
+     * Creates a {@link ShadowEvaluator} and starts its background thread.
+     *
+     * @param shadow the trained candidate classifier
+     * @param sampleRate the fraction of the requests classified by the shadow classifier, between 0 and 1
+     * @param maxQueued the maximum number of sampled requests waiting for the shadow classifier
+     * @param maxDisagreements the number of latest disagreements kept
+     * @throws IllegalArgumentException if the sample rate is not between 0 and 1, or the queue is not positive, or the
+     *         number of disagreements kept is negative
+     */
+    public ShadowEvaluator(Classifier shadow, double sampleRate, int maxQueued, int maxDisagreements) {
+        if (!(sampleRate >= 0.0 && sampleRate <= 1.0)) {
+            throw new IllegalArgumentException("The sample rate must be between 0 and 1: " + sampleRate);
+        }
+        if (maxQueued <= 0) {
+            throw new IllegalArgumentException("The maximum number of queued requests must be positive.");
+        }
+        if (maxDisagreements < 0) {
+            throw new IllegalArgumentException("The number of disagreements kept cannot be negative.");
+        }
+        this.shadow = shadow;
+        this.sampleRate = sampleRate;
+        this.maxDisagreements = maxDisagreements;
+        latencies = new Histogram("shadow_latency_ms", 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 25, 50, 100, 250, 500, 1000);
+        queue = new ArrayBlockingQueue<>(maxQueued);
+        evaluator = new Thread(this::evaluate, "shadow-evaluator");
+        evaluator.setDaemon(true);
+        evaluator.start();
+    }
+
+    /**
+     * Samples a classified request for the shadow classifier. Returns right away: the shadow classification happens in
+     * the background, and the request is dropped if too many are already waiting for the shadow classifier.
+     *
+     * @param text the text of the request
+     * @param primaryCategory the category the primary classifier found
+     * @return true if the request was sampled and queued
+     */
+    public boolean offer(String text, String primaryCategory) {
+        if (!running || sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return false;
+        }
+        sampled.increment();
+        if (!queue.offer(new Sample(text, primaryCategory))) {
+            dropped.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Runs the evaluator loop serially, with the metrics of the shadow classifier recorded in their own registry.
+     */
+    private void evaluate() {
+        try {
+            Metrics.callWith(classifierMetrics, () -> ParallelExecutor.callWith(1, () -> {
+                drain();
+                return null;
+            }));
+        } catch (Exception e) {
+            LOGGER.error("The shadow evaluator stopped.", e);
+        }
+    }
+
+    /**
+     * The evaluator loop, classifying the sampled requests until closed and the queue is drained.
+     */
+    private void drain() {
+        while (running || !queue.isEmpty()) {
+            Sample sample;
+            try {
+                sample = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (sample != null) {
+                evaluate(sample.text, sample.primaryCategory);
+            }
+        }
+    }
+
+    /**
+     * Classifies a sampled request with the shadow classifier and compares its category with the primary one.
+     *
+     * @param text the text of the request
+     * @param primaryCategory the category the primary classifier found
+     */
+    private void evaluate(String text, String primaryCategory) {
+        String shadowCategory;
+        long start = System.nanoTime();
+        try {
+            List<Classification> classifications = shadow.classify(new Document(text));
+            shadowCategory = classifications.isEmpty() ? null : classifications.get(0).getCategory();
+        } catch (RuntimeException e) {
+            failed.increment();
+            LOGGER.warn("The shadow classifier failed to classify: " + text, e);
+            return;
+        }
+        latencies.record((System.nanoTime() - start) / 1_000_000.0);
+        compared.increment();
+        if (primaryCategory != null && primaryCategory.equals(shadowCategory)) {
+            agreed.increment();
+            return;
+        }
+        if (maxDisagreements > 0) {
+            synchronized (disagreements) {
+                if (disagreements.size() == maxDisagreements) {
+                    disagreements.removeFirst();
+                }
+                disagreements.addLast(new Disagreement(text, primaryCategory, shadowCategory));
+            }
+        }
+    }
+
+    /**
+     * @return the total number of sampled requests, including the dropped ones
+     */
+    public long getSampled() {
+        return sampled.sum();
+    }
+
+    /**
+     * @return the total number of sampled requests dropped because the queue of the shadow classifier was full
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return the total number of requests classified by the shadow classifier
+     */
+    public long getCompared() {
+        return compared.sum();
+    }
+
+    /**
+     * @return the total number of requests the shadow classifier failed to classify
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return the fraction of the requests classified by the shadow classifier in the same category as the primary
+     *         classifier, 0 if none was classified yet
+     */
+    public double getAgreementRate() {
+        long comparedCount = compared.sum();
+        return comparedCount == 0 ? 0.0 : (double) agreed.sum() / comparedCount;
+    }
+
+    /**
+     * @return the histogram of the time, in milliseconds, the shadow classifier takes to classify a request
+     */
+    public Histogram getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * @return the number of sampled requests waiting for the shadow classifier
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return the latest disagreements, oldest first
+     */
+    public List<Disagreement> getDisagreements() {
+        synchronized (disagreements) {
+            return new ArrayList<>(disagreements);
+        }
+    }
+
+    /**
+     * @return the metrics the shadow classifier recorded, apart from the metrics of the application
+     */
+    public Metrics getClassifierMetrics() {
+        return classifierMetrics;
+    }
+
+    /**
+     * Formats the shadow evaluation gauges, counters and latency histogram, and the metrics of the shadow classifier, in
+     * the Prometheus text format.
+     *
+     * @return the metrics, one per line
+     */
+    public String getMetrics() {
+        StringBuilder metrics = new StringBuilder();
+        appendCounter(metrics, "shadow_sampled_total", getSampled());
+        appendCounter(metrics, "shadow_dropped_total", getDropped());
+        appendCounter(metrics, "shadow_compared_total", getCompared());
+        appendCounter(metrics, "shadow_agreed_total", agreed.sum());
+        appendCounter(metrics, "shadow_failed_total", getFailed());
+        metrics.append("# TYPE shadow_queued gauge\n");
+        metrics.append("shadow_queued ").append(getQueueDepth()).append('\n');
+        metrics.append("# TYPE shadow_agreement_rate gauge\n");
+        metrics.append("shadow_agreement_rate ").append(getAgreementRate()).append('\n');
+        Metrics.format(metrics, latencies);
+        classifierMetrics.format(metrics, "shadow_");
+        return metrics.toString();
+    }
+
+    /**
+     * @param metrics the output
+     * @param name the name of the counter
+     * @param value the value of the counter
+     */
+    private static void appendCounter(StringBuilder metrics, String name, long value) {
+        metrics.append("# TYPE ").append(name).append(" counter\n");
+        metrics.append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Stops the background thread, letting the queued shadow classifications finish.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            evaluator.join(TimeUnit.MINUTES.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (evaluator.isAlive()) {
+            LOGGER.warn("The shadow evaluator did not finish its queued classifications in time.");
+            evaluator.interrupt();
+        }
+    }
+
+    /**
+     * A sampled request waiting for the shadow classifier.
+     */
+    private static class Sample {
+
+        private final String text;
+        private final String primaryCategory;
+
+        /**
+         * @param text the text of the request
+         * @param primaryCategory the category the primary classifier found
+         */
+        Sample(String text, String primaryCategory) {
+            this.text = text;
+            this.primaryCategory = primaryCategory;
+        }
+    }
+
+    /**
+     * A request the shadow classifier classified in a different category than the primary classifier.
+     */
+    public static class Disagreement {
+
+        private final String text;
+        private final String primaryCategory;
+        private final String shadowCategory;
+
+        /**
+         * @param text the text of the request
+         * @param primaryCategory the category the primary classifier found
+         * @param shadowCategory the category the shadow classifier found
+         */
+        Disagreement(String text, String primaryCategory, String shadowCategory) {
+            this.text = text;
+            this.primaryCategory = primaryCategory;
+            this.shadowCategory = shadowCategory;
+        }
+
+        /**
+         * @return the text of the request
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * @return the category the primary classifier found
+         */
+        public String getPrimaryCategory() {
+            return primaryCategory;
+        }
+
+        /**
+         * @return the category the shadow classifier found
+         */
+        public String getShadowCategory() {
+            return shadowCategory;
+        }
+
+        /**
+         * Formats the disagreement on a single line, the line breaks of the text being escaped, so that it can be
+         * written as a comment of the Prometheus text format.
+         *
+         * (non-Javadoc)
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            return escape(primaryCategory) + " -> " + escape(shadowCategory) + ": " + escape(text);
+        }
+
+        /**
+         * @param value a value, or null
+         * @return the value with its backslashes and line breaks escaped
+         */
+        private static String escape(String value) {
+            return value == null ? null : value.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r");
+        }
+    }
+}
@@ -0,0 +1,501 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.classification.classifiers;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.alvearie.dream.intent.nlp.Experiment;
+import org.alvearie.dream.intent.nlp.classification.Classification;
+import org.alvearie.dream.intent.nlp.classification.Classifier;
+import org.alvearie.dream.intent.nlp.classification.gt.ConfusionMatrix;
+import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.alvearie.dream.intent.nlp.utils.Metrics;
+import org.apache.log4j.Logger;
+
+/**
+ * A {@link Classifier} that chains a cheap classifier and an expensive one.
+ * <p>
+ * The first classifier answers every document, and the second one only runs when the top classification of the first
+ * one has a probability below the threshold. With a well chosen threshold most documents are answered by the cheap
+ * model at almost the accuracy of the expensive one, see {@link #tune(Map)}.
+ * <p>
+ * The classifiers are trained and run on their own copies of the documents, since processing a document for one
+ * classifier leaves it vectorized in that classifier's feature space.
+ *
+ */
+public class CascadeClassifier implements Classifier, Serializable {
+
+    private static final long serialVersionUID = -2201785530843950321L;
+    private static final Logger LOGGER = Logger.getLogger(CascadeClassifier.class.getName());
+
+    /**
+     * The {@link Metrics} counter of documents answered by the first classifier.
+     */
+    public static final String FIRST_ANSWERS = "cascade_first_total";
+
+    /**
+     * The {@link Metrics} counter of documents escalated to the second classifier.
+     */
+    public static final String ESCALATIONS = "cascade_escalated_total";
+
+    /**
+     * The thresholds evaluated by {@link #tune(Map)}, in addition to always escalating.
+     */
+    private static final int THRESHOLD_STEPS = 20;
+
+    private final Classifier first;
+    private final Classifier second;
+    private double threshold;
+    private final double maxF1Loss;
+
+    /**
+     * Creates a {@link CascadeClassifier} with the classifiers and threshold of the current experiment's configuration, or
+     * the default configuration.
+     */
+    public CascadeClassifier() {
+        this(getCurrentConfiguration());
+    }
+
+    /**
+     * Creates a {@link CascadeClassifier} with the classifiers and threshold of the given configuration. Each classifier is
+     * created with its configuration constructor.
+     *
+     * @param configuration the configuration
+     * @throws IllegalArgumentException if a classifier cannot be created
+     */
+    public CascadeClassifier(Configuration configuration) {
+        this(create(configuration.getCascadeFirstClassifierClass(), configuration), create(configuration.getCascadeSecondClassifierClass(), configuration),
+                configuration.getCascadeThreshold(), configuration.getCascadeMaxF1Loss());
+    }
+
+    /**
+     * Creates a {@link CascadeClassifier}, tuned with the maximum F1 loss of the current experiment's configuration, or
+     * the default configuration.
+     *
+     * @param first the cheap classifier, which answers first
+     * @param second the expensive classifier
+     * @param threshold the top classification probability of the first classifier below which the second classifier is
+     *        run
+     */
+    public CascadeClassifier(Classifier first, Classifier second, double threshold) {
+        this(first, second, threshold, getCurrentConfiguration().getCascadeMaxF1Loss());
+    }
+
+    /**
+     * Creates a {@link CascadeClassifier}.
+     *
+     * @param first the cheap classifier, which answers first
+     * @param second the expensive classifier
+     * @param threshold the top classification probability of the first classifier below which the second classifier is
+     *        run
+     * @param maxF1Loss the maximum loss of weighted F1 score, compared to always escalating, accepted by {@link #tune(Map)}
+     */
+    public CascadeClassifier(Classifier first, Classifier second, double threshold, double maxF1Loss) {
+        this.first = first;
+        this.second = second;
+        this.threshold = threshold;
+        this.maxF1Loss = maxF1Loss;
+    }
+
+    /**
+     * @return the configuration of the current experiment, or the default configuration
+     */
+    private static Configuration getCurrentConfiguration() {
+        return Experiment.getCurrentExperiment() != null ? Experiment.getCurrentExperiment().getConfiguration() : Configuration.getDefault();
+    }
+
+    /**
+     * Creates a classifier with its configuration constructor.
+     *
+     * @param classifierClass the classifier class
+     * @param configuration the configuration
+     * @return the classifier
+     */
+    private static Classifier create(Class<? extends Classifier> classifierClass, Configuration configuration) {
+        try {
+            return classifierClass.getConstructor(Configuration.class).newInstance(configuration);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot create a cascade classifier of type " + classifierClass.getName(), e);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.alvearie.dream.intent.nlp.classification.Classifier#train(java.util.Map)
+     */
+    @Override
+    public void train(Map<String, Collection<Document>> trainingData) {
+        LOGGER.info("Training the first classifier of the cascade: " + first.getClass().getSimpleName());
+        first.train(copy(trainingData));
+        LOGGER.info("Training the second classifier of the cascade: " + second.getClass().getSimpleName());
+        second.train(copy(trainingData));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.alvearie.dream.intent.nlp.classification.Classifier#classify(org.alvearie.dream.intent.nlp.text.Document)
+     */
+    @Override
+    public List<Classification> classify(Document document) {
+        List<Classification> classifications = first.classify(document.getVector() == null ? document : copy(document));
+        if (!classifications.isEmpty() && classifications.get(0).getProbability() >= threshold) {
+            Metrics.getDefault().increment(FIRST_ANSWERS);
+            return classifications;
+        }
+        Metrics.getDefault().increment(ESCALATIONS);
+        return second.classify(copy(document));
+    }
+
+    /**
+     * Classifies all the documents with the first classifier, then the ones it is not confident about with the second
+     * classifier.
+     *
+     * (non-Javadoc)
+     * @see org.alvearie.dream.intent.nlp.classification.Classifier#classifyAll(java.util.List)
+     */
+    @Override
+    public List<List<Classification>> classifyAll(List<Document> documents) {
+        List<Document> firstDocuments = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            firstDocuments.add(document.getVector() == null ? document : copy(document));
+        }
+        List<List<Classification>> classifications = new ArrayList<>(first.classifyAll(firstDocuments));
+        List<Integer> escalated = new ArrayList<>();
+        List<Document> secondDocuments = new ArrayList<>();
+        for (int i = 0; i < documents.size(); i++) {
+            List<Classification> firstClassifications = classifications.get(i);
+            if (firstClassifications.isEmpty() || firstClassifications.get(0).getProbability() < threshold) {
+                escalated.add(i);
+                secondDocuments.add(copy(documents.get(i)));
+            }
+        }
+        Metrics.getDefault().add(FIRST_ANSWERS, documents.size() - escalated.size());
+        Metrics.getDefault().add(ESCALATIONS, escalated.size());
+        if (!secondDocuments.isEmpty()) {
+            List<List<Classification>> secondClassifications = second.classifyAll(secondDocuments);
+            for (int i = 0; i < escalated.size(); i++) {
+                classifications.set(escalated.get(i), secondClassifications.get(i));
+            }
+        }
+        return classifications;
+    }
+
+    /**
+     * Chooses the threshold on held-out data: the one with the lowest latency whose overall F1 is at most the maximum F1
+     * loss below the F1 of the second classifier alone.
+     * <p>
+     * Both classifiers classify every held-out document once, and the cascade is simulated for each candidate threshold
+     * from those results, so the cost of tuning does not depend on the number of candidates.
+     *
+     * @param heldOutData the held-out data, a map of categories with the documents that belong to them
+     * @return the tuning results, including the chosen threshold, which this classifier now uses
+     * @throws IllegalStateException if the cascade is not trained
+     */
+    public Tuning tune(Map<String, Collection<Document>> heldOutData) {
+        if (!isTrained()) {
+            throw new IllegalStateException("The cascade must be trained before tuning its threshold.");
+        }
+        List<String> expected = new ArrayList<>();
+        List<Classification> firstResults = new ArrayList<>();
+        List<Classification> secondResults = new ArrayList<>();
+        List<Long> firstNanos = new ArrayList<>();
+        List<Long> secondNanos = new ArrayList<>();
+        Set<String> categories = new HashSet<>(heldOutData.keySet());
+        for (Entry<String, Collection<Document>> entry : heldOutData.entrySet()) {
+            for (Document document : entry.getValue()) {
+                expected.add(entry.getKey());
+                long start = System.nanoTime();
+                Classification firstResult = top(first.classify(copy(document)));
+                firstNanos.add(System.nanoTime() - start);
+                start = System.nanoTime();
+                Classification secondResult = top(second.classify(copy(document)));
+                secondNanos.add(System.nanoTime() - start);
+                firstResults.add(firstResult);
+                secondResults.add(secondResult);
+                if (firstResult != null) {
+                    categories.add(firstResult.getCategory());
+                }
+                if (secondResult != null) {
+                    categories.add(secondResult.getCategory());
+                }
+            }
+        }
+        if (expected.isEmpty()) {
+            throw new IllegalArgumentException("Tuning the cascade threshold needs held-out documents.");
+        }
+
+        ConfusionMatrix secondMatrix = new ConfusionMatrix(categories);
+        long secondTotalNanos = 0;
+        for (int i = 0; i < expected.size(); i++) {
+            secondMatrix.register(expected.get(i), category(secondResults.get(i)), null);
+            secondTotalNanos += secondNanos.get(i);
+        }
+        double secondF1 = secondMatrix.getOverallF1();
+        double secondLatency = secondTotalNanos / 1_000_000.0 / expected.size();
+
+        List<ThresholdResult> results = new ArrayList<>();
+        ThresholdResult chosen = null;
+        for (int step = 0; step <= THRESHOLD_STEPS + 1; step++) {
+            // The last step always escalates, which is always within the allowed F1 loss
+            double candidate = step <= THRESHOLD_STEPS ? (double) step / THRESHOLD_STEPS : Double.POSITIVE_INFINITY;
+            ConfusionMatrix matrix = new ConfusionMatrix(categories);
+            long totalNanos = 0;
+            int escalated = 0;
+            for (int i = 0; i < expected.size(); i++) {
+                Classification result = firstResults.get(i);
+                totalNanos += firstNanos.get(i);
+                if (result == null || result.getProbability() < candidate) {
+                    result = secondResults.get(i);
+                    totalNanos += secondNanos.get(i);
+                    escalated++;
+                }
+                matrix.register(expected.get(i), category(result), null);
+            }
+            ThresholdResult thresholdResult = new ThresholdResult(candidate, (double) escalated / expected.size(), totalNanos / 1_000_000.0 / expected.size(),
+                    matrix.getOverallF1());
+            results.add(thresholdResult);
+            if (secondF1 - thresholdResult.getF1() <= maxF1Loss && (chosen == null || thresholdResult.getMeanLatency() < chosen.getMeanLatency())) {
+                chosen = thresholdResult;
+            }
+        }
+        if (chosen == null) {
+            // Only possible if the second classifier is not deterministic
+            chosen = results.get(results.size() - 1);
+        }
+        threshold = chosen.getThreshold();
+        return new Tuning(secondF1, secondLatency, results, chosen);
+    }
+
+    /**
+     * @param classifications the classifications of a document, most probable first
+     * @return the most probable classification, or null if the document could not be classified, which the tuning counts
+     *         as a miss, and escalates if it is the first classifier's
+     */
+    private static Classification top(List<Classification> classifications) {
+        return classifications.isEmpty() ? null : classifications.get(0);
+    }
+
+    /**
+     * @param classification a classification, or null
+     * @return the category of the classification, or null if there is none
+     */
+    private static String category(Classification classification) {
+        return classification == null ? null : classification.getCategory();
+    }
+
+    /**
+     * Copies the given training data, so that processing the copy does not modify the original documents.
+     *
+     * @param trainingData the training data
+     * @return the copy
+     */
+    private static Map<String, Collection<Document>> copy(Map<String, Collection<Document>> trainingData) {
+        Map<String, Collection<Document>> copy = new LinkedHashMap<>();
+        for (Entry<String, Collection<Document>> entry : trainingData.entrySet()) {
+            List<Document> documents = new ArrayList<>(entry.getValue().size());
+            for (Document document : entry.getValue()) {
+                documents.add(copy(document));
+            }
+            copy.put(entry.getKey(), documents);
+        }
+        return copy;
+    }
+
+    /**
+     * @param document a document
+     * @return an unprocessed copy of the document
+     */
+    private static Document copy(Document document) {
+        return new Document(document.getId(), document.getOriginalText());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.alvearie.dream.intent.nlp.classification.Classifier#save(java.io.File)
+     */
+    @Override
+    public void save(File file) throws IOException {
+        LOGGER.info("Saving to: " + file.getAbsolutePath());
+        try (ObjectOutputStream os = new ObjectOutputStream(new FileOutputStream(file))) {
+            os.writeObject(this);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.alvearie.dream.intent.nlp.classification.Classifier#isTrained()
+     */
+    @Override
+    public boolean isTrained() {
+        return first.isTrained() && second.isTrained();
+    }
+
+    /**
+     * @return the cheap classifier, which answers first
+     */
+    public Classifier getFirst() {
+        return first;
+    }
+
+    /**
+     * @return the expensive classifier
+     */
+    public Classifier getSecond() {
+        return second;
+    }
+
+    /**
+     * @return the top classification probability of the first classifier below which the second classifier is run
+     */
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * @param threshold the top classification probability of the first classifier below which the second classifier is
+     *        run
+     */
+    public void setThreshold(double threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * The held-out results of the cascade with one threshold.
+     */
+    public static class ThresholdResult {
+
+        private final double threshold;
+        private final double escalationRate;
+        private final double meanLatency;
+        private final double f1;
+
+        /**
+         * @param threshold the threshold
+         * @param escalationRate the fraction of documents escalated to the second classifier
+         * @param meanLatency the mean classification time per document, in milliseconds
+         * @param f1 the overall F1
+         */
+        ThresholdResult(double threshold, double escalationRate, double meanLatency, double f1) {
+            this.threshold = threshold;
+            this.escalationRate = escalationRate;
+            this.meanLatency = meanLatency;
+            this.f1 = f1;
+        }
+
+        /**
+         * @return the threshold, positive infinity when every document is escalated
+         */
+        public double getThreshold() {
+            return threshold;
+        }
+
+        /**
+         * @return the fraction of documents escalated to the second classifier
+         */
+        public double getEscalationRate() {
+            return escalationRate;
+        }
+
+        /**
+         * @return the mean classification time per document, in milliseconds
+         */
+        public double getMeanLatency() {
+            return meanLatency;
+        }
+
+        /**
+         * @return the overall F1
+         */
+        public double getF1() {
+            return f1;
+        }
+    }
+
+    /**
+     * The results of tuning the threshold of a cascade, compared to the second classifier alone.
+     */
+    public static class Tuning {
+
+        private final double secondF1;
+        private final double secondLatency;
+        private final List<ThresholdResult> results;
+        private final ThresholdResult chosen;
+
+        /**
+         * @param secondF1 the overall F1 of the second classifier alone
+         * @param secondLatency the mean classification time per document of the second classifier alone, in milliseconds
+         * @param results the results of each candidate threshold
+         * @param chosen the result of the chosen threshold
+         */
+        Tuning(double secondF1, double secondLatency, List<ThresholdResult> results, ThresholdResult chosen) {
+            this.secondF1 = secondF1;
+            this.secondLatency = secondLatency;
+            this.results = results;
+            this.chosen = chosen;
+        }
+
+        /**
+         * @return the overall F1 of the second classifier alone
+         */
+        public double getSecondF1() {
+            return secondF1;
+        }
+
+        /**
+         * @return the mean classification time per document of the second classifier alone, in milliseconds
+         */
+        public double getSecondLatency() {
+            return secondLatency;
+        }
+
+        /**
+         * @return the results of each candidate threshold, in ascending threshold order
+         */
+        public List<ThresholdResult> getResults() {
+            return results;
+        }
+
+        /**
+         * @return the result of the chosen threshold
+         */
+        public ThresholdResult getChosen() {
+            return chosen;
+        }
+
+        /**
+         * @return a report of the latency saved against the F1 lost by each threshold, compared to the second classifier
+         *         alone
+         */
+        @Override
+        public String toString() {
+            StringBuilder report = new StringBuilder();
+            report.append(String.format("Second classifier alone: F1=%.4f, latency=%.3fms%n", secondF1, secondLatency));
+            report.append(String.format("%10s %10s %12s %14s %8s %8s%n", "threshold", "escalated", "latency(ms)", "latency saved", "F1", "F1 lost"));
+            for (ThresholdResult result : results) {
+                double saved = secondLatency == 0 ? 0.0 : 1 - result.getMeanLatency() / secondLatency;
+                report.append(String.format("%10s %9.1f%% %12.3f %13.1f%% %8.4f %8.4f%s%n",
+                        Double.isInfinite(result.getThreshold()) ? "always" : String.format("%.2f", result.getThreshold()),
+                        100 * result.getEscalationRate(), result.getMeanLatency(), 100 * saved, result.getF1(), secondF1 - result.getF1(),
+                        result == chosen ? "  <- chosen" : ""));
+            }
+            return report.toString();
+        }
+    }
+}
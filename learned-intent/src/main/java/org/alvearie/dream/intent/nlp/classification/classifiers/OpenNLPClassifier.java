@@ -12,15 +12,21 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+import org.alvearie.dream.intent.nlp.Experiment;
 import org.alvearie.dream.intent.nlp.classification.Classification;
 import org.alvearie.dream.intent.nlp.classification.Classifier;
+import org.alvearie.dream.intent.nlp.text.Configuration;
 import org.alvearie.dream.intent.nlp.text.Document;
+import org.alvearie.dream.intent.nlp.text.Utils;
 import org.apache.log4j.Logger;
 
 import opennlp.tools.doccat.BagOfWordsFeatureGenerator;
@@ -32,7 +38,6 @@ import opennlp.tools.doccat.DocumentSample;
 import opennlp.tools.doccat.FeatureGenerator;
 import opennlp.tools.doccat.NGramFeatureGenerator;
 import opennlp.tools.ml.AbstractTrainer;
-import opennlp.tools.ml.naivebayes.NaiveBayesTrainer;
 import opennlp.tools.util.InvalidFormatException;
 import opennlp.tools.util.ObjectStream;
 import opennlp.tools.util.TrainingParameters;
@@ -49,6 +54,7 @@ public class OpenNLPClassifier implements Classifier {
      */
     private class TrainingDataDocumentSampleStream implements ObjectStream<DocumentSample> {
         List<DocumentSample> trainingSamples = new ArrayList<>();
+        int next;
 
         public TrainingDataDocumentSampleStream(Map<String, Collection<Document>> trainingData) {
             for (String category : trainingData.keySet()) {
@@ -61,10 +67,21 @@ public class OpenNLPClassifier implements Classifier {
 
         @Override
         public DocumentSample read() throws IOException {
-            if (trainingSamples.size() == 0) {
+            if (next == trainingSamples.size()) {
                 return null;
             }
-            return trainingSamples.remove(0);
+            return trainingSamples.get(next++);
+        }
+
+        /**
+         * Rewinds the stream, trainers that index the samples in several passes read them again.
+         *
+         * (non-Javadoc)
+         * @see opennlp.tools.util.ObjectStream#reset()
+         */
+        @Override
+        public void reset() throws IOException {
+            next = 0;
         }
     }
 
@@ -93,30 +110,98 @@ public class OpenNLPClassifier implements Classifier {
     /**
      * @return the {@link TrainingParameters} for the classifier
      */
-    private static TrainingParameters getTrainingParameters() {
+    private TrainingParameters getTrainingParameters() {
         TrainingParameters params = TrainingParameters.defaultParams();
         // Naive Bayes was found to generate better confidence for the
-        params.put(AbstractTrainer.ALGORITHM_PARAM, NaiveBayesTrainer.NAIVE_BAYES_VALUE);
-        params.put(TrainingParameters.CUTOFF_PARAM, Integer.toString(0));
-        params.put(TrainingParameters.ITERATIONS_PARAM, Integer.toString(100));
+        params.put(AbstractTrainer.ALGORITHM_PARAM, configuration.getOpenNLPAlgorithm());
+        params.put(TrainingParameters.CUTOFF_PARAM, Integer.toString(configuration.getOpenNLPCutoff()));
+        params.put(TrainingParameters.ITERATIONS_PARAM, Integer.toString(configuration.getOpenNLPIterations()));
+        params.put(TrainingParameters.THREADS_PARAM, Integer.toString(configuration.getOpenNLPTrainingThreads()));
         return params;
     }
 
-    private DoccatModel model;
+    private Configuration configuration;
+    private volatile DoccatModel model;
+    // A categorizer per thread, categorizers keep per-document state and cannot be shared between threads. A thread only
+    // ever holds the categorizer of one model, which it replaces once the model is
+    private final ThreadLocal<ModelCategorizer> categorizers = new ThreadLocal<>();
 
     /**
-     * Create an OpenNLP-based classifier.
+     * The categorizer of a thread, with the model it categorizes with.
+     */
+    private static final class ModelCategorizer {
+
+        private final DoccatModel model;
+        private final DocumentCategorizer categorizer;
+
+        private ModelCategorizer(DoccatModel model) {
+            this.model = model;
+            categorizer = new DocumentCategorizerME(model);
+        }
+    }
+
+    /**
+     * Create an OpenNLP-based classifier using the configuration of the current experiment, or the default configuration.
      */
     public OpenNLPClassifier() {
+        this(Experiment.getCurrentExperiment() != null ? Experiment.getCurrentExperiment().getConfiguration() : Configuration.getDefault());
+    }
+
+    /**
+     * Create an OpenNLP-based classifier using the provided configuration.
+     *
+     * @param configuration
+     */
+    public OpenNLPClassifier(Configuration configuration) {
+        this.configuration = configuration;
     }
 
     @Override
     public List<Classification> classify(Document document) {
-        if (model == null) {
+        return classify(getCategorizer(), document);
+    }
+
+    /**
+     * Classifies the documents in parallel, each thread with its own categorizer.
+     *
+     * (non-Javadoc)
+     * @see org.alvearie.dream.intent.nlp.classification.Classifier#classifyAll(java.util.List)
+     */
+    @Override
+    public List<List<Classification>> classifyAll(List<Document> documents) {
+        getCategorizer();
+        List<List<Classification>> classifications = new ArrayList<>(Collections.nCopies(documents.size(), null));
+        List<Integer> indices = IntStream.range(0, documents.size()).boxed().collect(Collectors.toList());
+        Utils.forEach("predict", indices, i -> classifications.set(i, classify(getCategorizer(), documents.get(i))));
+        return classifications;
+    }
+
+    /**
+     * Gets the categorizer of the current thread, creating it the first time the thread classifies with the current model.
+     *
+     * @return the categorizer of the current thread
+     */
+    private DocumentCategorizer getCategorizer() {
+        DoccatModel currentModel = model;
+        if (currentModel == null) {
             throw new IllegalStateException("This classifier has not been trained yet. Use the train() method first.");
         }
-        DocumentCategorizer classifier = new DocumentCategorizerME(model);
+        ModelCategorizer categorizer = categorizers.get();
+        if (categorizer == null || categorizer.model != currentModel) {
+            categorizer = new ModelCategorizer(currentModel);
+            categorizers.set(categorizer);
+        }
+        return categorizer.categorizer;
+    }
 
+    /**
+     * Classifies a document with the given categorizer.
+     *
+     * @param classifier the categorizer
+     * @param document the document
+     * @return the sorted list of classifications
+     */
+    private List<Classification> classify(DocumentCategorizer classifier, Document document) {
         String cleanWords[] = cleanWords(document.getText());
 
         SortedMap<Double, Set<String>> sortedScoreMap = classifier.sortedScoreMap(cleanWords);
@@ -131,6 +216,42 @@ public class OpenNLPClassifier implements Classifier {
         return classifications;
     }
 
+    /**
+     * Load a classifier saved with {@link #save(File)}.
+     *
+     * @param file the file the classifier was saved to
+     * @param configuration the configuration of the classifier
+     * @return the classifier
+     * @throws IOException if the model cannot be read
+     */
+    public static OpenNLPClassifier load(File file, Configuration configuration) throws IOException {
+        DoccatModel model = new DoccatModel(file);
+        // The feature generators are not restored with the model, see train()
+        model.getFactory().setFeatureGenerators(createFeatureGenerators());
+        OpenNLPClassifier classifier = new OpenNLPClassifier(configuration);
+        classifier.setModel(model);
+        return classifier;
+    }
+
+    /**
+     * @return the feature generators of the model: bag of words and 1 to 4-grams
+     * @throws InvalidFormatException if the n-gram range is invalid
+     */
+    private static FeatureGenerator[] createFeatureGenerators() throws InvalidFormatException {
+        int minNgramSize = 1;
+        int maxNgramSize = 4;
+        return new FeatureGenerator[] { new BagOfWordsFeatureGenerator(), new NGramFeatureGenerator(minNgramSize, maxNgramSize) };
+    }
+
+    /**
+     * @param newModel the model to classify with
+     */
+    private void setModel(DoccatModel newModel) {
+        model = newModel;
+        // The categorizers of the previous model are replaced by each thread the next time it classifies
+        categorizers.remove();
+    }
+
     @Override
     public void save(File file) throws IOException {
         try (BufferedOutputStream modelOut = new BufferedOutputStream(new FileOutputStream(file))) {
@@ -153,14 +274,9 @@ public class OpenNLPClassifier implements Classifier {
             throw new IllegalArgumentException("The training data is empty.");
         }
 
-        int minNgramSize = 1;
-        int maxNgramSize = 4;
-
         FeatureGenerator[] featureGenerator;
         try {
-            featureGenerator = new FeatureGenerator[] {
-                    new BagOfWordsFeatureGenerator(),
-                    new NGramFeatureGenerator(minNgramSize, maxNgramSize) };
+            featureGenerator = createFeatureGenerators();
         } catch (InvalidFormatException e) {
             LOGGER.error("Invalid N-gram format passed to the N-Gram feature generator: ", e);
             return;
@@ -168,10 +284,11 @@ public class OpenNLPClassifier implements Classifier {
 
         DoccatFactory customFactory = new DoccatFactory(featureGenerator);
         try (ObjectStream<DocumentSample> trainingSetStream = new TrainingDataDocumentSampleStream(trainingData)) {
-            model = DocumentCategorizerME.train("en", trainingSetStream, getTrainingParameters(), customFactory);
-            model.getFactory().setFeatureGenerators(featureGenerator); // Fixes bug in OpenNLP where feature
-                                                                       // generators
-                                                                       // get null constructor
+            DoccatModel trainedModel = DocumentCategorizerME.train("en", trainingSetStream, getTrainingParameters(), customFactory);
+            trainedModel.getFactory().setFeatureGenerators(featureGenerator); // Fixes bug in OpenNLP where feature
+                                                                              // generators
+                                                                              // get null constructor
+            setModel(trainedModel);
         } catch (IOException e) {
             LOGGER.error("Error building the NLP model: ", e);
         }
@@ -0,0 +1,271 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.classification.classifiers.smile;
+
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import smile.classification.DecisionTree;
+import smile.classification.RandomForest;
+import smile.data.Attribute;
+
+/**
+ * A random forest flattened into primitive arrays, which scores documents with the same results as the SMILE
+ * {@link RandomForest} it was exported from.
+ * <p>
+ * The SMILE forest is a list of pointer-based trees, so scoring a document chases references all over the heap. Here all
+ * the nodes of all the trees are stored in parallel arrays, each tree in breadth-first order: the split feature and
+ * threshold of each node, the index of its two children, and for the leaves the predicted class and the posteriori
+ * probabilities. Walking a tree is a tight loop over a few arrays, where the next node is picked by indexing the children
+ * array with the outcome of the split rather than by branching.
+ * <p>
+ * Documents can be scored from a sparse vector, the indices and values of their non-zero features, in which case only the
+ * present features are written to a scratch vector and cleared afterwards, instead of building a dense vector of the
+ * whole feature space.
+ *
+ */
+public class FlatRandomForest implements Serializable {
+
+    private static final long serialVersionUID = 4417592085061932745L;
+
+    /**
+     * The split feature of leaf nodes.
+     */
+    private static final int LEAF = -1;
+
+    private final int numberOfClasses;
+    private final int numberOfFeatures;
+    private final int[] roots;
+    private final double[] weights;
+    private final int[] splitFeatures;
+    private final double[] splitValues;
+    private final int[] children;
+    private final int[] outputs;
+    private final double[] posteriori;
+    private transient ThreadLocal<double[]> scratch;
+
+    /**
+     * Creates a {@link FlatRandomForest} from its arrays, see {@link #export(RandomForest, int)}.
+     */
+    private FlatRandomForest(int numberOfClasses, int numberOfFeatures, int[] roots, double[] weights, int[] splitFeatures, double[] splitValues, int[] children,
+            int[] outputs, double[] posteriori) {
+        this.numberOfClasses = numberOfClasses;
+        this.numberOfFeatures = numberOfFeatures;
+        this.roots = roots;
+        this.weights = weights;
+        this.splitFeatures = splitFeatures;
+        this.splitValues = splitValues;
+        this.children = children;
+        this.outputs = outputs;
+        this.posteriori = posteriori;
+    }
+
+    /**
+     * Exports a trained SMILE random forest.
+     * <p>
+     * SMILE does not expose the nodes of its trees, so they are read reflectively.
+     *
+     * @param forest the random forest, trained on numeric attributes
+     * @param numberOfFeatures the number of features of the vectors the forest was trained on
+     * @return the flattened forest
+     * @throws IllegalArgumentException if the forest has nominal attributes or cannot be read
+     */
+    public static FlatRandomForest export(RandomForest forest, int numberOfFeatures) {
+        try {
+            Field treesField = RandomForest.class.getDeclaredField("trees");
+            Field kField = RandomForest.class.getDeclaredField("k");
+            Field attributesField = DecisionTree.class.getDeclaredField("attributes");
+            treesField.setAccessible(true);
+            kField.setAccessible(true);
+            attributesField.setAccessible(true);
+            int numberOfClasses = kField.getInt(forest);
+            List<?> trees = (List<?>) treesField.get(forest);
+
+            Class<?> treeClass = Class.forName(RandomForest.class.getName() + "$Tree");
+            Field treeField = accessible(treeClass, "tree");
+            Field weightField = accessible(treeClass, "weight");
+            Class<?> nodeClass = Class.forName(DecisionTree.class.getName() + "$Node");
+            Field output = accessible(nodeClass, "output");
+            Field nodePosteriori = accessible(nodeClass, "posteriori");
+            Field splitFeature = accessible(nodeClass, "splitFeature");
+            Field splitValue = accessible(nodeClass, "splitValue");
+            Field trueChild = accessible(nodeClass, "trueChild");
+            Field falseChild = accessible(nodeClass, "falseChild");
+
+            int[] roots = new int[trees.size()];
+            double[] weights = new double[trees.size()];
+            List<Object> nodes = new ArrayList<>();
+            for (int t = 0; t < trees.size(); t++) {
+                DecisionTree tree = (DecisionTree) treeField.get(trees.get(t));
+                weights[t] = weightField.getDouble(trees.get(t));
+                for (Attribute attribute : (Attribute[]) attributesField.get(tree)) {
+                    if (attribute.getType() != Attribute.Type.NUMERIC) {
+                        throw new IllegalArgumentException("Only random forests of numeric attributes can be flattened.");
+                    }
+                }
+                roots[t] = nodes.size();
+                // Breadth-first, so that the top levels of each tree, which every document visits, are next to each other
+                Deque<Object> queue = new ArrayDeque<>();
+                queue.add(tree.getRoot());
+                while (!queue.isEmpty()) {
+                    Object node = queue.poll();
+                    nodes.add(node);
+                    if (trueChild.get(node) != null || falseChild.get(node) != null) {
+                        queue.add(trueChild.get(node));
+                        queue.add(falseChild.get(node));
+                    }
+                }
+            }
+
+            int[] splitFeatures = new int[nodes.size()];
+            double[] splitValues = new double[nodes.size()];
+            int[] children = new int[2 * nodes.size()];
+            int[] outputs = new int[nodes.size()];
+            double[] posteriori = new double[nodes.size() * numberOfClasses];
+            int next = 0;
+            int treeIndex = 0;
+            for (int i = 0; i < nodes.size(); i++) {
+                if (treeIndex + 1 < roots.length && i == roots[treeIndex + 1]) {
+                    treeIndex++;
+                }
+                if (i == roots[treeIndex]) {
+                    next = i + 1;
+                }
+                Object node = nodes.get(i);
+                outputs[i] = output.getInt(node);
+                if (trueChild.get(node) == null && falseChild.get(node) == null) {
+                    splitFeatures[i] = LEAF;
+                    System.arraycopy((double[]) nodePosteriori.get(node), 0, posteriori, i * numberOfClasses, numberOfClasses);
+                } else {
+                    splitFeatures[i] = splitFeature.getInt(node);
+                    splitValues[i] = splitValue.getDouble(node);
+                    // The children were queued in pairs, in the order their parents were visited
+                    children[2 * i] = next++;
+                    children[2 * i + 1] = next++;
+                }
+            }
+            return new FlatRandomForest(numberOfClasses, numberOfFeatures, roots, weights, splitFeatures, splitValues, children, outputs, posteriori);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot read the trees of the random forest.", e);
+        }
+    }
+
+    /**
+     * @param type a class
+     * @param name the name of one of its fields
+     * @return the accessible field
+     * @throws NoSuchFieldException if the field does not exist
+     */
+    private static Field accessible(Class<?> type, String name) throws NoSuchFieldException {
+        Field field = type.getDeclaredField(name);
+        field.setAccessible(true);
+        return field;
+    }
+
+    /**
+     * Predicts the class of a dense vector, see {@link RandomForest#predict(double[], double[])}.
+     *
+     * @param vector the feature values
+     * @param scores the array the posteriori probability of each class is written to
+     * @return the predicted class, the class most trees voted for
+     */
+    public int predict(double[] vector, double[] scores) {
+        if (scores.length != numberOfClasses) {
+            throw new IllegalArgumentException("Invalid posteriori vector size: " + scores.length + ", expected: " + numberOfClasses);
+        }
+        Arrays.fill(scores, 0.0);
+        int[] votes = new int[numberOfClasses];
+        for (int t = 0; t < roots.length; t++) {
+            int node = roots[t];
+            while (splitFeatures[node] != LEAF) {
+                // The true child, the first one, is taken when the value is less than or equal to the split value
+                node = children[2 * node + (vector[splitFeatures[node]] <= splitValues[node] ? 0 : 1)];
+            }
+            votes[outputs[node]]++;
+            double weight = weights[t];
+            int offset = node * numberOfClasses;
+            for (int i = 0; i < numberOfClasses; i++) {
+                scores[i] += weight * posteriori[offset + i];
+            }
+        }
+        normalize(scores);
+        return whichMax(votes);
+    }
+
+    /**
+     * Predicts the class of a sparse vector.
+     *
+     * @param indices the feature index of each non-zero value
+     * @param values the non-zero values
+     * @param scores the array the posteriori probability of each class is written to
+     * @return the predicted class, the class most trees voted for
+     */
+    public int predict(int[] indices, double[] values, double[] scores) {
+        if (scratch == null) {
+            scratch = ThreadLocal.withInitial(() -> new double[numberOfFeatures]);
+        }
+        double[] vector = scratch.get();
+        for (int i = 0; i < indices.length; i++) {
+            vector[indices[i]] = values[i];
+        }
+        try {
+            return predict(vector, scores);
+        } finally {
+            for (int index : indices) {
+                vector[index] = 0.0;
+            }
+        }
+    }
+
+    /**
+     * Divides the scores by their sum, as SMILE does.
+     *
+     * @param scores the scores
+     */
+    private static void normalize(double[] scores) {
+        double sum = 0.0;
+        for (double score : scores) {
+            sum += Math.abs(score);
+        }
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] /= sum;
+        }
+    }
+
+    /**
+     * @param votes the votes of each class
+     * @return the first class with the most votes
+     */
+    private static int whichMax(int[] votes) {
+        int max = 0;
+        for (int i = 1; i < votes.length; i++) {
+            if (votes[i] > votes[max]) {
+                max = i;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return the number of trees
+     */
+    public int getNumberOfTrees() {
+        return roots.length;
+    }
+
+    /**
+     * @return the total number of nodes of all the trees
+     */
+    public int getNumberOfNodes() {
+        return splitFeatures.length;
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.classification.classifiers.smile;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A multilayer perceptron trained by mini-batch gradient descent on sparse input vectors, for the
+ * {@link SmileNeuralNetClassifier}.
+ * <p>
+ * The hidden layers use rectified linear units and the output layer is a softmax trained on the cross-entropy loss. The
+ * first layer is sparse: its weights are stored feature by feature, so that the forward pass of a document only reads,
+ * and its backward pass only updates, the weights of the features of the document, rather than the whole feature space.
+ * <p>
+ * The gradients of the documents of a mini-batch are computed independently, e.g. on several threads, into a
+ * {@link Gradient} each, which are then applied together, see {@link #apply(List, double, int)}. Predictions only read
+ * the weights, so they can be made concurrently.
+ *
+ */
+final class MiniBatchNeuralNetwork implements Serializable {
+
+    private static final long serialVersionUID = 3106712253968146392L;
+
+    private final int[] layerSizes;
+
+    // The weights from each layer to the next: feature-major for the first layer, i.e. the weights of a feature to all
+    // the units of the first hidden layer are contiguous, and unit-major for the others
+    private final double[][] weights;
+    private final double[][] biases;
+
+    /**
+     * Creates a network with randomly initialized weights.
+     *
+     * @param layerSizes the size of each layer, from the size of the feature space to the number of classes
+     * @param seed the seed of the initial weights
+     */
+    MiniBatchNeuralNetwork(int[] layerSizes, long seed) {
+        if (layerSizes.length < 2) {
+            throw new IllegalArgumentException("The network needs at least an input and an output layer.");
+        }
+        this.layerSizes = layerSizes.clone();
+        weights = new double[layerSizes.length - 1][];
+        biases = new double[layerSizes.length - 1][];
+        Random random = new Random(seed);
+        for (int k = 0; k < weights.length; k++) {
+            double bound = Math.sqrt(6.0 / (layerSizes[k] + layerSizes[k + 1]));
+            weights[k] = new double[layerSizes[k] * layerSizes[k + 1]];
+            for (int w = 0; w < weights[k].length; w++) {
+                weights[k][w] = (2 * random.nextDouble() - 1) * bound;
+            }
+            biases[k] = new double[layerSizes[k + 1]];
+        }
+    }
+
+    /**
+     * Creates a copy of a network.
+     *
+     * @param network the network to copy
+     */
+    private MiniBatchNeuralNetwork(MiniBatchNeuralNetwork network) {
+        layerSizes = network.layerSizes;
+        weights = new double[network.weights.length][];
+        biases = new double[network.biases.length][];
+        for (int k = 0; k < weights.length; k++) {
+            weights[k] = network.weights[k].clone();
+            biases[k] = network.biases[k].clone();
+        }
+    }
+
+    /**
+     * @return a copy of this network, which does not change when this network is trained further
+     */
+    MiniBatchNeuralNetwork copy() {
+        return new MiniBatchNeuralNetwork(this);
+    }
+
+    /**
+     * @return the number of classes
+     */
+    int getNumberOfClasses() {
+        return layerSizes[layerSizes.length - 1];
+    }
+
+    /**
+     * @return a gradient of the shape of this network, to compute the gradients of documents into
+     */
+    Gradient createGradient() {
+        return new Gradient();
+    }
+
+    /**
+     * Runs the forward pass of a document.
+     *
+     * @param indices the feature indices of the document
+     * @param values the feature values of the document
+     * @param activations the output of each layer after the input layer, the last one being the class probabilities
+     */
+    private void forward(int[] indices, double[] values, double[][] activations) {
+        double[] first = activations[0];
+        int size = first.length;
+        System.arraycopy(biases[0], 0, first, 0, size);
+        for (int i = 0; i < indices.length; i++) {
+            int offset = indices[i] * size;
+            double value = values[i];
+            for (int j = 0; j < size; j++) {
+                first[j] += weights[0][offset + j] * value;
+            }
+        }
+        for (int k = 1; k < weights.length; k++) {
+            relu(activations[k - 1]);
+            double[] input = activations[k - 1];
+            double[] output = activations[k];
+            for (int j = 0; j < output.length; j++) {
+                double sum = biases[k][j];
+                int offset = j * input.length;
+                for (int i = 0; i < input.length; i++) {
+                    sum += weights[k][offset + i] * input[i];
+                }
+                output[j] = sum;
+            }
+        }
+        softmax(activations[activations.length - 1]);
+    }
+
+    /**
+     * @param vector the vector whose negative values are set to 0
+     */
+    private static void relu(double[] vector) {
+        for (int i = 0; i < vector.length; i++) {
+            if (vector[i] < 0) {
+                vector[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * @param vector the scores to turn into probabilities
+     */
+    private static void softmax(double[] vector) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (double value : vector) {
+            max = Math.max(max, value);
+        }
+        double sum = 0.0;
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = Math.exp(vector[i] - max);
+            sum += vector[i];
+        }
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] /= sum;
+        }
+    }
+
+    /**
+     * @return a buffer for the output of each layer after the input layer
+     */
+    private double[][] createActivations() {
+        double[][] activations = new double[layerSizes.length - 1][];
+        for (int k = 0; k < activations.length; k++) {
+            activations[k] = new double[layerSizes[k + 1]];
+        }
+        return activations;
+    }
+
+    /**
+     * Predicts the class of a document.
+     *
+     * @param indices the feature indices of the document
+     * @param values the feature values of the document
+     * @param probabilities the array to write the probability of each class to
+     * @return the index of the most probable class
+     */
+    int predict(int[] indices, double[] values, double[] probabilities) {
+        double[][] activations = createActivations();
+        forward(indices, values, activations);
+        double[] output = activations[activations.length - 1];
+        System.arraycopy(output, 0, probabilities, 0, Math.min(output.length, probabilities.length));
+        int best = 0;
+        for (int c = 1; c < output.length; c++) {
+            if (output[c] > output[best]) {
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Applies the gradients of a mini-batch, i.e. takes a gradient descent step of their average.
+     *
+     * @param gradients the gradients of the documents of the mini-batch, which are cleared
+     * @param learningRate the learning rate
+     * @param batchSize the number of documents in the mini-batch
+     */
+    void apply(List<Gradient> gradients, double learningRate, int batchSize) {
+        double rate = learningRate / batchSize;
+        int size = layerSizes[1];
+        for (Gradient gradient : gradients) {
+            for (int k = 0; k < weights.length; k++) {
+                if (k > 0) {
+                    double[] layerGradient = gradient.weights[k];
+                    for (int w = 0; w < layerGradient.length; w++) {
+                        weights[k][w] -= rate * layerGradient[w];
+                    }
+                }
+                for (int j = 0; j < biases[k].length; j++) {
+                    biases[k][j] -= rate * gradient.biases[k][j];
+                }
+            }
+            // The first layer only changes for the features of the documents
+            for (int d = 0; d < gradient.indices.size(); d++) {
+                int[] indices = gradient.indices.get(d);
+                double[] values = gradient.values.get(d);
+                double[] delta = gradient.deltas.get(d);
+                for (int i = 0; i < indices.length; i++) {
+                    int offset = indices[i] * size;
+                    double step = rate * values[i];
+                    for (int j = 0; j < size; j++) {
+                        weights[0][offset + j] -= step * delta[j];
+                    }
+                }
+            }
+            gradient.clear();
+        }
+    }
+
+    /**
+     * The sum of the gradients of the loss of some documents with respect to the weights of a network, the sparse first
+     * layer being kept as the error of the first hidden layer for each document.
+     */
+    final class Gradient {
+
+        private final double[][] weights;
+        private final double[][] biases;
+        private final List<int[]> indices = new ArrayList<>();
+        private final List<double[]> values = new ArrayList<>();
+        private final List<double[]> deltas = new ArrayList<>();
+        private final double[][] activations = createActivations();
+        private final double[][] errors = createActivations();
+        private double loss;
+
+        /**
+         * Creates an empty gradient.
+         */
+        private Gradient() {
+            weights = new double[layerSizes.length - 1][];
+            biases = new double[layerSizes.length - 1][];
+            for (int k = 0; k < weights.length; k++) {
+                weights[k] = k == 0 ? null : new double[layerSizes[k] * layerSizes[k + 1]];
+                biases[k] = new double[layerSizes[k + 1]];
+            }
+        }
+
+        /**
+         * Adds the gradient of the loss of a document, with backpropagation.
+         *
+         * @param documentIndices the feature indices of the document
+         * @param documentValues the feature values of the document
+         * @param label the class of the document
+         */
+        void add(int[] documentIndices, double[] documentValues, int label) {
+            forward(documentIndices, documentValues, activations);
+            int last = activations.length - 1;
+            loss -= Math.log(Math.max(activations[last][label], Double.MIN_VALUE));
+            for (int c = 0; c < errors[last].length; c++) {
+                errors[last][c] = activations[last][c] - (c == label ? 1.0 : 0.0);
+            }
+            for (int k = last; k >= 0; k--) {
+                double[] error = errors[k];
+                for (int j = 0; j < error.length; j++) {
+                    biases[k][j] += error[j];
+                }
+                if (k == 0) {
+                    break;
+                }
+                double[] input = activations[k - 1];
+                double[] inputError = errors[k - 1];
+                Arrays.fill(inputError, 0.0);
+                double[] layerWeights = MiniBatchNeuralNetwork.this.weights[k];
+                for (int j = 0; j < error.length; j++) {
+                    int offset = j * input.length;
+                    double e = error[j];
+                    for (int i = 0; i < input.length; i++) {
+                        weights[k][offset + i] += e * input[i];
+                        inputError[i] += e * layerWeights[offset + i];
+                    }
+                }
+                // The derivative of the rectified linear units
+                for (int i = 0; i < input.length; i++) {
+                    if (input[i] <= 0) {
+                        inputError[i] = 0;
+                    }
+                }
+            }
+            indices.add(documentIndices);
+            values.add(documentValues);
+            deltas.add(errors[0].clone());
+        }
+
+        /**
+         * @return the sum of the cross-entropy losses of the documents added since the gradient was last cleared
+         */
+        double getLoss() {
+            return loss;
+        }
+
+        /**
+         * Empties the gradient.
+         */
+        private void clear() {
+            for (int k = 0; k < weights.length; k++) {
+                if (weights[k] != null) {
+                    Arrays.fill(weights[k], 0.0);
+                }
+                Arrays.fill(biases[k], 0.0);
+            }
+            indices.clear();
+            values.clear();
+            deltas.clear();
+            loss = 0;
+        }
+    }
+}
@@ -10,16 +10,18 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.alvearie.dream.intent.nlp.Experiment;
 import org.alvearie.dream.intent.nlp.classification.Classification;
@@ -35,11 +37,15 @@ import org.alvearie.dream.intent.nlp.text.FeatureSpace;
 import org.alvearie.dream.intent.nlp.text.FeatureVector;
 import org.alvearie.dream.intent.nlp.text.NGrammer;
 import org.alvearie.dream.intent.nlp.text.Utils;
+import org.alvearie.dream.intent.nlp.text.processors.FeatureSelector;
+import org.alvearie.dream.intent.nlp.text.processors.PreprocessingCache;
 import org.alvearie.dream.intent.nlp.text.processors.RegexBoWVectorizer;
 import org.alvearie.dream.intent.nlp.text.processors.TFIDFVectorizer;
 import org.alvearie.dream.intent.nlp.text.processors.smile.SmileDocumentNGrammer;
 import org.alvearie.dream.intent.nlp.text.processors.smile.SmileDocumentNormalizer;
 import org.alvearie.dream.intent.nlp.text.processors.smile.SmileDocumentTokenizer;
+import org.alvearie.dream.intent.nlp.utils.Metrics;
+import org.apache.commons.lang3.SerializationUtils;
 import org.apache.log4j.Logger;
 
 /**
@@ -51,6 +57,45 @@ public abstract class SmileClassifier implements Classifier, Serializable {
     private static final Logger LOGGER = Logger.getLogger(SmileClassifier.class.getName());
     private static final long serialVersionUID = -5343941263634204914L;
 
+    /**
+     * The prefix of the {@link Metrics} latency histogram of each processing stage when classifying, which is followed by
+     * the stage name: normalize, tokenize, ngram, bow, tfidf, densify or predict.
+     * <p>
+     * The text processing stages are timed once per call to {@link #processDocuments(List)}, so they cover a whole batch
+     * of documents and end with {@link #BATCH_STAGE_SUFFIX}, while densify and predict are timed per document and end
+     * with {@link #STAGE_SUFFIX}.
+     */
+    public static final String STAGE_PREFIX = "classify_";
+
+    /**
+     * The prefix of the {@link Metrics} latency histogram of each processing stage when training, so that training does
+     * not skew the classification latencies. The stages are the text processing stages, select, preprocess when the
+     * preprocessing cache is used, and learn for the documents learned online.
+     */
+    public static final String TRAIN_STAGE_PREFIX = "train_";
+
+    /**
+     * The suffix of the {@link Metrics} latency histogram of each per-document stage.
+     */
+    public static final String STAGE_SUFFIX = "_ms";
+
+    /**
+     * The suffix of the {@link Metrics} latency histogram of each text processing stage, which is timed per batch of
+     * documents.
+     */
+    public static final String BATCH_STAGE_SUFFIX = "_batch_ms";
+
+    /**
+     * The {@link Metrics} counter of classified documents.
+     */
+    public static final String CLASSIFIED_DOCUMENTS = "classify_documents_total";
+
+    /**
+     * The {@link Metrics} counter of classified documents for which no prediction could be made, because none of their
+     * n-grams are in the feature space.
+     */
+    public static final String NO_PREDICTION_DOCUMENTS = "classify_no_prediction_total";
+
     protected Configuration configuration;
 
     /**
@@ -66,14 +111,28 @@ public abstract class SmileClassifier implements Classifier, Serializable {
      * @param configuration
      */
     public SmileClassifier(Configuration configuration) {
+        this(configuration, new TFIDFVectorizer(configuration));
+    }
+
+    /**
+     * Create a new Smile-based classifier using the provided configuration and TF-IDF vectorizer
+     *
+     * @param configuration
+     * @param tfidfVectorizer the vectorizer that weighs the BoW vectors of the documents
+     */
+    SmileClassifier(Configuration configuration, DocumentVectorizer tfidfVectorizer) {
         this.configuration = configuration;
-        this.tfidfVectorizer = new TFIDFVectorizer(configuration);
+        this.tfidfVectorizer = tfidfVectorizer;
     }
 
     List<String> classes; // List of classes, must keep order
 
     private DocumentVectorizer tfidfVectorizer;
     final FeatureSpace featureSpace = new FeatureSpace();
+    private transient volatile Map<Feature, Integer> featureIndex;
+
+    // The experiment the first classified document was traced to, see trace(Document)
+    private transient Experiment tracedExperiment;
 
     /* (non-Javadoc)
      * @see org.alvearie.nlp.classification.Classifier#classify(org.alvearie.nlp.text.Document)
@@ -84,15 +143,34 @@ public abstract class SmileClassifier implements Classifier, Serializable {
             doc.setFeatureSpace(featureSpace);
             processDocuments(Arrays.asList(doc));
         }
+        Metrics metrics = Metrics.getDefault();
+        metrics.increment(CLASSIFIED_DOCUMENTS);
         int prediction = -1; // Default to no prediction
         double scores[] = new double[classes.size()];
         if (!doc.getVector().isEmpty()) { // if features are found, predict the classifications
-            double docVector[] = doc.getVector().toDenseVector(featureSpace).toArray();
-            Experiment.save("TestDocument.ser", doc);
-            Experiment.save("TestDocVector.csv", Arrays.stream(docVector).mapToObj(String::valueOf).collect(Collectors.joining(", ")));
-            Experiment.save("Features.csv", featureSpace.stream().map(Feature::getFeature).collect(Collectors.joining("\n")));
+            long start = System.nanoTime();
+            Map<Feature, Integer> index = getFeatureIndex();
+            int[] indices = new int[doc.getVector().size()];
+            double[] values = new double[indices.length];
+            int present = 0;
+            for (Entry<Feature, Double> entry : doc.getVector().getFeaturesAndValues().entrySet()) {
+                Integer featureIndex = index.get(entry.getKey());
+                if (featureIndex != null) {
+                    indices[present] = featureIndex;
+                    values[present++] = entry.getValue();
+                }
+            }
+            metrics.time(STAGE_PREFIX + "densify" + STAGE_SUFFIX, start);
+            if (configuration.isTraceEnabled()) {
+                trace(doc);
+            }
 
-            prediction = predict(docVector, scores);
+            start = System.nanoTime();
+            prediction = predict(Arrays.copyOf(indices, present), Arrays.copyOf(values, present), scores);
+            metrics.time(STAGE_PREFIX + "predict" + STAGE_SUFFIX, start);
+        }
+        if (prediction < 0) {
+            metrics.increment(NO_PREDICTION_DOCUMENTS);
         }
         List<Classification> classifications = new ArrayList<>();
         if (prediction >= 0) {
@@ -109,6 +187,66 @@ public abstract class SmileClassifier implements Classifier, Serializable {
         return classifications;
     }
 
+    /**
+     * Saves the given document, its dense vector and the feature space to the current experiment, if any, to help
+     * debugging. Only the first document classified in each experiment is saved, so that the classifications, which may
+     * run concurrently, do not all write the same files.
+     *
+     * @param doc the vectorized document
+     */
+    private void trace(Document doc) {
+        Experiment experiment = Experiment.getCurrentExperiment();
+        if (experiment == null) {
+            return;
+        }
+        synchronized (this) {
+            if (experiment == tracedExperiment) {
+                return;
+            }
+            tracedExperiment = experiment;
+        }
+        double docVector[] = doc.getVector().toDenseVector(featureSpace).toArray();
+        experiment.saveObject("TestDocument.ser", doc, true);
+        experiment.saveObject("TestDocVector.csv", Arrays.stream(docVector).mapToObj(String::valueOf).collect(Collectors.joining(", ")), true);
+        experiment.saveObject("Features.csv", featureSpace.stream().map(Feature::getFeature).collect(Collectors.joining("\n")), true);
+    }
+
+    /**
+     * Processes all the documents that are not vectorized yet in one pass, then predicts the documents in parallel.
+     *
+     * (non-Javadoc)
+     * @see org.alvearie.dream.intent.nlp.classification.Classifier#classifyAll(java.util.List)
+     */
+    @Override
+    public List<List<Classification>> classifyAll(List<Document> documents) {
+        List<Document> unprocessed = new ArrayList<>();
+        for (Document document : documents) {
+            if (document.getVector() == null) {
+                document.setFeatureSpace(featureSpace);
+                unprocessed.add(document);
+            }
+        }
+        if (!unprocessed.isEmpty()) {
+            processDocuments(unprocessed);
+        }
+        List<List<Classification>> classifications = new ArrayList<>(Collections.nCopies(documents.size(), null));
+        List<Integer> indices = IntStream.range(0, documents.size()).boxed().collect(Collectors.toList());
+        Utils.forEach("predict", indices, i -> classifications.set(i, classify(documents.get(i))));
+        return classifications;
+    }
+
+    /**
+     * Learn a model based on the given sparse data.
+     * <p>
+     * By default the data is densified into the matrix of all the documents and passed to
+     * {@link #learn(double[][], int, int[])}, learners that accept sparse data override this method to avoid building it.
+     *
+     * @param data the training data
+     */
+    void learn(SparseTrainingData data) {
+        learn(data.toDenseMatrix(), data.getNumberOfClasses(), data.getLabels());
+    }
+
     /**
      * Learn a model based on the given data
      *
@@ -120,6 +258,9 @@ public abstract class SmileClassifier implements Classifier, Serializable {
 
     /**
      * Predict the classification of the vector passed in
+     * <p>
+     * This method is called concurrently by {@link #classifyAll(List)}, implementations whose models are not thread-safe
+     * must synchronize it.
      *
      * @param vector a vector of feature values
      * @param scores an array of scores for each possible classification
@@ -127,6 +268,75 @@ public abstract class SmileClassifier implements Classifier, Serializable {
      */
     abstract int predict(double[] vector, double[] scores);
 
+    /**
+     * Predict the classification of the sparse vector passed in.
+     * <p>
+     * By default the vector is densified over the whole feature space and passed to {@link #predict(double[], double[])},
+     * classifiers that can predict from sparse vectors override this method to avoid building it.
+     *
+     * @param indices the feature space index of each non-zero feature value
+     * @param values the non-zero feature values
+     * @param scores an array of scores for each possible classification
+     * @return the index of the predicted classification
+     */
+    int predict(int[] indices, double[] values, double[] scores) {
+        double[] vector = new double[featureSpace.size()];
+        for (int i = 0; i < indices.length; i++) {
+            vector[indices[i]] = values[i];
+        }
+        return predict(vector, scores);
+    }
+
+    /**
+     * @return the size of the feature space learned from the training data, i.e. the vocabulary of the model
+     */
+    public int getNumberOfFeatures() {
+        return featureSpace.size();
+    }
+
+    /**
+     * @return a read-only view of the feature space learned from the training data
+     */
+    public List<Feature> getFeatures() {
+        return Collections.unmodifiableList(featureSpace);
+    }
+
+    /**
+     * Makes this classifier use the configuration of another one when the two have the same serialized form, so that
+     * models loaded separately share their text processing settings, e.g. their stop, allowed and break words, rather
+     * than each holding a copy of them.
+     *
+     * @param other another classifier
+     * @return true if this classifier now uses the configuration of the other one
+     */
+    public boolean shareConfiguration(SmileClassifier other) {
+        if (configuration == other.configuration) {
+            return true;
+        }
+        if (!Arrays.equals(SerializationUtils.serialize(configuration), SerializationUtils.serialize(other.configuration))) {
+            return false;
+        }
+        configuration = other.configuration;
+        return true;
+    }
+
+    /**
+     * Gets the index of each feature in the feature space, building it if needed.
+     *
+     * @return the feature indices
+     */
+    Map<Feature, Integer> getFeatureIndex() {
+        Map<Feature, Integer> index = featureIndex;
+        if (index == null || index.size() != featureSpace.size()) {
+            index = new HashMap<>(featureSpace.size() * 2);
+            for (int i = 0; i < featureSpace.size(); i++) {
+                index.put(featureSpace.get(i), i);
+            }
+            featureIndex = index;
+        }
+        return index;
+    }
+
     /**
      * This method will process one document to prepare (ngram/vectorize/etc) it for classification
      *
@@ -142,32 +352,101 @@ public abstract class SmileClassifier implements Classifier, Serializable {
      * @param allDocuments
      */
     public void processDocuments(List<Document> allDocuments) {
+        processDocuments(allDocuments, null, STAGE_PREFIX);
+    }
+
+    /**
+     * This method will process all documents to prepare (ngram/vectorize/etc) them for classification, selecting the
+     * features against the given labels if this classifier does not have a feature space yet, see
+     * {@link #bagOfWords(Corpus, int[])}.
+     *
+     * @param allDocuments
+     * @param labels the class label of each document, or null if the documents are not labeled
+     * @param stagePrefix the prefix of the stage latency histograms, {@link #STAGE_PREFIX} or {@link #TRAIN_STAGE_PREFIX}
+     */
+    private void processDocuments(List<Document> allDocuments, int[] labels, String stagePrefix) {
+        Corpus corpus = toBagOfWords(allDocuments, labels, stagePrefix);
+        long start = System.nanoTime();
+        tfidfVectorizer.vectorize(corpus);
+        Metrics.getDefault().time(stagePrefix + "tfidf" + BATCH_STAGE_SUFFIX, start);
+        // ThresholdVectorizer thresholdVectorizer = new ThresholdVectorizer(0.1);
+        // thresholdVectorizer.vectorize(allDocuments);
+    }
+
+    /**
+     * Processes the documents up to their BoW vectors, without weighing them, see {@link #processDocuments(List)}.
+     *
+     * @param allDocuments
+     * @param labels the class label of each document, or null if the documents are not labeled
+     * @param stagePrefix the prefix of the stage latency histograms, {@link #STAGE_PREFIX} or {@link #TRAIN_STAGE_PREFIX}
+     * @return the corpus of the documents
+     */
+    Corpus toBagOfWords(List<Document> allDocuments, int[] labels, String stagePrefix) {
+        String cacheDirectory = configuration.getPreprocessingCacheDirectory();
+        // The cache only pays off when training, classifying is done on new documents
+        Metrics metrics = Metrics.getDefault();
+        if (cacheDirectory != null && featureSpace.isEmpty()) {
+            long start = System.nanoTime();
+            List<Map<String, Integer>> nGramCounts = new PreprocessingCache(new File(cacheDirectory), configuration).preprocess(allDocuments);
+            metrics.time(stagePrefix + "preprocess" + BATCH_STAGE_SUFFIX, start);
+            Corpus corpus = new Corpus(allDocuments);
+            start = System.nanoTime();
+            new SmileDocumentNGrammer(configuration).ngram(corpus, nGramCounts);
+            metrics.time(stagePrefix + "ngram" + BATCH_STAGE_SUFFIX, start);
+            bagOfWords(corpus, labels, stagePrefix);
+            return corpus;
+        }
+        long start = System.nanoTime();
         DocumentTextTransformer normalizer = new SmileDocumentNormalizer(configuration);
-        Utils.stream(allDocuments).forEach(normalizer::processText);
+        Utils.forEach("normalize", allDocuments, normalizer::processText);
+        metrics.time(stagePrefix + "normalize" + BATCH_STAGE_SUFFIX, start);
 
+        start = System.nanoTime();
         DocumentTokenizer tokenizer = new SmileDocumentTokenizer();
         allDocuments.forEach(tokenizer::tokenize);
+        metrics.time(stagePrefix + "tokenize" + BATCH_STAGE_SUFFIX, start);
         Corpus corpus = new Corpus(allDocuments);
         if (!featureSpace.isEmpty()) {
             corpus.setFeatureSpace(featureSpace);
         }
 
+        start = System.nanoTime();
         NGrammer nGrammer = new SmileDocumentNGrammer(configuration);
         nGrammer.ngram(corpus);
+        metrics.time(stagePrefix + "ngram" + BATCH_STAGE_SUFFIX, start);
+        bagOfWords(corpus, labels, stagePrefix);
+        return corpus;
+    }
 
+    /**
+     * BoW vectorizes the given n-grammed corpus, adopting its feature space if this classifier does not have one yet.
+     * <p>
+     * When the feature space is adopted from labeled documents and {@link Configuration#getFeatureSelectionSize()} is set,
+     * only the features selected by a {@link FeatureSelector} are adopted, which shrinks the model and the vectors of the
+     * documents it classifies.
+     *
+     * @param corpus the corpus
+     * @param labels the class label of each document of the corpus, or null if the documents are not labeled
+     * @param stagePrefix the prefix of the stage latency histograms, {@link #STAGE_PREFIX} or {@link #TRAIN_STAGE_PREFIX}
+     */
+    private void bagOfWords(Corpus corpus, int[] labels, String stagePrefix) {
         if (featureSpace.isEmpty()) {
+            if (labels != null && configuration.getFeatureSelectionSize() > 0) {
+                long start = System.nanoTime();
+                new FeatureSelector(configuration).select(corpus, labels, classes.size());
+                Metrics.getDefault().time(stagePrefix + "select" + BATCH_STAGE_SUFFIX, start);
+            }
             featureSpace.addAll(corpus.getFeatureSpace());
             // TODO Experimenting with other processing techniques. Remove if we end up not using.
             // features.add(NoteFeatureProcessor.NOTE_FEATURE);
             System.err.println("Found " + featureSpace.size() + " unique features");
         }
+        Metrics metrics = Metrics.getDefault();
+        long start = System.nanoTime();
         new RegexBoWVectorizer().vectorize(corpus);
+        metrics.time(stagePrefix + "bow" + BATCH_STAGE_SUFFIX, start);
         // TODO Experimenting with other processing techniques. Remove if we end up not using.
         // new NoteFeatureProcessor().vectorize(allDocuments, features);
-
-        tfidfVectorizer.vectorize(corpus);
-        // ThresholdVectorizer thresholdVectorizer = new ThresholdVectorizer(0.1);
-        // thresholdVectorizer.vectorize(allDocuments);
     }
 
     @Override
@@ -184,6 +463,21 @@ public abstract class SmileClassifier implements Classifier, Serializable {
      */
     @Override
     public void train(Map<String, Collection<Document>> trainingData) {
+        SparseTrainingData data = prepareTrainingData(trainingData);
+        saveTrainingData(trainingData, data);
+
+        LOGGER.info("Starting to train classification model on " + data.size() + " documents with " + data.getNumberOfValues() + " feature values.");
+        learn(data);
+    }
+
+    /**
+     * Processes the training documents and builds the sparse training data from their vectors, without building the dense
+     * matrix of all the documents.
+     *
+     * @param trainingData the training documents of each class
+     * @return the sparse training data
+     */
+    SparseTrainingData prepareTrainingData(Map<String, Collection<Document>> trainingData) {
         // Map of document to classificationIndex. Must respect key order!!
         Map<Document, Integer> allDocuments = new LinkedHashMap<>();
         classes = new ArrayList<>(); // ordered list of classification names
@@ -193,55 +487,105 @@ public abstract class SmileClassifier implements Classifier, Serializable {
             entry.getValue().stream().forEach(d -> allDocuments.put(d, classes.size()-1));
         }
 
-        processDocuments(new ArrayList<>(allDocuments.keySet()));
+        processDocuments(new ArrayList<>(allDocuments.keySet()), allDocuments.values().stream().mapToInt(Integer::intValue).toArray(), TRAIN_STAGE_PREFIX);
         // Don't include ground truth entries that map to no features. This causes poorly trained models.
         allDocuments.entrySet().removeIf(e -> e.getKey().getNGrams().isEmpty());
         //
-        final int labelArray[] = new int[allDocuments.size()];
-        AtomicInteger l = new AtomicInteger(0);
-        allDocuments.entrySet().stream().forEach(e -> labelArray[l.getAndIncrement()] = e.getValue());
-
-        List<FeatureVector> vectors = allDocuments.entrySet().stream().map(e -> {
-            FeatureVector vector = e.getKey().getVector();
+        Map<Feature, Integer> index = getFeatureIndex();
+        int[] labels = new int[allDocuments.size()];
+        int[][] indices = new int[allDocuments.size()][];
+        double[][] values = new double[allDocuments.size()][];
+        int row = 0;
+        for (Entry<Document, Integer> entry : allDocuments.entrySet()) {
+            FeatureVector vector = entry.getKey().getVector();
             if (vector == null) {
                 throw new IllegalStateException(
                         "One or more documents in the corpus are not vectorized. Documents need to be vectorized in order to be classified.");
             }
-            vector = vector.toDenseVector(featureSpace);
-            return vector;
-        }).collect(Collectors.toList());
-
-        double[][] allDocVectors = FeatureVector.toMatrix(vectors);
-        saveTrainingData(trainingData, allDocVectors, labelArray, classes, featureSpace);
-
-        LOGGER.info("Starting to train classification model.");
-        learn(allDocVectors, classes.size(), labelArray);
+            // Sort the features of the document by feature space index, features outside the feature space are dropped as
+            // they are when densifying
+            long[] sortedFeatures = new long[vector.size()];
+            double[] featureValues = new double[vector.size()];
+            int present = 0;
+            for (Entry<Feature, Double> feature : vector.getFeaturesAndValues().entrySet()) {
+                Integer featureIndex = index.get(feature.getKey());
+                if (featureIndex != null) {
+                    featureValues[present] = feature.getValue();
+                    sortedFeatures[present] = ((long) featureIndex << 32) | present;
+                    present++;
+                }
+            }
+            Arrays.sort(sortedFeatures, 0, present);
+            indices[row] = new int[present];
+            values[row] = new double[present];
+            for (int i = 0; i < present; i++) {
+                indices[row][i] = (int) (sortedFeatures[i] >>> 32);
+                values[row][i] = featureValues[(int) sortedFeatures[i]];
+            }
+            labels[row++] = entry.getValue();
+        }
+        return new SparseTrainingData(featureSpace.size(), classes.size(), indices, values, labels);
     }
 
     /**
-     * Save all training-related data to the current experiment directory (if applicable)
+     * Save all training-related data to the current experiment directory (if applicable). The files are streamed to disk
+     * row by row, and the dense vectors of the training documents are only saved if
+     * {@link Configuration#saveTrainingVectors()}.
      *
      * @param trainingData
-     * @param allDocVectors
-     * @param labelArray
-     * @param classes
-     * @param featureSpace
+     * @param data
      */
-    private void saveTrainingData(Map<String, Collection<Document>> trainingData, double[][] allDocVectors, int labelArray[], List<String> classes, FeatureSpace featureSpace) {
+    private void saveTrainingData(Map<String, Collection<Document>> trainingData, SparseTrainingData data) {
         Experiment currentExperiment = Experiment.getCurrentExperiment();
-        if (currentExperiment != null) {
-            StringBuilder trainingString = new StringBuilder();
-            trainingData.entrySet().stream().forEach(e -> e.getValue().stream().forEach(d -> trainingString.append("\"" + d.getOriginalText() + "\"," + e.getKey() + "\n")));
-            Experiment.save("TrainingData.csv", trainingString);
-
-            StringBuilder allDocVectorString = new StringBuilder();
-            for (double[] row : allDocVectors) {
-                allDocVectorString.append(Arrays.stream(row).mapToObj(String::valueOf).collect(Collectors.joining(", ")) + "\n");
-            }
-            Experiment.save("AllDocVectors.csv", allDocVectorString);
-            Experiment.save("LabelArray.csv", Arrays.stream(labelArray).mapToObj(String::valueOf).collect(Collectors.joining("\n")));
-            Experiment.save("ClassesMap.csv", classes.stream().collect(Collectors.joining("\n")));
-            Experiment.save("Features.csv", featureSpace.stream().map(Feature::getFeature).collect(Collectors.joining("\n")));
+        if (currentExperiment == null) {
+            return;
+        }
+        try {
+            try (Writer writer = currentExperiment.createWriter("TrainingData.csv", false)) {
+                if (writer != null) {
+                    for (Entry<String, Collection<Document>> entry : trainingData.entrySet()) {
+                        for (Document document : entry.getValue()) {
+                            writer.write("\"" + document.getOriginalText() + "\"," + entry.getKey() + "\n");
+                        }
+                    }
+                }
+            }
+            if (configuration.saveTrainingVectors()) {
+                try (Writer writer = currentExperiment.createWriter("AllDocVectors.csv", false)) {
+                    if (writer != null) {
+                        double[] vector = new double[data.getNumberOfFeatures()];
+                        for (int row = 0; row < data.size(); row++) {
+                            data.toDenseVector(row, vector);
+                            for (int i = 0; i < vector.length; i++) {
+                                if (i > 0) {
+                                    writer.write(", ");
+                                }
+                                writer.write(String.valueOf(vector[i]));
+                            }
+                            writer.write("\n");
+                        }
+                    }
+                }
+            }
+            try (Writer writer = currentExperiment.createWriter("LabelArray.csv", false)) {
+                if (writer != null) {
+                    writer.write(Arrays.stream(data.getLabels()).mapToObj(String::valueOf).collect(Collectors.joining("\n")));
+                }
+            }
+            try (Writer writer = currentExperiment.createWriter("ClassesMap.csv", false)) {
+                if (writer != null) {
+                    writer.write(classes.stream().collect(Collectors.joining("\n")));
+                }
+            }
+            try (Writer writer = currentExperiment.createWriter("Features.csv", false)) {
+                if (writer != null) {
+                    for (int i = 0; i < featureSpace.size(); i++) {
+                        writer.write((i > 0 ? "\n" : "") + featureSpace.get(i).getFeature());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not save the training data to " + currentExperiment.getExperimentDirectory() + ": " + e.getMessage());
         }
     }
 }
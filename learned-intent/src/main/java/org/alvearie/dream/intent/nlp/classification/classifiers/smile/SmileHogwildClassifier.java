@@ -0,0 +1,178 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.classification.classifiers.smile;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.alvearie.dream.intent.nlp.classification.Classifier;
+import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.alvearie.dream.intent.nlp.text.ParallelExecutor;
+import org.apache.log4j.Logger;
+
+/**
+ * A {@link Classifier} that trains a multinomial logistic regression on the sparse TF-IDF vectors of the documents with
+ * Hogwild stochastic gradient descent, in {@link Configuration#getParallelism()} shares trained in parallel on the
+ * default {@link ParallelExecutor} as its "hogwild" stage.
+ * <p>
+ * The training documents are shuffled and split between the shares, each thread making its own passes over its share
+ * with a decaying learning rate, see {@link Configuration#getSGDEpochs()} and
+ * {@link Configuration#getSGDLearningRate()}. The threads update the shared weights without any locking: a document
+ * only has a few features out of the whole feature space, so the threads rarely write the same weights at the same time,
+ * and the few updates lost to a race do not hurt the convergence. The threads are only joined once they have all
+ * finished, so the training scales with the number of cores rather than being bound by their synchronization.
+ * <p>
+ * Each step only touches the weights of the features of its document, with L2 regularization of those weights, see
+ * {@link Configuration#getLambda()}, so it costs in the order of the number of features of the document times the
+ * number of classes, and predictions are made from the sparse vectors directly.
+ *
+ */
+public class SmileHogwildClassifier extends SmileClassifier implements Serializable {
+
+    private static final Logger LOGGER = Logger.getLogger(SmileHogwildClassifier.class.getName());
+
+    private static final long serialVersionUID = -1618254090276318347L;
+
+    /**
+     * The seed of the order the training documents are visited in, each thread adding its index to it.
+     */
+    private static final long SHUFFLE_SEED = 17;
+
+    private final double lambda;
+    private final double learningRate;
+    private final int epochs;
+    private final int threads;
+
+    // The weights of each class, one row of the size of the feature space per class, and the bias of each class
+    private double[] weights;
+    private double[] biases;
+    private int numberOfFeatures;
+    private double trainingThroughput;
+
+    /**
+     * Create a new Hogwild classifier using the default configuration
+     */
+    public SmileHogwildClassifier() {
+        this(Configuration.getDefault());
+    }
+
+    /**
+     * Create a new Hogwild classifier using the provided configuration
+     *
+     * @param configuration
+     */
+    public SmileHogwildClassifier(Configuration configuration) {
+        super(configuration);
+        this.lambda = configuration.getLambda();
+        this.learningRate = configuration.getSGDLearningRate();
+        this.epochs = configuration.getSGDEpochs();
+        this.threads = Math.max(1, configuration.getParallelism());
+    }
+
+    @Override
+    void learn(double[][] docMatrix, int numberOfClassifications, int[] classificationArray) {
+        int numberOfFeatures = docMatrix.length == 0 ? featureSpace.size() : docMatrix[0].length;
+        learn(SparseTrainingData.fromDenseMatrix(docMatrix, numberOfFeatures, numberOfClassifications, classificationArray));
+    }
+
+    /**
+     * Trains the model from scratch on the sparse rows, in parallel.
+     *
+     * (non-Javadoc)
+     * @see org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileClassifier#learn(org.alvearie.dream.intent.nlp.classification.classifiers.smile.SparseTrainingData)
+     */
+    @Override
+    void learn(SparseTrainingData data) {
+        double[] newWeights = new double[data.getNumberOfClasses() * data.getNumberOfFeatures()];
+        double[] newBiases = new double[data.getNumberOfClasses()];
+        List<Integer> order = new ArrayList<>(data.size());
+        for (int row = 0; row < data.size(); row++) {
+            order.add(row);
+        }
+        Collections.shuffle(order, new Random(SHUFFLE_SEED));
+        int numberOfThreads = Math.max(1, Math.min(threads, data.size()));
+        List<Integer> shares = new ArrayList<>(numberOfThreads);
+        for (int t = 0; t < numberOfThreads; t++) {
+            shares.add(t);
+        }
+
+        long start = System.nanoTime();
+        ParallelExecutor executor = ParallelExecutor.getDefault();
+        // The executor returns once all the shares are done, which makes all their updates visible to this thread
+        executor.forEach("hogwild", shares, t -> {
+            List<Integer> share = new ArrayList<>(order.subList(t * order.size() / numberOfThreads, (t + 1) * order.size() / numberOfThreads));
+            train(data, share, newWeights, newBiases, SHUFFLE_SEED + t);
+        });
+        long nanos = Math.max(1, System.nanoTime() - start);
+
+        weights = newWeights;
+        biases = newBiases;
+        numberOfFeatures = data.getNumberOfFeatures();
+        int parallelism = Configuration.getDefault().isSerialMode() ? 1 : executor.getStageParallelism("hogwild");
+        int cores = Math.min(Math.min(numberOfThreads, parallelism), Runtime.getRuntime().availableProcessors());
+        trainingThroughput = (double) data.size() * epochs / cores / (nanos / 1e9);
+        LOGGER.info(String.format("Trained on %d documents, %d epochs, %d shares on %d cores in %d ms: %.0f samples per second per core.", data.size(),
+                epochs, numberOfThreads, cores, nanos / 1_000_000, trainingThroughput));
+    }
+
+    /**
+     * Makes the passes over a share of the training data, the learning rate of the n-th pass being the configured
+     * learning rate divided by n.
+     *
+     * @param data the training data
+     * @param share the rows of the share, which are shuffled before each pass
+     * @param weights the shared weights
+     * @param biases the shared biases
+     * @param seed the seed of the shuffles
+     */
+    private void train(SparseTrainingData data, List<Integer> share, double[] weights, double[] biases, long seed) {
+        Random random = new Random(seed);
+        double[] probabilities = new double[biases.length];
+        int[] labels = data.getLabels();
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            Collections.shuffle(share, random);
+            double rate = learningRate / (1 + epoch);
+            for (int row : share) {
+                SparseSoftmaxRegression.step(data.getIndices(row), data.getValues(row), labels[row], rate, lambda, weights, biases, data.getNumberOfFeatures(),
+                        probabilities);
+            }
+        }
+    }
+
+    @Override
+    int predict(double[] vector, double[] scores) {
+        int[] indices = SparseTrainingData.nonZeroIndices(vector);
+        return predict(indices, SparseTrainingData.valuesAt(vector, indices), scores);
+    }
+
+    /* (non-Javadoc)
+     * @see org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileClassifier#predict(int[], double[], double[])
+     */
+    @Override
+    int predict(int[] indices, double[] values, double[] scores) {
+        return SparseSoftmaxRegression.probabilities(indices, values, weights, biases, numberOfFeatures, scores, scores.length);
+    }
+
+    /**
+     * @return the number of training documents processed per second per core during the last training, over all the
+     *         epochs, the cores being the shares trained in parallel up to the number of processors
+     */
+    public double getTrainingThroughput() {
+        return trainingThroughput;
+    }
+
+    /* (non-Javadoc)
+     * @see org.alvearie.nlp.classification.Classifier#isTrained()
+     */
+    @Override
+    public boolean isTrained() {
+        return weights != null;
+    }
+}
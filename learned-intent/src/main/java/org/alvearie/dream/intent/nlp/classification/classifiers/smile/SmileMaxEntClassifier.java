@@ -6,17 +6,21 @@
 
 package org.alvearie.dream.intent.nlp.classification.classifiers.smile;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.Writer;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.TreeMap;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.alvearie.dream.intent.nlp.Experiment;
 import org.alvearie.dream.intent.nlp.classification.Classifier;
 import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.apache.log4j.Logger;
 
 import smile.classification.Maxent;
 
@@ -26,6 +30,8 @@ import smile.classification.Maxent;
  */
 public class SmileMaxEntClassifier extends SmileClassifier implements Serializable {
 
+    private static final Logger LOGGER = Logger.getLogger(SmileMaxEntClassifier.class.getName());
+
     private static final long serialVersionUID = -3626505308802449933L;
     private double lambda;
     private int maxIterations;
@@ -57,11 +63,58 @@ public class SmileMaxEntClassifier extends SmileClassifier implements Serializab
         for (int i = 0; i < intMatrix.length; ++i) {
             intMatrix[i] = convertToMaxEntVector(docMatrix[i]);
         }
-        Experiment.save("MaxEntIntMatrix.csv", Arrays.stream(intMatrix).map(String::valueOf).collect(Collectors.joining("\n")));
+        learn(intMatrix, classificationArray);
+    }
+
+    /**
+     * Builds the feature index vectors of the maximum entropy model directly from the sparse rows, without densifying
+     * them.
+     *
+     * (non-Javadoc)
+     * @see org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileClassifier#learn(org.alvearie.dream.intent.nlp.classification.classifiers.smile.SparseTrainingData)
+     */
+    @Override
+    void learn(SparseTrainingData data) {
+        final int[][] intMatrix = new int[data.size()][];
+        for (int i = 0; i < intMatrix.length; ++i) {
+            intMatrix[i] = convertToMaxEntVector(data.getIndices(i), data.getValues(i));
+        }
+        learn(intMatrix, data.getLabels());
+    }
 
+    /**
+     * Learn the maximum entropy model from the feature index vectors of the documents.
+     *
+     * @param intMatrix the feature index vector of each document, see {@link #convertToMaxEntVector(double[])}
+     * @param classificationArray the class of each document
+     */
+    private void learn(int[][] intMatrix, int[] classificationArray) {
+        saveIntMatrix(intMatrix);
         maxEntModel = new Maxent(featureSpace.size(), intMatrix, classificationArray, lambda, tolerance, maxIterations);
     }
 
+    /**
+     * Streams the feature index vectors to the current experiment directory, if applicable and
+     * {@link Configuration#saveTrainingVectors()}.
+     *
+     * @param intMatrix the feature index vector of each document
+     */
+    private void saveIntMatrix(int[][] intMatrix) {
+        Experiment currentExperiment = Experiment.getCurrentExperiment();
+        if (currentExperiment == null || !configuration.saveTrainingVectors()) {
+            return;
+        }
+        try (Writer writer = currentExperiment.createWriter("MaxEntIntMatrix.csv", false)) {
+            if (writer != null) {
+                for (int[] row : intMatrix) {
+                    writer.write(IntStream.of(row).mapToObj(String::valueOf).collect(Collectors.joining(", ")) + "\n");
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not save the maximum entropy matrix to " + currentExperiment.getExperimentDirectory() + ": " + e.getMessage());
+        }
+    }
+
     @Override
     int predict(double[] vector, double[] scores) {
         final int[] intVector = convertToMaxEntVector(vector);
@@ -95,6 +148,23 @@ public class SmileMaxEntClassifier extends SmileClassifier implements Serializab
         return maxEntVector;
     }
 
+    /**
+     * Converts a sparse vector the same way as {@link #convertToMaxEntVector(double[])}: the indexes of the features with
+     * a positive value, ordered by the highest value to the lowest value, and by index for equal values.
+     *
+     * @param indices the feature indexes, in increasing order
+     * @param values the feature values
+     * @return the vector of indexes to features present
+     */
+    private static final int[] convertToMaxEntVector(int[] indices, double[] values) {
+        return IntStream.range(0, indices.length)
+                .filter(i -> values[i] > 0)
+                .boxed()
+                .sorted(Comparator.comparingDouble((Integer i) -> values[i]).reversed())
+                .mapToInt(i -> indices[i])
+                .toArray();
+    }
+
     /* (non-Javadoc)
      * @see org.alvearie.nlp.classification.Classifier#isTrained()
      */
@@ -7,6 +7,7 @@
 package org.alvearie.dream.intent.nlp.classification.classifiers.smile;
 
 import java.io.Serializable;
+import java.util.Arrays;
 
 import org.alvearie.dream.intent.nlp.classification.Classifier;
 import org.alvearie.dream.intent.nlp.text.Configuration;
@@ -35,6 +36,12 @@ public class SmileNaiveBayesClassifier extends SmileClassifier implements Serial
         super(configuration);
     }
 
+    /**
+     * The number of training documents densified at a time. SMILE only learns from sparse vectors one document at a time,
+     * recomputing the whole model after each one, so the documents are densified in blocks instead of all together.
+     */
+    private static final int DENSE_BLOCK_SIZE = 256;
+
     private static final long serialVersionUID = -5343941263634204914L;
     private NaiveBayes nbc;
 
@@ -47,6 +54,22 @@ public class SmileNaiveBayesClassifier extends SmileClassifier implements Serial
         nbc.learn(docMatrix, classificationArray);
     }
 
+    /**
+     * Learns from blocks of densified documents, the counts of the model are the same as when learning from all the
+     * documents at once.
+     *
+     * (non-Javadoc)
+     * @see org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileClassifier#learn(org.alvearie.dream.intent.nlp.classification.classifiers.smile.SparseTrainingData)
+     */
+    @Override
+    void learn(SparseTrainingData data) {
+        nbc = new NaiveBayes(NaiveBayes.Model.MULTINOMIAL, data.getNumberOfClasses(), data.getNumberOfFeatures());
+        for (int from = 0; from < data.size(); from += DENSE_BLOCK_SIZE) {
+            int to = Math.min(from + DENSE_BLOCK_SIZE, data.size());
+            nbc.learn(data.toDenseMatrix(from, to), Arrays.copyOfRange(data.getLabels(), from, to));
+        }
+    }
+
     @Override
     int predict(double[] vector, double[] scores) {
         return nbc.predict(vector, scores);
@@ -7,9 +7,17 @@
 package org.alvearie.dream.intent.nlp.classification.classifiers.smile;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 
+import org.alvearie.dream.intent.nlp.Experiment;
 import org.alvearie.dream.intent.nlp.classification.Classifier;
+import org.alvearie.dream.intent.nlp.classification.gt.ConfusionMatrix;
 import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.alvearie.dream.intent.nlp.text.ParallelExecutor;
+import org.apache.log4j.Logger;
 
 import smile.classification.NeuralNetwork;
 import smile.classification.NeuralNetwork.ActivationFunction;
@@ -17,13 +25,37 @@ import smile.classification.NeuralNetwork.ErrorFunction;
 
 /**
  * A {@link Classifier} implementation that uses the SMILE libraries.
- * 
+ * <p>
+ * By default the Smile {@link NeuralNetwork} learns the dense matrix of all the training documents in a single pass.
+ * When {@link Configuration#getNeuralNetBatchSize()} is set, a {@link MiniBatchNeuralNetwork} is trained instead, from
+ * the sparse training data, for up to {@link Configuration#getNeuralNetEpochs()} epochs of shuffled mini-batches whose
+ * document gradients are computed in {@link Configuration#getParallelism()} shares, in parallel on the default
+ * {@link ParallelExecutor} as its "neural-net" stage. Part of the training data is held out, see
+ * {@link Configuration#getNeuralNetValidationFraction()}, and the training stops once the F1 on it has not improved for
+ * {@link Configuration#getNeuralNetPatience()} epochs, keeping the network of the best epoch. The time, loss and
+ * validation F1 of each epoch, and the final F1, are logged to the current {@link Experiment}.
+ *
  */
 public class SmileNeuralNetClassifier extends SmileClassifier implements Serializable {
+
+    private static final Logger LOGGER = Logger.getLogger(SmileNeuralNetClassifier.class.getName());
+
     private static final long serialVersionUID = -5343941263634204914L;
 
+    /**
+     * The size of the single hidden layer of a network trained in mini-batches when no hidden layers are given.
+     */
+    private static final int DEFAULT_MINI_BATCH_HIDDEN_UNITS = 128;
+
+    /**
+     * The seed of the initial weights, the validation split and the order of the mini-batches, so that trainings are
+     * repeatable.
+     */
+    private static final long SEED = 17;
+
     private int hiddenLayers[];
     private NeuralNetwork neuralNet;
+    private MiniBatchNeuralNetwork miniBatchNet;
 
     /**
      * Create a new Smile Neural Net classifier using the default configuration
@@ -35,6 +67,15 @@ public class SmileNeuralNetClassifier extends SmileClassifier implements Seriali
         this.hiddenLayers = hiddenLayers;
     }
 
+    /**
+     * Create a new Smile Neural Net classifier using the provided configuration and the default hidden layers
+     *
+     * @param configuration
+     */
+    public SmileNeuralNetClassifier(Configuration configuration) {
+        this(configuration, null);
+    }
+
     /**
      * Create a new Smile Neural Net classifier using the provided configuration
      *
@@ -48,6 +89,11 @@ public class SmileNeuralNetClassifier extends SmileClassifier implements Seriali
 
     @Override
     void learn(double[][] docMatrix, int numberOfClassifications, int[] classificationArray) {
+        if (configuration.getNeuralNetBatchSize() > 0) {
+            int numberOfFeatures = docMatrix.length == 0 ? featureSpace.size() : docMatrix[0].length;
+            learn(SparseTrainingData.fromDenseMatrix(docMatrix, numberOfFeatures, numberOfClassifications, classificationArray));
+            return;
+        }
         if (hiddenLayers == null) {
             hiddenLayers = new int[] { featureSpace.size() * 2 / 3, featureSpace.size() * 2 / 3 };
         }
@@ -60,11 +106,178 @@ public class SmileNeuralNetClassifier extends SmileClassifier implements Seriali
 
         neuralNet = new NeuralNetwork(ErrorFunction.CROSS_ENTROPY, ActivationFunction.SOFTMAX, layerSizes);
         neuralNet.learn(docMatrix, classificationArray);
+        miniBatchNet = null;
+    }
+
+    /**
+     * Trains a {@link MiniBatchNeuralNetwork} on the sparse rows if {@link Configuration#getNeuralNetBatchSize()} is set,
+     * otherwise densifies them for the Smile network.
+     *
+     * (non-Javadoc)
+     * @see org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileClassifier#learn(org.alvearie.dream.intent.nlp.classification.classifiers.smile.SparseTrainingData)
+     */
+    @Override
+    void learn(SparseTrainingData data) {
+        if (configuration.getNeuralNetBatchSize() <= 0) {
+            super.learn(data);
+            return;
+        }
+        int[] layers = hiddenLayers == null ? new int[] { DEFAULT_MINI_BATCH_HIDDEN_UNITS } : hiddenLayers;
+        int layerSizes[] = new int[layers.length + 2];
+        layerSizes[0] = data.getNumberOfFeatures();
+        System.arraycopy(layers, 0, layerSizes, 1, layers.length);
+        layerSizes[layerSizes.length - 1] = data.getNumberOfClasses();
+
+        List<Integer> rows = new ArrayList<>(data.size());
+        for (int row = 0; row < data.size(); row++) {
+            rows.add(row);
+        }
+        Random random = new Random(SEED);
+        Collections.shuffle(rows, random);
+        int validationSize = (int) Math.min(data.size() - 1, Math.round(data.size() * configuration.getNeuralNetValidationFraction()));
+        List<Integer> validationRows = rows.subList(0, Math.max(0, validationSize));
+        List<Integer> trainingRows = new ArrayList<>(rows.subList(validationRows.size(), rows.size()));
+
+        miniBatchNet = trainMiniBatches(data, layerSizes, trainingRows, validationRows, random, Math.max(1, configuration.getParallelism()));
+        neuralNet = null;
+    }
+
+    /**
+     * Trains a network in mini-batches with early stopping.
+     *
+     * @param data the training data
+     * @param layerSizes the size of each layer of the network
+     * @param trainingRows the rows to train on
+     * @param validationRows the rows held out to validate the network after each epoch, none to train for all the epochs
+     * @param random the random order of the mini-batches
+     * @param shares the number of shares the gradients of a mini-batch are computed in, in parallel
+     * @return the network of the epoch with the best validation F1, or of the last epoch without validation rows
+     */
+    private MiniBatchNeuralNetwork trainMiniBatches(SparseTrainingData data, int[] layerSizes, List<Integer> trainingRows, List<Integer> validationRows,
+            Random random, int shares) {
+        int batchSize = configuration.getNeuralNetBatchSize();
+        int epochs = configuration.getNeuralNetEpochs();
+        int patience = configuration.getNeuralNetPatience();
+        double learningRate = configuration.getNeuralNetLearningRate();
+        MiniBatchNeuralNetwork network = new MiniBatchNeuralNetwork(layerSizes, SEED);
+        List<MiniBatchNeuralNetwork.Gradient> gradients = new ArrayList<>(shares);
+        for (int t = 0; t < shares; t++) {
+            gradients.add(network.createGradient());
+        }
+
+        MiniBatchNeuralNetwork best = network;
+        double bestF1 = -1.0;
+        int epochsWithoutImprovement = 0;
+        for (int epoch = 1; epoch <= epochs; epoch++) {
+            long start = System.currentTimeMillis();
+            Collections.shuffle(trainingRows, random);
+            double loss = 0.0;
+            for (int from = 0; from < trainingRows.size(); from += batchSize) {
+                List<Integer> batch = trainingRows.subList(from, Math.min(trainingRows.size(), from + batchSize));
+                computeGradients(data, batch, gradients);
+                for (MiniBatchNeuralNetwork.Gradient gradient : gradients) {
+                    loss += gradient.getLoss();
+                }
+                network.apply(gradients, learningRate, batch.size());
+            }
+            String message = String.format("Neural net epoch %d: %d ms, loss %.4f", epoch, System.currentTimeMillis() - start, loss / trainingRows.size());
+            if (validationRows.isEmpty()) {
+                log(message);
+                best = network;
+                continue;
+            }
+            double f1 = validate(network, data, validationRows);
+            log(message + String.format(", validation F1 %.4f", f1));
+            if (f1 > bestF1) {
+                bestF1 = f1;
+                best = network.copy();
+                epochsWithoutImprovement = 0;
+            } else if (++epochsWithoutImprovement >= patience) {
+                log("Stopping the neural net training early, the validation F1 has not improved for " + patience + " epochs.");
+                break;
+            }
+        }
+        log(validationRows.isEmpty() ? "Trained the neural net without validation." : String.format("Final neural net validation F1 %.4f", bestF1));
+        return best;
+    }
+
+    /**
+     * Computes the gradients of the documents of a mini-batch, split between the gradients, in parallel on the default
+     * {@link ParallelExecutor} unless it is in serial mode.
+     *
+     * @param data the training data
+     * @param batch the rows of the mini-batch
+     * @param gradients the empty gradients to add the documents to, one per share
+     */
+    private static void computeGradients(SparseTrainingData data, List<Integer> batch, List<MiniBatchNeuralNetwork.Gradient> gradients) {
+        int[] labels = data.getLabels();
+        List<Integer> shares = new ArrayList<>(gradients.size());
+        for (int t = 0; t < gradients.size(); t++) {
+            shares.add(t);
+        }
+        // Each share has its own gradient, and the executor returns once all of them are done, which makes them visible
+        ParallelExecutor.getDefault().forEach("neural-net", shares, t -> {
+            MiniBatchNeuralNetwork.Gradient gradient = gradients.get(t);
+            for (int row : batch.subList(t * batch.size() / gradients.size(), (t + 1) * batch.size() / gradients.size())) {
+                gradient.add(data.getIndices(row), data.getValues(row), labels[row]);
+            }
+        });
+    }
+
+    /**
+     * @param network the network
+     * @param data the training data
+     * @param validationRows the held out rows
+     * @return the overall F1 of the network on the held out rows
+     */
+    private static double validate(MiniBatchNeuralNetwork network, SparseTrainingData data, List<Integer> validationRows) {
+        String[] categories = new String[network.getNumberOfClasses()];
+        for (int c = 0; c < categories.length; c++) {
+            categories[c] = String.valueOf(c);
+        }
+        ConfusionMatrix matrix = new ConfusionMatrix(categories);
+        double[] probabilities = new double[categories.length];
+        for (int row : validationRows) {
+            int prediction = network.predict(data.getIndices(row), data.getValues(row), probabilities);
+            matrix.register(categories[data.getLabels()[row]], categories[prediction], null);
+        }
+        return matrix.getOverallF1();
+    }
+
+    /**
+     * Logs a training message, to the current experiment if there is one.
+     *
+     * @param message the message
+     */
+    private static void log(String message) {
+        LOGGER.info(message);
+        Experiment experiment = Experiment.getCurrentExperiment();
+        if (experiment != null) {
+            experiment.log(message);
+        }
     }
 
     @Override
     int predict(double[] vector, double[] scores) {
-        return neuralNet.predict(vector, scores);
+        if (miniBatchNet != null) {
+            int[] indices = SparseTrainingData.nonZeroIndices(vector);
+            return miniBatchNet.predict(indices, SparseTrainingData.valuesAt(vector, indices), scores);
+        }
+        // The network keeps the output of each layer in its own buffers, so it can only predict one vector at a time
+        synchronized (this) {
+            return neuralNet.predict(vector, scores);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileClassifier#predict(int[], double[], double[])
+     */
+    @Override
+    int predict(int[] indices, double[] values, double[] scores) {
+        if (miniBatchNet != null) {
+            return miniBatchNet.predict(indices, values, scores);
+        }
+        return super.predict(indices, values, scores);
     }
 
     /* (non-Javadoc)
@@ -72,6 +285,6 @@ public class SmileNeuralNetClassifier extends SmileClassifier implements Seriali
      */
     @Override
     public boolean isTrained() {
-        return neuralNet != null;
+        return neuralNet != null || miniBatchNet != null;
     }
 }
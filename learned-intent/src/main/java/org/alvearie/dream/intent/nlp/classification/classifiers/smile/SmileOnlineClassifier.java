@@ -0,0 +1,271 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.classification.classifiers.smile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.alvearie.dream.intent.nlp.classification.Classifier;
+import org.alvearie.dream.intent.nlp.classification.OnlineClassifier;
+import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.alvearie.dream.intent.nlp.text.Corpus;
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.alvearie.dream.intent.nlp.text.Feature;
+import org.alvearie.dream.intent.nlp.text.processors.IncrementalTFIDFVectorizer;
+import org.alvearie.dream.intent.nlp.utils.Metrics;
+
+/**
+ * A {@link Classifier} that keeps learning from labelled documents after it has been trained, see
+ * {@link OnlineClassifier}.
+ * <p>
+ * The model is a multinomial logistic regression over the feature space of the training data, trained by stochastic
+ * gradient descent on the sparse TF-IDF vectors of the documents. A full training makes a number of passes over the
+ * shuffled training data with a decaying learning rate, and each document learned afterwards is a single gradient step,
+ * at the learning rate of the last pass, that only touches the weights of its own features, so it costs in the order of
+ * its number of features times the number of classes. Documents of a new category add a class to the model.
+ * <p>
+ * The IDFs are kept up to date by an {@link IncrementalTFIDFVectorizer} that absorbs the learned documents without
+ * tracking the training documents. The feature space is fixed by the training data, new n-grams are only learned by a
+ * full retrain.
+ * <p>
+ * Documents can be learned while others are classified: the weights are guarded by a read-write lock, which is also
+ * held while the classifier is saved so that a checkpoint is consistent.
+ *
+ */
+public class SmileOnlineClassifier extends SmileClassifier implements OnlineClassifier, Serializable {
+
+    private static final long serialVersionUID = 3921730364482310582L;
+
+    /**
+     * The seed of the order the training documents are visited in, so that trainings are repeatable.
+     */
+    private static final long SHUFFLE_SEED = 17;
+
+    private final IncrementalTFIDFVectorizer vectorizer;
+    private final double lambda;
+    private final double learningRate;
+    private final int epochs;
+
+    // The weights of each class, one row of the size of the feature space per class, and the bias of each class
+    private double[] weights;
+    private double[] biases;
+    private long updates;
+
+    private transient ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Create a new online classifier using the default configuration
+     */
+    public SmileOnlineClassifier() {
+        this(Configuration.getDefault());
+    }
+
+    /**
+     * Create a new online classifier using the provided configuration
+     *
+     * @param configuration
+     */
+    public SmileOnlineClassifier(Configuration configuration) {
+        this(configuration, new IncrementalTFIDFVectorizer(configuration.l2Normalize(), configuration.getMaxIDFDrift(), false));
+    }
+
+    /**
+     * @param configuration
+     * @param vectorizer the incremental vectorizer, which does not track documents
+     */
+    private SmileOnlineClassifier(Configuration configuration, IncrementalTFIDFVectorizer vectorizer) {
+        super(configuration, vectorizer);
+        this.vectorizer = vectorizer;
+        this.lambda = configuration.getLambda();
+        this.learningRate = configuration.getOnlineLearningRate();
+        this.epochs = configuration.getOnlineEpochs();
+    }
+
+    @Override
+    void learn(double[][] docMatrix, int numberOfClassifications, int[] classificationArray) {
+        int numberOfFeatures = docMatrix.length == 0 ? featureSpace.size() : docMatrix[0].length;
+        learn(SparseTrainingData.fromDenseMatrix(docMatrix, numberOfFeatures, numberOfClassifications, classificationArray));
+    }
+
+    /**
+     * Trains the model from scratch with a number of passes over the shuffled rows, the learning rate of the n-th pass
+     * being the configured learning rate divided by n.
+     *
+     * (non-Javadoc)
+     * @see org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileClassifier#learn(org.alvearie.dream.intent.nlp.classification.classifiers.smile.SparseTrainingData)
+     */
+    @Override
+    void learn(SparseTrainingData data) {
+        lock.writeLock().lock();
+        try {
+            weights = new double[data.getNumberOfClasses() * data.getNumberOfFeatures()];
+            biases = new double[data.getNumberOfClasses()];
+            updates = 0;
+            List<Integer> order = new ArrayList<>(data.size());
+            for (int row = 0; row < data.size(); row++) {
+                order.add(row);
+            }
+            Random random = new Random(SHUFFLE_SEED);
+            double[] probabilities = new double[data.getNumberOfClasses()];
+            for (int epoch = 0; epoch < epochs; epoch++) {
+                Collections.shuffle(order, random);
+                double rate = learningRate / (1 + epoch);
+                for (int row : order) {
+                    SparseSoftmaxRegression.step(data.getIndices(row), data.getValues(row), data.getLabels()[row], rate, lambda, weights, biases,
+                            featureSpace.size(), probabilities);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    int predict(double[] vector, double[] scores) {
+        int[] indices = SparseTrainingData.nonZeroIndices(vector);
+        return predict(indices, SparseTrainingData.valuesAt(vector, indices), scores);
+    }
+
+    /**
+     * Classes learned after the scores array was sized, by a concurrent {@link #learn(Document, String)}, are left out.
+     *
+     * (non-Javadoc)
+     * @see org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileClassifier#predict(int[], double[], double[])
+     */
+    @Override
+    int predict(int[] indices, double[] values, double[] scores) {
+        lock.readLock().lock();
+        try {
+            return SparseSoftmaxRegression.probabilities(indices, values, weights, biases, featureSpace.size(), scores, Math.min(scores.length, biases.length));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.alvearie.dream.intent.nlp.classification.OnlineClassifier#learn(org.alvearie.dream.intent.nlp.text.Document, java.lang.String)
+     */
+    @Override
+    public boolean learn(Document document, String category) {
+        if (!isTrained()) {
+            throw new IllegalStateException("The classifier needs to be trained before it can learn online.");
+        }
+        document.setFeatureSpace(featureSpace);
+        Corpus corpus = toBagOfWords(Collections.singletonList(document), null, TRAIN_STAGE_PREFIX);
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            int label = classes.indexOf(category);
+            if (label < 0) {
+                label = addClass(category);
+            }
+            vectorizer.absorb(corpus);
+            Map<Feature, Integer> index = getFeatureIndex();
+            int[] indices = new int[document.getVector().size()];
+            double[] values = new double[indices.length];
+            int present = 0;
+            for (Entry<Feature, Double> entry : document.getVector().getFeaturesAndValues().entrySet()) {
+                Integer featureIndex = index.get(entry.getKey());
+                if (featureIndex != null) {
+                    indices[present] = featureIndex;
+                    values[present++] = entry.getValue();
+                }
+            }
+            if (present == 0) {
+                return false;
+            }
+            SparseSoftmaxRegression.step(Arrays.copyOf(indices, present), Arrays.copyOf(values, present), label, learningRate / Math.max(1, epochs), lambda,
+                    weights, biases, featureSpace.size(), new double[biases.length]);
+            updates++;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+            Metrics.getDefault().time(TRAIN_STAGE_PREFIX + "learn" + STAGE_SUFFIX, start);
+        }
+    }
+
+    /**
+     * Adds a class with zero weights to the model. The list of classes is replaced rather than changed, so that
+     * concurrent classifications keep a consistent list.
+     *
+     * @param category the category of the class
+     * @return the index of the class
+     */
+    private int addClass(String category) {
+        List<String> newClasses = new ArrayList<>(classes);
+        newClasses.add(category);
+        weights = Arrays.copyOf(weights, newClasses.size() * featureSpace.size());
+        biases = Arrays.copyOf(biases, newClasses.size());
+        classes = newClasses;
+        return newClasses.size() - 1;
+    }
+
+    /**
+     * @return the number of documents learned since the last full training
+     */
+    public long getUpdateCount() {
+        lock.readLock().lock();
+        try {
+            return updates;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.alvearie.dream.intent.nlp.classification.OnlineClassifier#createUntrained()
+     */
+    @Override
+    public OnlineClassifier createUntrained() {
+        return new SmileOnlineClassifier(configuration);
+    }
+
+    /* (non-Javadoc)
+     * @see org.alvearie.nlp.classification.Classifier#isTrained()
+     */
+    @Override
+    public boolean isTrained() {
+        return weights != null;
+    }
+
+    /**
+     * Saves this classifier while holding the read lock, so that no document is learned half way through.
+     *
+     * (non-Javadoc)
+     * @see org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileClassifier#save(java.io.File)
+     */
+    @Override
+    public void save(File file) throws IOException {
+        lock.readLock().lock();
+        try {
+            super.save(file);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param in
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        lock = new ReentrantReadWriteLock();
+    }
+}
@@ -24,6 +24,7 @@ public class SmileRandomForestClassifier extends SmileClassifier implements Seri
     private int featuresPerTree;
     private int numberOfTrees;
     private RandomForest randomForest;
+    private transient volatile FlatRandomForest flatForest;
 
     /**
      * Create a new Smile Random Forest classifier using the default configuration
@@ -50,11 +51,42 @@ public class SmileRandomForestClassifier extends SmileClassifier implements Seri
         } else {
             randomForest = new RandomForest(docMatrix, classificationArray, numberOfTrees);
         }
+        flatForest = null;
     }
 
     @Override
     int predict(double[] vector, double[] scores) {
-        return randomForest.predict(vector, scores);
+        return getFlatForest().predict(vector, scores);
+    }
+
+    /* (non-Javadoc)
+     * @see org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileClassifier#predict(int[], double[], double[])
+     */
+    @Override
+    int predict(int[] indices, double[] values, double[] scores) {
+        return getFlatForest().predict(indices, values, scores);
+    }
+
+    /**
+     * Gets the flattened copy of the forest used for scoring, exporting it if needed. It is not serialized, models saved
+     * before it existed work too.
+     *
+     * @return the flattened forest
+     */
+    FlatRandomForest getFlatForest() {
+        FlatRandomForest forest = flatForest;
+        if (forest == null) {
+            forest = FlatRandomForest.export(randomForest, featureSpace.size());
+            flatForest = forest;
+        }
+        return forest;
+    }
+
+    /**
+     * @return the SMILE random forest
+     */
+    RandomForest getRandomForest() {
+        return randomForest;
     }
 
     /* (non-Javadoc)
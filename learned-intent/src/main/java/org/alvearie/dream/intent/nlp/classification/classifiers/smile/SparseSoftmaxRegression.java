@@ -0,0 +1,89 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.classification.classifiers.smile;
+
+/**
+ * The multinomial logistic regression shared by the classifiers that train it by stochastic gradient descent on sparse
+ * vectors, see {@link SmileHogwildClassifier} and {@link SmileOnlineClassifier}.
+ * <p>
+ * The weights are one row of the size of the feature space per class, in a single array, and there is one bias per
+ * class. A step or a prediction only reads and writes the weights of the features of its document, so it costs in the
+ * order of the number of features of the document times the number of classes. The weights are given to each call
+ * rather than held, so that the classifiers decide how they are shared between threads.
+ *
+ */
+final class SparseSoftmaxRegression {
+
+    private SparseSoftmaxRegression() {
+    }
+
+    /**
+     * Takes a stochastic gradient descent step of the cross-entropy loss of the given document, with L2 regularization of
+     * the weights of its features.
+     *
+     * @param indices the feature indices of the document
+     * @param values the feature values of the document
+     * @param label the class of the document
+     * @param rate the learning rate
+     * @param lambda the L2 regularization factor
+     * @param weights the weights
+     * @param biases the biases
+     * @param numberOfFeatures the size of the feature space
+     * @param probabilities a buffer of the size of the number of classes
+     */
+    static void step(int[] indices, double[] values, int label, double rate, double lambda, double[] weights, double[] biases, int numberOfFeatures,
+            double[] probabilities) {
+        probabilities(indices, values, weights, biases, numberOfFeatures, probabilities, probabilities.length);
+        for (int c = 0; c < probabilities.length; c++) {
+            double gradient = probabilities[c] - (c == label ? 1.0 : 0.0);
+            int offset = c * numberOfFeatures;
+            for (int i = 0; i < indices.length; i++) {
+                int w = offset + indices[i];
+                weights[w] -= rate * (gradient * values[i] + lambda * weights[w]);
+            }
+            biases[c] -= rate * gradient;
+        }
+    }
+
+    /**
+     * Calculates the probability of each class for the given sparse vector.
+     *
+     * @param indices the feature indices
+     * @param values the feature values
+     * @param weights the weights
+     * @param biases the biases
+     * @param numberOfFeatures the size of the feature space
+     * @param probabilities the array to write the probabilities to
+     * @param numberOfClasses the number of classes to calculate the probabilities of
+     * @return the index of the most probable class
+     */
+    static int probabilities(int[] indices, double[] values, double[] weights, double[] biases, int numberOfFeatures, double[] probabilities,
+            int numberOfClasses) {
+        int best = 0;
+        for (int c = 0; c < numberOfClasses; c++) {
+            double score = biases[c];
+            int offset = c * numberOfFeatures;
+            for (int i = 0; i < indices.length; i++) {
+                score += weights[offset + indices[i]] * values[i];
+            }
+            probabilities[c] = score;
+            if (score > probabilities[best]) {
+                best = c;
+            }
+        }
+        double max = probabilities[best];
+        double sum = 0.0;
+        for (int c = 0; c < numberOfClasses; c++) {
+            probabilities[c] = Math.exp(probabilities[c] - max);
+            sum += probabilities[c];
+        }
+        for (int c = 0; c < numberOfClasses; c++) {
+            probabilities[c] /= sum;
+        }
+        return best;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.classification.classifiers.smile;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The training data of a {@link SmileClassifier} as sparse rows: for each training document, the feature space index
+ * and value of each of its features, in increasing index order, and its class label.
+ * <p>
+ * Documents only have a few features out of the whole feature space, so the sparse rows take a fraction of the memory of
+ * the dense matrix of all the documents. Learners that need dense vectors can densify the whole matrix, see
+ * {@link #toDenseMatrix()}, or blocks of rows at a time, see {@link #toDenseMatrix(int, int)}.
+ *
+ */
+final class SparseTrainingData {
+
+    private final int numberOfFeatures;
+    private final int numberOfClasses;
+    private final int[][] indices;
+    private final double[][] values;
+    private final int[] labels;
+
+    /**
+     * @param numberOfFeatures the size of the feature space
+     * @param numberOfClasses the number of classes
+     * @param indices the feature indices of each row, in increasing order
+     * @param values the feature values of each row
+     * @param labels the class label of each row
+     */
+    SparseTrainingData(int numberOfFeatures, int numberOfClasses, int[][] indices, double[][] values, int[] labels) {
+        if (indices.length != values.length || indices.length != labels.length) {
+            throw new IllegalArgumentException("The indices, values and labels must have one entry per row.");
+        }
+        this.numberOfFeatures = numberOfFeatures;
+        this.numberOfClasses = numberOfClasses;
+        this.indices = indices;
+        this.values = values;
+        this.labels = labels;
+    }
+
+    /**
+     * Builds the sparse rows of a dense matrix, for learners that are given dense data but train on sparse rows.
+     *
+     * @param matrix the dense matrix
+     * @param numberOfFeatures the size of the feature space
+     * @param numberOfClasses the number of classes
+     * @param labels the class label of each row
+     * @return the sparse rows
+     */
+    static SparseTrainingData fromDenseMatrix(double[][] matrix, int numberOfFeatures, int numberOfClasses, int[] labels) {
+        int[][] indices = new int[matrix.length][];
+        double[][] values = new double[matrix.length][];
+        for (int row = 0; row < matrix.length; row++) {
+            indices[row] = nonZeroIndices(matrix[row]);
+            values[row] = valuesAt(matrix[row], indices[row]);
+        }
+        return new SparseTrainingData(numberOfFeatures, numberOfClasses, indices, values, labels);
+    }
+
+    /**
+     * @param vector a dense vector
+     * @return the indices of the non-zero values of the vector, in increasing order
+     */
+    static int[] nonZeroIndices(double[] vector) {
+        return IntStream.range(0, vector.length).filter(i -> vector[i] != 0.0).toArray();
+    }
+
+    /**
+     * @param vector a dense vector
+     * @param indices indices in the vector
+     * @return the values of the vector at the indices
+     */
+    static double[] valuesAt(double[] vector, int[] indices) {
+        return Arrays.stream(indices).mapToDouble(i -> vector[i]).toArray();
+    }
+
+    /**
+     * @return the number of rows
+     */
+    int size() {
+        return labels.length;
+    }
+
+    /**
+     * @return the size of the feature space
+     */
+    int getNumberOfFeatures() {
+        return numberOfFeatures;
+    }
+
+    /**
+     * @return the number of classes
+     */
+    int getNumberOfClasses() {
+        return numberOfClasses;
+    }
+
+    /**
+     * @return the class label of each row
+     */
+    int[] getLabels() {
+        return labels;
+    }
+
+    /**
+     * @param row the row
+     * @return the feature indices of the row, in increasing order
+     */
+    int[] getIndices(int row) {
+        return indices[row];
+    }
+
+    /**
+     * @param row the row
+     * @return the feature values of the row
+     */
+    double[] getValues(int row) {
+        return values[row];
+    }
+
+    /**
+     * @return the total number of stored feature values
+     */
+    long getNumberOfValues() {
+        long count = 0;
+        for (int[] rowIndices : indices) {
+            count += rowIndices.length;
+        }
+        return count;
+    }
+
+    /**
+     * Writes a row as a dense vector.
+     *
+     * @param row the row
+     * @param vector the vector of the size of the feature space to write to, all of it is overwritten
+     * @return the vector
+     */
+    double[] toDenseVector(int row, double[] vector) {
+        Arrays.fill(vector, 0.0);
+        int[] rowIndices = indices[row];
+        double[] rowValues = values[row];
+        for (int i = 0; i < rowIndices.length; i++) {
+            vector[rowIndices[i]] = rowValues[i];
+        }
+        return vector;
+    }
+
+    /**
+     * @return all the rows as a dense matrix
+     */
+    double[][] toDenseMatrix() {
+        return toDenseMatrix(0, size());
+    }
+
+    /**
+     * @param from the first row, inclusive
+     * @param to the last row, exclusive
+     * @return the rows as a dense matrix
+     */
+    double[][] toDenseMatrix(int from, int to) {
+        double[][] matrix = new double[to - from][];
+        for (int row = from; row < to; row++) {
+            matrix[row - from] = toDenseVector(row, new double[numberOfFeatures]);
+        }
+        return matrix;
+    }
+}
@@ -88,6 +88,19 @@ public class CategoryAccuracy {
         return trueNegatives;
     }
 
+    /**
+     * Adds the counts of another {@link CategoryAccuracy}, e.g. of the same category in another fold.
+     *
+     * @param other the accuracy to add
+     */
+    void add(CategoryAccuracy other) {
+        truePositives += other.truePositives;
+        falsePositives += other.falsePositives;
+        falseNegatives += other.falseNegatives;
+        trueNegatives += other.trueNegatives;
+        trainingSize += other.trainingSize;
+    }
+
     /**
      * @param size the number of entries that were used to train this category
      */
@@ -0,0 +1,550 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.classification.gt;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.alvearie.dream.intent.nlp.Experiment;
+import org.alvearie.dream.intent.nlp.classification.Classification;
+import org.alvearie.dream.intent.nlp.classification.Classifier;
+import org.alvearie.dream.intent.nlp.classification.ClassifierManager;
+import org.alvearie.dream.intent.nlp.classification.classifiers.OpenNLPClassifier;
+import org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileClassifier;
+import org.alvearie.dream.intent.nlp.classification.gt.io.SamplingGroundTruthReader;
+import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.apache.log4j.Logger;
+
+/**
+ * A benchmark of the training cost and the inference latency of classifiers against the size of the ground truth.
+ * <p>
+ * The ground truth is split once into a stratified test set and a training set. Each classifier is then trained on
+ * stratified samples of increasing size of the training set, see {@link SamplingGroundTruthReader}, and for each sample
+ * the benchmark records the training time, the vocabulary of the model, the size of the serialized model, the heap taken
+ * by the model once loaded back, and, with the loaded model as it would serve requests, the latency of classifying the
+ * test documents one by one and all together and the F1 on the test set. The same test set is used for every run so that the F1s are comparable, and every run works on
+ * fresh documents so that no run benefits from the text processing of another.
+ * <p>
+ * The runs are made one after the other so that they do not disturb each other's timings. When an experiment is given,
+ * the results are saved to it as {@value #RESULTS_FILE} and summarized in {@value #SUMMARY_FILE}, after each run.
+ *
+ */
+public class ClassifierBenchmark {
+
+    private static final Logger LOGGER = Logger.getLogger(ClassifierBenchmark.class.getName());
+
+    /**
+     * The name of the CSV file of the results saved in the experiment directory.
+     */
+    public static final String RESULTS_FILE = "BenchmarkResults.csv";
+
+    /**
+     * The name of the summary file saved in the experiment directory.
+     */
+    public static final String SUMMARY_FILE = "BenchmarkSummary.txt";
+
+    private final Map<String, List<String>> groundTruth;
+    private final Configuration configuration;
+    private final Map<String, Function<Configuration, Classifier>> classifiers = new LinkedHashMap<>();
+    private List<Double> fractions = Arrays.asList(0.1, 0.25, 0.5, 1.0);
+    private double testFraction = 0.2;
+    private long seed = 23;
+    private Experiment experiment;
+
+    /**
+     * Creates a {@link ClassifierBenchmark} over the given ground truth.
+     *
+     * @param groundTruth the ground truth, whose documents are not changed
+     * @param configuration the configuration the classifiers are created with
+     */
+    public ClassifierBenchmark(Map<String, Collection<Document>> groundTruth, Configuration configuration) {
+        this.groundTruth = new LinkedHashMap<>();
+        for (Entry<String, Collection<Document>> entry : groundTruth.entrySet()) {
+            List<String> texts = new ArrayList<>();
+            for (Document document : entry.getValue()) {
+                texts.add(document.getOriginalText());
+            }
+            this.groundTruth.put(entry.getKey(), texts);
+        }
+        this.configuration = configuration;
+    }
+
+    /**
+     * Adds a classifier to benchmark.
+     *
+     * @param name the name of the classifier in the results
+     * @param factory creates an untrained classifier from the configuration
+     * @return this benchmark
+     */
+    public ClassifierBenchmark addClassifier(String name, Function<Configuration, Classifier> factory) {
+        classifiers.put(name, factory);
+        return this;
+    }
+
+    /**
+     * Adds a classifier to benchmark, created with its {@link Configuration} constructor.
+     *
+     * @param classifierClass the class of the classifier
+     * @return this benchmark
+     */
+    public ClassifierBenchmark addClassifier(Class<? extends Classifier> classifierClass) {
+        return addClassifier(classifierClass.getSimpleName(), configuration -> {
+            try {
+                return classifierClass.getConstructor(Configuration.class).newInstance(configuration);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("Cannot create a " + classifierClass.getSimpleName() + " from a configuration.", e);
+            }
+        });
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @return the result of each classifier for each fraction of the training set, classifier by classifier
+     * @throws IOException if the results cannot be saved
+     */
+    public List<Result> run() throws IOException {
+        Map<String, List<String>> trainingSet = new LinkedHashMap<>();
+        Map<String, List<String>> testSet = new LinkedHashMap<>();
+        split(trainingSet, testSet);
+        int testSize = testSet.values().stream().mapToInt(List::size).sum();
+
+        List<Result> results = new ArrayList<>();
+        for (Entry<String, Function<Configuration, Classifier>> classifier : classifiers.entrySet()) {
+            for (double fraction : fractions) {
+                Map<String, Collection<Document>> trainingData = new SamplingGroundTruthReader(() -> toDocuments(trainingSet), -1, fraction, seed).read();
+                int trainingSize = trainingData.values().stream().mapToInt(Collection::size).sum();
+                Result result;
+                try {
+                    result = benchmark(classifier.getKey(), classifier.getValue(), fraction, trainingData, trainingSize, testSet);
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.warn("Benchmark of " + classifier.getKey() + " on " + fraction + " of the ground truth failed.", e);
+                    result = new Result(classifier.getKey(), fraction, trainingSize, testSize, String.valueOf(e));
+                }
+                LOGGER.info(result);
+                results.add(result);
+                save(results);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Saves the results so far to the experiment, if any, so that the results of a long benchmark are kept even if it
+     * does not run to the end.
+     *
+     * @param results the results
+     * @throws IOException if the results cannot be saved
+     */
+    private void save(List<Result> results) throws IOException {
+        if (experiment == null) {
+            return;
+        }
+        try (Writer writer = experiment.createWriter(RESULTS_FILE, true)) {
+            writer.write(toCSV(results));
+        }
+        experiment.saveObject(SUMMARY_FILE, toSummary(results), true);
+    }
+
+    /**
+     * Splits the ground truth class by class into a training set and a test set.
+     *
+     * @param trainingSet the training set to fill
+     * @param testSet the test set to fill
+     */
+    private void split(Map<String, List<String>> trainingSet, Map<String, List<String>> testSet) {
+        Random random = new Random(seed);
+        for (Entry<String, List<String>> entry : groundTruth.entrySet()) {
+            List<String> texts = new ArrayList<>(entry.getValue());
+            Collections.shuffle(texts, random);
+            int testSize = (int) Math.round(texts.size() * testFraction);
+            testSet.put(entry.getKey(), new ArrayList<>(texts.subList(0, testSize)));
+            trainingSet.put(entry.getKey(), new ArrayList<>(texts.subList(testSize, texts.size())));
+        }
+    }
+
+    /**
+     * @param texts the texts of each class
+     * @return new documents of the texts of each class
+     */
+    private static Map<String, Collection<Document>> toDocuments(Map<String, List<String>> texts) {
+        Map<String, Collection<Document>> documents = new LinkedHashMap<>();
+        for (Entry<String, List<String>> entry : texts.entrySet()) {
+            List<Document> categoryDocuments = new ArrayList<>();
+            for (String text : entry.getValue()) {
+                categoryDocuments.add(new Document(text));
+            }
+            documents.put(entry.getKey(), categoryDocuments);
+        }
+        return documents;
+    }
+
+    /**
+     * Trains, measures and tests a classifier.
+     *
+     * @param name the name of the classifier
+     * @param factory creates the classifier
+     * @param fraction the fraction of the training set
+     * @param trainingData the training data
+     * @param trainingSize the number of training documents
+     * @param testSet the test set
+     * @return the result
+     * @throws IOException if the model cannot be saved or loaded
+     */
+    private Result benchmark(String name, Function<Configuration, Classifier> factory, double fraction, Map<String, Collection<Document>> trainingData,
+            int trainingSize, Map<String, List<String>> testSet) throws IOException {
+        Classifier classifier = factory.apply(configuration.copy());
+        long start = System.nanoTime();
+        classifier.train(trainingData);
+        long trainMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        int features = classifier instanceof SmileClassifier ? ((SmileClassifier) classifier).getNumberOfFeatures() : -1;
+
+        File file = Files.createTempFile("benchmark", ".model").toFile();
+        long modelBytes;
+        long heapBytes;
+        Classifier loaded;
+        try {
+            classifier.save(file);
+            modelBytes = file.length();
+            long heapBefore = usedHeap();
+            loaded = classifier instanceof OpenNLPClassifier ? OpenNLPClassifier.load(file, configuration) : ClassifierManager.load(file);
+            heapBytes = Math.max(0, usedHeap() - heapBefore);
+        } finally {
+            file.delete();
+        }
+
+        List<String> expected = new ArrayList<>();
+        List<Document> batch = new ArrayList<>();
+        for (Entry<String, List<String>> entry : testSet.entrySet()) {
+            for (String text : entry.getValue()) {
+                expected.add(entry.getKey());
+                batch.add(new Document(text));
+            }
+        }
+        // The loaded classifier is the one that serves requests, the batch pass also warms it up for the single document pass
+        start = System.nanoTime();
+        List<List<Classification>> batchClassifications = loaded.classifyAll(batch);
+        double batchMicros = expected.isEmpty() ? 0.0 : (System.nanoTime() - start) / 1000.0 / expected.size();
+        ConfusionMatrix matrix = new ConfusionMatrix(testSet.keySet());
+        for (int i = 0; i < expected.size(); i++) {
+            List<Classification> classifications = batchClassifications.get(i);
+            // A document without any prediction is a false negative of its category
+            matrix.register(expected.get(i), classifications.isEmpty() ? null : classifications.get(0).getCategory(), batch.get(i).getOriginalText());
+        }
+
+        long[] singleNanos = new long[expected.size()];
+        for (int i = 0; i < singleNanos.length; i++) {
+            Document document = new Document(batch.get(i).getOriginalText());
+            start = System.nanoTime();
+            loaded.classify(document);
+            singleNanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(singleNanos);
+        return new Result(name, fraction, trainingSize, expected.size(), features, trainMillis, modelBytes, heapBytes, percentile(singleNanos, 0.5) / 1000.0,
+                percentile(singleNanos, 0.95) / 1000.0, batchMicros, matrix.getOverallF1());
+    }
+
+    /**
+     * @param sorted sorted values
+     * @param percentile the percentile, between 0 and 1
+     * @return the value at the percentile, 0 if there are no values
+     */
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    /**
+     * @return the heap in use after garbage collection
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * @param results the results
+     * @return the results as CSV, with a header row
+     */
+    static String toCSV(List<Result> results) {
+        StringBuilder csv = new StringBuilder();
+        csv.append("classifier,fraction,trainingDocuments,testDocuments,features,trainMillis,modelBytes,heapBytes,"
+                + "singleLatencyP50Micros,singleLatencyP95Micros,batchLatencyMicros,f1,error\n");
+        for (Result result : results) {
+            csv.append(String.join(",", result.getClassifier(), String.valueOf(result.getFraction()), String.valueOf(result.getTrainingDocuments()),
+                    String.valueOf(result.getTestDocuments()), String.valueOf(result.getFeatures()), String.valueOf(result.getTrainMillis()),
+                    String.valueOf(result.getModelBytes()), String.valueOf(result.getHeapBytes()), String.format("%.1f", result.getSingleLatencyP50Micros()),
+                    String.format("%.1f", result.getSingleLatencyP95Micros()), String.format("%.1f", result.getBatchLatencyMicros()),
+                    String.format("%.4f", result.getF1()), result.getError() == null ? "" : "\"" + result.getError().replace("\"", "'") + "\""));
+            csv.append("\n");
+        }
+        return csv.toString();
+    }
+
+    /**
+     * @param results the results
+     * @return a table of the results, classifier by classifier
+     */
+    static String toSummary(List<Result> results) {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("%-30s%-10s%-10s%-10s%-12s%-12s%-12s%-22s%-12s%s%n", "Classifier", "Fraction", "Docs", "Features", "Train", "Model",
+                "Heap", "Single p50/p95", "Batch", "F1"));
+        for (Result result : results) {
+            if (result.getError() != null) {
+                summary.append(String.format("%-30s%-10s%-10d FAILED: %s%n", result.getClassifier(), result.getFraction(), result.getTrainingDocuments(),
+                        result.getError()));
+                continue;
+            }
+            summary.append(String.format("%-30s%-10s%-10d%-10d%-12s%-12s%-12s%-22s%-12s%s%n", result.getClassifier(), result.getFraction(),
+                    result.getTrainingDocuments(), result.getFeatures(), result.getTrainMillis() + " ms", toKilobytes(result.getModelBytes()),
+                    toKilobytes(result.getHeapBytes()),
+                    String.format("%.0f/%.0f us", result.getSingleLatencyP50Micros(), result.getSingleLatencyP95Micros()),
+                    String.format("%.0f us", result.getBatchLatencyMicros()), CategoryAccuracy.toPercentage(result.getF1())));
+        }
+        return summary.toString();
+    }
+
+    /**
+     * @param bytes a number of bytes
+     * @return the number of kilobytes, formatted
+     */
+    private static String toKilobytes(long bytes) {
+        return (bytes + 512) / 1024 + " KB";
+    }
+
+    /**
+     * Sets the fractions of the training set each classifier is trained on, 0.1, 0.25, 0.5 and 1 by default.
+     *
+     * @param fractions the fractions, each greater than 0 and at most 1
+     */
+    public void setFractions(List<Double> fractions) {
+        this.fractions = new ArrayList<>(fractions);
+    }
+
+    /**
+     * Sets the fraction of each class of the ground truth held out to test the classifiers, 0.2 by default.
+     *
+     * @param testFraction the test fraction
+     */
+    public void setTestFraction(double testFraction) {
+        this.testFraction = testFraction;
+    }
+
+    /**
+     * Sets the seed of the test split and of the samples of the training set.
+     *
+     * @param seed the seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the experiment the results are saved to.
+     *
+     * @param experiment the experiment
+     */
+    public void setExperiment(Experiment experiment) {
+        this.experiment = experiment;
+    }
+
+    /**
+     * The result of a classifier trained on a fraction of the training set.
+     */
+    public static class Result {
+
+        private final String classifier;
+        private final double fraction;
+        private final int trainingDocuments;
+        private final int testDocuments;
+        private final int features;
+        private final long trainMillis;
+        private final long modelBytes;
+        private final long heapBytes;
+        private final double singleLatencyP50Micros;
+        private final double singleLatencyP95Micros;
+        private final double batchLatencyMicros;
+        private final double f1;
+        private final String error;
+
+        /**
+         * @param classifier the name of the classifier
+         * @param fraction the fraction of the training set
+         * @param trainingDocuments the number of training documents
+         * @param testDocuments the number of test documents
+         * @param features the vocabulary of the model, -1 if unknown
+         * @param trainMillis the training time
+         * @param modelBytes the size of the serialized model
+         * @param heapBytes the heap taken by the model once loaded
+         * @param singleLatencyP50Micros the median latency of classifying a single document
+         * @param singleLatencyP95Micros the 95th percentile latency of classifying a single document
+         * @param batchLatencyMicros the latency per document of classifying all the test documents together
+         * @param f1 the overall F1 on the test set
+         */
+        private Result(String classifier, double fraction, int trainingDocuments, int testDocuments, int features, long trainMillis, long modelBytes,
+                long heapBytes, double singleLatencyP50Micros, double singleLatencyP95Micros, double batchLatencyMicros, double f1) {
+            this.classifier = classifier;
+            this.fraction = fraction;
+            this.trainingDocuments = trainingDocuments;
+            this.testDocuments = testDocuments;
+            this.features = features;
+            this.trainMillis = trainMillis;
+            this.modelBytes = modelBytes;
+            this.heapBytes = heapBytes;
+            this.singleLatencyP50Micros = singleLatencyP50Micros;
+            this.singleLatencyP95Micros = singleLatencyP95Micros;
+            this.batchLatencyMicros = batchLatencyMicros;
+            this.f1 = f1;
+            this.error = null;
+        }
+
+        /**
+         * @param classifier the name of the classifier
+         * @param fraction the fraction of the training set
+         * @param trainingDocuments the number of training documents
+         * @param testDocuments the number of test documents
+         * @param error the reason the run failed
+         */
+        private Result(String classifier, double fraction, int trainingDocuments, int testDocuments, String error) {
+            this.classifier = classifier;
+            this.fraction = fraction;
+            this.trainingDocuments = trainingDocuments;
+            this.testDocuments = testDocuments;
+            this.features = -1;
+            this.trainMillis = -1;
+            this.modelBytes = -1;
+            this.heapBytes = -1;
+            this.singleLatencyP50Micros = Double.NaN;
+            this.singleLatencyP95Micros = Double.NaN;
+            this.batchLatencyMicros = Double.NaN;
+            this.f1 = Double.NaN;
+            this.error = error;
+        }
+
+        /**
+         * @return the name of the classifier
+         */
+        public String getClassifier() {
+            return classifier;
+        }
+
+        /**
+         * @return the fraction of the training set the classifier was trained on
+         */
+        public double getFraction() {
+            return fraction;
+        }
+
+        /**
+         * @return the number of training documents
+         */
+        public int getTrainingDocuments() {
+            return trainingDocuments;
+        }
+
+        /**
+         * @return the number of test documents
+         */
+        public int getTestDocuments() {
+            return testDocuments;
+        }
+
+        /**
+         * @return the vocabulary of the model, -1 if the classifier does not expose it
+         */
+        public int getFeatures() {
+            return features;
+        }
+
+        /**
+         * @return the training time, in milliseconds
+         */
+        public long getTrainMillis() {
+            return trainMillis;
+        }
+
+        /**
+         * @return the size of the serialized model, in bytes
+         */
+        public long getModelBytes() {
+            return modelBytes;
+        }
+
+        /**
+         * @return the heap taken by the model once loaded, in bytes, as measured after garbage collection so approximate
+         */
+        public long getHeapBytes() {
+            return heapBytes;
+        }
+
+        /**
+         * @return the median latency of classifying a single document, text processing included, in microseconds
+         */
+        public double getSingleLatencyP50Micros() {
+            return singleLatencyP50Micros;
+        }
+
+        /**
+         * @return the 95th percentile latency of classifying a single document, in microseconds
+         */
+        public double getSingleLatencyP95Micros() {
+            return singleLatencyP95Micros;
+        }
+
+        /**
+         * @return the latency per document of classifying all the test documents together, in microseconds
+         */
+        public double getBatchLatencyMicros() {
+            return batchLatencyMicros;
+        }
+
+        /**
+         * @return the overall F1 on the test set, NaN if the run failed
+         */
+        public double getF1() {
+            return f1;
+        }
+
+        /**
+         * @return the reason the run failed, or null
+         */
+        public String getError() {
+            return error;
+        }
+
+        /* (non-Javadoc)
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            if (error != null) {
+                return classifier + " on " + trainingDocuments + " documents failed: " + error;
+            }
+            return String.format("%s on %d documents: F1 %.4f, trained in %d ms, %d features, %d bytes, %.0f us per document", classifier,
+                    trainingDocuments, f1, trainMillis, features, modelBytes, singleLatencyP50Micros);
+        }
+    }
+}
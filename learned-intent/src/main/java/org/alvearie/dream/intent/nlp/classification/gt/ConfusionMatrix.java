@@ -47,14 +47,26 @@ public class ConfusionMatrix {
 
     /**
      * Register a classification's prediction with the expected and actual categories.
+     * <p>
+     * A classification without any prediction is a FN of the expected category and a TN of all the other categories,
+     * none of which was predicted.
      *
      * @param expectedCategory the expected category
-     * @param actualCategory the actual category
+     * @param actualCategory the actual category, or null if the classifier made no prediction
      * @param text optionally the text that was classified
      */
     public void register(String expectedCategory, String actualCategory, String text) {
         CategoryAccuracy expectedCategoryScores = matrix.get(expectedCategory);
         matrix.put(expectedCategory, expectedCategoryScores);
+        if (actualCategory == null) {
+            expectedCategoryScores.addFalseNegative();
+            for (String otherCategory : getCategories()) {
+                if (!otherCategory.equals(expectedCategory)) {
+                    matrix.get(otherCategory).addTrueNegative();
+                }
+            }
+            return;
+        }
         CategoryAccuracy actualCategoryScores = matrix.get(actualCategory);
         matrix.put(actualCategory, actualCategoryScores);
         if (expectedCategory.equals(actualCategory)) {
@@ -105,6 +117,23 @@ public class ConfusionMatrix {
         }
     }
 
+    /**
+     * Adds the counts of another confusion matrix to this one, e.g. to pool the results of the folds of a
+     * cross-validation.
+     *
+     * @param other the confusion matrix to add, with the same categories as this one
+     * @throws IllegalArgumentException if the other matrix has a category unknown to this one
+     */
+    public void merge(ConfusionMatrix other) {
+        for (CategoryAccuracy otherAccuracy : other.matrix.values()) {
+            CategoryAccuracy accuracy = matrix.get(otherAccuracy.getCategory());
+            if (accuracy == null) {
+                throw new IllegalArgumentException("Unknown category: " + otherAccuracy.getCategory());
+            }
+            accuracy.add(otherAccuracy);
+        }
+    }
+
     /**
      * Gets the categories known to this confusion matrix
      *
@@ -0,0 +1,217 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.classification.gt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * The results of a k-fold cross-validation: the {@link ConfusionMatrix} of each fold, the confusion matrix pooled over
+ * all the folds, and the mean and variance of the precision, recall and F1 of each category across the folds.
+ * <p>
+ * A category that has no test data in a fold, or is never predicted in a fold, has an undefined (NaN) score in that
+ * fold. Such folds are left out of the mean and variance of that score.
+ *
+ */
+public class CrossValidationResults {
+
+    private final List<ConfusionMatrix> folds;
+    private final ConfusionMatrix pooled;
+    private final long wallClockMillis;
+
+    /**
+     * Creates the results of a cross-validation.
+     *
+     * @param folds the confusion matrix of each fold, all with the same categories
+     * @param wallClockMillis the time it took to train and test all the folds
+     */
+    public CrossValidationResults(List<ConfusionMatrix> folds, long wallClockMillis) {
+        if (folds.isEmpty()) {
+            throw new IllegalArgumentException("At least one fold is required.");
+        }
+        this.folds = Collections.unmodifiableList(new ArrayList<>(folds));
+        this.wallClockMillis = wallClockMillis;
+        pooled = new ConfusionMatrix(folds.get(0).getCategories());
+        for (ConfusionMatrix fold : folds) {
+            pooled.merge(fold);
+        }
+    }
+
+    /**
+     * @return the confusion matrix of each fold
+     */
+    public List<ConfusionMatrix> getFolds() {
+        return folds;
+    }
+
+    /**
+     * @return the sum of the confusion matrices of all the folds
+     */
+    public ConfusionMatrix getPooled() {
+        return pooled;
+    }
+
+    /**
+     * @return the categories of the confusion matrices
+     */
+    public Set<String> getCategories() {
+        return pooled.getCategories();
+    }
+
+    /**
+     * @return the time it took to train and test all the folds, in milliseconds
+     */
+    public long getWallClockMillis() {
+        return wallClockMillis;
+    }
+
+    /**
+     * @param category the category
+     * @return the precision of the category across the folds
+     */
+    public Statistic getPrecision(String category) {
+        return statistic(category, CategoryAccuracy::getPrecision);
+    }
+
+    /**
+     * @param category the category
+     * @return the recall of the category across the folds
+     */
+    public Statistic getRecall(String category) {
+        return statistic(category, CategoryAccuracy::getRecall);
+    }
+
+    /**
+     * @param category the category
+     * @return the F1 of the category across the folds
+     */
+    public Statistic getF1(String category) {
+        return statistic(category, CategoryAccuracy::getF1);
+    }
+
+    /**
+     * @return the F1 across all categories, across the folds
+     */
+    public Statistic getOverallF1() {
+        return Statistic.of(folds.stream().mapToDouble(ConfusionMatrix::getOverallF1).toArray());
+    }
+
+    /**
+     * @param category the category
+     * @param score the score of the category in a fold
+     * @return the score across the folds
+     */
+    private Statistic statistic(String category, ToDoubleFunction<CategoryAccuracy> score) {
+        if (!getCategories().contains(category)) {
+            throw new IllegalArgumentException("Unknown category: " + category);
+        }
+        return Statistic.of(folds.stream().mapToDouble(fold -> score.applyAsDouble(fold.getMatrix().get(category))).toArray());
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder();
+        buffer.append(String.format("%d-fold cross-validation (%d ms):%n", folds.size(), wallClockMillis));
+        for (String category : getCategories()) {
+            buffer.append(String.format("Category: %-45s", category));
+            buffer.append(String.format("Precision: %-18s", getPrecision(category)));
+            buffer.append(String.format("Recall: %-18s", getRecall(category)));
+            buffer.append(String.format("F1: %s%n", getF1(category)));
+        }
+        buffer.append(String.format("Overall F1: %s%n", getOverallF1()));
+        return buffer.toString();
+    }
+
+    /**
+     * The mean and sample variance of a score across the folds.
+     */
+    public static class Statistic {
+
+        private final int count;
+        private final double mean;
+        private final double variance;
+
+        /**
+         * @param count the number of folds the score is defined in
+         * @param mean the mean score
+         * @param variance the sample variance of the score
+         */
+        private Statistic(int count, double mean, double variance) {
+            this.count = count;
+            this.mean = mean;
+            this.variance = variance;
+        }
+
+        /**
+         * @param values the score of each fold, NaN when undefined
+         * @return the statistic of the defined values
+         */
+        static Statistic of(double[] values) {
+            int count = 0;
+            double sum = 0.0;
+            for (double value : values) {
+                if (!Double.isNaN(value)) {
+                    count++;
+                    sum += value;
+                }
+            }
+            if (count == 0) {
+                return new Statistic(0, Double.NaN, Double.NaN);
+            }
+            double mean = sum / count;
+            double squares = 0.0;
+            for (double value : values) {
+                if (!Double.isNaN(value)) {
+                    squares += (value - mean) * (value - mean);
+                }
+            }
+            return new Statistic(count, mean, count > 1 ? squares / (count - 1) : 0.0);
+        }
+
+        /**
+         * @return the number of folds the score is defined in
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * @return the mean score
+         */
+        public double getMean() {
+            return mean;
+        }
+
+        /**
+         * @return the sample variance of the score
+         */
+        public double getVariance() {
+            return variance;
+        }
+
+        /**
+         * @return the sample standard deviation of the score
+         */
+        public double getStandardDeviation() {
+            return Math.sqrt(variance);
+        }
+
+        /* (non-Javadoc)
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            return CategoryAccuracy.toPercentage(mean) + " +/- " + CategoryAccuracy.toPercentage(getStandardDeviation());
+        }
+    }
+}
@@ -15,25 +15,42 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import org.alvearie.dream.intent.nlp.Experiment;
 import org.alvearie.dream.intent.nlp.classification.Classification;
 import org.alvearie.dream.intent.nlp.classification.Classifier;
+import org.alvearie.dream.intent.nlp.classification.classifiers.CascadeClassifier;
 import org.alvearie.dream.intent.nlp.classification.gt.io.CSVGroundTruthReader;
 import org.alvearie.dream.intent.nlp.classification.gt.io.GroundTruthReader;
+import org.alvearie.dream.intent.nlp.classification.gt.io.SamplingGroundTruthReader;
+import org.alvearie.dream.intent.nlp.text.Configuration;
 import org.alvearie.dream.intent.nlp.text.Document;
+import org.alvearie.dream.intent.nlp.text.ParallelExecutor;
 
 /**
  * The {@link GroundTruther} is a class used to test the accuracy of a {@link Classifier}.
  * <p>
  * It uses an existing GT file, and randomly selects a certain percentage of it as trainig vs. test data, it then trains
  * a classifier and calculates accuracy scores.
+ * <p>
+ * With {@link #setFolds(int)} it runs a k-fold cross-validation instead: the GT is split into k stratified folds, and k
+ * classifiers are each trained on all the folds but one and tested on the remaining one. The folds are trained and tested
+ * concurrently, each with its own {@link Configuration} and classifier instance, and the results are reported as the mean
+ * and variance of the scores across the folds, see {@link CrossValidationResults}.
  *
  */
 public class GroundTruther {
@@ -53,6 +70,10 @@ public class GroundTruther {
     private ConfusionMatrix confusionMatrix;
     private InputStream groundTruthInputStream;
     private double minThreshold = 0.0;
+    private int folds = 1;
+    private Configuration configuration;
+    private CrossValidationResults crossValidationResults;
+    private Experiment experiment;
 
     /**
      * Creates a new {@link GroundTruther} over the following ground truth CSV and classifier.
@@ -99,37 +120,213 @@ public class GroundTruther {
      *         or unmappable byte sequence is read
      */
     public void run() throws IOException {
-        GroundTruthReader reader = new CSVGroundTruthReader(groundTruthInputStream);
+        GroundTruthReader reader = new SamplingGroundTruthReader(new CSVGroundTruthReader(groundTruthInputStream), getConfiguration());
         Map<String, Collection<Document>> trainData = reader.read();
         if (classifier.isTrained()) {
             save("TestData.csv", trainData);
             confusionMatrix = new ConfusionMatrix(trainData.keySet());
-            testClassifier(trainData);
+            testClassifier(classifier, trainData, confusionMatrix, getExperiment());
+        } else if (folds > 1) {
+            crossValidate(trainData);
         } else {
             Map<String, Collection<Document>> testData = splitTrainingAndTest(trainData);
+            // The cascade threshold is tuned on data held out of the training data, so that the test data stays unseen
+            Map<String, Collection<Document>> validationData = classifier instanceof CascadeClassifier ? splitTrainingAndTest(trainData) : null;
             save("TrainingData.csv", trainData);
             save("TestData.csv", testData);
+            if (validationData != null) {
+                save("ValidationData.csv", validationData);
+            }
 
             confusionMatrix = new ConfusionMatrix(trainData.keySet());
             classifier.train(trainData);
-            testClassifier(testData);
+            if (validationData != null) {
+                tuneCascade((CascadeClassifier) classifier, validationData, getExperiment());
+            }
+            testClassifier(classifier, testData, confusionMatrix, getExperiment());
         }
         reportResults(trainData);
     }
 
+    /**
+     * Runs a k-fold cross-validation of the ground truth: the folds are trained and tested concurrently, on at most as many
+     * threads as the parallelism of the configuration, each fold running its parallel work on its own
+     * {@link ParallelExecutor} with its share of the parallelism, and the confusion matrix of each fold is merged into the
+     * {@link CrossValidationResults}. The confusion matrix of this {@link GroundTruther} becomes the pooled matrix of all
+     * the folds.
+     *
+     * @param groundTruth the ground truth
+     */
+    private void crossValidate(Map<String, Collection<Document>> groundTruth) {
+        Configuration baseConfiguration = getConfiguration();
+        Map<String, List<Document>> shuffledGroundTruth = shuffle(groundTruth);
+        Experiment experiment = getExperiment();
+        int threads = Math.max(1, Math.min(folds, baseConfiguration.getParallelism()));
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "cross-validation-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.nanoTime();
+        try {
+            List<Future<ConfusionMatrix>> futures = new ArrayList<>();
+            for (int fold = 0; fold < folds; fold++) {
+                int testFold = fold;
+                // Each fold gets its own configuration and executor, with its share of the cores for the work within the fold
+                Configuration foldConfiguration = baseConfiguration.copy();
+                foldConfiguration.setParallelism(Math.max(1, baseConfiguration.getParallelism() / threads));
+                futures.add(executor.submit(() -> ParallelExecutor.callWith(foldConfiguration.getParallelism(),
+                        () -> runFold(testFold, shuffledGroundTruth, foldConfiguration, experiment))));
+            }
+            List<ConfusionMatrix> foldMatrices = new ArrayList<>();
+            for (Future<ConfusionMatrix> future : futures) {
+                foldMatrices.add(future.get());
+            }
+            crossValidationResults = new CrossValidationResults(foldMatrices, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            confusionMatrix = crossValidationResults.getPooled();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while cross-validating the classifier.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not cross-validate the classifier.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Trains a new classifier on all the folds but the given one, and tests it on the given fold.
+     *
+     * @param testFold the index of the fold to test on
+     * @param shuffledGroundTruth the shuffled ground truth, see {@link #shuffle(Map)}
+     * @param foldConfiguration the configuration of the fold's classifier
+     * @param experiment the current experiment, in which the fold's data is saved in a sub-directory, or null
+     * @return the confusion matrix of the fold
+     * @throws Exception if the fold's classifier cannot be trained or tested
+     */
+    private ConfusionMatrix runFold(int testFold, Map<String, List<Document>> shuffledGroundTruth, Configuration foldConfiguration, Experiment experiment)
+            throws Exception {
+        Map<String, Collection<Document>> trainData = new HashMap<>();
+        Map<String, Collection<Document>> testData = new HashMap<>();
+        for (Entry<String, List<Document>> entry : shuffledGroundTruth.entrySet()) {
+            List<Document> documents = entry.getValue();
+            List<Document> trainDocuments = new ArrayList<>();
+            List<Document> testDocuments = new ArrayList<>();
+            for (int i = 0; i < documents.size(); i++) {
+                // Documents are processed in place, so each fold works on its own copies
+                Document copy = new Document(documents.get(i).getId(), documents.get(i).getOriginalText());
+                // Categories with a single document are always trained on, as in the single split
+                if (documents.size() > 1 && i % folds == testFold) {
+                    testDocuments.add(copy);
+                } else {
+                    trainDocuments.add(copy);
+                }
+            }
+            trainData.put(entry.getKey(), trainDocuments);
+            if (!testDocuments.isEmpty()) {
+                testData.put(entry.getKey(), testDocuments);
+            }
+        }
+
+        Classifier foldClassifier = createClassifier(foldConfiguration);
+        Map<String, Collection<Document>> validationData = foldClassifier instanceof CascadeClassifier ? splitTrainingAndTest(trainData) : null;
+        Experiment foldExperiment = experiment == null ? null : experiment.createSubExperiment("fold-" + (testFold + 1), foldConfiguration);
+        if (foldExperiment != null) {
+            foldExperiment.saveObject("Configuration.ser", foldConfiguration, true);
+            foldExperiment.saveObject("TrainingData.csv", toCSV(trainData), false);
+            foldExperiment.saveObject("TestData.csv", toCSV(testData), false);
+            if (validationData != null) {
+                foldExperiment.saveObject("ValidationData.csv", toCSV(validationData), false);
+            }
+        }
+        Callable<ConfusionMatrix> fold = () -> {
+            foldClassifier.train(trainData);
+            if (validationData != null) {
+                tuneCascade((CascadeClassifier) foldClassifier, validationData, foldExperiment);
+            }
+            ConfusionMatrix foldMatrix = new ConfusionMatrix(shuffledGroundTruth.keySet());
+            testClassifier(foldClassifier, testData, foldMatrix, foldExperiment);
+            return foldMatrix;
+        };
+        // What the classifier saves to the current experiment goes to the fold's sub-experiment
+        return foldExperiment == null ? fold.call() : Experiment.callWith(foldExperiment, fold);
+    }
+
+    /**
+     * Creates a new instance of the classifier's class for a fold.
+     *
+     * @param foldConfiguration the configuration of the new classifier
+     * @return the new, untrained, classifier
+     * @throws IllegalArgumentException if the classifier cannot be created from a {@link Configuration}
+     */
+    private Classifier createClassifier(Configuration foldConfiguration) {
+        try {
+            return classifier.getClass().getConstructor(Configuration.class).newInstance(foldConfiguration);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Classifier " + classifier.getClass().getName() + " cannot be cross-validated, it requires a public constructor taking a Configuration.", e);
+        }
+    }
+
+    /**
+     * Shuffles the documents of each category of the given ground truth with the current seed. In a cross-validation, the
+     * i-th shuffled document of each category is tested in fold i mod k, so that each fold has the same proportion of
+     * each category.
+     *
+     * @param groundTruth the ground truth
+     * @return the shuffled documents of each category
+     */
+    private Map<String, List<Document>> shuffle(Map<String, Collection<Document>> groundTruth) {
+        Map<String, List<Document>> shuffledGroundTruth = new HashMap<>();
+        for (Entry<String, Collection<Document>> entry : groundTruth.entrySet()) {
+            List<Document> documents = new ArrayList<>(entry.getValue());
+            Collections.shuffle(documents, new Random(seed));
+            shuffledGroundTruth.put(entry.getKey(), documents);
+        }
+        return shuffledGroundTruth;
+    }
+
+    /**
+     * @return the configuration given to this {@link GroundTruther}, or else the configuration of its experiment, or else
+     *         the default configuration
+     */
+    private Configuration getConfiguration() {
+        if (configuration != null) {
+            return configuration;
+        }
+        return getExperiment() != null ? getExperiment().getConfiguration() : Configuration.getDefault();
+    }
+
+    /**
+     * @return the experiment given to this {@link GroundTruther}, or else the current experiment, or null
+     */
+    private Experiment getExperiment() {
+        return experiment != null ? experiment : Experiment.getCurrentExperiment();
+    }
+
     /**
      * Serialize a map of intent to document collections
      *
      * @param fileName
      * @param data
      */
-    private static void save(String fileName, Map<String, Collection<Document>> data) {
+    private void save(String fileName, Map<String, Collection<Document>> data) {
+        if (getExperiment() != null) {
+            getExperiment().saveObject(fileName, toCSV(data), false);
+        }
+    }
+
+    /**
+     * @param data a map of intent to document collections
+     * @return the data in the ground truth CSV format
+     */
+    private static String toCSV(Map<String, Collection<Document>> data) {
         StringBuilder sb = new StringBuilder();
         for (Entry<String, Collection<Document>> entry : data.entrySet()) {
             String intent = entry.getKey();
             sb.append(entry.getValue().stream().map(d -> "\"" + d.getOriginalText() + "\"," + intent).collect(Collectors.joining("\n")));
         }
-        Experiment.save(fileName, sb.toString());
+        return sb.toString();
     }
 
     /**
@@ -158,27 +355,57 @@ public class GroundTruther {
                 .forEach(r -> report.append(r + "\n"));
 
         report.append("\nOverall F1: " + CategoryAccuracy.toPercentage(confusionMatrix.getOverallF1()) + "\n");
+        if (crossValidationResults != null) {
+            report.append("\n" + crossValidationResults);
+        }
         System.out.println(report.toString());
-        if (Experiment.getCurrentExperiment() != null) {
-            Experiment.getCurrentExperiment().log("\n\n" + report.toString() + "\n\n");
+        if (getExperiment() != null) {
+            getExperiment().log("\n\n" + report.toString() + "\n\n");
+        }
+    }
+
+    /**
+     * Chooses the threshold of a cascade classifier on validation data held out of its training data and reports the
+     * latency saved against the F1 lost by each threshold.
+     *
+     * @param cascade the trained cascade classifier
+     * @param validationData the validation data, disjoint from the training and the test data
+     * @param experiment the experiment to log the report to, or null
+     */
+    private void tuneCascade(CascadeClassifier cascade, Map<String, Collection<Document>> validationData, Experiment experiment) {
+        CascadeClassifier.Tuning tuning = cascade.tune(validationData);
+        String report = "\nCascade threshold report for " + cascade.getFirst().getClass().getSimpleName() + " -> " + cascade.getSecond().getClass().getSimpleName()
+                + " (chosen threshold=" + cascade.getThreshold() + "):\n" + tuning;
+        System.out.println(report);
+        if (experiment != null) {
+            experiment.log("\n\n" + report + "\n\n");
         }
     }
 
     /**
      * Runs the classifier on the test data, and generates the confusion matrix
      *
+     * @param classifier the trained classifier
      * @param testData the test data
+     * @param confusionMatrix the confusion matrix to register the results in
+     * @param experiment the experiment to log the misclassifications to, or null
      */
-    private void testClassifier(Map<String, Collection<Document>> testData) {
+    private void testClassifier(Classifier classifier, Map<String, Collection<Document>> testData, ConfusionMatrix confusionMatrix, Experiment experiment) {
         StringBuilder output = new StringBuilder();
         output.append("\nRunning test criteria through the classifier...\n");
         Set<Entry<String, Collection<Document>>> testDataEntrySet = testData.entrySet();
+        // Classify all the test documents together, then go through the results in the same order
+        List<Document> allTestDocuments = new ArrayList<>();
+        for (Entry<String, Collection<Document>> testDataEntry : testDataEntrySet) {
+            allTestDocuments.addAll(testDataEntry.getValue());
+        }
+        Iterator<List<Classification>> allResults = classifier.classifyAll(allTestDocuments).iterator();
         int skipped = 0;
         for (Entry<String, Collection<Document>> testDataEntry : testDataEntrySet) {
             String expectedCategory = testDataEntry.getKey();
             Collection<Document> testDocuments = testDataEntry.getValue();
             for (Document document : testDocuments) {
-                List<Classification> results = classifier.classify(document);
+                List<Classification> results = allResults.next();
                 Classification topResult = results.get(0);
                 String actualCategory = topResult.getCategory();
                 if (topResult.getProbability() <= minThreshold) {
@@ -220,8 +447,8 @@ public class GroundTruther {
         }
         output.append("Finished testing the classifier (minThreshold=" + minThreshold + ", skipped=" + skipped + ").\n");
         System.out.println(output.toString());
-        if (Experiment.getCurrentExperiment() != null) {
-            Experiment.getCurrentExperiment().log("\n\n" + output.toString() + "\n\n");
+        if (experiment != null) {
+            experiment.log("\n\n" + output.toString() + "\n\n");
         }
     }
 
@@ -264,6 +491,47 @@ public class GroundTruther {
         return confusionMatrix;
     }
 
+    /**
+     * @return the results of the last cross-validation, or null if the last run was not a cross-validation
+     */
+    public CrossValidationResults getCrossValidationResults() {
+        return crossValidationResults;
+    }
+
+    /**
+     * Sets the number of folds of the cross-validation run by {@link #run()}. With one fold, the default, the ground truth
+     * is split once into training and test data instead. Folds are only used if the classifier is not trained yet.
+     *
+     * @param folds the number of folds
+     * @throws IllegalArgumentException if the number of folds is not positive
+     */
+    public void setFolds(int folds) {
+        if (folds < 1) {
+            throw new IllegalArgumentException("The number of folds must be positive.");
+        }
+        this.folds = folds;
+    }
+
+    /**
+     * Sets the configuration the classifier of each fold of a cross-validation is created with. Each fold gets a copy of
+     * it. Defaults to the configuration of the current experiment, or the default configuration.
+     *
+     * @param configuration the configuration
+     */
+    public void setConfiguration(Configuration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * Sets the experiment the data and reports of this {@link GroundTruther} are saved to, instead of the current
+     * experiment, e.g. to evaluate several classifiers concurrently.
+     *
+     * @param experiment the experiment
+     */
+    public void setExperiment(Experiment experiment) {
+        this.experiment = experiment;
+    }
+
     /**
      * Change the random seed used for this GroundTruther
      *
@@ -0,0 +1,551 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.classification.gt;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+import org.alvearie.dream.intent.nlp.Experiment;
+import org.alvearie.dream.intent.nlp.classification.Classifier;
+import org.alvearie.dream.intent.nlp.classification.gt.io.CSVGroundTruthReader;
+import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.alvearie.dream.intent.nlp.text.ParallelExecutor;
+import org.alvearie.dream.intent.nlp.text.processors.PreprocessingCache;
+import org.apache.log4j.Logger;
+
+/**
+ * A hyperparameter sweep evaluates a classifier with the {@link GroundTruther} over a grid, or a random sample of a
+ * grid, of {@link Configuration} settings, and ranks the candidate configurations by F1.
+ * <p>
+ * The parameters are declared with the {@link Configuration} setter they change, e.g.
+ * {@code addParameter("numberOfTrees", Configuration::setNumberOfTrees, Arrays.asList(50, 100, 200))}, and each
+ * candidate gets its own copy of the base configuration with its values set.
+ * <p>
+ * Normalizing, tokenizing and counting the n-grams of the ground truth only depends on the text settings of a
+ * configuration, so all the candidates share a {@link PreprocessingCache}: before the candidates are run, the ground
+ * truth is preprocessed once for each distinct set of text settings, and the candidates then read the preprocessed
+ * documents from the cache. The candidates are evaluated concurrently on at most as many threads as the parallelism of
+ * the base configuration, each candidate running its parallel work on its own {@link ParallelExecutor} with its share of
+ * the parallelism.
+ * <p>
+ * When an experiment is given, each candidate is saved in a {@code candidate-N} sub-experiment and the ranked
+ * leaderboard is saved as {@value #LEADERBOARD_FILE}.
+ *
+ */
+public class HyperparameterSweep {
+
+    private static final Logger LOGGER = Logger.getLogger(HyperparameterSweep.class.getName());
+
+    /**
+     * The name of the leaderboard file saved in the experiment directory.
+     */
+    public static final String LEADERBOARD_FILE = "Leaderboard.txt";
+
+    /**
+     * The name of the preprocessing cache directory created in the experiment directory when the base configuration does
+     * not have one.
+     */
+    private static final String PREPROCESSING_CACHE_DIRECTORY = "preprocessing-cache";
+
+    private final byte[] groundTruth;
+    private final Configuration baseConfiguration;
+    private final List<Parameter<?>> parameters = new ArrayList<>();
+    private Experiment experiment;
+    private int folds = 1;
+    private int seed = 23;
+
+    /**
+     * Creates a {@link HyperparameterSweep} over the given ground truth.
+     *
+     * @param groundTruth the contents of the ground truth CSV, read once for every candidate
+     * @param baseConfiguration the configuration the candidates are copied from
+     */
+    public HyperparameterSweep(byte[] groundTruth, Configuration baseConfiguration) {
+        this.groundTruth = groundTruth;
+        this.baseConfiguration = baseConfiguration;
+    }
+
+    /**
+     * Creates a {@link HyperparameterSweep} over the given ground truth file.
+     *
+     * @param groundTruthFile the ground truth CSV file
+     * @param baseConfiguration the configuration the candidates are copied from
+     * @throws IOException if the file cannot be read
+     */
+    public HyperparameterSweep(File groundTruthFile, Configuration baseConfiguration) throws IOException {
+        this(Files.readAllBytes(groundTruthFile.toPath()), baseConfiguration);
+    }
+
+    /**
+     * Adds a parameter to sweep over.
+     *
+     * @param name the name of the parameter, used in the leaderboard
+     * @param setter the {@link Configuration} setter of the parameter
+     * @param values the values to try
+     * @return this sweep
+     * @throws IllegalArgumentException if there are no values
+     */
+    public <T> HyperparameterSweep addParameter(String name, BiConsumer<Configuration, T> setter, List<T> values) {
+        if (values.isEmpty()) {
+            throw new IllegalArgumentException("At least one value is required for parameter " + name + ".");
+        }
+        parameters.add(new Parameter<>(name, setter, values));
+        return this;
+    }
+
+    /**
+     * @return every combination of the parameter values
+     */
+    public List<Candidate> grid() {
+        List<Candidate> candidates = new ArrayList<>();
+        candidates.add(new Candidate(Collections.emptyList()));
+        for (Parameter<?> parameter : parameters) {
+            List<Candidate> extendedCandidates = new ArrayList<>();
+            for (Candidate candidate : candidates) {
+                for (int i = 0; i < parameter.values.size(); i++) {
+                    List<Integer> valueIndices = new ArrayList<>(candidate.valueIndices);
+                    valueIndices.add(i);
+                    extendedCandidates.add(new Candidate(valueIndices));
+                }
+            }
+            candidates = extendedCandidates;
+        }
+        return candidates;
+    }
+
+    /**
+     * Draws distinct combinations of the parameter values at random, for grids too large to evaluate completely.
+     *
+     * @param count the number of candidates to draw, capped at the size of the grid
+     * @param randomSeed the seed of the draw
+     * @return the candidates
+     */
+    public List<Candidate> random(int count, long randomSeed) {
+        long gridSize = 1;
+        for (Parameter<?> parameter : parameters) {
+            gridSize *= parameter.values.size();
+        }
+        Random random = new Random(randomSeed);
+        Set<List<Integer>> drawn = new LinkedHashSet<>();
+        while (drawn.size() < Math.min(count, gridSize)) {
+            List<Integer> valueIndices = new ArrayList<>();
+            for (Parameter<?> parameter : parameters) {
+                valueIndices.add(random.nextInt(parameter.values.size()));
+            }
+            drawn.add(valueIndices);
+        }
+        return drawn.stream().map(Candidate::new).collect(Collectors.toList());
+    }
+
+    /**
+     * Evaluates the given candidates and ranks them by F1.
+     *
+     * @param candidates the candidates, see {@link #grid()} and {@link #random(int, long)}
+     * @return the results of the candidates, from the highest F1 to the lowest, with failed candidates last
+     * @throws IOException if the ground truth cannot be read
+     */
+    public List<Result> run(List<Candidate> candidates) throws IOException {
+        File cacheDirectory = getPreprocessingCacheDirectory();
+        int threads = Math.max(1, Math.min(candidates.size(), baseConfiguration.getParallelism()));
+        List<Configuration> configurations = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            Configuration configuration = candidate.apply(baseConfiguration);
+            configuration.setPreprocessingCacheDirectory(cacheDirectory.getAbsolutePath());
+            // Each candidate gets its share of the cores, and its own executor of that size, for the work within the candidate
+            configuration.setParallelism(Math.max(1, baseConfiguration.getParallelism() / threads));
+            configurations.add(configuration);
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "hyperparameter-sweep-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            warmPreprocessingCache(cacheDirectory, configurations, executor);
+            List<Future<Result>> futures = new ArrayList<>();
+            for (int i = 0; i < candidates.size(); i++) {
+                int index = i;
+                futures.add(executor.submit(() -> ParallelExecutor.callWith(configurations.get(index).getParallelism(),
+                        () -> evaluate(index, candidates.get(index), configurations.get(index)))));
+            }
+            List<Result> results = new ArrayList<>();
+            for (Future<Result> future : futures) {
+                results.add(future.get());
+            }
+            results.sort(Result.getF1Comparator());
+            if (experiment != null) {
+                experiment.saveObject(LEADERBOARD_FILE, toLeaderboard(results), true);
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running the hyperparameter sweep.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not run the hyperparameter sweep.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Preprocesses the ground truth once for each distinct set of text settings of the given configurations, so that the
+     * candidates only read the preprocessed documents from the cache.
+     *
+     * @param cacheDirectory the preprocessing cache directory
+     * @param configurations the configurations of the candidates
+     * @param executor the executor to preprocess on
+     * @throws IOException if the ground truth cannot be read
+     * @throws InterruptedException if interrupted while waiting for the preprocessing
+     * @throws ExecutionException if the preprocessing fails
+     */
+    private void warmPreprocessingCache(File cacheDirectory, List<Configuration> configurations, ExecutorService executor)
+            throws IOException, InterruptedException, ExecutionException {
+        Map<String, Configuration> textSettings = new LinkedHashMap<>();
+        for (Configuration configuration : configurations) {
+            textSettings.putIfAbsent(PreprocessingCache.fingerprint(configuration), configuration);
+        }
+        List<Future<?>> futures = new ArrayList<>();
+        for (Configuration configuration : textSettings.values()) {
+            List<Document> documents = new ArrayList<>();
+            for (Collection<Document> categoryDocuments : readGroundTruth().values()) {
+                documents.addAll(categoryDocuments);
+            }
+            futures.add(executor.submit(() -> ParallelExecutor.callWith(configuration.getParallelism(),
+                    () -> new PreprocessingCache(cacheDirectory, configuration).preprocess(documents))));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        LOGGER.info("Preprocessed the ground truth for " + textSettings.size() + " text settings shared by " + configurations.size() + " candidates.");
+    }
+
+    /**
+     * Evaluates a candidate with the {@link GroundTruther}.
+     *
+     * @param index the index of the candidate
+     * @param candidate the candidate
+     * @param configuration the configuration of the candidate
+     * @return the result of the candidate, failed if its classifier could not be created, trained or tested
+     */
+    private Result evaluate(int index, Candidate candidate, Configuration configuration) {
+        long start = System.nanoTime();
+        try {
+            Classifier classifier = configuration.getClassifierClass().getConstructor(Configuration.class).newInstance(configuration);
+            GroundTruther groundTruther = new GroundTruther(new ByteArrayInputStream(groundTruth), classifier);
+            groundTruther.setConfiguration(configuration);
+            groundTruther.setFolds(folds);
+            groundTruther.setSeed(seed);
+            Experiment candidateExperiment = null;
+            if (experiment != null) {
+                candidateExperiment = experiment.createSubExperiment("candidate-" + (index + 1), configuration);
+                candidateExperiment.saveObject("Configuration.ser", configuration, true);
+                candidateExperiment.saveObject("Candidate.txt", candidate.toString(), true);
+                groundTruther.setExperiment(candidateExperiment);
+            }
+            if (candidateExperiment == null) {
+                groundTruther.run();
+            } else {
+                // What the classifier saves to the current experiment goes to the candidate's sub-experiment
+                Experiment.callWith(candidateExperiment, () -> {
+                    groundTruther.run();
+                    return null;
+                });
+            }
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            CrossValidationResults crossValidationResults = groundTruther.getCrossValidationResults();
+            if (crossValidationResults != null) {
+                CrossValidationResults.Statistic f1 = crossValidationResults.getOverallF1();
+                return new Result(candidate, configuration, f1.getMean(), f1.getStandardDeviation(), elapsed, null);
+            }
+            return new Result(candidate, configuration, groundTruther.getConfusionMatrix().getOverallF1(), Double.NaN, elapsed, null);
+        } catch (InvocationTargetException e) {
+            return failed(candidate, configuration, start, e.getCause());
+        } catch (Exception e) {
+            return failed(candidate, configuration, start, e);
+        }
+    }
+
+    /**
+     * @param candidate the candidate
+     * @param configuration the configuration of the candidate
+     * @param start the start of the evaluation, in nanoseconds
+     * @param error the reason the candidate failed
+     * @return the result of a failed candidate
+     */
+    private static Result failed(Candidate candidate, Configuration configuration, long start, Throwable error) {
+        LOGGER.warn("Candidate " + candidate + " failed.", error);
+        return new Result(candidate, configuration, Double.NaN, Double.NaN, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), String.valueOf(error));
+    }
+
+    /**
+     * @return the ground truth
+     * @throws IOException if the ground truth cannot be read
+     */
+    private Map<String, Collection<Document>> readGroundTruth() throws IOException {
+        return new CSVGroundTruthReader(new ByteArrayInputStream(groundTruth)).read();
+    }
+
+    /**
+     * @return the preprocessing cache directory of the base configuration, or else one in the experiment directory, or
+     *         else a temporary one
+     * @throws IOException if the temporary directory cannot be created
+     */
+    private File getPreprocessingCacheDirectory() throws IOException {
+        if (baseConfiguration.getPreprocessingCacheDirectory() != null) {
+            return new File(baseConfiguration.getPreprocessingCacheDirectory());
+        }
+        if (experiment != null) {
+            return new File(experiment.getExperimentDirectory(), PREPROCESSING_CACHE_DIRECTORY);
+        }
+        return Files.createTempDirectory(PREPROCESSING_CACHE_DIRECTORY).toFile();
+    }
+
+    /**
+     * @param results the ranked results
+     * @return the leaderboard report
+     */
+    static String toLeaderboard(List<Result> results) {
+        StringBuilder leaderboard = new StringBuilder();
+        leaderboard.append(String.format("%-6s%-20s%-10s%s%n", "Rank", "F1", "Time", "Candidate"));
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i);
+            String f1 = CategoryAccuracy.toPercentage(result.getF1());
+            if (!Double.isNaN(result.getF1StandardDeviation())) {
+                f1 += " +/- " + CategoryAccuracy.toPercentage(result.getF1StandardDeviation());
+            }
+            leaderboard.append(String.format("%-6d%-20s%-10s%s", i + 1, f1, result.getMillis() + " ms", result.getCandidate()));
+            if (result.getError() != null) {
+                leaderboard.append(" FAILED: " + result.getError());
+            }
+            leaderboard.append(String.format("%n"));
+        }
+        return leaderboard.toString();
+    }
+
+    /**
+     * Sets the experiment the candidates and the leaderboard are saved to.
+     *
+     * @param experiment the experiment
+     */
+    public void setExperiment(Experiment experiment) {
+        this.experiment = experiment;
+    }
+
+    /**
+     * Sets the number of folds of the cross-validation of each candidate, see {@link GroundTruther#setFolds(int)}. With
+     * one fold, the default, each candidate is evaluated on a single training/test split.
+     *
+     * @param folds the number of folds
+     */
+    public void setFolds(int folds) {
+        if (folds < 1) {
+            throw new IllegalArgumentException("The number of folds must be positive.");
+        }
+        this.folds = folds;
+    }
+
+    /**
+     * Sets the seed used to split the ground truth, the same for all the candidates so that they are evaluated on the same
+     * data.
+     *
+     * @param seed the seed
+     */
+    public void setSeed(int seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * A parameter to sweep over.
+     *
+     * @param <T> the type of the parameter values
+     */
+    private static class Parameter<T> {
+
+        private final String name;
+        private final BiConsumer<Configuration, T> setter;
+        private final List<T> values;
+
+        /**
+         * @param name the name of the parameter
+         * @param setter the {@link Configuration} setter of the parameter
+         * @param values the values to try
+         */
+        private Parameter(String name, BiConsumer<Configuration, T> setter, List<T> values) {
+            this.name = name;
+            this.setter = setter;
+            this.values = new ArrayList<>(values);
+        }
+
+        /**
+         * @param configuration the configuration to change
+         * @param valueIndex the index of the value to set
+         */
+        private void apply(Configuration configuration, int valueIndex) {
+            setter.accept(configuration, values.get(valueIndex));
+        }
+
+        /**
+         * @param valueIndex the index of a value
+         * @return the value, classes by their simple name
+         */
+        private String format(int valueIndex) {
+            Object value = values.get(valueIndex);
+            return value instanceof Class ? ((Class<?>) value).getSimpleName() : String.valueOf(value);
+        }
+    }
+
+    /**
+     * A combination of parameter values to evaluate.
+     */
+    public class Candidate {
+
+        private final List<Integer> valueIndices;
+
+        /**
+         * @param valueIndices the index of the value of each parameter
+         */
+        private Candidate(List<Integer> valueIndices) {
+            this.valueIndices = valueIndices;
+        }
+
+        /**
+         * @param configuration the base configuration
+         * @return a copy of the base configuration with the values of this candidate
+         */
+        public Configuration apply(Configuration configuration) {
+            Configuration candidateConfiguration = configuration.copy();
+            for (int i = 0; i < valueIndices.size(); i++) {
+                parameters.get(i).apply(candidateConfiguration, valueIndices.get(i));
+            }
+            return candidateConfiguration;
+        }
+
+        /**
+         * @return the value of each parameter, by parameter name
+         */
+        public Map<String, String> getValues() {
+            Map<String, String> values = new LinkedHashMap<>();
+            for (int i = 0; i < valueIndices.size(); i++) {
+                values.put(parameters.get(i).name, parameters.get(i).format(valueIndices.get(i)));
+            }
+            return values;
+        }
+
+        /* (non-Javadoc)
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            return getValues().toString();
+        }
+    }
+
+    /**
+     * The result of a candidate.
+     */
+    public static class Result {
+
+        private final Candidate candidate;
+        private final Configuration configuration;
+        private final double f1;
+        private final double f1StandardDeviation;
+        private final long millis;
+        private final String error;
+
+        /**
+         * @param candidate the candidate
+         * @param configuration the configuration of the candidate
+         * @param f1 the overall F1, NaN if the candidate failed
+         * @param f1StandardDeviation the standard deviation of the F1 across the folds, NaN without cross-validation
+         * @param millis the time it took to evaluate the candidate
+         * @param error the reason the candidate failed, or null
+         */
+        private Result(Candidate candidate, Configuration configuration, double f1, double f1StandardDeviation, long millis, String error) {
+            this.candidate = candidate;
+            this.configuration = configuration;
+            this.f1 = f1;
+            this.f1StandardDeviation = f1StandardDeviation;
+            this.millis = millis;
+            this.error = error;
+        }
+
+        /**
+         * Creates a {@link Result} {@link Comparator} that sorts by F1 descending, with NaNs last.
+         *
+         * @return the comparator
+         */
+        static Comparator<Result> getF1Comparator() {
+            return Comparator.comparing((Result result) -> Double.isNaN(result.f1)).thenComparing(result -> -result.f1);
+        }
+
+        /**
+         * @return the candidate
+         */
+        public Candidate getCandidate() {
+            return candidate;
+        }
+
+        /**
+         * @return the configuration of the candidate
+         */
+        public Configuration getConfiguration() {
+            return configuration;
+        }
+
+        /**
+         * @return the overall F1, NaN if the candidate failed
+         */
+        public double getF1() {
+            return f1;
+        }
+
+        /**
+         * @return the standard deviation of the F1 across the folds, NaN without cross-validation
+         */
+        public double getF1StandardDeviation() {
+            return f1StandardDeviation;
+        }
+
+        /**
+         * @return the time it took to evaluate the candidate, in milliseconds
+         */
+        public long getMillis() {
+            return millis;
+        }
+
+        /**
+         * @return the reason the candidate failed, or null
+         */
+        public String getError() {
+            return error;
+        }
+    }
+}
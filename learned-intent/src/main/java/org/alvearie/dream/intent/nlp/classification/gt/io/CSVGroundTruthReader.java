@@ -13,13 +13,16 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
 
-import org.alvearie.dream.intent.nlp.text.Configuration;
 import org.alvearie.dream.intent.nlp.text.Document;
+import org.alvearie.dream.intent.nlp.text.DocumentWithPrediction;
 import org.apache.log4j.Logger;
 
 /**
@@ -72,55 +75,88 @@ public class CSVGroundTruthReader implements GroundTruthReader {
     @Override
     public Map<String, Collection<Document>> read() throws IOException {
         Map<String, Collection<Document>> gt = new HashMap<>();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.isEmpty()) {
-                    continue;
-                }
-                if (line.startsWith("#")) {
-                    System.err.println("Ignoring: " + line);
-                    continue;
-                }
-
-                String columns[] = splitCSVLine(line);
-                // Ignore header row
-                if (columns.length < 2) {
-                    throw new IllegalArgumentException("Ground truth has malformed data. Can't find 2 columns: " + line);
-                }
-                if (columns[0].trim().equalsIgnoreCase(CSV_FILE_HEADER[0]) && columns[1].trim().equalsIgnoreCase(CSV_FILE_HEADER[1])) {
-                        continue;
-                }
-
-                String text = columns[0];
-                String intent =  columns[1];
-
-                if (intent == null) {
-                    LOGGER.error("Entry will be skipped because it is missing the intent:" + line);
-                    continue;
-                }
-                if (text == null) {
-                    LOGGER.error("Entry will be skipped because it is missing the text:" + line);
-                    continue;
-                }
-
-                Collection<Document> gtForCategory = gt.computeIfAbsent(intent.trim(), i -> new ArrayList<Document>());
-                int maxTrainingDataPerClassSize = Configuration.getDefault().getMaxTrainingDataPerClassSize();
-                // Limit the number of training cases per class. This can help quickly evaluate model changes by providing a smaller
-                // train/test set.
-                if (maxTrainingDataPerClassSize > 0 && maxTrainingDataPerClassSize <= gtForCategory.size()) {
-                    continue;
-                }
-                text = text.trim();
-                if (text.startsWith("\"") && text.endsWith("\"")) {
-                    text = text.substring(1, text.length() - 1);
-                }
-                gtForCategory.add(new Document(text.trim()));
-            }
+        try (Stream<String[]> entries = entries()) {
+            entries.forEach(entry -> gt.computeIfAbsent(entry[1], i -> new ArrayList<Document>()).add(new Document(entry[0])));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
         return gt;
     }
 
+    /**
+     * Lazily reads the ground truth CSV line by line, the whole file is never held in memory.
+     *
+     * @see org.alvearie.dream.intent.nlp.classification.gt.io.GroundTruthReader#stream()
+     */
+    @Override
+    public Stream<DocumentWithPrediction> stream() throws IOException {
+        return entries().map(entry -> new DocumentWithPrediction(null, entry[0], entry[1]));
+    }
+
+    /**
+     * Lazily parses the ground truth CSV into (text, intent) pairs, skipping comments and the header row. The number of
+     * entries per intent can be limited with a {@link SamplingGroundTruthReader}.
+     *
+     * @return the stream of (text, intent) pairs
+     */
+    private Stream<String[]> entries() {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
+        return reader.lines()
+                .map(line -> parse(line))
+                .filter(Objects::nonNull)
+                .onClose(() -> {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    /**
+     * Parses a single line of the ground truth CSV.
+     *
+     * @param line the line
+     * @return the (text, intent) pair or null if the line should be skipped
+     * @throws IllegalArgumentException if the line does not have 2 columns
+     */
+    private static String[] parse(String line) {
+        if (line.isEmpty()) {
+            return null;
+        }
+        if (line.startsWith("#")) {
+            System.err.println("Ignoring: " + line);
+            return null;
+        }
+
+        String columns[] = splitCSVLine(line);
+        // Ignore header row
+        if (columns.length < 2) {
+            throw new IllegalArgumentException("Ground truth has malformed data. Can't find 2 columns: " + line);
+        }
+        if (columns[0].trim().equalsIgnoreCase(CSV_FILE_HEADER[0]) && columns[1].trim().equalsIgnoreCase(CSV_FILE_HEADER[1])) {
+            return null;
+        }
+
+        String text = columns[0];
+        String intent = columns[1];
+
+        if (intent == null) {
+            LOGGER.error("Entry will be skipped because it is missing the intent:" + line);
+            return null;
+        }
+        if (text == null) {
+            LOGGER.error("Entry will be skipped because it is missing the text:" + line);
+            return null;
+        }
+
+        text = text.trim();
+        if (text.startsWith("\"") && text.endsWith("\"")) {
+            text = text.substring(1, text.length() - 1);
+        }
+        return new String[] { text.trim(), intent.trim() };
+    }
+
     /**
      * Split a single line into comma-delimited entries, respecting double-quotes as inclusive boundaries
      *
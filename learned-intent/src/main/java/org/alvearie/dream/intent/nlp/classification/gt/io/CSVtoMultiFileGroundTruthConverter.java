@@ -15,6 +15,7 @@ import java.util.Collection;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import org.alvearie.dream.intent.nlp.text.Configuration;
 import org.alvearie.dream.intent.nlp.text.Document;
 
 import java.util.Set;
@@ -56,7 +57,7 @@ public class CSVtoMultiFileGroundTruthConverter implements GroundTruthWriter {
             gtHome.mkdirs();
             System.out.println("GT home directory did not exist and was created: " + gtHome);
         }
-        CSVGroundTruthReader reader = new CSVGroundTruthReader(csvGroundTruth);
+        GroundTruthReader reader = new SamplingGroundTruthReader(new CSVGroundTruthReader(csvGroundTruth), Configuration.getDefault());
         Map<String, Collection<Document>> gt = reader.read();
         Set<Entry<String, Collection<Document>>> gtEntries = gt.entrySet();
         int total = 0;
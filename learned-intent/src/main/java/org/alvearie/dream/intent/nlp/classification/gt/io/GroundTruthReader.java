@@ -8,8 +8,10 @@ package org.alvearie.dream.intent.nlp.classification.gt.io;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import org.alvearie.dream.intent.nlp.text.Document;
+import org.alvearie.dream.intent.nlp.text.DocumentWithPrediction;
 
 /**
  * Reads GT files from a directory.
@@ -26,4 +28,20 @@ public interface GroundTruthReader {
      *         the file or a malformed or unmappable byte sequence is read
      */
     public Map<String, Collection<Document>> read() throws IOException;
+
+    /**
+     * Lazily reads the GT as a stream of {@link DocumentWithPrediction}s, where the prediction is the GT category.
+     * <p>
+     * Implementations backed by large files should override this method so the whole GT is never held in memory. The
+     * default implementation streams over the result of {@link #read()}. The returned stream should be closed after use in
+     * order to release the underlying source.
+     *
+     * @return the stream of GT documents
+     * @throws IOException if an I/O error occurs opening the GT
+     */
+    public default Stream<DocumentWithPrediction> stream() throws IOException {
+        return read().entrySet().stream()
+                .flatMap(entry -> entry.getValue().stream()
+                        .map(document -> new DocumentWithPrediction(document.getId(), document.getOriginalText(), entry.getKey())));
+    }
 }
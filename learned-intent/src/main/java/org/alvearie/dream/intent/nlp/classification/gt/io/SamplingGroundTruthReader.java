@@ -0,0 +1,172 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.alvearie.dream.intent.nlp.classification.gt.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.alvearie.dream.intent.nlp.text.DocumentWithPrediction;
+
+/**
+ * Samples the GT read by another {@link GroundTruthReader}, class by class, so that quick model iterations can train on
+ * representative subsets of the GT.
+ * <p>
+ * Each class is subsampled to a fraction of its documents, at least one, which keeps the class proportions of the GT for
+ * learning curves, and is then capped to a maximum number of documents. The documents kept are drawn at random with a
+ * seed, rather than being the first ones of the GT, and keep their GT order. When only a cap is given, each class is
+ * sampled with a reservoir of the size of the cap while the GT is streamed, so the whole GT is never held in memory.
+ *
+ */
+public class SamplingGroundTruthReader implements GroundTruthReader {
+
+    private final GroundTruthReader reader;
+    private final int maxPerClass;
+    private final double fraction;
+    private final long seed;
+
+    /**
+     * @param reader the reader of the GT to sample
+     * @param maxPerClass the maximum number of documents per class, 0 or less for no maximum
+     * @param fraction the fraction of the documents of each class to keep, 1 to keep them all
+     * @param seed the seed of the sampling
+     * @throws IllegalArgumentException if the fraction is not greater than 0 and at most 1
+     */
+    public SamplingGroundTruthReader(GroundTruthReader reader, int maxPerClass, double fraction, long seed) {
+        if (!(fraction > 0.0 && fraction <= 1.0)) {
+            throw new IllegalArgumentException("The fraction of the GT to keep must be greater than 0 and at most 1: " + fraction);
+        }
+        this.reader = reader;
+        this.maxPerClass = maxPerClass;
+        this.fraction = fraction;
+        this.seed = seed;
+    }
+
+    /**
+     * Samples the GT according to {@link Configuration#getMaxTrainingDataPerClassSize()},
+     * {@link Configuration#getTrainingDataFraction()} and {@link Configuration#getSamplingSeed()}.
+     *
+     * @param reader the reader of the GT to sample
+     * @param configuration the configuration
+     */
+    public SamplingGroundTruthReader(GroundTruthReader reader, Configuration configuration) {
+        this(reader, configuration.getMaxTrainingDataPerClassSize(), configuration.getTrainingDataFraction(), configuration.getSamplingSeed());
+    }
+
+    /**
+     * @return true if this reader keeps every document of the GT
+     */
+    private boolean keepsAll() {
+        return maxPerClass <= 0 && fraction >= 1.0;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.alvearie.dream.intent.nlp.classification.gt.io.GroundTruthReader#read()
+     */
+    @Override
+    public Map<String, Collection<Document>> read() throws IOException {
+        if (keepsAll()) {
+            return reader.read();
+        }
+        Map<String, Collection<Document>> gt = new LinkedHashMap<>();
+        for (Entry<String, List<Sample>> entry : sample().entrySet()) {
+            gt.put(entry.getKey(), entry.getValue().stream().map(sample -> sample.document).collect(Collectors.toCollection(ArrayList::new)));
+        }
+        return gt;
+    }
+
+    /**
+     * Streams the sampled GT in the GT order of each class, one class after the other.
+     *
+     * @see org.alvearie.dream.intent.nlp.classification.gt.io.GroundTruthReader#stream()
+     */
+    @Override
+    public Stream<DocumentWithPrediction> stream() throws IOException {
+        if (keepsAll()) {
+            return reader.stream();
+        }
+        return sample().entrySet().stream()
+                .flatMap(entry -> entry.getValue().stream()
+                        .map(sample -> new DocumentWithPrediction(sample.document.getId(), sample.document.getOriginalText(), entry.getKey())));
+    }
+
+    /**
+     * Samples each class of the GT.
+     *
+     * @return the samples of each class, in GT order, the classes in the order they are first found in the GT
+     * @throws IOException if the GT cannot be read
+     */
+    private Map<String, List<Sample>> sample() throws IOException {
+        Random random = new Random(seed);
+        // The reservoir of each class, or all its documents when subsampling a fraction of them
+        Map<String, List<Sample>> reservoirs = new LinkedHashMap<>();
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        int reservoirSize = fraction < 1.0 || maxPerClass <= 0 ? Integer.MAX_VALUE : maxPerClass;
+        try (Stream<DocumentWithPrediction> documents = reader.stream()) {
+            long[] position = new long[1];
+            documents.forEach(document -> {
+                Sample sample = new Sample(position[0]++, new Document(document.getId(), document.getOriginalText()));
+                List<Sample> reservoir = reservoirs.computeIfAbsent(document.getPrediction(), category -> new ArrayList<>());
+                int count = counts.merge(document.getPrediction(), 1, Integer::sum);
+                if (reservoir.size() < reservoirSize) {
+                    reservoir.add(sample);
+                } else {
+                    int replaced = random.nextInt(count);
+                    if (replaced < reservoirSize) {
+                        reservoir.set(replaced, sample);
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        for (Entry<String, List<Sample>> entry : reservoirs.entrySet()) {
+            List<Sample> samples = entry.getValue();
+            if (fraction < 1.0) {
+                int size = (int) Math.max(1, Math.round(samples.size() * fraction));
+                if (maxPerClass > 0) {
+                    size = Math.min(size, maxPerClass);
+                }
+                Collections.shuffle(samples, random);
+                samples = new ArrayList<>(samples.subList(0, size));
+                entry.setValue(samples);
+            }
+            samples.sort(Comparator.comparingLong(sample -> sample.position));
+        }
+        return reservoirs;
+    }
+
+    /**
+     * A sampled GT document and its position in the GT.
+     */
+    private static class Sample {
+
+        private final long position;
+        private final Document document;
+
+        /**
+         * @param position the position of the document in the GT
+         * @param document the document
+         */
+        Sample(long position, Document document) {
+            this.position = position;
+            this.document = document;
+        }
+    }
+}
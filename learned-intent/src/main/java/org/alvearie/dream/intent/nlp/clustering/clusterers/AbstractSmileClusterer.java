@@ -12,6 +12,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.alvearie.dream.intent.nlp.clustering.Cluster;
 import org.alvearie.dream.intent.nlp.clustering.Clusterer;
@@ -19,6 +20,7 @@ import org.alvearie.dream.intent.nlp.text.Corpus;
 import org.alvearie.dream.intent.nlp.text.Document;
 import org.alvearie.dream.intent.nlp.text.Feature;
 import org.alvearie.dream.intent.nlp.text.FeatureVector;
+import org.alvearie.dream.intent.nlp.text.Utils;
 
 /**
  * A base implementation for the various Smile-based {@link Clusterer}s.
@@ -137,14 +139,10 @@ abstract class AbstractSmileClusterer implements Clusterer {
      * @return the dense vector matrix
      */
     protected double[][] toDenseMatrix(Corpus corpus) {
-        List<FeatureVector> vectors = corpus.getDocuments().stream()
-                .map(document -> {
-                    FeatureVector vector = document.getVector().toDenseVector(corpus.getFeatureSpace());
-                    return vector;
-                })
-                .collect(Collectors.toList());
-
-        double[][] matrix = FeatureVector.toMatrix(vectors);
+        List<Document> documents = corpus.getDocuments();
+        double[][] matrix = new double[documents.size()][];
+        Utils.forEach("cluster", IntStream.range(0, documents.size()).boxed().collect(Collectors.toList()),
+                i -> matrix[i] = documents.get(i).getVector().toDenseVector(corpus.getFeatureSpace()).toArray());
         return matrix;
     }
 
@@ -9,9 +9,16 @@ import java.io.Serializable;
 
 import org.alvearie.dream.intent.nlp.classification.Classifier;
 import org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileMaxEntClassifier;
+import org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileNaiveBayesClassifier;
+import org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileRandomForestClassifier;
+import org.alvearie.dream.intent.nlp.classification.gt.io.SamplingGroundTruthReader;
+import org.alvearie.dream.intent.nlp.text.processors.FeatureSelector;
+import org.apache.commons.lang3.SerializationUtils;
 import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
+import opennlp.tools.ml.naivebayes.NaiveBayesTrainer;
+
 /**
  * This is a collection of Configuration settings
  *
@@ -44,6 +51,10 @@ public class Configuration implements Serializable {
     private Words stopWords;
     private Words breakWords;
     private boolean breakOnSpecialCharacters;
+    private Class<? extends Classifier> cascadeFirstClassifierClass;
+    private double cascadeMaxF1Loss;
+    private Class<? extends Classifier> cascadeSecondClassifierClass;
+    private double cascadeThreshold;
     private int minimumTokenLength;
     private int minimumTokenFrequency;
     private int maximumTokenFrequency;
@@ -53,14 +64,36 @@ public class Configuration implements Serializable {
     private boolean lemmatize;
     private boolean keepDigitPlaceholder;
     private boolean removeParentheticalText;
+    private FeatureSelector.Method featureSelection;
+    private int featureSelectionSize;
     private int featuresPerTree;
     private boolean l2Normalize;
     private double lambda;
     private int maxDecisionTreeNodes;
+    private double maxIDFDrift;
     private int maxTrainingDataPerClassSize;
     private int maxTrainingIterations;
+    private int neuralNetBatchSize;
+    private int neuralNetEpochs;
+    private double neuralNetLearningRate;
+    private int neuralNetPatience;
+    private double neuralNetValidationFraction;
     private int numberOfTrees;
+    private int onlineEpochs;
+    private double onlineLearningRate;
+    private String openNLPAlgorithm;
+    private int openNLPCutoff;
+    private int openNLPIterations;
+    private int openNLPTrainingThreads;
+    private int parallelism;
+    private boolean pipelinedVectorization;
+    private String preprocessingCacheDirectory;
+    private long samplingSeed;
+    private boolean saveTrainingVectors;
     private boolean serialMode;
+    private int sgdEpochs;
+    private double sgdLearningRate;
+    private double trainingDataFraction;
     private double trainingTolerance;
     private Class<? extends Classifier> classifierClass;
     private boolean skipClassificationForGroundTruthEntries;
@@ -74,6 +107,10 @@ public class Configuration implements Serializable {
         allowedWords = new Words();
         breakWords = new Words();
         breakOnSpecialCharacters = true;
+        cascadeFirstClassifierClass = SmileNaiveBayesClassifier.class;
+        cascadeMaxF1Loss = 0.01;
+        cascadeSecondClassifierClass = SmileRandomForestClassifier.class;
+        cascadeThreshold = 0.8;
         minimumTokenLength = 1;
         nGramMinRange = 1;
         nGramMaxRange = 2;
@@ -83,20 +120,52 @@ public class Configuration implements Serializable {
         removeParentheticalText = false;
         minimumTokenFrequency = 2;
         maximumTokenFrequency = Integer.MAX_VALUE;
+        featureSelection = FeatureSelector.Method.CHI_SQUARE;
+        featureSelectionSize = -1;
         featuresPerTree = -1;
         l2Normalize = true;
         lambda = 0.000001;
         maxDecisionTreeNodes = 600;
+        maxIDFDrift = 0.05;
         maxTrainingDataPerClassSize = -1;
         maxTrainingIterations = 1000;
+        neuralNetBatchSize = 0;
+        neuralNetEpochs = 30;
+        neuralNetLearningRate = 1;
+        neuralNetPatience = 3;
+        neuralNetValidationFraction = 0.1;
         numberOfTrees = 50;
+        onlineEpochs = 20;
+        onlineLearningRate = 2;
+        openNLPAlgorithm = NaiveBayesTrainer.NAIVE_BAYES_VALUE;
+        openNLPCutoff = 0;
+        openNLPIterations = 100;
+        openNLPTrainingThreads = 1;
+        parallelism = Runtime.getRuntime().availableProcessors();
+        pipelinedVectorization = false;
+        preprocessingCacheDirectory = null;
+        samplingSeed = 17;
+        saveTrainingVectors = false;
         serialMode = false;
+        sgdEpochs = 20;
+        sgdLearningRate = 1;
+        trainingDataFraction = 1;
         trainingTolerance = .001; // Tested and seems to give just as good accuracy as smaller numbers, but much faster
         classifierClass = SmileMaxEntClassifier.class;
         skipClassificationForGroundTruthEntries = false;
         traceEnabled = false;
     }
 
+    /**
+     * Creates a deep copy of this configuration, which can be changed without affecting this one, e.g. to give each
+     * concurrently trained classifier its own configuration.
+     *
+     * @return a copy of this configuration
+     */
+    public Configuration copy() {
+        return SerializationUtils.clone(this);
+    }
+
     /**
      * @return treat special characters that would normally be removed as indicators of sentence breaks.
      */
@@ -112,6 +181,36 @@ public class Configuration implements Serializable {
         return allowedWords;
     }
 
+    /**
+     * @return the cheap classifier of a cascade, which answers first
+     */
+    public Class<? extends Classifier> getCascadeFirstClassifierClass() {
+        return cascadeFirstClassifierClass;
+    }
+
+    /**
+     * @return the maximum overall F1 loss, compared to the second classifier alone, accepted when tuning the threshold of
+     *         a cascade on held-out data
+     */
+    public double getCascadeMaxF1Loss() {
+        return cascadeMaxF1Loss;
+    }
+
+    /**
+     * @return the expensive classifier of a cascade, which only runs when the first one is not confident enough
+     */
+    public Class<? extends Classifier> getCascadeSecondClassifierClass() {
+        return cascadeSecondClassifierClass;
+    }
+
+    /**
+     * @return the top classification probability of the first classifier of a cascade below which the second classifier
+     *         is run
+     */
+    public double getCascadeThreshold() {
+        return cascadeThreshold;
+    }
+
     /**
      * Get the currently configured Classifier type to use.
      *
@@ -121,6 +220,22 @@ public class Configuration implements Serializable {
         return classifierClass;
     }
 
+    /**
+     * @return the statistic the features are ranked by when {@link #getFeatureSelectionSize()} is set, default is
+     *         chi-square
+     */
+    public FeatureSelector.Method getFeatureSelection() {
+        return featureSelection;
+    }
+
+    /**
+     * @return the number of features a classifier keeps out of the n-grams of its training data, selected by
+     *         {@link #getFeatureSelection()} against the training labels, default is -1 to keep all of them
+     */
+    public int getFeatureSelectionSize() {
+        return featureSelectionSize;
+    }
+
     /**
      * @return number of features per tree to use in random forest model
      */
@@ -142,6 +257,14 @@ public class Configuration implements Serializable {
         return maxDecisionTreeNodes;
     }
 
+    /**
+     * @return the maximum absolute error allowed on the IDFs of an incremental TF-IDF vectorizer before a full rebuild is
+     *         triggered, default 0.05
+     */
+    public double getMaxIDFDrift() {
+        return maxIDFDrift;
+    }
+
     /**
      * @return the maximumTokenFrequency
      */
@@ -150,7 +273,8 @@ public class Configuration implements Serializable {
     }
 
     /**
-     * @return the maximum number of training cases per class to use from training data.
+     * @return the maximum number of training cases per class to use from training data, sampled at random, see
+     *         {@link SamplingGroundTruthReader}, -1 by default for no maximum
      */
     public int getMaxTrainingDataPerClassSize() {
         return maxTrainingDataPerClassSize;
@@ -191,6 +315,45 @@ public class Configuration implements Serializable {
         return nGramMinRange;
     }
 
+    /**
+     * @return the number of documents per mini-batch when the neural net classifier is trained in mini-batches, or 0 to
+     *         train it with the Smile neural network in a single pass, default is 0
+     */
+    public int getNeuralNetBatchSize() {
+        return neuralNetBatchSize;
+    }
+
+    /**
+     * @return the maximum number of passes over the training data when the neural net classifier is trained in
+     *         mini-batches, default is 30
+     */
+    public int getNeuralNetEpochs() {
+        return neuralNetEpochs;
+    }
+
+    /**
+     * @return the learning rate of the neural net classifier when it is trained in mini-batches, default is 1
+     */
+    public double getNeuralNetLearningRate() {
+        return neuralNetLearningRate;
+    }
+
+    /**
+     * @return the number of epochs without improvement of the validation F1 after which the mini-batch training of the
+     *         neural net classifier stops, default is 3
+     */
+    public int getNeuralNetPatience() {
+        return neuralNetPatience;
+    }
+
+    /**
+     * @return the fraction of the training data held out to validate the neural net classifier after each epoch when it is
+     *         trained in mini-batches, or 0 to train it for all the epochs without early stopping, default is 0.1
+     */
+    public double getNeuralNetValidationFraction() {
+        return neuralNetValidationFraction;
+    }
+
     /**
      * @return number of trees to use in random forest model
      */
@@ -198,6 +361,72 @@ public class Configuration implements Serializable {
         return numberOfTrees;
     }
 
+    /**
+     * @return the number of passes over the training data when an online classifier is trained in full, default is 20
+     */
+    public int getOnlineEpochs() {
+        return onlineEpochs;
+    }
+
+    /**
+     * @return the stochastic gradient descent learning rate of an online classifier, which is divided by n on the n-th
+     *         epoch of a full training, the documents learned online being learned at the rate of the last epoch, default
+     *         is 2
+     */
+    public double getOnlineLearningRate() {
+        return onlineLearningRate;
+    }
+
+    /**
+     * @return the OpenNLP training algorithm of the OpenNLP classifier, default is naive Bayes
+     */
+    public String getOpenNLPAlgorithm() {
+        return openNLPAlgorithm;
+    }
+
+    /**
+     * @return the minimum number of times a feature must occur to be used by the OpenNLP classifier, default is 0
+     */
+    public int getOpenNLPCutoff() {
+        return openNLPCutoff;
+    }
+
+    /**
+     * @return the number of training iterations of the OpenNLP classifier, default is 100
+     */
+    public int getOpenNLPIterations() {
+        return openNLPIterations;
+    }
+
+    /**
+     * @return the number of threads the OpenNLP classifier is trained with, only the maximum entropy (GIS) algorithm trains
+     *         on several threads, default is 1
+     */
+    public int getOpenNLPTrainingThreads() {
+        return openNLPTrainingThreads;
+    }
+
+    /**
+     * @return the number of threads used by the default {@link ParallelExecutor}, default to the number of processors
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return the directory where preprocessed documents are cached across runs, default null which disables the cache
+     */
+    public String getPreprocessingCacheDirectory() {
+        return preprocessingCacheDirectory;
+    }
+
+    /**
+     * @return the seed of the sampling of the GT, see {@link SamplingGroundTruthReader}, default is 17
+     */
+    public long getSamplingSeed() {
+        return samplingSeed;
+    }
+
     /**
      * @return the {@link Words} that should be ignored, and prevent features from being generated from the words before/after them
      */
@@ -212,6 +441,29 @@ public class Configuration implements Serializable {
         return stopWords;
     }
 
+    /**
+     * @return the number of passes over the training data of the Hogwild classifier, default is 20
+     */
+    public int getSGDEpochs() {
+        return sgdEpochs;
+    }
+
+    /**
+     * @return the stochastic gradient descent learning rate of the Hogwild classifier, which is divided by n on the n-th
+     *         epoch, default is 1
+     */
+    public double getSGDLearningRate() {
+        return sgdLearningRate;
+    }
+
+    /**
+     * @return the fraction of the documents of each class of the GT to train and test on, see
+     *         {@link SamplingGroundTruthReader}, default is 1
+     */
+    public double getTrainingDataFraction() {
+        return trainingDataFraction;
+    }
+
     /**
      * @return tolerance level for train
      */
@@ -226,6 +478,14 @@ public class Configuration implements Serializable {
         return serialMode;
     }
 
+    /**
+     * @return whether the per-document vectorization stages run as a pipeline instead of one after the other over the
+     *         whole corpus, default false
+     */
+    public boolean isPipelinedVectorization() {
+        return pipelinedVectorization;
+    }
+
     /**
      * @return trace enabled for current configuration
      */
@@ -273,6 +533,37 @@ public class Configuration implements Serializable {
         this.allowedWords = allowedWords;
     }
 
+    /**
+     * @param cascadeFirstClassifierClass the cheap classifier of a cascade, which answers first
+     */
+    public void setCascadeFirstClassifierClass(Class<? extends Classifier> cascadeFirstClassifierClass) {
+        this.cascadeFirstClassifierClass = cascadeFirstClassifierClass;
+    }
+
+    /**
+     * @param cascadeMaxF1Loss the maximum overall F1 loss, compared to the second classifier alone, accepted when tuning
+     *        the threshold of a cascade on held-out data
+     */
+    public void setCascadeMaxF1Loss(double cascadeMaxF1Loss) {
+        this.cascadeMaxF1Loss = cascadeMaxF1Loss;
+    }
+
+    /**
+     * @param cascadeSecondClassifierClass the expensive classifier of a cascade, which only runs when the first one is not
+     *        confident enough
+     */
+    public void setCascadeSecondClassifierClass(Class<? extends Classifier> cascadeSecondClassifierClass) {
+        this.cascadeSecondClassifierClass = cascadeSecondClassifierClass;
+    }
+
+    /**
+     * @param cascadeThreshold the top classification probability of the first classifier of a cascade below which the
+     *        second classifier is run
+     */
+    public void setCascadeThreshold(double cascadeThreshold) {
+        this.cascadeThreshold = cascadeThreshold;
+    }
+
     /**
      * Set the current class to use for classifying.
      *
@@ -282,6 +573,20 @@ public class Configuration implements Serializable {
         this.classifierClass = classifierClass;
     }
 
+    /**
+     * @param featureSelection the statistic to rank the features by, chi-square or mutual information
+     */
+    public void setFeatureSelection(FeatureSelector.Method featureSelection) {
+        this.featureSelection = featureSelection;
+    }
+
+    /**
+     * @param featureSelectionSize the number of features to keep, -1 to keep all of them
+     */
+    public void setFeatureSelectionSize(int featureSelectionSize) {
+        this.featureSelectionSize = featureSelectionSize;
+    }
+
     /**
      * @param featuresPerTree
      */
@@ -329,6 +634,14 @@ public class Configuration implements Serializable {
         this.maxDecisionTreeNodes = maxDecisionTreeNodes;
     }
 
+    /**
+     * @param maxIDFDrift the maximum absolute error allowed on the IDFs of an incremental TF-IDF vectorizer before a full
+     *        rebuild is triggered
+     */
+    public void setMaxIDFDrift(double maxIDFDrift) {
+        this.maxIDFDrift = maxIDFDrift;
+    }
+
     /**
      * @param maximumTokenFrequency the maxinumTokenFrequency to set
      */
@@ -380,6 +693,41 @@ public class Configuration implements Serializable {
         this.nGramMinRange = nGramMinRange;
     }
 
+    /**
+     * @param neuralNetBatchSize
+     */
+    public void setNeuralNetBatchSize(int neuralNetBatchSize) {
+        this.neuralNetBatchSize = neuralNetBatchSize;
+    }
+
+    /**
+     * @param neuralNetEpochs
+     */
+    public void setNeuralNetEpochs(int neuralNetEpochs) {
+        this.neuralNetEpochs = neuralNetEpochs;
+    }
+
+    /**
+     * @param neuralNetLearningRate
+     */
+    public void setNeuralNetLearningRate(double neuralNetLearningRate) {
+        this.neuralNetLearningRate = neuralNetLearningRate;
+    }
+
+    /**
+     * @param neuralNetPatience
+     */
+    public void setNeuralNetPatience(int neuralNetPatience) {
+        this.neuralNetPatience = neuralNetPatience;
+    }
+
+    /**
+     * @param neuralNetValidationFraction
+     */
+    public void setNeuralNetValidationFraction(double neuralNetValidationFraction) {
+        this.neuralNetValidationFraction = neuralNetValidationFraction;
+    }
+
     /**
      * @param numberOfTrees
      */
@@ -387,6 +735,86 @@ public class Configuration implements Serializable {
         this.numberOfTrees = numberOfTrees;
     }
 
+    /**
+     * @param onlineEpochs
+     */
+    public void setOnlineEpochs(int onlineEpochs) {
+        this.onlineEpochs = onlineEpochs;
+    }
+
+    /**
+     * @param onlineLearningRate
+     */
+    public void setOnlineLearningRate(double onlineLearningRate) {
+        this.onlineLearningRate = onlineLearningRate;
+    }
+
+    /**
+     * @param openNLPAlgorithm the OpenNLP training algorithm, e.g. NAIVEBAYES or MAXENT
+     */
+    public void setOpenNLPAlgorithm(String openNLPAlgorithm) {
+        this.openNLPAlgorithm = openNLPAlgorithm;
+    }
+
+    /**
+     * @param openNLPCutoff
+     */
+    public void setOpenNLPCutoff(int openNLPCutoff) {
+        this.openNLPCutoff = openNLPCutoff;
+    }
+
+    /**
+     * @param openNLPIterations
+     */
+    public void setOpenNLPIterations(int openNLPIterations) {
+        this.openNLPIterations = openNLPIterations;
+    }
+
+    /**
+     * @param openNLPTrainingThreads
+     */
+    public void setOpenNLPTrainingThreads(int openNLPTrainingThreads) {
+        this.openNLPTrainingThreads = openNLPTrainingThreads;
+    }
+
+    /**
+     * Sets the number of threads used by the default {@link ParallelExecutor}. This only has effect before the default
+     * executor is created.
+     *
+     * @param parallelism the number of threads, including the calling thread
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sets whether the per-document vectorization stages, normalization, tokenization and n-gram counting, run as a
+     * pipeline where each document moves to the next stage as soon as it is done, instead of each stage running over the
+     * whole corpus before the next one starts.
+     *
+     * @param pipelinedVectorization true to pipeline the stages
+     */
+    public void setPipelinedVectorization(boolean pipelinedVectorization) {
+        this.pipelinedVectorization = pipelinedVectorization;
+    }
+
+    /**
+     * Sets the directory where the normalized tokens and n-gram counts of documents are cached, so that they are not
+     * recomputed by runs that share the same text processing configuration.
+     *
+     * @param preprocessingCacheDirectory the cache directory, or null to disable the cache
+     */
+    public void setPreprocessingCacheDirectory(String preprocessingCacheDirectory) {
+        this.preprocessingCacheDirectory = preprocessingCacheDirectory;
+    }
+
+    /**
+     * @param samplingSeed
+     */
+    public void setSamplingSeed(long samplingSeed) {
+        this.samplingSeed = samplingSeed;
+    }
+
     /**
      * @param removeParentheticalText the removeParentheticalText to set
      */
@@ -394,6 +822,13 @@ public class Configuration implements Serializable {
         this.removeParentheticalText = removeParentheticalText;
     }
 
+    /**
+     * @param saveTrainingVectors whether to save the vectors of the training documents in the experiment directory
+     */
+    public void setSaveTrainingVectors(boolean saveTrainingVectors) {
+        this.saveTrainingVectors = saveTrainingVectors;
+    }
+
     /**
      * @param m use serial mode boolean (default is false), this is a JVM-wide configuration.
      */
@@ -401,6 +836,20 @@ public class Configuration implements Serializable {
         serialMode = m;
     }
 
+    /**
+     * @param sgdEpochs
+     */
+    public void setSGDEpochs(int sgdEpochs) {
+        this.sgdEpochs = sgdEpochs;
+    }
+
+    /**
+     * @param sgdLearningRate
+     */
+    public void setSGDLearningRate(double sgdLearningRate) {
+        this.sgdLearningRate = sgdLearningRate;
+    }
+
     /**
      * @param skipClassificationForGroundTruthEntries
      */
@@ -449,6 +898,13 @@ public class Configuration implements Serializable {
         this.traceEnabled = traceEnabled;
     }
 
+    /**
+     * @param trainingDataFraction the fraction of the documents of each class of the GT to use, greater than 0 and at most 1
+     */
+    public void setTrainingDataFraction(double trainingDataFraction) {
+        this.trainingDataFraction = trainingDataFraction;
+    }
+
     /**
      * @param trainingTolerance
      */
@@ -456,6 +912,14 @@ public class Configuration implements Serializable {
         this.trainingTolerance = trainingTolerance;
     }
 
+    /**
+     * @return whether to save the vectors of the training documents in the experiment directory, as a dense CSV of the
+     *         whole feature space which can be very large, default is false
+     */
+    public boolean saveTrainingVectors() {
+        return saveTrainingVectors;
+    }
+
     /**
      * @return whether or not to skip classification for entries found exactly in the ground truth
      */
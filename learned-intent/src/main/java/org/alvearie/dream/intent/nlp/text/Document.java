@@ -196,6 +196,15 @@ public class Document implements Vectorizable, Serializable {
         ngramCounts.put(ngram, count);
     }
 
+    /**
+     * Removes the n-grams of this document that are not in the given features, e.g. after a feature selection.
+     *
+     * @param features the features to keep
+     */
+    public void retainNGrams(Set<? extends Feature> features) {
+        ngramCounts.keySet().retainAll(features);
+    }
+
     /**
      * Allow clearing out ngrams for this document
      */
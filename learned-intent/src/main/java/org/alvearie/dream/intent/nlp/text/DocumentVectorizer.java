@@ -11,12 +11,7 @@ package org.alvearie.dream.intent.nlp.text;
  * Some vectorization algorithms (like TF-IDF) require the whole corpus feature space, hence this interface requires
  * that a the {@link Document} implements the {@link Vectorizable} interface which provides access to the Corpus-level
  * feature space, and additionally because of that the interface offers a method that works on a {@link Corpus} as well.
- *
- /*
-  * (C) Copyright IBM Corp. 2021, 2021
-  *
-  * SPDX-License-Identifier: Apache-2.0
-  */ */
+ */
 public interface DocumentVectorizer {
 
     /**
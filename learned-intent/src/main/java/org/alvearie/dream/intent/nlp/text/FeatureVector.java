@@ -152,8 +152,11 @@ public class FeatureVector implements Serializable{
         if (isEmpty()) {
             return true;
         }
-        Double sum = getValues().stream().reduce(Double::sum).get();
-        return sum.equals(0.0);
+        double sum = 0.0;
+        for (Double value : features.values()) {
+            sum += value;
+        }
+        return Double.compare(sum, 0.0) == 0;
     }
 
     /**
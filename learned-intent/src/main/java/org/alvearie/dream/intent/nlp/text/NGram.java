@@ -119,4 +119,14 @@ public class NGram implements Feature, Serializable {
         String span = NGram.buildSpan(words);
         return INSTANCES.computeIfAbsent(span, key -> new NGram(span, words));
     }
+
+    /**
+     * Replaces a deserialized n-gram with the interned one of the same span, so that models loaded separately share
+     * their vocabulary rather than each holding a copy of it.
+     *
+     * @return the interned n-gram
+     */
+    private Object readResolve() {
+        return INSTANCES.computeIfAbsent(span, key -> this);
+    }
 }
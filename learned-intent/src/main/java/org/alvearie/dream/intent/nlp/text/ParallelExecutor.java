@@ -0,0 +1,467 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.alvearie.dream.intent.nlp.text;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A sized executor for the parallel work of the NLP pipeline, so that the pipeline does not run on the JVM-wide common
+ * fork-join pool where it would compete with the application server and any other parallel streams.
+ * <p>
+ * Work is submitted per stage, e.g. "normalize" or "ngram", with {@link #forEach(String, Collection, Consumer)}. Each
+ * stage can be limited to a number of parallel tasks with {@link #setStageParallelism(String, int)}: the limit holds
+ * across all the concurrent callers of the stage, so a caller of a stage at its limit waits for one of the tasks of the
+ * stage to finish. Otherwise the calling thread always takes part in the work, so a caller never waits behind work
+ * queued by other callers: at worst it processes all the items on its own. This also makes it safe to call
+ * {@link #forEach(String, Collection, Consumer)} from within a stage, including the same stage.
+ * <p>
+ * The executor keeps per-stage metrics, see {@link StageMetrics}, and exposes its queue depth and utilization.
+ * <p>
+ * Work that runs concurrently with other work, e.g. the folds of a cross-validation, can get its own share of the cores
+ * with {@link #callWith(int, Callable)}.
+ *
+ */
+public class ParallelExecutor implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(ParallelExecutor.class.getName());
+
+    private static ParallelExecutor defaultExecutor;
+
+    /**
+     * The executor of the task the current thread works for, see {@link #callWith(int, Callable)}.
+     */
+    private static final ThreadLocal<ParallelExecutor> CURRENT = new ThreadLocal<>();
+
+    /**
+     * The limited stages the current thread is working on, which it holds a slot of.
+     */
+    private static final ThreadLocal<Set<Semaphore>> HELD_SLOTS = ThreadLocal.withInitial(HashSet::new);
+
+    /**
+     * Gets the default executor, creating it with the parallelism of the default {@link Configuration} if needed. Within
+     * a task run with {@link #callWith(int, Callable)}, this is the executor of the task instead.
+     *
+     * @return the default executor
+     */
+    public static ParallelExecutor getDefault() {
+        ParallelExecutor current = CURRENT.get();
+        if (current != null) {
+            return current;
+        }
+        return getSharedDefault();
+    }
+
+    /**
+     * Gets the executor shared by the whole application, creating it with the parallelism of the default
+     * {@link Configuration} if needed.
+     *
+     * @return the shared executor
+     */
+    private static synchronized ParallelExecutor getSharedDefault() {
+        if (defaultExecutor == null || defaultExecutor.isShutdown()) {
+            defaultExecutor = new ParallelExecutor(Configuration.getDefault().getParallelism());
+        }
+        return defaultExecutor;
+    }
+
+    /**
+     * Runs a task with its own executor of the given parallelism, so that concurrent tasks share the cores rather than
+     * each running its work on all of them: the work the task submits to {@link #getDefault()}, from its thread or from
+     * the threads of its executor, runs on its executor, which is shut down once the task returns.
+     *
+     * @param parallelism the parallelism of the task's executor
+     * @param task the task
+     * @return the result of the task
+     * @throws Exception the exception thrown by the task
+     * @throws IllegalArgumentException if the parallelism is not positive
+     */
+    public static <V> V callWith(int parallelism, Callable<V> task) throws Exception {
+        ParallelExecutor previous = CURRENT.get();
+        try (ParallelExecutor executor = new ParallelExecutor(parallelism)) {
+            CURRENT.set(executor);
+            return task.call();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Replaces the default executor. The previous default executor is not shut down.
+     *
+     * @param executor the new default executor
+     */
+    public static synchronized void setDefault(ParallelExecutor executor) {
+        defaultExecutor = executor;
+    }
+
+    private final int parallelism;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, Integer> stageParallelism = new ConcurrentHashMap<>();
+    private final Map<String, Semaphore> stageSlots = new ConcurrentHashMap<>();
+    private final Map<String, StageMetrics> stageMetrics = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a {@link ParallelExecutor} with the given number of threads.
+     *
+     * @param parallelism the maximum number of threads working in parallel, including the calling thread
+     * @throws IllegalArgumentException if the parallelism is not positive
+     */
+    public ParallelExecutor(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("The parallelism must be positive.");
+        }
+        this.parallelism = parallelism;
+        // The calling thread takes part in the work, so one thread less is needed
+        int threads = Math.max(1, parallelism - 1);
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            // The work nested in a task stays on this executor
+            Thread thread = new Thread(() -> {
+                CURRENT.set(this);
+                runnable.run();
+            }, "nlp-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Performs the given action on every item of the given collection in parallel, using at most the parallelism of the
+     * given stage. The items are processed serially on the calling thread if the default {@link Configuration} is in
+     * serial mode.
+     * <p>
+     * If the stage is limited, the calling thread first waits for a slot of the stage, unless it already holds one
+     * because the call is made from within the stage, and the other tasks only work on the items if they get a slot.
+     *
+     * @param stage the name of the stage, used for the parallelism limits and the metrics
+     * @param items the items to process
+     * @param action the action to perform on each item
+     * @throws RuntimeException if the action throws an exception for any item, the first exception is rethrown once all
+     *         the tasks have stopped
+     */
+    public <T> void forEach(String stage, Collection<T> items, Consumer<? super T> action) {
+        StageMetrics metrics = stageMetrics.computeIfAbsent(stage, StageMetrics::new);
+        metrics.invocations.increment();
+        metrics.items.add(items.size());
+        int tasks = Math.min(getStageParallelism(stage), items.size());
+        if (Configuration.getDefault().isSerialMode() || isShutdown()) {
+            tasks = 1;
+        }
+        Semaphore slots = stageSlots.get(stage);
+        Job<T> job = new Job<>(metrics, slots, new ArrayList<>(items), action);
+        boolean acquired = slots != null && HELD_SLOTS.get().add(slots);
+        if (acquired) {
+            slots.acquireUninterruptibly();
+        }
+        try {
+            for (int i = 1; i < tasks; i++) {
+                try {
+                    executor.execute(job);
+                } catch (RejectedExecutionException e) {
+                    // The executor was shut down concurrently, the calling thread will do the remaining work
+                    break;
+                }
+            }
+            job.work();
+            job.await();
+        } finally {
+            if (acquired) {
+                HELD_SLOTS.get().remove(slots);
+                slots.release();
+            }
+        }
+    }
+
+    /**
+     * Limits the number of tasks that work in parallel on the given stage, across all the callers of the stage. The limit
+     * applies to the calls made after it is set.
+     *
+     * @param stage the name of the stage
+     * @param maxParallelism the maximum number of parallel tasks, including the calling thread
+     * @throws IllegalArgumentException if the parallelism is not positive
+     */
+    public void setStageParallelism(String stage, int maxParallelism) {
+        if (maxParallelism <= 0) {
+            throw new IllegalArgumentException("The parallelism must be positive.");
+        }
+        stageParallelism.put(stage, maxParallelism);
+        stageSlots.put(stage, new Semaphore(maxParallelism));
+    }
+
+    /**
+     * @param stage the name of the stage
+     * @return the maximum number of tasks that work in parallel on the given stage
+     */
+    public int getStageParallelism(String stage) {
+        return Math.min(parallelism, stageParallelism.getOrDefault(stage, parallelism));
+    }
+
+    /**
+     * @return the maximum number of threads working in parallel, including the calling thread
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return the number of tasks waiting for a thread
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return the number of executor threads that are working
+     */
+    public int getActiveThreads() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * @return the fraction of the executor threads that are working, between 0 and 1
+     */
+    public double getUtilization() {
+        return (double) executor.getActiveCount() / executor.getMaximumPoolSize();
+    }
+
+    /**
+     * @return the metrics of every stage that has been run on this executor, by stage name
+     */
+    public Map<String, StageMetrics> getStageMetrics() {
+        return Collections.unmodifiableMap(stageMetrics);
+    }
+
+    /**
+     * @return true if this executor has been shut down, in which case the work is done on the calling threads
+     */
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    /**
+     * Shuts this executor down, waiting for the running tasks to finish.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return true if all the tasks finished before the timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        executor.shutdown();
+        boolean terminated = executor.awaitTermination(timeout, unit);
+        if (!terminated) {
+            LOGGER.warn("The NLP executor did not terminate in time, " + executor.getActiveCount() + " tasks are still running.");
+        }
+        return terminated;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.AutoCloseable#close()
+     */
+    @Override
+    public void close() {
+        try {
+            shutdown(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The metrics of a stage.
+     */
+    public static class StageMetrics {
+
+        private final String stage;
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder items = new LongAdder();
+        private final LongAdder busyNanos = new LongAdder();
+        private final AtomicInteger activeTasks = new AtomicInteger();
+
+        /**
+         * @param stage the name of the stage
+         */
+        private StageMetrics(String stage) {
+            this.stage = stage;
+        }
+
+        /**
+         * @return the name of the stage
+         */
+        public String getStage() {
+            return stage;
+        }
+
+        /**
+         * @return the number of times the stage has been run
+         */
+        public long getInvocations() {
+            return invocations.sum();
+        }
+
+        /**
+         * @return the number of items the stage has been run on
+         */
+        public long getItems() {
+            return items.sum();
+        }
+
+        /**
+         * @return the total time spent by all the threads working on the stage, in milliseconds
+         */
+        public long getBusyTime() {
+            return TimeUnit.NANOSECONDS.toMillis(busyNanos.sum());
+        }
+
+        /**
+         * @return the number of tasks currently working on the stage
+         */
+        public int getActiveTasks() {
+            return activeTasks.get();
+        }
+
+        /* (non-Javadoc)
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            return stage + ": " + getInvocations() + " invocations, " + getItems() + " items, " + getBusyTime() + " ms busy, " + getActiveTasks() + " active tasks";
+        }
+    }
+
+    /**
+     * The tasks of one {@link ParallelExecutor#forEach(String, Collection, Consumer)} call, which take the next item to
+     * process from a shared index until all items are taken.
+     */
+    private static class Job<T> implements Runnable {
+
+        private final StageMetrics metrics;
+        private final Semaphore slots;
+        private final List<T> items;
+        private final Consumer<? super T> action;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger running = new AtomicInteger();
+        private volatile Throwable failure;
+
+        /**
+         * @param metrics the metrics of the stage
+         * @param slots the slots of the stage, or null if the stage is not limited
+         * @param items the items to process
+         * @param action the action to perform on each item
+         */
+        private Job(StageMetrics metrics, Semaphore slots, List<T> items, Consumer<? super T> action) {
+            this.metrics = metrics;
+            this.slots = slots;
+            this.items = items;
+            this.action = action;
+        }
+
+        /* (non-Javadoc)
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run() {
+            // An executor task only works on a limited stage if a slot of the stage is free, otherwise the tasks already
+            // working on it, including the calling thread, process the items
+            if (slots == null) {
+                work();
+                return;
+            }
+            if (!slots.tryAcquire()) {
+                return;
+            }
+            HELD_SLOTS.get().add(slots);
+            try {
+                work();
+            } finally {
+                HELD_SLOTS.get().remove(slots);
+                slots.release();
+            }
+        }
+
+        /**
+         * Processes the next items until all are taken or an action failed.
+         */
+        private void work() {
+            running.incrementAndGet();
+            metrics.activeTasks.incrementAndGet();
+            long start = System.nanoTime();
+            try {
+                int i;
+                while (failure == null && (i = next.getAndIncrement()) < items.size()) {
+                    action.accept(items.get(i));
+                }
+            } catch (RuntimeException | Error e) {
+                synchronized (this) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            } finally {
+                metrics.busyNanos.add(System.nanoTime() - start);
+                metrics.activeTasks.decrementAndGet();
+                if (running.decrementAndGet() == 0) {
+                    synchronized (this) {
+                        notifyAll();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Waits for the tasks that took an item to finish. Tasks that have not started yet will find no items left.
+         *
+         * @throws RuntimeException the first exception thrown by the action
+         * @throws Error the first error thrown by the action
+         */
+        private void await() {
+            boolean interrupted = false;
+            synchronized (this) {
+                while (running.get() > 0) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            if (failure != null) {
+                throw (RuntimeException) failure;
+            }
+        }
+    }
+}
@@ -6,6 +6,7 @@
 package org.alvearie.dream.intent.nlp.text;
 
 import java.util.Collection;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 /**
@@ -16,6 +17,9 @@ public class Utils {
 
     /**
      * This will create a stream, parallel or serial, from the given collection based on the current Configuration setting.
+     * <p>
+     * Parallel streams run on the JVM-wide common fork-join pool, pipeline stages should use
+     * {@link #forEach(String, Collection, Consumer)} instead.
      *
      * @param collection
      * @return stream for given collection
@@ -26,4 +30,16 @@ public class Utils {
         }
         return collection.parallelStream();
     }
+
+    /**
+     * This will perform the given action on each element of the given collection on the default {@link ParallelExecutor},
+     * in parallel or serially based on the current Configuration setting.
+     *
+     * @param stage the name of the pipeline stage, used for the executor's parallelism limits and metrics
+     * @param collection the elements
+     * @param action the action to perform on each element
+     */
+    public static <T> void forEach(String stage, Collection<T> collection, Consumer<? super T> action) {
+        ParallelExecutor.getDefault().forEach(stage, collection, action);
+    }
 }
@@ -10,10 +10,14 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.LinkedHashSet;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.alvearie.dream.intent.nlp.text.Document;
 import org.alvearie.dream.intent.nlp.text.DocumentWithPrediction;
@@ -45,42 +49,88 @@ public class CriteriaMetadataCSVDocumentReader implements DocumentReader {
      */
     @Override
     public List<Document> read() throws IOException {
+        AtomicInteger total = new AtomicInteger();
+        List<Document> documents;
+        try (Stream<Document> stream = stream(total)) {
+            documents = stream.collect(Collectors.toList());
+        }
+        System.out.println("Read: " + total.get() + " total criteria");
+        System.out.println("Read: " + documents.size() + " criteria. Removed notes, LRSSLL and mock criteria");
+        return documents;
+    }
+
+    /**
+     * Lazily reads the CSV records, skipping notes, LRSSLL and mock criteria as well as duplicated criteria.
+     * <p>
+     * Only the text of the criteria seen so far is kept in memory in order to remove duplicates, the CSV records and the
+     * {@link Document}s are not retained.
+     *
+     * @see org.alvearie.dream.intent.nlp.text.io.DocumentReader#stream()
+     */
+    @Override
+    public Stream<Document> stream() throws IOException {
+        return stream(new AtomicInteger());
+    }
+
+    /**
+     * Lazily reads the CSV records, counting the total number of records read into the given counter.
+     *
+     * @param total the counter for the total number of records read
+     * @return the stream of documents
+     * @throws IOException if the source cannot be opened
+     */
+    private Stream<Document> stream(AtomicInteger total) throws IOException {
         if (!source.exists()) {
             throw new FileNotFoundException("The source document does not exists.");
         }
-        Set<Document> documents = new LinkedHashSet<>();
         CSVParser csv = CSVFormat.EXCEL
                 .withHeader()
                 .parse(new FileReader(source));
 
-        List<CSVRecord> metadataEntries = new ArrayList<>(csv.getRecords());
-        System.out.println("Read: " + metadataEntries.size() + " total criteria");
-        for (CSVRecord csvEntry : metadataEntries) {
-            String criterionID = csvEntry.get("Criterion Id");
-            String eligibility = csvEntry.get("Section Type");
-            String criterion = csvEntry.get("Criterion Text");
-            if (criterion.trim().isEmpty()) {
-                continue;
-            }
-            if (criterionID.contains("WCT")) {
-                continue;
-            }
-            if (criterion.contains("LRSSLL")) {
-                continue;
-            }
-            if (criterion.toLowerCase().startsWith("note:")
-                    || criterion.toLowerCase().startsWith("notes:")
-                    || criterion.toLowerCase().startsWith("note ")
-                    || criterion.toLowerCase().startsWith("(note:")
-                    || criterion.toLowerCase().startsWith("*note:")) {
-                continue;
-            }
-            String intent = csvEntry.get("Learned Intent");
-            documents.add(new DocumentWithPrediction(criterionID + "-" + eligibility, criterion, intent));
-        }
+        // Documents are equal when their trimmed original text is equal, we keep only that to remove duplicates
+        Set<String> criteria = new HashSet<>();
+        return StreamSupport.stream(csv.spliterator(), false)
+                .peek(csvEntry -> total.incrementAndGet())
+                .filter(csvEntry -> !skip(csvEntry))
+                .filter(csvEntry -> criteria.add(csvEntry.get("Criterion Text").trim()))
+                .map(csvEntry -> {
+                    String criterionID = csvEntry.get("Criterion Id");
+                    String eligibility = csvEntry.get("Section Type");
+                    String criterion = csvEntry.get("Criterion Text");
+                    String intent = csvEntry.get("Learned Intent");
+                    return (Document) new DocumentWithPrediction(criterionID + "-" + eligibility, criterion, intent);
+                })
+                .onClose(() -> {
+                    try {
+                        csv.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
 
-        System.out.println("Read: " + documents.size() + " criteria. Removed notes, LRSSLL and mock criteria");
-        return new ArrayList<Document>(documents);
+    /**
+     * @param csvEntry the CSV record
+     * @return true if the record is empty, a note, a LRSSLL or a mock criterion
+     */
+    private static boolean skip(CSVRecord csvEntry) {
+        String criterionID = csvEntry.get("Criterion Id");
+        String criterion = csvEntry.get("Criterion Text");
+        if (criterion.trim().isEmpty()) {
+            return true;
+        }
+        if (criterionID.contains("WCT")) {
+            return true;
+        }
+        if (criterion.contains("LRSSLL")) {
+            return true;
+        }
+        String lowerCaseCriterion = criterion.toLowerCase();
+        return lowerCaseCriterion.startsWith("note:")
+                || lowerCaseCriterion.startsWith("notes:")
+                || lowerCaseCriterion.startsWith("note ")
+                || lowerCaseCriterion.startsWith("(note:")
+                || lowerCaseCriterion.startsWith("*note:");
     }
 
 }
@@ -15,6 +15,7 @@ import java.nio.file.Files;
 import java.util.List;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.alvearie.dream.intent.nlp.text.Document;
 
@@ -63,18 +64,26 @@ public class DocumentClusterReader implements DocumentReader {
      */
     @Override
     public List<Document> read() throws IOException {
+        try (Stream<Document> documents = stream()) {
+            return documents.collect(Collectors.toList());
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.alvearie.dream.intent.nlp.text.io.DocumentReader#stream()
+     */
+    @Override
+    public Stream<Document> stream() throws IOException {
         if (!source.exists()) {
             throw new FileNotFoundException("The source document does not exists.");
         }
-        List<Document> documents = Files.lines(source.toPath(), charset)
+        return Files.lines(source.toPath(), charset)
                 .filter(line -> !line.trim().isEmpty())			// Ignore empty lines
                 .filter(line -> !line.trim().startsWith("#"))	// Ignore # Comments
                 .map(line -> {
                     String[] idAndText = line.split(Pattern.quote(" - "));
                     return new Document(idAndText[0], idAndText[1]);
-                })
-                .collect(Collectors.toList());
-        return documents;
+                });
     }
 
 }
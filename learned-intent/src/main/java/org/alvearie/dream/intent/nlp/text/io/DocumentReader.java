@@ -8,6 +8,7 @@ package org.alvearie.dream.intent.nlp.text.io;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.stream.Stream;
 
 import org.alvearie.dream.intent.nlp.text.Document;
 
@@ -24,4 +25,18 @@ public interface DocumentReader {
      * @throws IOException if there is a problem creating the {@link Document} list
      */
     public List<Document> read() throws IOException;
+
+    /**
+     * Lazily reads the document source, creating the {@link Document}s as the returned {@link Stream} is consumed.
+     * <p>
+     * Implementations backed by large files should override this method so the whole source is never held in memory. The
+     * default implementation streams over the result of {@link #read()}. The returned stream should be closed after use in
+     * order to release the underlying source.
+     *
+     * @return the stream of documents
+     * @throws IOException if there is a problem opening the document source
+     */
+    public default Stream<Document> stream() throws IOException {
+        return read().stream();
+    }
 }
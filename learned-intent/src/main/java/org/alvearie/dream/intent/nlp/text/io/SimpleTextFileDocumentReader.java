@@ -14,6 +14,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.alvearie.dream.intent.nlp.text.Document;
 
@@ -51,15 +52,23 @@ public class SimpleTextFileDocumentReader implements DocumentReader {
      */
     @Override
     public List<Document> read() throws IOException {
+        try (Stream<Document> documents = stream()) {
+            return documents.collect(Collectors.toList());
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.alvearie.dream.intent.nlp.text.io.DocumentReader#stream()
+     */
+    @Override
+    public Stream<Document> stream() throws IOException {
         if (!source.exists()) {
             throw new FileNotFoundException("The source document does not exists.");
         }
-        List<Document> documents = Files.lines(source.toPath(), charset)
+        return Files.lines(source.toPath(), charset)
                 .filter(line -> !line.trim().isEmpty())			// Ignore empty lines
                 .filter(line -> !line.trim().startsWith("#"))	// Ignore # Comments
-                .map(line -> new Document(line))
-                .collect(Collectors.toList());
-        return documents;
+                .map(line -> new Document(line));
     }
 
 }
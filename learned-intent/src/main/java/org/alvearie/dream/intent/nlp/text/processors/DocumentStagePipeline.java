@@ -0,0 +1,257 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.alvearie.dream.intent.nlp.text.processors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.alvearie.dream.intent.nlp.text.Document;
+
+/**
+ * Runs a sequence of per-document stages as a pipeline: each stage has its own worker threads and the stages are
+ * connected by bounded queues, so that a document can be in a stage while the next one is in the previous stage.
+ * <p>
+ * Unlike running each stage over the whole corpus before moving to the next stage, there are no barriers between the
+ * stages, and the bounded queues limit the number of documents in flight between stages. Only stages that work on
+ * one document at a time can be pipelined, corpus-level steps need to run after {@link #process(Iterable)} returns.
+ * <p>
+ * The stage workers run on a pool owned by the pipeline, sized to the threads of its stages and reused by every
+ * {@link #process(Iterable)} call, whose idle threads stop after a minute. The stage workers block on their queues, so
+ * they cannot share the {@link org.alvearie.dream.intent.nlp.text.ParallelExecutor}, whose callers take part in the
+ * work. If the default {@link Configuration} is in serial mode, the documents go through the stages one at a time on
+ * the calling thread instead.
+ *
+ */
+public class DocumentStagePipeline implements AutoCloseable {
+
+    /**
+     * Marks the end of the documents in a queue.
+     */
+    private static final Document END = new Document("");
+
+    private int queueCapacity;
+    private List<Stage> stages = new ArrayList<>();
+    private ThreadPoolExecutor executor;
+
+    /**
+     * Creates a {@link DocumentStagePipeline}.
+     *
+     * @param queueCapacity the number of documents that can wait in front of each stage
+     * @throws IllegalArgumentException if the queue capacity is not positive
+     */
+    public DocumentStagePipeline(int queueCapacity) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("The queue capacity must be positive.");
+        }
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Adds a stage at the end of this pipeline.
+     *
+     * @param name the name of the stage
+     * @param threads the number of threads for the stage
+     * @param action the action performed on each document, it must be safe to call concurrently if there are several
+     *        threads
+     * @return this pipeline
+     * @throws IllegalArgumentException if the number of threads is not positive
+     */
+    public DocumentStagePipeline addStage(String name, int threads, Consumer<Document> action) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The number of threads must be positive.");
+        }
+        stages.add(new Stage(name, threads, action));
+        return this;
+    }
+
+    /**
+     * Runs the given documents through all the stages, returning when every document has been through the last stage.
+     * The calls are processed one at a time, since each call needs all the threads of the pool.
+     *
+     * @param documents the documents
+     * @throws RuntimeException the first exception thrown by a stage, once all the stage workers have stopped
+     * @throws IllegalStateException if interrupted while waiting for the stages
+     */
+    public synchronized void process(Iterable<Document> documents) {
+        if (stages.isEmpty()) {
+            return;
+        }
+        if (Configuration.getDefault().isSerialMode()) {
+            for (Document document : documents) {
+                for (Stage stage : stages) {
+                    stage.action.accept(document);
+                }
+            }
+            return;
+        }
+        ThreadPoolExecutor pool = getExecutor();
+        List<BlockingQueue<Document>> queues = new ArrayList<>();
+        for (int i = 0; i < stages.size(); i++) {
+            queues.add(new ArrayBlockingQueue<>(queueCapacity));
+        }
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < stages.size(); i++) {
+            Stage stage = stages.get(i);
+            BlockingQueue<Document> input = queues.get(i);
+            Stage nextStage = i + 1 < stages.size() ? stages.get(i + 1) : null;
+            BlockingQueue<Document> output = nextStage != null ? queues.get(i + 1) : null;
+            AtomicInteger remainingThreads = new AtomicInteger(stage.threads);
+            for (int t = 0; t < stage.threads; t++) {
+                workers.add(pool.submit(() -> work(stage, input, nextStage, output, remainingThreads, failure)));
+            }
+        }
+        try {
+            BlockingQueue<Document> input = queues.get(0);
+            for (Document document : documents) {
+                if (failure.get() != null) {
+                    break;
+                }
+                input.put(document);
+            }
+            end(input, stages.get(0).threads);
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            workers.forEach(worker -> worker.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while processing the documents.", e);
+        } catch (ExecutionException e) {
+            // The workers catch the failures of the stages, so this is a bug of the pipeline itself
+            workers.forEach(worker -> worker.cancel(true));
+            throw new IllegalStateException("A stage worker failed.", e.getCause());
+        }
+        Throwable throwable = failure.get();
+        if (throwable instanceof Error) {
+            throw (Error) throwable;
+        }
+        if (throwable != null) {
+            throw (RuntimeException) throwable;
+        }
+    }
+
+    /**
+     * Gets the pool running the stage workers, creating it or growing it to the threads of the stages if needed.
+     *
+     * @return the pool
+     */
+    private ThreadPoolExecutor getExecutor() {
+        int threads = stages.stream().mapToInt(stage -> stage.threads).sum();
+        if (executor == null || executor.isShutdown()) {
+            AtomicInteger threadCount = new AtomicInteger();
+            ThreadFactory threadFactory = runnable -> {
+                Thread thread = new Thread(runnable, "document-stage-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+            executor.allowCoreThreadTimeOut(true);
+        } else if (executor.getMaximumPoolSize() < threads) {
+            executor.setMaximumPoolSize(threads);
+            executor.setCorePoolSize(threads);
+        }
+        return executor;
+    }
+
+    /**
+     * Shuts down the pool of the stage workers. The pipeline can still be used afterwards, with a new pool.
+     *
+     * @see java.lang.AutoCloseable#close()
+     */
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * The loop of a stage worker. Once a stage fails the remaining documents are drained without being processed, so
+     * that no thread is left blocked on a full queue.
+     *
+     * @param stage the stage
+     * @param input the input queue of the stage
+     * @param nextStage the next stage, or null if this is the last stage
+     * @param output the input queue of the next stage, or null if this is the last stage
+     * @param remainingThreads the number of workers of the stage that have not seen the end of the documents
+     * @param failure the first failure of any stage
+     */
+    private static void work(Stage stage, BlockingQueue<Document> input, Stage nextStage, BlockingQueue<Document> output, AtomicInteger remainingThreads, AtomicReference<Throwable> failure) {
+        try {
+            while (true) {
+                Document document = input.take();
+                if (document == END) {
+                    // The last worker of the stage to finish tells every worker of the next stage
+                    if (remainingThreads.decrementAndGet() == 0 && output != null) {
+                        end(output, nextStage.threads);
+                    }
+                    return;
+                }
+                if (failure.get() != null) {
+                    continue;
+                }
+                try {
+                    stage.action.accept(document);
+                } catch (RuntimeException | Error e) {
+                    failure.compareAndSet(null, e);
+                    continue;
+                }
+                if (output != null) {
+                    output.put(document);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Marks the end of the documents for the given number of threads.
+     *
+     * @param queue the queue
+     * @param threads the number of workers reading from the queue
+     * @throws InterruptedException if interrupted while waiting for room in the queue
+     */
+    private static void end(BlockingQueue<Document> queue, int threads) throws InterruptedException {
+        for (int i = 0; i < threads; i++) {
+            queue.put(END);
+        }
+    }
+
+    /**
+     * A stage of the pipeline.
+     */
+    private static class Stage {
+
+        private final String name;
+        private final int threads;
+        private final Consumer<Document> action;
+
+        /**
+         * @param name the name of the stage
+         * @param threads the number of threads
+         * @param action the action performed on each document
+         */
+        private Stage(String name, int threads, Consumer<Document> action) {
+            this.name = name;
+            this.threads = threads;
+            this.action = action;
+        }
+    }
+}
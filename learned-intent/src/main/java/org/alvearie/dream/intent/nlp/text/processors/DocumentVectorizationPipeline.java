@@ -5,13 +5,18 @@
  */
 package org.alvearie.dream.intent.nlp.text.processors;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.alvearie.dream.intent.nlp.text.Configuration;
 import org.alvearie.dream.intent.nlp.text.Corpus;
 import org.alvearie.dream.intent.nlp.text.Document;
 import org.alvearie.dream.intent.nlp.text.DocumentTextTransformer;
 import org.alvearie.dream.intent.nlp.text.DocumentTokenizer;
 import org.alvearie.dream.intent.nlp.text.DocumentVectorizer;
-import org.alvearie.dream.intent.nlp.text.NGrammer;
 import org.alvearie.dream.intent.nlp.text.Utils;
 import org.alvearie.dream.intent.nlp.text.processors.smile.SmileDocumentNGrammer;
 import org.alvearie.dream.intent.nlp.text.processors.smile.SmileDocumentNormalizer;
@@ -22,15 +27,28 @@ import org.alvearie.dream.intent.nlp.utils.StopWatch;
  * A default vectorization flow which includes normalization, tokenization, n-gramming, tf-idf vectorization.
  * <p>
  * If the given corpus contains {@link Document}s that are already vectorized, this pipeline will not re-vectorize.
+ * <p>
+ * If the configuration enables {@link Configuration#isPipelinedVectorization()}, the normalization, tokenization and
+ * n-gram counting of each document are pipelined with a {@link DocumentStagePipeline}, and only the corpus-level steps,
+ * the feature space selection and the IDFs, wait for the whole corpus.
  *
  */
 public class DocumentVectorizationPipeline implements DocumentVectorizer {
 
+    /**
+     * The number of documents that can wait in front of each pipelined stage.
+     */
+    private static final int QUEUE_CAPACITY = 1024;
+
     private DocumentVectorizer vectorizer;
     private DocumentVectorizer bow;
-    private NGrammer ngrammer;
+    private SmileDocumentNGrammer ngrammer;
     private DocumentTextTransformer normalizer;
     private DocumentTokenizer tokenizer;
+    private boolean pipelined;
+    private int parallelism;
+    private DocumentStagePipeline stagePipeline;
+    private final Map<Document, Map<String, Integer>> counts = Collections.synchronizedMap(new IdentityHashMap<>());
 
     /**
      * Creates a {@link DocumentVectorizationPipeline}.
@@ -46,6 +64,8 @@ public class DocumentVectorizationPipeline implements DocumentVectorizer {
         tokenizer = new SmileDocumentTokenizer();
         normalizer = new SmileDocumentNormalizer(configuration);
         bow = new DocumentBoWVectorizer();
+        pipelined = configuration.isPipelinedVectorization();
+        parallelism = configuration.getParallelism();
     }
 
     /*
@@ -61,17 +81,22 @@ public class DocumentVectorizationPipeline implements DocumentVectorizer {
             return;
         }
 
-        System.out.println("Normalizing...");
-        Utils.stream(corpus.getDocuments()).forEach(normalizer::processText);
+        if (pipelined) {
+            System.out.println("Normalizing, tokenizing and NGramming...");
+            ngram(corpus);
+        } else {
+            System.out.println("Normalizing...");
+            Utils.forEach("normalize", corpus.getDocuments(), normalizer::processText);
 
-        System.out.println("Tokenizing...");
-        Utils.stream(corpus.getDocuments()).forEach(tokenizer::tokenize);
+            System.out.println("Tokenizing...");
+            Utils.forEach("tokenize", corpus.getDocuments(), tokenizer::tokenize);
 
-        System.out.println("NGramming...");
-        ngrammer.ngram(corpus);
+            System.out.println("NGramming...");
+            ngrammer.ngram(corpus);
+        }
 
         System.out.println("Calculating BOW vector...");
-        Utils.stream(corpus.getDocuments()).forEach(bow::vectorize);
+        Utils.forEach("bow", corpus.getDocuments(), bow::vectorize);
 
         System.out.println("Calculating TF-IDF vector...");
         vectorizer.vectorize(corpus);
@@ -79,6 +104,36 @@ public class DocumentVectorizationPipeline implements DocumentVectorizer {
         System.out.println("Done! Vectorized " + corpus.size() + " documents in " + sw.stop());
     }
 
+    /**
+     * Normalizes, tokenizes and counts the n-grams of each document in a pipeline, then n-grams the corpus from the
+     * document counts.
+     * <p>
+     * Normalization is the most expensive stage so it gets most of the threads. The stage pipeline, and its threads, are
+     * reused by the next corpora.
+     *
+     * @param corpus the corpus
+     */
+    private synchronized void ngram(Corpus corpus) {
+        if (stagePipeline == null) {
+            int countThreads = Math.max(1, parallelism / 4);
+            int normalizeThreads = Math.max(1, parallelism - countThreads - 1);
+            stagePipeline = new DocumentStagePipeline(QUEUE_CAPACITY)
+                    .addStage("normalize", normalizeThreads, normalizer::processText)
+                    .addStage("tokenize", 1, tokenizer::tokenize)
+                    .addStage("ngram", countThreads, document -> counts.put(document, ngrammer.count(document)));
+        }
+        List<Map<String, Integer>> documentCounts = new ArrayList<>(corpus.size());
+        try {
+            stagePipeline.process(corpus.getDocuments());
+            for (Document document : corpus.getDocuments()) {
+                documentCounts.add(counts.get(document));
+            }
+        } finally {
+            counts.clear();
+        }
+        ngrammer.ngram(corpus, documentCounts);
+    }
+
     /* (non-Javadoc)
      * @see org.alvearie.nlp.text.DocumentVectorizer#vectorize(org.alvearie.nlp.text.Document)
      */
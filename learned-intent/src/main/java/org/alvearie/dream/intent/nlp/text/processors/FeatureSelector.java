@@ -0,0 +1,262 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.text.processors;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.alvearie.dream.intent.nlp.text.Corpus;
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.alvearie.dream.intent.nlp.text.Feature;
+import org.alvearie.dream.intent.nlp.text.FeatureSpace;
+import org.alvearie.dream.intent.nlp.text.NGram;
+import org.apache.log4j.Logger;
+
+/**
+ * Selects the features of an n-grammed {@link Corpus} that are the most informative of the training labels, to shrink
+ * the feature space before the corpus is vectorized.
+ * <p>
+ * Each feature is scored against the labels from the number of documents of each class it occurs in, either with the
+ * chi-square statistic of its best class or with the mutual information between its occurrence and the class, see
+ * {@link Method}. The top features are kept in their feature space order, and the n-grams of the documents that are not
+ * kept are removed, so that the vectorizers only see the selected features.
+ *
+ */
+public class FeatureSelector {
+
+    private static final Logger LOGGER = Logger.getLogger(FeatureSelector.class.getName());
+
+    /**
+     * The statistic that features are ranked by.
+     */
+    public enum Method {
+
+        /**
+         * The maximum over the classes of the chi-square statistic of the 2x2 contingency table of the feature occurring in
+         * a document and the document being of the class.
+         */
+        CHI_SQUARE,
+
+        /**
+         * The mutual information between the feature occurring in a document and the class of the document.
+         */
+        MUTUAL_INFORMATION
+    }
+
+    private final Method method;
+    private final int size;
+
+    /**
+     * Creates a {@link FeatureSelector} that keeps the given number of features.
+     *
+     * @param method the statistic to rank the features by
+     * @param size the number of features to keep, if it is not positive all the features are kept, if there are more
+     *        classes than features to keep the best feature of each class is kept
+     */
+    public FeatureSelector(Method method, int size) {
+        if (method == null) {
+            throw new NullPointerException("The feature selection method is null.");
+        }
+        this.method = method;
+        this.size = size;
+    }
+
+    /**
+     * Creates a {@link FeatureSelector} using the provided configuration
+     *
+     * @param configuration
+     */
+    public FeatureSelector(Configuration configuration) {
+        this(configuration.getFeatureSelection(), configuration.getFeatureSelectionSize());
+    }
+
+    /**
+     * Scores the features of the corpus feature space against the labels of its documents.
+     *
+     * @param corpus the n-grammed corpus
+     * @param labels the class label of each document of the corpus, in the corpus order
+     * @param numberOfClasses the number of classes
+     * @return the score of each feature, in the feature space order, the higher the more informative
+     * @throws IllegalArgumentException if there is not one label per document
+     */
+    public double[] score(Corpus corpus, int[] labels, int numberOfClasses) {
+        return score(corpus, labels, numberOfClasses, new int[numberOfClasses]);
+    }
+
+    /**
+     * Scores the features of the corpus feature space against the labels of its documents, see
+     * {@link #score(Corpus, int[], int)}, and finds the best feature of each class.
+     *
+     * @param corpus the n-grammed corpus
+     * @param labels the class label of each document of the corpus, in the corpus order
+     * @param numberOfClasses the number of classes
+     * @param bestFeatures the array where the index of the feature that occurs in documents of each class and has the
+     *        highest statistic for it is set, -1 for the classes whose documents have no features
+     * @return the score of each feature, in the feature space order, the higher the more informative
+     */
+    private double[] score(Corpus corpus, int[] labels, int numberOfClasses, int[] bestFeatures) {
+        List<Document> documents = corpus.getDocuments();
+        if (documents.size() != labels.length) {
+            throw new IllegalArgumentException("Expected the labels of " + documents.size() + " documents but got " + labels.length + ".");
+        }
+        FeatureSpace featureSpace = corpus.getFeatureSpace();
+        Map<Feature, Integer> index = new HashMap<>(featureSpace.size() * 2);
+        for (int i = 0; i < featureSpace.size(); i++) {
+            index.put(featureSpace.get(i), i);
+        }
+        // The number of documents of each class each feature occurs in, by feature then class
+        int[] featureClassCounts = new int[featureSpace.size() * numberOfClasses];
+        int[] featureCounts = new int[featureSpace.size()];
+        int[] classCounts = new int[numberOfClasses];
+        for (int row = 0; row < documents.size(); row++) {
+            int label = labels[row];
+            classCounts[label]++;
+            for (NGram ngram : documents.get(row).getNGrams()) {
+                Integer feature = index.get(ngram);
+                if (feature != null) {
+                    featureClassCounts[feature * numberOfClasses + label]++;
+                    featureCounts[feature]++;
+                }
+            }
+        }
+        int n = documents.size();
+        double[] scores = new double[featureSpace.size()];
+        double[] bestStatistics = new double[numberOfClasses];
+        Arrays.fill(bestFeatures, -1);
+        for (int feature = 0; feature < scores.length; feature++) {
+            double score = 0.0;
+            for (int label = 0; label < numberOfClasses; label++) {
+                int count = featureClassCounts[feature * numberOfClasses + label];
+                double statistic;
+                if (method == Method.CHI_SQUARE) {
+                    statistic = chiSquare(n, featureCounts[feature], classCounts[label], count);
+                    score = Math.max(score, statistic);
+                } else {
+                    statistic = mutualInformation(n, featureCounts[feature], classCounts[label], count);
+                    score += statistic;
+                }
+                if (count > 0 && (bestFeatures[label] < 0 || statistic > bestStatistics[label])) {
+                    bestFeatures[label] = feature;
+                    bestStatistics[label] = statistic;
+                }
+            }
+            scores[feature] = score;
+        }
+        return scores;
+    }
+
+    /**
+     * Selects the top features of the corpus feature space, see {@link #score(Corpus, int[], int)}, and restricts the
+     * corpus and its documents to them.
+     * <p>
+     * The best feature of each class is always selected, so that every class keeps documents with features to be trained
+     * on, and the rest of the features are the top scoring ones. Features with the same score are ranked by their feature
+     * space order. The corpus feature space is replaced by the selected features, in their original order, and the n-grams
+     * that are not selected are removed from the documents.
+     *
+     * @param corpus the n-grammed corpus
+     * @param labels the class label of each document of the corpus, in the corpus order
+     * @param numberOfClasses the number of classes
+     * @return the selected feature space
+     * @throws IllegalArgumentException if there is not one label per document
+     */
+    public FeatureSpace select(Corpus corpus, int[] labels, int numberOfClasses) {
+        FeatureSpace featureSpace = corpus.getFeatureSpace();
+        if (size <= 0 || size >= featureSpace.size()) {
+            return featureSpace;
+        }
+        int[] bestFeatures = new int[numberOfClasses];
+        double[] scores = score(corpus, labels, numberOfClasses, bestFeatures);
+        Set<Integer> classFeatures = Arrays.stream(bestFeatures).filter(i -> i >= 0).boxed().collect(Collectors.toSet());
+        int[] selected = IntStream.concat(classFeatures.stream().mapToInt(Integer::intValue), IntStream.range(0, scores.length).boxed()
+                .filter(i -> !classFeatures.contains(i))
+                .sorted(Comparator.<Integer> comparingDouble(i -> scores[i]).reversed().thenComparingInt(i -> i))
+                .limit(Math.max(0, size - classFeatures.size()))
+                .mapToInt(Integer::intValue))
+                .sorted()
+                .toArray();
+        FeatureSpace selectedFeatures = new FeatureSpace();
+        for (int feature : selected) {
+            selectedFeatures.add(featureSpace.get(feature));
+        }
+        Set<Feature> kept = new HashSet<>(selectedFeatures);
+        for (Document document : corpus) {
+            document.retainNGrams(kept);
+        }
+        corpus.setFeatureSpace(selectedFeatures);
+        LOGGER.info("Selected " + selectedFeatures.size() + " of " + featureSpace.size() + " features by " + method + ", the lowest selected score is "
+                + Arrays.stream(selected).mapToDouble(i -> scores[i]).min().orElse(0.0) + ".");
+        return selectedFeatures;
+    }
+
+    /**
+     * Calculates the chi-square statistic of the 2x2 contingency table of a feature and a class.
+     *
+     * @param n the number of documents
+     * @param featureCount the number of documents the feature occurs in
+     * @param classCount the number of documents of the class
+     * @param count the number of documents of the class the feature occurs in
+     * @return the chi-square statistic, 0 if the feature or the class occurs in all or none of the documents
+     */
+    static double chiSquare(int n, int featureCount, int classCount, int count) {
+        double a = count;
+        double b = featureCount - count;
+        double c = classCount - count;
+        double d = n - featureCount - classCount + count;
+        double denominator = (a + b) * (c + d) * (a + c) * (b + d);
+        if (denominator == 0.0) {
+            return 0.0;
+        }
+        double difference = a * d - b * c;
+        return n * difference * difference / denominator;
+    }
+
+    /**
+     * Calculates the contribution of a class to the mutual information between the occurrence of a feature and the class,
+     * that is the sum, over the feature occurring or not, of <code>P(occurrence, class) log(P(occurrence, class) /
+     * (P(occurrence) P(class)))</code>.
+     *
+     * @param n the number of documents
+     * @param featureCount the number of documents the feature occurs in
+     * @param classCount the number of documents of the class
+     * @param count the number of documents of the class the feature occurs in
+     * @return the contribution of the class to the mutual information, in nats
+     */
+    static double mutualInformation(int n, int featureCount, int classCount, int count) {
+        return mutualInformationTerm(n, featureCount, classCount, count) + mutualInformationTerm(n, n - featureCount, classCount, classCount - count);
+    }
+
+    /**
+     * @param n the number of documents
+     * @param occurrenceCount the number of documents with the occurrence
+     * @param classCount the number of documents of the class
+     * @param count the number of documents of the class with the occurrence
+     * @return the mutual information term of the occurrence and the class, 0 if they never happen together
+     */
+    private static double mutualInformationTerm(int n, int occurrenceCount, int classCount, int count) {
+        if (count == 0) {
+            return 0.0;
+        }
+        return (double) count / n * Math.log((double) n * count / ((double) occurrenceCount * classCount));
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return method + " top " + size;
+    }
+}
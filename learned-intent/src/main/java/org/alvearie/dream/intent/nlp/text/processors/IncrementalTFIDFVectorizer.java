@@ -0,0 +1,469 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.text.processors;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.alvearie.dream.intent.nlp.text.Corpus;
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.alvearie.dream.intent.nlp.text.DocumentVectorizer;
+import org.alvearie.dream.intent.nlp.text.Feature;
+import org.alvearie.dream.intent.nlp.text.FeatureSpace;
+import org.alvearie.dream.intent.nlp.text.FeatureVector;
+import org.alvearie.dream.intent.nlp.text.NGram;
+import org.alvearie.dream.intent.nlp.text.Utils;
+import org.apache.log4j.Logger;
+
+/**
+ * A TF-IDF vectorizer that can absorb new {@link Document}s after the initial corpus has been vectorized, without
+ * re-vectorizing the whole corpus.
+ * <p>
+ * The vectorizer uses the same formulas as the {@link TFIDFVectorizer}, but it keeps primitive n-gram frequency counters
+ * for every feature in the feature space together with the number of documents seen. When new documents are absorbed
+ * with {@link #absorb(Corpus)} the counters are updated, the IDFs of the features present in the new documents are
+ * recalculated and only the previously vectorized documents that contain those features are re-weighted.
+ * <p>
+ * The IDFs of the features that were not touched by the new documents also depend on the number of documents, so they
+ * become stale as documents are absorbed. Given that <code>idf = log(1 + n) - log(1 + df) + 1</code>, the absolute error
+ * of any stale IDF is bounded by <code>log((1 + n) / (1 + n'))</code>, where <code>n'</code> is the number of documents
+ * at the time of the last full rebuild. Once that bound exceeds the configured maximum drift a full rebuild of all IDFs
+ * and of all the tracked document vectors is triggered.
+ * <p>
+ * The feature space is fixed at the time the initial corpus is vectorized, n-grams in absorbed documents that are not
+ * part of it are ignored.
+ * <p>
+ * Tracking the documents can be turned off when only the model matters, e.g. for an online classifier that learns from
+ * each document as it is absorbed: the counters and the IDFs are updated the same way, but only the absorbed documents
+ * are weighed, the previously vectorized ones are neither kept nor re-weighted.
+ * <p>
+ * Documents can be vectorized while others are absorbed: the IDFs are never changed in place, absorbing documents
+ * publishes a new array of IDFs, and each document is weighed with the IDFs that were current when its corpus started
+ * being weighed.
+ *
+ */
+public class IncrementalTFIDFVectorizer implements DocumentVectorizer, Serializable {
+
+    private static final long serialVersionUID = 3702547985023957911L;
+    private static final Logger LOGGER = Logger.getLogger(IncrementalTFIDFVectorizer.class.getName());
+
+    private boolean l2Normalize;
+    private double maxIDFDrift;
+    private boolean trackDocuments;
+
+    private List<Feature> features;
+    private Map<Feature, Integer> featureIndex;
+    private int[] nGramFrequencies;
+    // Replaced rather than changed once initialized, so that concurrent vectorizations see consistent IDFs
+    private volatile double[] idfs;
+    private int documentCount;
+    private int rebuildDocumentCount;
+
+    // The documents vectorized or absorbed by this vectorizer, they are not part of the serialized state
+    private transient List<Document> documents;
+    private transient List<int[]> documentFeatures;
+    private transient List<double[]> documentTermFrequencies;
+    private transient List<int[]> postings;
+
+    /**
+     * Create an {@link IncrementalTFIDFVectorizer} using the default configuration.
+     */
+    public IncrementalTFIDFVectorizer() {
+        this(Configuration.getDefault());
+    }
+
+    /**
+     * Create an {@link IncrementalTFIDFVectorizer} using the provided configuration.
+     *
+     * @param configuration the configuration with the L2 normalization and maximum IDF drift settings
+     */
+    public IncrementalTFIDFVectorizer(Configuration configuration) {
+        this(configuration.l2Normalize(), configuration.getMaxIDFDrift());
+    }
+
+    /**
+     * Create an {@link IncrementalTFIDFVectorizer}.
+     *
+     * @param l2Normalization apply L2 normalization to the final vector
+     * @param maxIDFDrift the maximum absolute error allowed on any IDF before a full rebuild is triggered
+     * @throws IllegalArgumentException if the maximum drift is negative
+     */
+    public IncrementalTFIDFVectorizer(boolean l2Normalization, double maxIDFDrift) {
+        this(l2Normalization, maxIDFDrift, true);
+    }
+
+    /**
+     * Create an {@link IncrementalTFIDFVectorizer}.
+     *
+     * @param l2Normalization apply L2 normalization to the final vector
+     * @param maxIDFDrift the maximum absolute error allowed on any IDF before a full rebuild is triggered
+     * @param trackDocuments whether to keep the vectorized documents to re-weight them as documents are absorbed
+     * @throws IllegalArgumentException if the maximum drift is negative
+     */
+    public IncrementalTFIDFVectorizer(boolean l2Normalization, double maxIDFDrift, boolean trackDocuments) {
+        if (maxIDFDrift < 0) {
+            throw new IllegalArgumentException("The maximum IDF drift cannot be negative.");
+        }
+        this.l2Normalize = l2Normalization;
+        this.maxIDFDrift = maxIDFDrift;
+        this.trackDocuments = trackDocuments;
+    }
+
+    /**
+     * Vectorizes the given {@link Corpus}.
+     * <p>
+     * The first corpus vectorized by this vectorizer initializes the feature space, the n-gram frequency counters and the
+     * IDFs, and its documents are tracked, unless tracking is turned off, so they can be re-weighted when new documents
+     * are absorbed. Subsequent corpora are vectorized with the current IDFs without affecting them, use
+     * {@link #absorb(Corpus)} to add documents to the model.
+     *
+     * @see org.alvearie.dream.intent.nlp.text.DocumentVectorizer#vectorize(org.alvearie.dream.intent.nlp.text.Corpus)
+     */
+    @Override
+    public void vectorize(Corpus corpus) {
+        if (corpus == null) {
+            throw new NullPointerException("The corpus was null.");
+        }
+        if (!isInitialized() && initialize(corpus)) {
+            return;
+        }
+        weigh(corpus);
+    }
+
+    /* (non-Javadoc)
+     * @see org.alvearie.dream.intent.nlp.text.DocumentVectorizer#vectorize(org.alvearie.dream.intent.nlp.text.Document)
+     */
+    @Override
+    public void vectorize(Document document) {
+        if (!isInitialized()) {
+            FeatureSpace corpusFeatures = document.getFeatureSpace();
+            if (corpusFeatures == null) {
+                throw new IllegalArgumentException("The Corpus feture space is not set in the given Document and it is required.");
+            }
+            Corpus corpus = new Corpus(document);
+            corpus.setFeatureSpace(corpusFeatures);
+            vectorize(corpus);
+            return;
+        }
+        vectorize(new Corpus(document));
+    }
+
+    /**
+     * Absorbs the given documents into this vectorizer's model.
+     * <p>
+     * The documents need to be n-grammed with this vectorizer's feature space and BoW vectorized. Their n-gram counts are
+     * added to the frequency counters, the IDFs of the features they contain are recalculated, and the tracked documents
+     * containing any of those features are re-weighted along with the new documents. If the bound on the drift of the
+     * remaining IDFs exceeds the maximum allowed drift, a full rebuild is performed instead. If the documents are not
+     * tracked, only the new documents are weighed.
+     *
+     * @param corpus the new documents
+     * @return true if absorbing the documents triggered a full rebuild
+     * @throws IllegalStateException if this vectorizer has not vectorized its initial corpus yet
+     */
+    public synchronized boolean absorb(Corpus corpus) {
+        if (corpus == null) {
+            throw new NullPointerException("The corpus was null.");
+        }
+        if (!isInitialized()) {
+            throw new IllegalStateException("The initial corpus needs to be vectorized before new documents can be absorbed.");
+        }
+        BitSet touchedFeatures = new BitSet(features.size());
+        List<Integer> newDocuments = new ArrayList<>(corpus.size());
+        for (Document document : corpus) {
+            int[] ids = toFeatureIds(document);
+            for (int id : ids) {
+                // The BoW vector may come from a vectorizer that found a feature the n-grammer did not count, count it once
+                int count = document.getNGramCount((NGram) features.get(id));
+                nGramFrequencies[id] += count > 0 ? count : 1;
+                touchedFeatures.set(id);
+            }
+            if (trackDocuments) {
+                newDocuments.add(track(document, ids, toTermFrequencies(document, ids)));
+            }
+        }
+        documentCount += corpus.size();
+
+        if (getIDFDrift() > maxIDFDrift) {
+            LOGGER.info("IDF drift " + getIDFDrift() + " exceeds " + maxIDFDrift + ", rebuilding the TF-IDF model.");
+            rebuild();
+            if (!trackDocuments) {
+                weigh(corpus);
+            }
+            return true;
+        }
+        double[] newIdfs = idfs.clone();
+        for (int id = touchedFeatures.nextSetBit(0); id >= 0; id = touchedFeatures.nextSetBit(id + 1)) {
+            newIdfs[id] = TFIDFVectorizer.idf(documentCount, nGramFrequencies[id]);
+        }
+        idfs = newIdfs;
+        if (!trackDocuments) {
+            weigh(corpus);
+            return false;
+        }
+
+        BitSet affectedDocuments = new BitSet(documents.size());
+        for (int id = touchedFeatures.nextSetBit(0); id >= 0; id = touchedFeatures.nextSetBit(id + 1)) {
+            int[] posting = postings.get(id);
+            for (int i = 1; i <= posting[0]; i++) {
+                affectedDocuments.set(posting[i]);
+            }
+        }
+        newDocuments.forEach(affectedDocuments::set);
+        reweigh(affectedDocuments.stream().toArray());
+        return false;
+    }
+
+    /**
+     * Recalculates every IDF using the current counters and re-weights all the tracked documents.
+     */
+    public synchronized void rebuild() {
+        if (!isInitialized()) {
+            throw new IllegalStateException("The initial corpus needs to be vectorized before the model can be rebuilt.");
+        }
+        recalculate();
+    }
+
+    /**
+     * Recalculates every IDF using the current counters, then publishes them, and re-weights all the tracked documents.
+     */
+    private void recalculate() {
+        double[] newIdfs = new double[features.size()];
+        for (int id = 0; id < newIdfs.length; id++) {
+            newIdfs[id] = TFIDFVectorizer.idf(documentCount, nGramFrequencies[id]);
+        }
+        rebuildDocumentCount = documentCount;
+        idfs = newIdfs;
+        if (documents != null) {
+            reweigh(null);
+        }
+    }
+
+    /**
+     * Gets the upper bound of the absolute error on any of the current IDFs with respect to the IDFs a full rebuild would
+     * produce.
+     *
+     * @return the IDF drift bound
+     */
+    public double getIDFDrift() {
+        return Math.log((1.0 + documentCount) / (1.0 + rebuildDocumentCount));
+    }
+
+    /**
+     * @return the number of documents in this vectorizer's model
+     */
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    /**
+     * @param feature the feature
+     * @return the current IDF for the given feature, or 0 if the feature is not part of the feature space
+     */
+    public double getIDF(Feature feature) {
+        Integer id = featureIndex == null ? null : featureIndex.get(feature);
+        return id == null ? 0.0 : idfs[id];
+    }
+
+    /**
+     * @param feature the feature
+     * @return the corpus frequency of the given feature, or 0 if the feature is not part of the feature space
+     */
+    public int getNGramFrequency(Feature feature) {
+        Integer id = featureIndex == null ? null : featureIndex.get(feature);
+        return id == null ? 0 : nGramFrequencies[id];
+    }
+
+    /**
+     * @return true if the initial corpus has been vectorized
+     */
+    public boolean isInitialized() {
+        return idfs != null;
+    }
+
+    /**
+     * Initializes the counters and the IDFs from the given corpus and vectorizes its documents, unless another corpus
+     * initialized them first. The IDFs are published last, so a thread that sees this vectorizer initialized also sees the
+     * feature space and counters.
+     *
+     * @param corpus the initial corpus
+     * @return true if the corpus initialized this vectorizer and was vectorized, false if this vectorizer was already
+     *         initialized
+     */
+    private synchronized boolean initialize(Corpus corpus) {
+        if (isInitialized()) {
+            return false;
+        }
+        FeatureSpace featureSpace = corpus.getFeatureSpace();
+        if (featureSpace == null) {
+            throw new IllegalArgumentException("The Corpus feature space is not set and it is required.");
+        }
+        features = new ArrayList<>(featureSpace);
+        featureIndex = new HashMap<>(features.size() * 2);
+        nGramFrequencies = new int[features.size()];
+        for (int id = 0; id < features.size(); id++) {
+            Feature feature = features.get(id);
+            featureIndex.put(feature, id);
+            if (feature instanceof NGram) {
+                nGramFrequencies[id] = corpus.getNGramCount((NGram) feature);
+            }
+        }
+        documentCount = corpus.size();
+        documents = null;
+        if (!trackDocuments) {
+            recalculate();
+            weigh(corpus);
+            return true;
+        }
+        for (Document document : corpus) {
+            int[] ids = toFeatureIds(document);
+            track(document, ids, toTermFrequencies(document, ids));
+        }
+        recalculate();
+        return true;
+    }
+
+    /**
+     * Weighs the BoW vectors of the given documents with the current IDFs.
+     *
+     * @param corpus the documents
+     */
+    private void weigh(Corpus corpus) {
+        double[] currentIdfs = idfs;
+        Utils.forEach("tfidf", corpus.getDocuments(), document -> {
+            int[] ids = toFeatureIds(document);
+            document.setVector("TF-IDF", weigh(ids, toTermFrequencies(document, ids), currentIdfs));
+        });
+    }
+
+    /**
+     * Adds the given document to the tracked documents and the inverted feature index.
+     *
+     * @param document the document
+     * @param ids the feature ids present in the document
+     * @param termFrequencies the term frequencies corresponding to the feature ids
+     * @return the tracking id of the document
+     */
+    private int track(Document document, int[] ids, double[] termFrequencies) {
+        if (documents == null) {
+            documents = new ArrayList<>();
+            documentFeatures = new ArrayList<>();
+            documentTermFrequencies = new ArrayList<>();
+            postings = new ArrayList<>(features.size());
+            for (int id = 0; id < features.size(); id++) {
+                postings.add(new int[] { 0 });
+            }
+        }
+        int documentId = documents.size();
+        documents.add(document);
+        documentFeatures.add(ids);
+        documentTermFrequencies.add(termFrequencies);
+        for (int id : ids) {
+            // The first element of each posting is the number of documents in it
+            int[] posting = postings.get(id);
+            if (posting[0] + 1 == posting.length) {
+                posting = Arrays.copyOf(posting, posting.length * 2);
+                postings.set(id, posting);
+            }
+            posting[++posting[0]] = documentId;
+        }
+        return documentId;
+    }
+
+    /**
+     * Re-weights the given tracked documents with the current IDFs.
+     *
+     * @param documentIds the tracking ids of the documents to re-weight, or null to re-weight all of them
+     */
+    private void reweigh(int[] documentIds) {
+        List<Integer> ids = new ArrayList<>();
+        if (documentIds == null) {
+            for (int i = 0; i < documents.size(); i++) {
+                ids.add(i);
+            }
+        } else {
+            Arrays.stream(documentIds).forEach(ids::add);
+        }
+        double[] currentIdfs = idfs;
+        Utils.forEach("tfidf", ids, id -> documents.get(id).setVector("TF-IDF", weigh(documentFeatures.get(id), documentTermFrequencies.get(id), currentIdfs)));
+    }
+
+    /**
+     * Creates the TF-IDF vector for the given feature ids and term frequencies.
+     *
+     * @param ids the feature ids
+     * @param termFrequencies the corresponding term frequencies
+     * @param currentIdfs the IDFs to weigh with
+     * @return the TF-IDF vector, L2 normalized if this vectorizer is configured to do so
+     */
+    private FeatureVector weigh(int[] ids, double[] termFrequencies, double[] currentIdfs) {
+        double[] weights = new double[ids.length];
+        double norm = 0.0;
+        for (int i = 0; i < ids.length; i++) {
+            weights[i] = termFrequencies[i] * currentIdfs[ids[i]];
+            norm += weights[i] * weights[i];
+        }
+        // The zero vector cannot be normalized, its normalization is the zero vector itself
+        boolean normalize = l2Normalize && norm != 0.0;
+        norm = Math.sqrt(norm);
+        FeatureVector vector = new FeatureVector(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            vector.addFeature(features.get(ids[i]), normalize ? weights[i] / norm : weights[i]);
+        }
+        return vector;
+    }
+
+    /**
+     * Gets the ids of the features in the given document's BoW vector that are part of this vectorizer's feature space.
+     *
+     * @param document the document
+     * @return the feature ids, in the BoW vector order
+     */
+    private int[] toFeatureIds(Document document) {
+        FeatureVector bowVector = document.getVector();
+        if (bowVector == null) {
+            throw new IllegalStateException("The TF-IDF vectorizer requires the BoW vectorizer to on this Document run first.");
+        }
+        int[] ids = new int[bowVector.size()];
+        int size = 0;
+        for (Feature feature : bowVector.getFeatures()) {
+            Integer id = featureIndex.get(feature);
+            if (id != null) {
+                ids[size++] = id;
+            }
+        }
+        return size == ids.length ? ids : Arrays.copyOf(ids, size);
+    }
+
+    /**
+     * Calculates the term frequencies for the given feature ids, adjusted to the number of features in the document as
+     * done by the {@link TFIDFVectorizer}.
+     *
+     * @param document the document
+     * @param ids the feature ids
+     * @return the term frequencies corresponding to the feature ids
+     */
+    private double[] toTermFrequencies(Document document, int[] ids) {
+        FeatureVector bowVector = document.getVector();
+        Map<Feature, Double> frequencies = bowVector.getFeaturesAndValues();
+        double[] termFrequencies = new double[ids.length];
+        int i = 0;
+        for (Entry<Feature, Double> entry : frequencies.entrySet()) {
+            if (i < ids.length && features.get(ids[i]).equals(entry.getKey())) {
+                termFrequencies[i++] = entry.getValue() / bowVector.size();
+            }
+        }
+        return termFrequencies;
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.alvearie.dream.intent.nlp.text.processors;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.alvearie.dream.intent.nlp.text.DocumentTextTransformer;
+import org.alvearie.dream.intent.nlp.text.DocumentTokenizer;
+import org.alvearie.dream.intent.nlp.text.Utils;
+import org.alvearie.dream.intent.nlp.text.processors.smile.SmileDocumentNGrammer;
+import org.alvearie.dream.intent.nlp.text.processors.smile.SmileDocumentNormalizer;
+import org.alvearie.dream.intent.nlp.text.processors.smile.SmileDocumentTokenizer;
+import org.apache.log4j.Logger;
+
+/**
+ * An on-disk cache of the normalized text, tokens and n-gram counts of documents.
+ * <p>
+ * Normalizing, tokenizing and counting the n-grams of a document only depends on its text and on the text processing
+ * settings of the {@link Configuration}, so runs that only change other settings, e.g. the classifier
+ * hyperparameters, can reuse the results of previous runs. The cache is content-addressed: each document is stored in
+ * its own file named after the hash of its text, under a directory named after the fingerprint of the settings, see
+ * {@link #fingerprint(Configuration)}.
+ * <p>
+ * The n-gram frequency boundaries are not part of the fingerprint because the cached counts are not filtered by
+ * frequency, that happens when the counts are passed to {@link SmileDocumentNGrammer#ngram(org.alvearie.dream.intent.nlp.text.Corpus, List)}.
+ *
+ */
+public class PreprocessingCache {
+
+    private static final Logger LOGGER = Logger.getLogger(PreprocessingCache.class.getName());
+
+    /**
+     * The version of the cached entries, this needs to change whenever the text processing changes in a way that makes
+     * previously cached entries invalid.
+     */
+    private static final int VERSION = 1;
+
+    private static final String NORMALIZED_TEXT = "Cached Normalized Text";
+
+    private Path directory;
+    private DocumentTextTransformer normalizer;
+    private DocumentTokenizer tokenizer;
+    private SmileDocumentNGrammer ngrammer;
+    private AtomicInteger hits = new AtomicInteger();
+    private AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * Creates a {@link PreprocessingCache} in the given directory for the given configuration.
+     *
+     * @param directory the base cache directory, entries will be stored in a subdirectory for the configuration
+     *        fingerprint
+     * @param configuration the text processing configuration
+     */
+    public PreprocessingCache(File directory, Configuration configuration) {
+        this.directory = directory.toPath().resolve(fingerprint(configuration));
+        normalizer = new SmileDocumentNormalizer(configuration);
+        tokenizer = new SmileDocumentTokenizer();
+        ngrammer = new SmileDocumentNGrammer(configuration);
+    }
+
+    /**
+     * Normalizes and tokenizes the given documents and counts their n-grams, reading the results from the cache when
+     * possible and adding them to the cache otherwise.
+     *
+     * @param documents the documents to preprocess, they will be normalized and tokenized
+     * @return the n-gram counts of each document, in the same order as the given documents, see
+     *         {@link SmileDocumentNGrammer#count(Document)}
+     */
+    public List<Map<String, Integer>> preprocess(List<Document> documents) {
+        List<Map<String, Integer>> counts = new ArrayList<>(documents.size());
+        documents.forEach(document -> counts.add(null));
+        Utils.forEach("preprocess", IntStream.range(0, documents.size()).boxed().collect(Collectors.toList()), i -> counts.set(i, preprocess(documents.get(i))));
+        LOGGER.info("Preprocessing cache " + directory + ": " + hits + " hits, " + misses + " misses.");
+        return counts;
+    }
+
+    /**
+     * Preprocesses a single document, see {@link #preprocess(List)}.
+     *
+     * @param document the document
+     * @return the n-gram counts of the document
+     */
+    private Map<String, Integer> preprocess(Document document) {
+        String text = document.getText();
+        Path file = getFile(text);
+        Entry entry = read(file);
+        if (entry != null && entry.text.equals(text)) {
+            hits.incrementAndGet();
+            document.setText(NORMALIZED_TEXT, entry.normalizedText);
+            document.setTokens(entry.tokens);
+            return entry.counts;
+        }
+        misses.incrementAndGet();
+        normalizer.processText(document);
+        tokenizer.tokenize(document);
+        Map<String, Integer> counts = ngrammer.count(document);
+        write(file, new Entry(text, document.getText(), document.getTokens(), counts));
+        return counts;
+    }
+
+    /**
+     * @return the number of documents read from the cache
+     */
+    public int getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of documents that were not in the cache
+     */
+    public int getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the cache file for the given text, the files are spread into subdirectories by the first two characters of
+     * the hash to keep the directories small.
+     *
+     * @param text the document text
+     * @return the cache file
+     */
+    private Path getFile(String text) {
+        String hash = hash(text);
+        return directory.resolve(hash.substring(0, 2)).resolve(hash + ".ser");
+    }
+
+    /**
+     * Reads a cache entry.
+     *
+     * @param file the cache file
+     * @return the entry or null if there is no entry or it cannot be read
+     */
+    private static Entry read(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (InputStream in = Files.newInputStream(file); ObjectInputStream ois = new ObjectInputStream(in)) {
+            return (Entry) ois.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            LOGGER.warn("Ignoring unreadable preprocessing cache entry " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes a cache entry. The entry is written to a temporary file first and then moved into place, so concurrent
+     * runs never read a partially written entry. Failing to write an entry is not an error, it will be recomputed.
+     *
+     * @param file the cache file
+     * @param entry the entry
+     */
+    private static void write(Path file, Entry entry) {
+        Path temporaryFile = null;
+        try {
+            Files.createDirectories(file.getParent());
+            temporaryFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try (OutputStream out = Files.newOutputStream(temporaryFile); ObjectOutputStream oos = new ObjectOutputStream(out)) {
+                oos.writeObject(entry);
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn("Could not write preprocessing cache entry " + file + ": " + e.getMessage());
+            if (temporaryFile != null) {
+                temporaryFile.toFile().delete();
+            }
+        }
+    }
+
+    /**
+     * Creates a stable fingerprint of the settings of the given configuration that affect the output of
+     * {@link SmileDocumentNormalizer}, {@link SmileDocumentTokenizer} and {@link SmileDocumentNGrammer#count(Document)}.
+     *
+     * @param configuration the configuration
+     * @return the fingerprint, a hexadecimal SHA-256 hash
+     */
+    public static String fingerprint(Configuration configuration) {
+        List<String> settings = Arrays.asList(
+                "version=" + VERSION,
+                "stopWords=" + new TreeSet<>(configuration.getStopWords()),
+                "allowedWords=" + new TreeSet<>(configuration.getAllowedWords()),
+                "breakWords=" + new TreeSet<>(configuration.getBreakWords()),
+                "breakOnSpecialCharacters=" + configuration.breakOnSpecialCharacters(),
+                "minimumTokenLength=" + configuration.getMinimumTokenLength(),
+                "stem=" + configuration.stem(),
+                "lemmatize=" + configuration.lemmatize(),
+                "keepDigitPlaceholder=" + configuration.keepDigitPlaceholder(),
+                "removeParentheticalText=" + configuration.removeParentheticalText(),
+                "nGramMinRange=" + configuration.getNGramMinRange(),
+                "nGramMaxRange=" + configuration.getNGramMaxRange());
+        return hash(String.join("\n", settings));
+    }
+
+    /**
+     * @param text the text to hash
+     * @return the hexadecimal SHA-256 hash of the text
+     */
+    private static String hash(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+
+    /**
+     * A cached preprocessed document.
+     */
+    private static final class Entry implements Serializable {
+
+        private static final long serialVersionUID = 3169712064285537416L;
+
+        private String text;
+        private String normalizedText;
+        private List<String> tokens;
+        private Map<String, Integer> counts;
+
+        /**
+         * @param text the original text, kept to detect hash collisions
+         * @param normalizedText the normalized text
+         * @param tokens the tokens
+         * @param counts the n-gram counts
+         */
+        private Entry(String text, String normalizedText, List<String> tokens, Map<String, Integer> counts) {
+            this.text = text;
+            this.normalizedText = normalizedText;
+            this.tokens = new ArrayList<>(tokens);
+            this.counts = counts;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.alvearie.dream.intent.nlp.text.processors;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.alvearie.dream.intent.nlp.text.Corpus;
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.alvearie.dream.intent.nlp.text.DocumentTextTransformer;
+import org.alvearie.dream.intent.nlp.text.DocumentTokenizer;
+import org.alvearie.dream.intent.nlp.text.DocumentVectorizer;
+import org.alvearie.dream.intent.nlp.text.FeatureSpace;
+import org.alvearie.dream.intent.nlp.text.NGram;
+import org.alvearie.dream.intent.nlp.text.Utils;
+import org.alvearie.dream.intent.nlp.text.io.DocumentReader;
+import org.alvearie.dream.intent.nlp.text.processors.smile.SmileDocumentNGrammer;
+import org.alvearie.dream.intent.nlp.text.processors.smile.SmileDocumentNormalizer;
+import org.alvearie.dream.intent.nlp.text.processors.smile.SmileDocumentTokenizer;
+import org.alvearie.dream.intent.nlp.utils.StopWatch;
+
+/**
+ * A streaming version of the {@link DocumentVectorizationPipeline} which vectorizes a {@link DocumentReader}'s documents
+ * in bounded chunks, so that corpora that do not fit in memory can be vectorized on a fixed heap.
+ * <p>
+ * The corpus-level steps, i.e. the feature space selection and the IDFs, require the whole corpus, so the source is
+ * read twice. The first pass normalizes, tokenizes and counts the n-grams of each chunk, keeping only the n-gram counts.
+ * The second pass normalizes, tokenizes, n-grams, and BoW and TF-IDF vectorizes each chunk, handing the vectorized
+ * chunk to a consumer before moving to the next one.
+ * <p>
+ * Documents are read on a separate thread into a bounded queue of chunks. When the processing falls behind the reader
+ * blocks, so at any point in time at most the queued chunks plus the chunk being processed are held in memory.
+ *
+ */
+public class StreamingDocumentVectorizationPipeline {
+
+    /**
+     * The default number of documents per chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 10_000;
+
+    /**
+     * The default number of chunks that can be read ahead of the processing.
+     */
+    public static final int DEFAULT_QUEUED_CHUNKS = 2;
+
+    private int chunkSize;
+    private int queuedChunks;
+    private TFIDFVectorizer vectorizer;
+    private DocumentVectorizer bow;
+    private SmileDocumentNGrammer ngrammer;
+    private DocumentTextTransformer normalizer;
+    private DocumentTokenizer tokenizer;
+    private FeatureSpace featureSpace;
+    private int documentCount;
+
+    /**
+     * Creates a {@link StreamingDocumentVectorizationPipeline} with the default chunk size and queue length.
+     *
+     * @param configuration the NLP text processing configuration, if null the default configuration will be used
+     */
+    public StreamingDocumentVectorizationPipeline(Configuration configuration) {
+        this(configuration, DEFAULT_CHUNK_SIZE, DEFAULT_QUEUED_CHUNKS);
+    }
+
+    /**
+     * Creates a {@link StreamingDocumentVectorizationPipeline}.
+     *
+     * @param configuration the NLP text processing configuration, if null the default configuration will be used
+     * @param chunkSize the number of documents processed at a time
+     * @param queuedChunks the number of chunks that can be read ahead of the processing
+     * @throws IllegalArgumentException if the chunk size or the number of queued chunks is not positive
+     */
+    public StreamingDocumentVectorizationPipeline(Configuration configuration, int chunkSize, int queuedChunks) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("The chunk size must be positive.");
+        }
+        if (queuedChunks <= 0) {
+            throw new IllegalArgumentException("The number of queued chunks must be positive.");
+        }
+        if (configuration == null) {
+            configuration = Configuration.getDefault();
+        }
+        this.chunkSize = chunkSize;
+        this.queuedChunks = queuedChunks;
+        vectorizer = new TFIDFVectorizer(configuration);
+        ngrammer = new SmileDocumentNGrammer(configuration);
+        tokenizer = new SmileDocumentTokenizer();
+        normalizer = new SmileDocumentNormalizer(configuration);
+        bow = new DocumentBoWVectorizer();
+    }
+
+    /**
+     * Runs the first pass over the given source, creating the corpus feature space and the IDFs.
+     *
+     * @param reader the document source
+     * @return the corpus feature space
+     * @throws IOException if there is a problem reading the source
+     */
+    public FeatureSpace fit(DocumentReader reader) throws IOException {
+        StopWatch sw = StopWatch.start();
+        Map<String, Integer> counts = new HashMap<>();
+        int[] count = new int[1];
+        process(reader, chunk -> {
+            Utils.forEach("normalize", chunk, normalizer::processText);
+            Utils.forEach("tokenize", chunk, tokenizer::tokenize);
+            ngrammer.count(chunk, counts);
+            count[0] += chunk.size();
+        });
+        Map<NGram, Integer> featureCounts = new LinkedHashMap<>();
+        featureSpace = ngrammer.createFeatureSpace(counts, featureCounts);
+        documentCount = count[0];
+        vectorizer.fit(documentCount, featureCounts, featureSpace);
+        System.out.println("Done! Fitted " + documentCount + " documents in " + sw.stop());
+        return featureSpace;
+    }
+
+    /**
+     * Vectorizes the documents in the given source chunk by chunk, running {@link #fit(DocumentReader)} first if this
+     * pipeline has not been fitted yet.
+     * <p>
+     * The consumer receives each chunk after it has been vectorized, the chunk is not retained by this pipeline after the
+     * consumer returns.
+     *
+     * @param reader the document source
+     * @param consumer the consumer of the vectorized chunks
+     * @throws IOException if there is a problem reading the source
+     */
+    public void vectorize(DocumentReader reader, Consumer<List<Document>> consumer) throws IOException {
+        if (featureSpace == null) {
+            fit(reader);
+        }
+        StopWatch sw = StopWatch.start();
+        int[] count = new int[1];
+        process(reader, chunk -> {
+            Utils.forEach("normalize", chunk, normalizer::processText);
+            Utils.forEach("tokenize", chunk, tokenizer::tokenize);
+            Corpus corpus = new Corpus(chunk);
+            corpus.setFeatureSpace(featureSpace);
+            ngrammer.ngram(corpus);
+            Utils.forEach("bow", chunk, bow::vectorize);
+            vectorizer.vectorize(corpus);
+            consumer.accept(chunk);
+            count[0] += chunk.size();
+        });
+        System.out.println("Done! Vectorized " + count[0] + " documents in " + sw.stop());
+    }
+
+    /**
+     * @return the corpus feature space, or null if this pipeline has not been fitted
+     */
+    public FeatureSpace getFeatureSpace() {
+        return featureSpace;
+    }
+
+    /**
+     * @return the number of documents in the corpus this pipeline was fitted with
+     */
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    /**
+     * Reads the source on a separate thread into a bounded queue of chunks and processes the chunks on the calling thread.
+     *
+     * @param reader the document source
+     * @param processor the chunk processor
+     * @throws IOException if there is a problem reading the source
+     */
+    private void process(DocumentReader reader, Consumer<List<Document>> processor) throws IOException {
+        BlockingQueue<List<Document>> chunks = new ArrayBlockingQueue<>(queuedChunks);
+        List<Document> endOfStream = Collections.emptyList();
+        AtomicReference<RuntimeException> readError = new AtomicReference<>();
+        Stream<Document> documents = reader.stream();
+        Thread readerThread = new Thread(() -> {
+            try {
+                Iterator<Document> iterator = documents.iterator();
+                List<Document> chunk = new ArrayList<>(chunkSize);
+                while (iterator.hasNext()) {
+                    chunk.add(iterator.next());
+                    if (chunk.size() == chunkSize) {
+                        chunks.put(chunk);
+                        chunk = new ArrayList<>(chunkSize);
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    chunks.put(chunk);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                readError.set(e);
+            } finally {
+                try {
+                    chunks.put(endOfStream);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "streaming-vectorization-reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+        try {
+            List<Document> chunk;
+            while ((chunk = chunks.take()) != endOfStream) {
+                processor.accept(chunk);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for documents.", e);
+        } finally {
+            readerThread.interrupt();
+            documents.close();
+        }
+        RuntimeException error = readError.get();
+        if (error instanceof UncheckedIOException) {
+            throw ((UncheckedIOException) error).getCause();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
@@ -6,9 +6,11 @@
 
 package org.alvearie.dream.intent.nlp.text.processors;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -23,8 +25,6 @@ import org.alvearie.dream.intent.nlp.text.FeatureVector;
 import org.alvearie.dream.intent.nlp.text.NGram;
 import org.alvearie.dream.intent.nlp.text.Utils;
 
-import java.util.Set;
-
 /**
  * Creates a Term Frequency - Inverse Document Frequency vector for a collection of {@link Document}s.
  *
@@ -36,54 +36,38 @@ public class TFIDFVectorizer implements DocumentVectorizer, Serializable {
      */
     private static final long serialVersionUID = -911548753272103091L;
 
+    private volatile FeatureVector idfs;
+
+    private boolean l2Normalize;
+
+    // Primitive copy of the IDFs used by the weighting kernel, published together with the IDF vector it was built from
+    private transient volatile IDFIndex idfIndex;
+
     /**
-     * The default TF-IDF vectorization used in the scikit proof of concept, used L2-normed so in order to recreate that we
-     * implement l2 norm here too.
-     * <p>
-     * The following text was copied from <a href="https://machinelearningmastery.com/vector-norms-machine-learning/">
-     * Gentle Introduction to Vector Norms in Machine Learning</a> <i>
-     * <p>
-     * Calculating the size or length of a vector is often required either directly or as part of a broader vector or
-     * vector-matrix operation. The length of the vector is referred to as the vector norm or the vector’s magnitude. The
-     * length of a vector is a nonnegative number that describes the extent of the vector in space, and is sometimes
-     * referred to as the vector’s magnitude or the norm. The length of the vector is always a positive number, except for a
-     * vector of all zero values. It is calculated using some measure that summarizes the distance of the vector from the
-     * origin of the vector space.
-     * <p>
-     * The L2 norm calculates the distance of the vector coordinate from the origin of the vector space. As such, it is also
-     * known as the Euclidean norm as it is calculated as the Euclidean distance from the origin. The result is a positive
-     * distance value </i>
-     *
-     * @param document
+     * An immutable primitive lookup of the IDF of each feature, so that it can be read by the threads vectorizing while a
+     * new one is fitted.
      */
-    private static void l2Normalize(Document document) {
-        Double norm = 0.0;
-        FeatureVector tfidf = document.getVector();
-        if (tfidf.isZeroVector()) {
-            // The Zero Vector cannot be normalized, b/c it will result in NaNs
-            // The normalization of the zero vector is the zero vector itself
-            document.setVector("L2", tfidf);
-            return;
-        }
-        Collection<Double> values = tfidf.getValues();
-        for (Double value : values) {
-            norm += value * value;
+    private static final class IDFIndex {
+
+        private final Map<Feature, Integer> index;
+        private final double[] values;
+
+        private IDFIndex(FeatureVector idfs) {
+            index = new HashMap<>(idfs.size() * 2);
+            values = new double[idfs.size()];
+            int i = 0;
+            for (Entry<Feature, Double> entry : idfs.getFeaturesAndValues().entrySet()) {
+                index.put(entry.getKey(), i);
+                values[i++] = entry.getValue();
+            }
         }
-        norm = Math.sqrt(norm);
-        FeatureVector l2Norm = new FeatureVector(tfidf.size());
-        for (Entry<Feature, Double> entry : tfidf.getFeaturesAndValues().entrySet()) {
-            Feature feature = entry.getKey();
-            Double value = entry.getValue();
-            Double normalizedValue = value / norm;
-            l2Norm.addFeature(feature, normalizedValue);
+
+        private double get(Feature feature) {
+            Integer i = index.get(feature);
+            return i == null ? 0.0 : values[i];
         }
-        document.setVector("L2", l2Norm);
     }
 
-    private FeatureVector idfs;
-
-    private boolean l2Normalize;
-
     /**
      * Create a default {@link TFIDFVectorizer} with L2 normalization.
      */
@@ -131,96 +115,149 @@ public class TFIDFVectorizer implements DocumentVectorizer, Serializable {
      * @return the IDF vector
      */
     private FeatureVector calculateIDFs(Corpus corpus, List<Feature> features) {
-        int n = corpus.size();
+        return calculateIDFs(corpus.size(), corpus.getNGramCounts(), features);
+    }
+
+    /**
+     * Calculate the Inverse Document Frequency vector from corpus-level statistics, see
+     * {@link #calculateIDFs(Corpus, List)}.
+     *
+     * @param n the number of documents in the corpus
+     * @param nGramFrequencies the corpus frequency of the n-grams
+     * @param features the feature space
+     * @return the IDF vector
+     */
+    private static FeatureVector calculateIDFs(int n, Map<NGram, Integer> nGramFrequencies, List<Feature> features) {
         int m = features.size();
         FeatureVector idfs = new FeatureVector(m);
         for (Feature feature : features) {
             if (feature instanceof NGram) {
                 NGram ngram = (NGram) feature;
-                int nGramFrequency = corpus.getNGramCount(ngram);
+                int nGramFrequency = nGramFrequencies.getOrDefault(ngram, 0);
                 if (nGramFrequency == -1) {
                     throw new IllegalStateException("This TF-IDF vectorizer requires the n-gram in corpus frequency to be set. If that is not possible this implementation needs to change so that is implemented.");
                 }
-                double idf = Math.log((1.0 + n) / (1.0 + nGramFrequency)) + 1;
-                idfs.addFeature(feature, idf);
+                idfs.addFeature(feature, idf(n, nGramFrequency));
             }
         }
         return idfs;
     }
 
     /**
-     * Calculate the Term Frequencies vector.
-     * <p>
-     * This method assumes a BoW Vectorizer has run first, which will be used to calculate an adjusted TF per Document using
-     * the following formula: <code>
+     * Calculates the smoothed IDF for a single feature, see {@link #calculateIDFs(Corpus, List)} for details on the
+     * formula.
+     *
+     * @param documentCount the number of documents in the corpus
+     * @param nGramFrequency the corpus frequency of the feature
+     * @return the IDF
+     */
+    static double idf(int documentCount, int nGramFrequency) {
+        return Math.log((1.0 + documentCount) / (1.0 + nGramFrequency)) + 1;
+    }
+
+    /**
+     * Sets the IDFs of this vectorizer from corpus-level statistics instead of from a {@link Corpus}.
      * <p>
-     *      term frequency = feature frequency / number of features in document
-     * </code>
+     * This allows a corpus that does not fit in memory to be vectorized in chunks: the statistics are gathered in a first
+     * pass over the corpus and subsequent calls to {@link #vectorize(Corpus)} on each chunk will use these IDFs.
      *
-     * @param documents the corpus
-     * @return returns a list of {@link FeatureVector}s containing the TFs for each {@link Document}
+     * @param documentCount the number of documents in the corpus
+     * @param nGramFrequencies the corpus frequency of the n-grams
+     * @param features the corpus feature space
      */
-    private List<FeatureVector> calculateTermFrequencies(List<Document> documents) {
-        final List<FeatureVector> termFrequenciesVectors = new ArrayList<>(documents.size());
+    public synchronized void fit(int documentCount, Map<NGram, Integer> nGramFrequencies, List<Feature> features) {
+        FeatureVector newIdfs = calculateIDFs(documentCount, nGramFrequencies, features);
+        IDFIndex newIndex = new IDFIndex(newIdfs);
+        idfs = newIdfs;
+        idfIndex = newIndex;
+    }
 
-        documents.stream().map(document -> {
-            FeatureVector bowVector = document.getVector();
-            if (bowVector == null) {
-                throw new IllegalStateException("The TF-IDF vectorizer requires the BoW vectorizer to on this Document run first.");
-            }
-            FeatureVector tfVector = new FeatureVector(bowVector.size());
-            Map<Feature, Double> featuresAndFrequenciesMap = bowVector.getFeaturesAndValues();
-            Set<Entry<Feature, Double>> featuresAndFrequencies = featuresAndFrequenciesMap.entrySet();
-            for (Entry<Feature, Double> featureAndFrequency : featuresAndFrequencies) {
-                Feature feature = featureAndFrequency.getKey();
-                Double bowFrequency = featureAndFrequency.getValue();
-                // We calculate the TF adjusted to the number of terms (n-grams) in the document
-                double tf = bowFrequency / bowVector.size();
-                tfVector.addFeature(feature, tf);
-            }
-            return tfVector;
-        }).forEach(tfVector -> termFrequenciesVectors.add(tfVector));
-        return termFrequenciesVectors;
+    /**
+     * Fits the IDFs on the given corpus unless they were already fitted.
+     *
+     * @param corpus the corpus
+     * @return the IDF lookup
+     */
+    private synchronized IDFIndex fit(Corpus corpus) {
+        if (idfIndex == null) {
+            FeatureVector newIdfs = calculateIDFs(corpus, corpus.getFeatureSpace());
+            idfIndex = new IDFIndex(newIdfs);
+            idfs = newIdfs;
+        }
+        return idfIndex;
     }
 
     /**
-     * This method builds the TF-IDF vector for all documents, using the following formula: <code>
+     * Calculates the final TF-IDF vector for the given {@link Document} in a single pass over its BoW vector.
+     * <p>
+     * This method assumes a BoW Vectorizer has run first, the BoW frequencies are read once and the term frequency, TF-IDF
+     * and L2 normalization are computed into primitive arrays using the following formulas: <code>
      * <p>
-     *      tf-idf = tf * idf
+     *      term frequency = feature frequency / number of features in document<br>
+     *      tf-idf = tf * idf<br>
+     *      l2 = tf-idf / sqrt(sum(tf-idf^2))
      * </code>
      * <p>
+     * The default TF-IDF vectorization used in the scikit proof of concept, used L2-normed so in order to recreate that we
+     * implement l2 norm here too.
+     * <p>
+     * The following text was copied from <a href="https://machinelearningmastery.com/vector-norms-machine-learning/">
+     * Gentle Introduction to Vector Norms in Machine Learning</a> <i>
+     * <p>
+     * Calculating the size or length of a vector is often required either directly or as part of a broader vector or
+     * vector-matrix operation. The length of the vector is referred to as the vector norm or the vector’s magnitude. The
+     * length of a vector is a nonnegative number that describes the extent of the vector in space, and is sometimes
+     * referred to as the vector’s magnitude or the norm. The length of the vector is always a positive number, except for a
+     * vector of all zero values. It is calculated using some measure that summarizes the distance of the vector from the
+     * origin of the vector space.
+     * <p>
+     * The L2 norm calculates the distance of the vector coordinate from the origin of the vector space. As such, it is also
+     * known as the Euclidean norm as it is calculated as the Euclidean distance from the origin. The result is a positive
+     * distance value </i>
+     * <p>
      * The Document's vector will be set by this method after running.
      *
-     * @param documents the documents
-     * @param termFrequencies the term frequencies for each document
-     * @param idfs the inverse document frequencies for each feature
+     * @param document the document
+     * @param index the IDF lookup
      */
-    private void calculateTFIDF(List<Document> documents, List<FeatureVector> termFrequencies, FeatureVector idfs) {
-        for (int i = 0; i < documents.size(); i++) {
-            Document document = documents.get(i);
-            FeatureVector documentTermFrequency = termFrequencies.get(i);
-            FeatureVector tfidfVector = new FeatureVector(documentTermFrequency.size());
-            Map<Feature, Double> featureMap = documentTermFrequency.getFeaturesAndValues();
-            for (Entry<Feature, Double> entry : featureMap.entrySet()) {
-                Feature feature = entry.getKey();
-                Double tf = entry.getValue();
-                Double idf = idfs.getValue(feature);
-                Double tfidf = tf * idf;
-                tfidfVector.addFeature(feature, tfidf);
+    private void weigh(Document document, IDFIndex index) {
+        FeatureVector bowVector = document.getVector();
+        if (bowVector == null) {
+            throw new IllegalStateException("The TF-IDF vectorizer requires the BoW vectorizer to on this Document run first.");
+        }
+        int size = bowVector.size();
+        Feature[] features = new Feature[size];
+        double[] weights = new double[size];
+        double sum = 0.0;
+        double norm = 0.0;
+        int i = 0;
+        for (Entry<Feature, Double> featureAndFrequency : bowVector.getFeaturesAndValues().entrySet()) {
+            Feature feature = featureAndFrequency.getKey();
+            double idf = index.get(feature);
+            // We calculate the TF adjusted to the number of terms (n-grams) in the document
+            double tf = featureAndFrequency.getValue() / size;
+            double tfidf = tf * idf;
+            features[i] = feature;
+            weights[i++] = tfidf;
+            sum += tfidf;
+            norm += tfidf * tfidf;
+        }
+        if (Configuration.getDefault().isTraceEnabled()) {
+            document.setVector("TF-IDF", new FeatureVector(Arrays.asList(features), weights));
+        }
+        // The Zero Vector cannot be normalized, b/c it will result in NaNs
+        // The normalization of the zero vector is the zero vector itself
+        if (l2Normalize && size > 0 && Double.compare(sum, 0.0) != 0) {
+            norm = Math.sqrt(norm);
+            for (int j = 0; j < size; j++) {
+                weights[j] = weights[j] / norm;
             }
-            document.setVector("TF-IDF", tfidfVector);
+            document.setVector("L2", new FeatureVector(Arrays.asList(features), weights));
+        } else {
+            document.setVector(l2Normalize ? "L2" : "TF-IDF", new FeatureVector(Arrays.asList(features), weights));
         }
     }
 
-    /**
-     * Run l2Normalization against a list of documents
-     *
-     * @param documents the document's whose vectors will be l2 normalized
-     */
-    private void l2Normalize(List<Document> documents) {
-        Utils.stream(documents).forEach(TFIDFVectorizer::l2Normalize);
-    }
-
     /* (non-Javadoc)
      * @see org.alvearie.nlp.text.DocumentVectorizer#vectorize(org.alvearie.nlp.text.Document)
      */
@@ -244,15 +281,24 @@ public class TFIDFVectorizer implements DocumentVectorizer, Serializable {
             throw new NullPointerException("The corpus was null.");
         }
         List<Document> documents = corpus.getDocuments();
-        List<Feature> features = corpus.getFeatureSpace();
-        List<FeatureVector> termFrequencies = calculateTermFrequencies(documents);
-        if (idfs == null) {
-            idfs = calculateIDFs(corpus, features);
+        // Every document of the corpus is weighed with the same IDFs even if new ones are fitted meanwhile
+        IDFIndex index = idfIndex;
+        if (index == null) {
+            index = fit(corpus);
         }
-        calculateTFIDF(documents, termFrequencies, idfs);
+        IDFIndex currentIndex = index;
+        Utils.forEach("tfidf", documents, document -> weigh(document, currentIndex));
+    }
 
-        if (l2Normalize) {
-            l2Normalize(documents);
+    /**
+     * @param in
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (idfs != null) {
+            idfIndex = new IDFIndex(idfs);
         }
     }
 }
@@ -10,21 +10,25 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.alvearie.dream.intent.nlp.Experiment;
 import org.alvearie.dream.intent.nlp.text.Configuration;
 import org.alvearie.dream.intent.nlp.text.Corpus;
 import org.alvearie.dream.intent.nlp.text.Document;
+import org.alvearie.dream.intent.nlp.text.Feature;
 import org.alvearie.dream.intent.nlp.text.FeatureSpace;
 import org.alvearie.dream.intent.nlp.text.NGram;
 import org.alvearie.dream.intent.nlp.text.NGrammer;
 import org.alvearie.dream.intent.nlp.text.Utils;
+import org.alvearie.dream.intent.nlp.utils.Metrics;
 import org.apache.log4j.Logger;
 
 import smile.nlp.dictionary.EnglishPunctuations;
@@ -51,6 +55,16 @@ public class SmileDocumentNGrammer implements NGrammer, Serializable {
     private static final long serialVersionUID = 7284519671678121901L;
     private static final Logger LOGGER = Logger.getLogger(SmileDocumentNGrammer.class.getName());
 
+    /**
+     * The {@link Metrics} counter of the document n-grams looked up in a given feature space.
+     */
+    public static final String FEATURE_SPACE_LOOKUPS = "feature_space_lookups_total";
+
+    /**
+     * The {@link Metrics} counter of the document n-grams found in a given feature space.
+     */
+    public static final String FEATURE_SPACE_HITS = "feature_space_hits_total";
+
     private int maximumFrequency;
     private int minimumFrequency;
     private int minLength;
@@ -117,7 +131,10 @@ public class SmileDocumentNGrammer implements NGrammer, Serializable {
      */
     @Override
     public void ngram(Corpus corpus) {
-        if (corpus.getFeatureSpace() == null || corpus.getFeatureSpace().isEmpty()) {
+        // With a given feature space, the documents are being classified and it's worth knowing how many of their n-grams
+        // the model knows
+        boolean givenFeatureSpace = corpus.getFeatureSpace() != null && !corpus.getFeatureSpace().isEmpty();
+        if (!givenFeatureSpace) {
             Collection<String[]> allCorpusTokens = new ArrayList<>();
             for (Document document : corpus) {
                 List<String> tokens = document.getTokens();
@@ -157,23 +174,138 @@ public class SmileDocumentNGrammer implements NGrammer, Serializable {
         // and set the corresponding counts at the corpus level, we need to run the n-gram extraction again
         // but now at the document level in order to get the n-gram count for each Document but only for those
         // n-grams that made the cut above.
-        Utils.stream(corpus.getDocuments()).forEach(
-                document -> {
-                    Collection<String[]> singleDocumentTokens = new ArrayList<>();
-                    singleDocumentTokens.add(document.getTokens().toArray(new String[] {}));
-                    List<List<smile.nlp.NGram>> documentSmileNGrams = extractNGrams(singleDocumentTokens, maxLength, 0);
-                    for (int i = 0; i < documentSmileNGrams.size(); i++) {
-                        List<smile.nlp.NGram> smileNGrams = documentSmileNGrams.get(i);
-                        for (smile.nlp.NGram smileNGram : smileNGrams) {
-                            NGram ngram = NGram.getNGram(smileNGram.words);
-                            // We need to check if this is an n-gram that made the cut at the corpus level if not we skip it
-                            if (!corpus.getFeatureSpace().contains(ngram)) {
-                                continue;
-                            }
-                            document.setNGramCount(ngram, smileNGram.freq);
-                        }
+        Utils.forEach("ngram", corpus.getDocuments(), document -> {
+            Collection<String[]> singleDocumentTokens = new ArrayList<>();
+            singleDocumentTokens.add(document.getTokens().toArray(new String[] {}));
+            List<List<smile.nlp.NGram>> documentSmileNGrams = extractNGrams(singleDocumentTokens, maxLength, 0);
+            int lookups = 0;
+            int hits = 0;
+            for (int i = 0; i < documentSmileNGrams.size(); i++) {
+                List<smile.nlp.NGram> smileNGrams = documentSmileNGrams.get(i);
+                for (smile.nlp.NGram smileNGram : smileNGrams) {
+                    NGram ngram = NGram.getNGram(smileNGram.words);
+                    lookups++;
+                    // We need to check if this is an n-gram that made the cut at the corpus level if not we skip it
+                    if (!corpus.getFeatureSpace().contains(ngram)) {
+                        continue;
                     }
-                });
+                    hits++;
+                    document.setNGramCount(ngram, smileNGram.freq);
+                }
+            }
+            if (givenFeatureSpace) {
+                Metrics.getDefault().add(FEATURE_SPACE_LOOKUPS, lookups);
+                Metrics.getDefault().add(FEATURE_SPACE_HITS, hits);
+            }
+        });
+    }
+
+    /**
+     * Counts the n-grams in the given documents, adding their frequencies to the given corpus-level counts.
+     * <p>
+     * This method allows a corpus that does not fit in memory to be n-grammed in chunks: the n-gram frequencies of all the
+     * chunks are accumulated in the counts map, which is keyed by the n-gram's word span, and once all the chunks have been
+     * counted {@link #createFeatureSpace(Map, Map)} produces the same n-grams that {@link #ngram(Corpus)} would have
+     * produced for the whole corpus. Only the counts are retained, not the documents.
+     *
+     * @param documents the tokenized documents in the chunk
+     * @param counts the corpus-level n-gram counts to add to
+     * @throws IllegalStateException if a document is not tokenized
+     */
+    public void count(Collection<Document> documents, Map<String, Integer> counts) {
+        Collection<String[]> chunkTokens = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            List<String> tokens = document.getTokens();
+            if (tokens == null) {
+                throw new IllegalStateException("A given document is not tokenized. All documents in the corpus need to be tokenized.");
+            }
+            chunkTokens.add(tokens.toArray(new String[] {}));
+        }
+        List<List<smile.nlp.NGram>> chunkSmileNGrams = extractNGrams(chunkTokens, maxLength, 0);
+        for (int i = minLength; i <= maxLength && i < chunkSmileNGrams.size(); i++) {
+            for (smile.nlp.NGram smileNGram : chunkSmileNGrams.get(i)) {
+                counts.merge(String.join(" ", smileNGram.words), smileNGram.freq, Integer::sum);
+            }
+        }
+    }
+
+    /**
+     * Counts the n-grams in the given document, see {@link #count(Collection, Map)}.
+     * <p>
+     * The result only depends on the document's tokens and the range of n-values of this n-grammer, so it can be cached
+     * and later passed to {@link #ngram(Corpus, List)} instead of re-extracting the n-grams.
+     *
+     * @param document the tokenized document
+     * @return the document n-gram counts keyed by word span
+     * @throws IllegalStateException if the document is not tokenized
+     */
+    public Map<String, Integer> count(Document document) {
+        Map<String, Integer> counts = new HashMap<>();
+        count(Collections.singletonList(document), counts);
+        return counts;
+    }
+
+    /**
+     * N-grams the given corpus from previously counted document n-grams, producing the same corpus-level and
+     * document-level n-grams as {@link #ngram(Corpus)} without extracting them from the tokens.
+     * <p>
+     * If the corpus does not have a feature space yet, the feature space is created from the sum of the document counts.
+     *
+     * @param corpus the corpus
+     * @param documentCounts the n-gram counts of each document in the corpus as returned by {@link #count(Document)}, in
+     *        the same order as the corpus documents
+     * @throws IllegalArgumentException if there is not one set of counts per document
+     */
+    public void ngram(Corpus corpus, List<Map<String, Integer>> documentCounts) {
+        List<Document> documents = corpus.getDocuments();
+        if (documents.size() != documentCounts.size()) {
+            throw new IllegalArgumentException("Expected the n-gram counts of " + documents.size() + " documents but got " + documentCounts.size() + ".");
+        }
+        if (corpus.getFeatureSpace() == null || corpus.getFeatureSpace().isEmpty()) {
+            Map<String, Integer> counts = new HashMap<>();
+            for (Map<String, Integer> documentCount : documentCounts) {
+                documentCount.forEach((span, freq) -> counts.merge(span, freq, Integer::sum));
+            }
+            Map<NGram, Integer> featureCounts = new HashMap<>();
+            FeatureSpace corpusFeatures = createFeatureSpace(counts, featureCounts);
+            featureCounts.forEach(corpus::setNGramCount);
+            corpus.setFeatureSpace(corpusFeatures);
+        }
+        Set<Feature> features = new HashSet<>(corpus.getFeatureSpace());
+        Utils.forEach("ngram", IntStream.range(0, documents.size()).boxed().collect(Collectors.toList()), i -> {
+            Document document = documents.get(i);
+            documentCounts.get(i).forEach((span, freq) -> {
+                NGram ngram = NGram.getNGram(span.split(" "));
+                if (features.contains(ngram)) {
+                    document.setNGramCount(ngram, freq);
+                }
+            });
+        });
+    }
+
+    /**
+     * Creates the corpus feature space from the n-gram counts accumulated by {@link #count(Collection, Map)}, keeping only
+     * the n-grams within the configured frequency boundaries.
+     *
+     * @param counts the corpus-level n-gram counts keyed by word span
+     * @param featureCounts the map where the corpus-level count of each n-gram in the feature space will be set
+     * @return the feature space, ordered by n-gram size and then by descending frequency
+     */
+    public FeatureSpace createFeatureSpace(Map<String, Integer> counts, Map<NGram, Integer> featureCounts) {
+        List<Map.Entry<String, Integer>> entries = counts.entrySet().stream()
+                .filter(entry -> entry.getValue() >= minimumFrequency && entry.getValue() <= maximumFrequency)
+                .sorted(Comparator.<Map.Entry<String, Integer>> comparingInt(entry -> entry.getKey().split(" ").length)
+                        .thenComparing(Map.Entry.<String, Integer> comparingByValue().reversed())
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .collect(Collectors.toList());
+        FeatureSpace corpusFeatures = new FeatureSpace();
+        for (Map.Entry<String, Integer> entry : entries) {
+            NGram ngram = NGram.getNGram(entry.getKey().split(" "));
+            featureCounts.put(ngram, entry.getValue());
+            corpusFeatures.add(ngram);
+        }
+        LOGGER.info("NGrammer found " + corpusFeatures.size() + " unique n-grams in the corpus.");
+        return corpusFeatures;
     }
 
     /**
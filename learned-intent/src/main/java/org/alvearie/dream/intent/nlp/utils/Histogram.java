@@ -0,0 +1,146 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe histogram with fixed buckets.
+ * <p>
+ * Each bucket counts the recorded values that are less than or equal to its upper bound and greater than the upper bound
+ * of the previous bucket. Values greater than the last upper bound are counted in an overflow bucket.
+ *
+ */
+public class Histogram {
+
+    private final String name;
+    private final double[] upperBounds;
+    private final LongAdder[] counts;
+    private final LongAdder count = new LongAdder();
+    private final DoubleAdder sum = new DoubleAdder();
+
+    /**
+     * Creates a {@link Histogram}.
+     *
+     * @param name the name of the histogram
+     * @param upperBounds the upper bounds of the buckets, in ascending order
+     * @throws IllegalArgumentException if there are no upper bounds or they are not in ascending order
+     */
+    public Histogram(String name, double... upperBounds) {
+        if (upperBounds.length == 0) {
+            throw new IllegalArgumentException("A histogram needs at least one bucket.");
+        }
+        for (int i = 1; i < upperBounds.length; i++) {
+            if (upperBounds[i] <= upperBounds[i - 1]) {
+                throw new IllegalArgumentException("The upper bounds of the buckets must be in ascending order.");
+            }
+        }
+        this.name = name;
+        this.upperBounds = upperBounds.clone();
+        counts = new LongAdder[upperBounds.length + 1];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param value the value
+     */
+    public void record(double value) {
+        int bucket = Arrays.binarySearch(upperBounds, value);
+        if (bucket < 0) {
+            bucket = -bucket - 1;
+        }
+        counts[bucket].increment();
+        count.increment();
+        sum.add(value);
+    }
+
+    /**
+     * @return the name of this histogram
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the upper bounds of the buckets, the overflow bucket is not included
+     */
+    public double[] getUpperBounds() {
+        return upperBounds.clone();
+    }
+
+    /**
+     * @return the number of values in each bucket, the last element is the overflow bucket
+     */
+    public long[] getBucketCounts() {
+        long[] bucketCounts = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            bucketCounts[i] = counts[i].sum();
+        }
+        return bucketCounts;
+    }
+
+    /**
+     * @return the number of recorded values
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the sum of the recorded values
+     */
+    public double getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return the mean of the recorded values, or 0 if there are none
+     */
+    public double getMean() {
+        long n = getCount();
+        return n == 0 ? 0.0 : getSum() / n;
+    }
+
+    /**
+     * Estimates a percentile as the upper bound of the bucket that contains it.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the upper bound of the bucket containing the percentile, positive infinity if it is in the overflow bucket,
+     *         or 0 if there are no recorded values
+     */
+    public double getPercentile(double percentile) {
+        long[] bucketCounts = getBucketCounts();
+        long total = Arrays.stream(bucketCounts).sum();
+        if (total == 0) {
+            return 0.0;
+        }
+        long rank = (long) Math.ceil(percentile / 100.0 * total);
+        long cumulative = 0;
+        for (int i = 0; i < upperBounds.length; i++) {
+            cumulative += bucketCounts[i];
+            if (cumulative >= rank) {
+                return upperBounds[i];
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return name + ": count=" + getCount() + ", mean=" + getMean() + ", p50<=" + getPercentile(50) + ", p99<=" + getPercentile(99);
+    }
+}
@@ -6,20 +6,25 @@
 
 package org.alvearie.dream.intent.nlp.utils;
 
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
 import java.util.SortedSet;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.alvearie.dream.intent.nlp.text.Configuration;
 import org.alvearie.dream.intent.nlp.text.Document;
 import org.alvearie.dream.intent.nlp.text.DocumentTextTransformer;
 import org.alvearie.dream.intent.nlp.text.DocumentTokenizer;
+import org.alvearie.dream.intent.nlp.text.Utils;
 import org.alvearie.dream.intent.nlp.text.processors.smile.SmileDocumentNormalizer;
 import org.alvearie.dream.intent.nlp.text.processors.smile.SmileDocumentTokenizer;
-import org.apache.commons.lang3.StringUtils;
 
 /**
  * A utility class containing methods that, for a given document, will get a set of tokens lost during text normalization.
@@ -28,7 +33,11 @@ import org.apache.commons.lang3.StringUtils;
  * If we choose not to lemmatize the text during normalization, the set of lost tokens is simply the difference between
  * the set of tokens before normalization and the set of tokens after normalization.
  *
- * On the other hand, if we choose to lemmatize during normalization, we don't count
+ * On the other hand, if we choose to lemmatize during normalization, we don't count the tokens that were replaced by
+ * their lemma, that is tokens for which the normalized text contains a prefix of the token that is at most
+ * {@link #DISTANCE_THRESHOLD} characters shorter.
+ *
+ * The lost tokens of a whole corpus can be obtained with {@link #getLostTokenCounts(Collection)}.
  *
  */
 public class LostTokensUtils {
@@ -76,6 +85,27 @@ public class LostTokensUtils {
         return getLostTokens(originalTokens, newTokens);
     }
 
+    /**
+     * Get the lost tokens of a whole corpus, counting the number of documents each token was lost in.
+     * <p>
+     * Documents with the same text are only normalized once, and the distinct texts are processed in parallel.
+     *
+     * @param documents the documents in the corpus
+     * @return a {@link SortedMap} of the tokens that were dropped during normalization to the number of documents they
+     *         were dropped in
+     */
+    public SortedMap<String, Integer> getLostTokenCounts(Collection<Document> documents) {
+        Map<String, Long> textCounts = documents.stream().collect(Collectors.groupingBy(Document::getText, Collectors.counting()));
+        Map<String, Integer> lostTokenCounts = new ConcurrentHashMap<>();
+        Utils.forEach("lost-tokens", textCounts.entrySet(), entry -> {
+            int count = entry.getValue().intValue();
+            for (String token : getLostTokens(new Document(entry.getKey()))) {
+                lostTokenCounts.merge(token, count, Integer::sum);
+            }
+        });
+        return new TreeMap<>(lostTokenCounts);
+    }
+
     /**
      * Return a sorted set of tokens that were lost during normalization of the input text.
      *
@@ -86,38 +116,38 @@ public class LostTokensUtils {
      */
     private SortedSet<String> getLostTokens(List<String> originalTokens, List<String> newTokens) {
 
-        SortedSet<String> originalTokenSet = new TreeSet<>(originalTokens);
-        SortedSet<String> newTokenSet = new TreeSet<>(newTokens);
+        Set<String> newTokenSet = new HashSet<>(newTokens);
 
-        SortedSet<String> difference = new TreeSet<>(originalTokenSet);
+        SortedSet<String> difference = new TreeSet<>(originalTokens);
         difference.removeAll(newTokenSet);
 
         /* If lemmatization is done during normalization,
-            use Levenshtein distance to determine whether a token is a lemma of the original token,
-            hence doesn't count as a lost token */
-
-        List<String> stringsToRemove = difference.stream()
-
-                // Combine the tokens from the difference set above with the tokens from the normalized text
-                .flatMap(token -> newTokenSet.stream().map(newToken -> Arrays.asList(token, newToken)))
-
-                /* StringUtils.getLevenshteinDistance(CharSequence, CharSequence, int threshold)
-                    only returns a positive result if 0 < distance <= threshold,
-                    so any combination of tokens with a distance of less than the threshold
-                    will be removed from the difference set above.
+            a token whose prefix is a token of the normalized text is a lemma of the original token,
+            hence doesn't count as a lost token.
 
-                    This means that we don't count a token like "created" as a lost token when it was lemmatized to "create"
-                 */
+            This means that we don't count a token like "created" as a lost token when it was lemmatized to "create".
+            The original token is not in the normalized text so the prefix is a proper prefix, and removing a suffix is the
+            Levenshtein distance between the two, which needs to be within the threshold */
 
-                .filter(tokens -> StringUtils.getLevenshteinDistance(tokens.get(0), tokens.get(1), DISTANCE_THRESHOLD) > 0
-                        && tokens.get(0).startsWith(tokens.get(1)))
-
-                // Pick out the first half of the token combination above
-                .map(strings -> strings.get(0))
-                .collect(Collectors.toList());
-
-        difference.removeAll(stringsToRemove);
+        difference.removeIf(token -> isLemmatized(token, newTokenSet));
 
         return difference;
     }
+
+    /**
+     * Checks whether the given token was lemmatized, that is whether one of its prefixes at most
+     * {@link #DISTANCE_THRESHOLD} characters shorter is in the given set of tokens.
+     *
+     * @param token the original token
+     * @param newTokenSet the tokens from the normalized text
+     * @return true if the token was lemmatized
+     */
+    private static boolean isLemmatized(String token, Set<String> newTokenSet) {
+        for (int distance = 1; distance <= DISTANCE_THRESHOLD && distance < token.length(); distance++) {
+            if (newTokenSet.contains(token.substring(0, token.length() - distance))) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,206 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.utils;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe registry of named latency histograms and counters.
+ * <p>
+ * Histograms are created on first use with buckets suitable for latencies in milliseconds. The registry can be
+ * formatted in the Prometheus text format with {@link #format(StringBuilder)}.
+ * <p>
+ * Work that should not be counted with the rest of the application, e.g. the classifications of a shadow model, can be
+ * recorded in its own registry with {@link #callWith(Metrics, Callable)}.
+ *
+ */
+public class Metrics {
+
+    /**
+     * The bucket upper bounds, in milliseconds, of the latency histograms.
+     */
+    private static final double[] LATENCY_BUCKETS = { 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000 };
+
+    private static final Metrics DEFAULT = new Metrics();
+
+    /**
+     * The registry of the task the current thread works for, see {@link #callWith(Metrics, Callable)}.
+     */
+    private static final ThreadLocal<Metrics> CURRENT = new ThreadLocal<>();
+
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    /**
+     * @return the registry shared by the whole application, or within a task run with
+     *         {@link #callWith(Metrics, Callable)} the registry of the task
+     */
+    public static Metrics getDefault() {
+        Metrics current = CURRENT.get();
+        return current == null ? DEFAULT : current;
+    }
+
+    /**
+     * Runs a task that records its metrics in the given registry rather than in the registry of the application. Only
+     * the metrics recorded on the calling thread go to the given registry, the task should run its work serially, see
+     * {@link org.alvearie.dream.intent.nlp.text.ParallelExecutor#callWith(int, Callable)}.
+     *
+     * @param metrics the registry of the task
+     * @param task the task
+     * @return the result of the task
+     * @throws Exception the exception thrown by the task
+     */
+    public static <V> V callWith(Metrics metrics, Callable<V> task) throws Exception {
+        Metrics previous = CURRENT.get();
+        CURRENT.set(metrics);
+        try {
+            return task.call();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Gets a latency histogram, creating it if needed.
+     *
+     * @param name the name of the histogram
+     * @return the histogram
+     */
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram(n, LATENCY_BUCKETS));
+    }
+
+    /**
+     * Records the time elapsed since the given start in a latency histogram.
+     *
+     * @param name the name of the histogram
+     * @param startNanos the start time, as returned by {@link System#nanoTime()}
+     */
+    public void time(String name, long startNanos) {
+        histogram(name).record((System.nanoTime() - startNanos) / 1_000_000.0);
+    }
+
+    /**
+     * Increments a counter by one.
+     *
+     * @param name the name of the counter
+     */
+    public void increment(String name) {
+        add(name, 1);
+    }
+
+    /**
+     * Increments a counter.
+     *
+     * @param name the name of the counter
+     * @param amount the amount to add
+     */
+    public void add(String name, long amount) {
+        counters.computeIfAbsent(name, n -> new LongAdder()).add(amount);
+    }
+
+    /**
+     * @param name the name of the counter
+     * @return the value of the counter, 0 if it was never incremented
+     */
+    public long getCount(String name) {
+        LongAdder counter = counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * @return the histograms sorted by name
+     */
+    public SortedMap<String, Histogram> getHistograms() {
+        return new TreeMap<>(histograms);
+    }
+
+    /**
+     * @return the counter values sorted by name
+     */
+    public SortedMap<String, Long> getCounters() {
+        SortedMap<String, Long> values = new TreeMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.sum()));
+        return values;
+    }
+
+    /**
+     * Removes all histograms and counters.
+     */
+    public void clear() {
+        histograms.clear();
+        counters.clear();
+    }
+
+    /**
+     * Appends all histograms and counters in the Prometheus text format.
+     *
+     * @param output the output
+     */
+    public void format(StringBuilder output) {
+        format(output, "");
+    }
+
+    /**
+     * Appends all histograms and counters in the Prometheus text format, with a prefix to their names so that they can be
+     * told from the metrics of another registry.
+     *
+     * @param output the output
+     * @param prefix the prefix of the names
+     */
+    public void format(StringBuilder output, String prefix) {
+        for (Histogram histogram : getHistograms().values()) {
+            format(output, prefix + histogram.getName(), histogram);
+        }
+        for (Entry<String, Long> counter : getCounters().entrySet()) {
+            output.append("# TYPE ").append(prefix).append(counter.getKey()).append(" counter\n");
+            output.append(prefix).append(counter.getKey()).append(' ').append(counter.getValue()).append('\n');
+        }
+    }
+
+    /**
+     * Appends a histogram in the Prometheus text format, with cumulative buckets.
+     *
+     * @param output the output
+     * @param histogram the histogram
+     */
+    public static void format(StringBuilder output, Histogram histogram) {
+        format(output, histogram.getName(), histogram);
+    }
+
+    /**
+     * Appends a histogram in the Prometheus text format, with cumulative buckets, under the given name.
+     *
+     * @param output the output
+     * @param name the name of the histogram in the output
+     * @param histogram the histogram
+     */
+    private static void format(StringBuilder output, String name, Histogram histogram) {
+        double[] upperBounds = histogram.getUpperBounds();
+        long[] bucketCounts = histogram.getBucketCounts();
+        output.append("# TYPE ").append(name).append(" histogram\n");
+        long cumulative = 0;
+        for (int i = 0; i < upperBounds.length; i++) {
+            cumulative += bucketCounts[i];
+            output.append(name).append("_bucket{le=\"").append(upperBounds[i]).append("\"} ").append(cumulative).append('\n');
+        }
+        cumulative += bucketCounts[upperBounds.length];
+        output.append(name).append("_bucket{le=\"+Inf\"} ").append(cumulative).append('\n');
+        output.append(name).append("_sum ").append(histogram.getSum()).append('\n');
+        output.append(name).append("_count ").append(cumulative).append('\n');
+    }
+}
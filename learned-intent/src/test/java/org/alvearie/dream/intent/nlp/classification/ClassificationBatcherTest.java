@@ -0,0 +1,111 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.classification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.alvearie.dream.intent.nlp.utils.Histogram;
+import org.junit.Test;
+
+public class ClassificationBatcherTest {
+
+    /**
+     * A classifier that classifies every document as its own text.
+     */
+    private static class EchoClassifier implements Classifier {
+
+        @Override
+        public void train(Map<String, Collection<Document>> trainingData) {
+        }
+
+        @Override
+        public List<Classification> classify(Document document) {
+            if (document.getText().equals("fail")) {
+                throw new IllegalStateException("Cannot classify " + document);
+            }
+            return Collections.singletonList(new Classification(document.getText(), 1.0, document.getText()));
+        }
+
+        @Override
+        public void save(File file) {
+        }
+
+        @Override
+        public boolean isTrained() {
+            return true;
+        }
+    }
+
+    /**
+     * Every request is completed with its own classification and concurrent requests are batched.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void submit() throws Exception {
+        try (ClassificationBatcher batcher = new ClassificationBatcher(new EchoClassifier(), 8, 50, TimeUnit.MILLISECONDS)) {
+            List<CompletableFuture<List<Classification>>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                futures.add(batcher.submit(new Document(String.valueOf(i))));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                assertEquals(String.valueOf(i), futures.get(i).get(10, TimeUnit.SECONDS).get(0).getCategory());
+            }
+            Histogram batchSizes = batcher.getBatchSizes();
+            assertEquals(100, (long) batchSizes.getSum());
+            assertTrue(batchSizes.getCount() < 100);
+            assertTrue(batchSizes.getPercentile(100) <= 8);
+            assertEquals(100, batcher.getWaitTimes().getCount());
+        }
+    }
+
+    /**
+     * A failed classification only fails its own request.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void submitFailure() throws Exception {
+        try (ClassificationBatcher batcher = new ClassificationBatcher(new EchoClassifier(), 8, 50, TimeUnit.MILLISECONDS)) {
+            CompletableFuture<List<Classification>> failed = batcher.submit(new Document("fail"));
+            CompletableFuture<List<Classification>> succeeded = batcher.submit(new Document("succeed"));
+            assertEquals("succeed", succeeded.get(10, TimeUnit.SECONDS).get(0).getCategory());
+            try {
+                failed.get(10, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+                return;
+            }
+            throw new AssertionError("The classification should have failed.");
+        }
+    }
+
+    /**
+     * Requests submitted after closing fail.
+     */
+    @Test(expected = ExecutionException.class)
+    public void submitAfterClose() throws Exception {
+        ClassificationBatcher batcher = new ClassificationBatcher(new EchoClassifier(), 8, 50, TimeUnit.MILLISECONDS);
+        assertFalse(batcher.isClosed());
+        batcher.close();
+        assertTrue(batcher.isClosed());
+        batcher.submit(new Document("closed")).get(10, TimeUnit.SECONDS);
+    }
+}
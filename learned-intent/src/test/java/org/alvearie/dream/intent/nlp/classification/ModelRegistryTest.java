@@ -0,0 +1,146 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.classification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileClassifier;
+import org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileNaiveBayesClassifier;
+import org.alvearie.dream.intent.nlp.classification.gt.io.CSVGroundTruthReader;
+import org.alvearie.dream.intent.nlp.classification.gt.io.SamplingGroundTruthReader;
+import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.alvearie.dream.intent.nlp.text.Feature;
+import org.junit.Test;
+
+/**
+ * Test for {@link ModelRegistry}.
+ *
+ */
+public class ModelRegistryTest {
+
+    private static final File GROUND_TRUTH = new File("src/test/resources/testClassificationGT.csv");
+
+    /**
+     * @param fraction the fraction of the ground truth to train on
+     * @return the file of a classifier trained on the fraction of the ground truth
+     * @throws IOException
+     */
+    private static File saveTrainedClassifier(double fraction) throws IOException {
+        Configuration configuration = new Configuration();
+        configuration.setLemmatize(false);
+        configuration.setMinimumTokenFrequency(1);
+        SmileNaiveBayesClassifier classifier = new SmileNaiveBayesClassifier(configuration);
+        classifier.train(new SamplingGroundTruthReader(new CSVGroundTruthReader(GROUND_TRUTH), -1, fraction, 17).read());
+        File file = Files.createTempFile("registry", ".model").toFile();
+        file.deleteOnExit();
+        classifier.save(file);
+        return file;
+    }
+
+    /**
+     * Models loaded separately share the features and the configuration they have in common, and requests are routed to
+     * them by name.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testLoad() throws IOException {
+        ModelRegistry registry = new ModelRegistry("all");
+        ModelRegistry.Model all = registry.load("all", saveTrainedClassifier(1.0));
+        ModelRegistry.Model half = registry.load("half", saveTrainedClassifier(0.5));
+
+        assertEquals(0, all.getSharedFeatures());
+        assertNull(all.getConfigurationSharedWith());
+        assertTrue(half.getFeatures() > 0);
+        assertTrue(half.getSharedFeatures() > 0);
+        assertTrue(half.getSharedFeatures() <= half.getFeatures());
+        assertEquals("all", half.getConfigurationSharedWith());
+        assertTrue(all.getHeapBytes() >= 0);
+        assertTrue(half.getHeapBytes() >= 0);
+
+        // The features the two models have in common are the same objects
+        Map<String, Feature> allFeatures = new HashMap<>();
+        for (Feature feature : ((SmileClassifier) all.getClassifier()).getFeatures()) {
+            allFeatures.put(feature.getFeature(), feature);
+        }
+        int same = 0;
+        for (Feature feature : ((SmileClassifier) half.getClassifier()).getFeatures()) {
+            if (allFeatures.containsKey(feature.getFeature())) {
+                assertSame(allFeatures.get(feature.getFeature()), feature);
+                same++;
+            }
+        }
+        assertEquals(half.getSharedFeatures(), same);
+
+        assertSame(all.getClassifier(), registry.getClassifier(null));
+        assertSame(half.getClassifier(), registry.getClassifier("half"));
+        assertNull(registry.getClassifier("unknown"));
+        List<Classification> classifications = registry.getClassifier("half").classify(new Document("Platelets >= 100,000/mcl"));
+        assertTrue(!classifications.isEmpty());
+        String metrics = registry.getMetrics();
+        assertTrue(metrics.contains("model_shared_features{model=\"half\"} " + half.getSharedFeatures() + "\n"));
+        assertTrue(metrics.contains("model_heap_bytes{model=\"all\"}"));
+    }
+
+    /**
+     * A name can only be registered once.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testDuplicateName() throws IOException {
+        ModelRegistry registry = new ModelRegistry("all");
+        File file = saveTrainedClassifier(0.5);
+        registry.load("all", file);
+        try {
+            registry.load("all", file);
+            fail("A model was registered twice.");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        assertEquals(1, registry.getModels().size());
+    }
+
+    /**
+     * Replacing a model, e.g. by a retrained one, routes to the new classifier and counts the shared features again.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testReplace() throws IOException {
+        ModelRegistry registry = new ModelRegistry("all");
+        ModelRegistry.Model all = registry.load("all", saveTrainedClassifier(1.0));
+        ModelRegistry.Model half = registry.load("half", saveTrainedClassifier(0.5));
+        Classifier retrained = ClassifierManager.load(saveTrainedClassifier(0.5));
+
+        ModelRegistry.Model replacement = registry.replace("all", retrained);
+        assertSame(retrained, registry.getClassifier(null));
+        assertSame(retrained, replacement.getClassifier());
+        List<ModelRegistry.Model> models = registry.getModels();
+        assertEquals(2, models.size());
+        assertEquals("all", models.get(0).getName());
+        assertSame(half.getClassifier(), models.get(1).getClassifier());
+        // The retrained model has the same vocabulary as the other one, which no longer shares the features of the first one
+        assertEquals(half.getFeatures(), models.get(1).getSharedFeatures());
+        assertTrue(all.getFeatures() > replacement.getFeatures());
+
+        registry.replace("new", retrained);
+        assertEquals(3, registry.getModels().size());
+    }
+}
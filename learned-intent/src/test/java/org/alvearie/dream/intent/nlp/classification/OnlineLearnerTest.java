@@ -0,0 +1,146 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.classification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Map;
+
+import org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileOnlineClassifier;
+import org.alvearie.dream.intent.nlp.classification.gt.io.CSVGroundTruthReader;
+import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.alvearie.dream.intent.nlp.text.ParallelExecutor;
+import org.alvearie.dream.intent.nlp.text.ParallelExecutor.StageMetrics;
+import org.junit.Test;
+
+/**
+ * Test for {@link OnlineLearner}.
+ *
+ */
+public class OnlineLearnerTest {
+
+    private static final File GROUND_TRUTH = new File("src/test/resources/testClassificationGT.csv");
+
+    private static final String PLATELETS_TEXT = "Platelets >= 100,000/mcl";
+
+    /**
+     * @return a trained online classifier that does not need the lemmatizer
+     * @throws IOException
+     */
+    private static SmileOnlineClassifier createTrainedClassifier() throws IOException {
+        Configuration configuration = new Configuration();
+        configuration.setLemmatize(false);
+        configuration.setMinimumTokenFrequency(1);
+        SmileOnlineClassifier classifier = new SmileOnlineClassifier(configuration);
+        classifier.train(new CSVGroundTruthReader(GROUND_TRUTH).read());
+        return classifier;
+    }
+
+    /**
+     * @param executor an executor
+     * @return the number of documents the executor weighed with TF-IDF
+     */
+    private static long getTFIDFItems(ParallelExecutor executor) {
+        StageMetrics stage = executor.getStageMetrics().get("tfidf");
+        return stage == null ? 0 : stage.getItems();
+    }
+
+    /**
+     * The classifier is checkpointed once enough documents have been learned, and the checkpoint can be loaded back.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCheckpoint() throws Exception {
+        File checkpointFile = Files.createTempFile("online", ".model").toFile();
+        checkpointFile.delete();
+        checkpointFile.deleteOnExit();
+        try (OnlineLearner learner = new OnlineLearner(createTrainedClassifier(), checkpointFile, 3)) {
+            learner.learn(PLATELETS_TEXT, "platelets");
+            learner.learn(PLATELETS_TEXT, "platelets");
+            assertFalse(checkpointFile.exists());
+            learner.learn(PLATELETS_TEXT, "platelets");
+        }
+        // Closing the learner waits for the background checkpoint
+        assertTrue(checkpointFile.exists());
+        new File(checkpointFile.getPath() + ".corrections.csv").deleteOnExit();
+        Classifier loaded = ClassifierManager.load(checkpointFile);
+        assertEquals(3, ((SmileOnlineClassifier) loaded).getUpdateCount());
+    }
+
+    /**
+     * A retrain trains a new classifier on the ground truth and the corrections, and replaces the current classifier.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRetrain() throws Exception {
+        SmileOnlineClassifier classifier = createTrainedClassifier();
+        try (OnlineLearner learner = new OnlineLearner(classifier, null, 100)) {
+            for (int i = 0; i < 10; i++) {
+                learner.learn(PLATELETS_TEXT, "platelets");
+            }
+            assertSame(classifier, learner.getClassifier());
+            assertEquals(10, learner.getCorrectionCount());
+
+            Map<String, Collection<Document>> groundTruth = new CSVGroundTruthReader(GROUND_TRUTH).read();
+            // The retrain works on its own executor
+            learner.setRetrainParallelism(2);
+            long defaultItems = getTFIDFItems(ParallelExecutor.getDefault());
+            OnlineClassifier retrained = learner.retrain(groundTruth).get();
+            assertEquals(defaultItems, getTFIDFItems(ParallelExecutor.getDefault()));
+            assertNotSame(classifier, retrained);
+            assertSame(retrained, learner.getClassifier());
+            assertEquals(0, ((SmileOnlineClassifier) retrained).getUpdateCount());
+            assertEquals("platelets", retrained.classify(new Document(PLATELETS_TEXT)).get(0).getCategory());
+            // The ground truth itself is left as it was
+            assertFalse(groundTruth.containsKey("platelets"));
+        }
+    }
+
+    /**
+     * The corrections are logged next to the checkpoint and reloaded by a new learner, only the latest ones are kept.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCorrectionsLog() throws Exception {
+        File checkpointFile = Files.createTempFile("online", ".model").toFile();
+        checkpointFile.delete();
+        checkpointFile.deleteOnExit();
+        File correctionsFile;
+        try (OnlineLearner learner = new OnlineLearner(createTrainedClassifier(), checkpointFile, 100, 5)) {
+            correctionsFile = learner.getCorrectionsFile();
+            correctionsFile.deleteOnExit();
+            for (int i = 0; i < 12; i++) {
+                learner.learn(PLATELETS_TEXT + " \"" + i + "\"\n", "platelets");
+            }
+            assertEquals(5, learner.getCorrectionCount());
+        }
+        // The log was compacted once it held twice as many corrections as are kept
+        assertTrue(Files.readAllLines(correctionsFile.toPath()).size() <= 11);
+        Map<String, Collection<Document>> logged = new CSVGroundTruthReader(correctionsFile).read();
+        assertEquals(1, logged.size());
+
+        try (OnlineLearner learner = new OnlineLearner(createTrainedClassifier(), checkpointFile, 100, 5)) {
+            assertEquals(5, learner.getCorrectionCount());
+            learner.learn(PLATELETS_TEXT, "platelets");
+            assertEquals(5, learner.getCorrectionCount());
+            OnlineClassifier retrained = learner.retrain(new CSVGroundTruthReader(GROUND_TRUTH).read()).get();
+            assertEquals("platelets", retrained.classify(new Document(PLATELETS_TEXT)).get(0).getCategory());
+        }
+    }
+}
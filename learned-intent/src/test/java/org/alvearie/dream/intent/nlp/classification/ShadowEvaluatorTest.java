@@ -0,0 +1,168 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.classification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.alvearie.dream.intent.nlp.text.ParallelExecutor;
+import org.alvearie.dream.intent.nlp.utils.Metrics;
+import org.junit.Test;
+
+public class ShadowEvaluatorTest {
+
+    /**
+     * A classifier that classifies every document as its own text, once it is released.
+     */
+    private static class EchoClassifier implements Classifier {
+
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch released;
+        private volatile int parallelism;
+
+        /**
+         * @param released the latch classifications wait for
+         */
+        EchoClassifier(CountDownLatch released) {
+            this.released = released;
+        }
+
+        @Override
+        public void train(Map<String, Collection<Document>> trainingData) {
+        }
+
+        @Override
+        public List<Classification> classify(Document document) {
+            started.countDown();
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Metrics.getDefault().increment("echo_classified_total");
+            parallelism = ParallelExecutor.getDefault().getParallelism();
+            if (document.getOriginalText().equals("fail")) {
+                throw new IllegalStateException("Cannot classify " + document);
+            }
+            return Collections.singletonList(new Classification(document.getOriginalText(), 1.0, document.getOriginalText()));
+        }
+
+        @Override
+        public void save(File file) {
+        }
+
+        @Override
+        public boolean isTrained() {
+            return true;
+        }
+    }
+
+    /**
+     * The shadow categories are compared with the primary ones, and the disagreements and failures are recorded.
+     */
+    @Test
+    public void testAgreement() {
+        ShadowEvaluator shadow = new ShadowEvaluator(new EchoClassifier(new CountDownLatch(0)), 1.0, 10, 1);
+        assertTrue(shadow.offer("a", "a"));
+        assertTrue(shadow.offer("b", "b"));
+        assertTrue(shadow.offer("c", "x"));
+        assertTrue(shadow.offer("d", "y"));
+        assertTrue(shadow.offer("fail", "z"));
+        shadow.close();
+
+        assertEquals(5, shadow.getSampled());
+        assertEquals(0, shadow.getDropped());
+        assertEquals(4, shadow.getCompared());
+        assertEquals(1, shadow.getFailed());
+        assertEquals(0.5, shadow.getAgreementRate(), 0.0);
+        assertEquals(4, shadow.getLatencies().getCount());
+        List<ShadowEvaluator.Disagreement> disagreements = shadow.getDisagreements();
+        assertEquals(1, disagreements.size());
+        assertEquals("d", disagreements.get(0).getText());
+        assertEquals("y", disagreements.get(0).getPrimaryCategory());
+        assertEquals("d", disagreements.get(0).getShadowCategory());
+        assertTrue(shadow.getMetrics().contains("shadow_agreement_rate 0.5\n"));
+        assertFalse(shadow.offer("e", "e"));
+    }
+
+    /**
+     * The shadow classifications run serially and record their metrics apart from the application's, and the
+     * disagreements cannot break the metrics format.
+     */
+    @Test
+    public void testIsolation() {
+        long globalCount = Metrics.getDefault().getCount("echo_classified_total");
+        EchoClassifier classifier = new EchoClassifier(new CountDownLatch(0));
+        ShadowEvaluator shadow = new ShadowEvaluator(classifier, 1.0, 10, 10);
+        assertTrue(shadow.offer("a", "a"));
+        assertTrue(shadow.offer("b\nshadow_agreement_rate 1.0", "x"));
+        shadow.close();
+
+        assertEquals(1, classifier.parallelism);
+        assertEquals(globalCount, Metrics.getDefault().getCount("echo_classified_total"));
+        assertEquals(2, shadow.getClassifierMetrics().getCount("echo_classified_total"));
+        String metrics = shadow.getMetrics();
+        assertTrue(metrics.contains("# TYPE shadow_compared_total counter\nshadow_compared_total 2\n"));
+        assertTrue(metrics.contains("# TYPE shadow_echo_classified_total counter\nshadow_echo_classified_total 2\n"));
+        String disagreement = shadow.getDisagreements().get(0).toString();
+        assertFalse(disagreement.contains("\n"));
+        assertEquals("x -> b\\nshadow_agreement_rate 1.0: b\\nshadow_agreement_rate 1.0", disagreement);
+    }
+
+    /**
+     * A slow shadow classifier never blocks the primary path: the requests that do not fit in the queue are dropped.
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    public void testDrop() throws InterruptedException {
+        CountDownLatch released = new CountDownLatch(1);
+        EchoClassifier classifier = new EchoClassifier(released);
+        ShadowEvaluator shadow = new ShadowEvaluator(classifier, 1.0, 2, 10);
+        assertTrue(shadow.offer("a", "a"));
+        assertTrue(classifier.started.await(10, TimeUnit.SECONDS));
+        assertTrue(shadow.offer("b", "b"));
+        assertTrue(shadow.offer("c", "c"));
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            assertFalse(shadow.offer("d", "d"));
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(2, shadow.getQueueDepth());
+        released.countDown();
+        shadow.close();
+
+        assertEquals(103, shadow.getSampled());
+        assertEquals(100, shadow.getDropped());
+        assertEquals(3, shadow.getCompared());
+        assertEquals(1.0, shadow.getAgreementRate(), 0.0);
+    }
+
+    /**
+     * Only the sampled fraction of the requests is classified by the shadow classifier.
+     */
+    @Test
+    public void testSampleRate() {
+        ShadowEvaluator shadow = new ShadowEvaluator(new EchoClassifier(new CountDownLatch(0)), 0.0, 10, 10);
+        for (int i = 0; i < 100; i++) {
+            assertFalse(shadow.offer("a", "a"));
+        }
+        shadow.close();
+        assertEquals(0, shadow.getSampled());
+        assertEquals(0, shadow.getCompared());
+    }
+}
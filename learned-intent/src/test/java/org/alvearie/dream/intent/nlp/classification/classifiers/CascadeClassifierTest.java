@@ -0,0 +1,133 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.classification.classifiers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.alvearie.dream.intent.nlp.classification.Classification;
+import org.alvearie.dream.intent.nlp.classification.Classifier;
+import org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileMaxEntClassifier;
+import org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileNaiveBayesClassifier;
+import org.alvearie.dream.intent.nlp.classification.gt.io.CSVGroundTruthReader;
+import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.junit.Test;
+
+/**
+ * Test for {@link CascadeClassifier}.
+ *
+ */
+public class CascadeClassifierTest {
+
+    private static final String GROUND_TRUTH = "src/test/resources/test-csv-ground-truth/testCriteriaClassification.csv";
+
+    /**
+     * @return a cascade of a naive Bayes and a maximum entropy classifier, trained on the test ground truth
+     * @throws IOException
+     */
+    private CascadeClassifier train() throws IOException {
+        Configuration configuration = new Configuration();
+        configuration.setLemmatize(false);
+        configuration.setMinimumTokenFrequency(1);
+        configuration.setCascadeFirstClassifierClass(SmileNaiveBayesClassifier.class);
+        configuration.setCascadeSecondClassifierClass(SmileMaxEntClassifier.class);
+        CascadeClassifier cascade = new CascadeClassifier(configuration);
+        cascade.train(new CSVGroundTruthReader(new File(GROUND_TRUTH)).read());
+        assertTrue(cascade.isTrained());
+        return cascade;
+    }
+
+    /**
+     * A threshold of 0 always trusts the first classifier, and a threshold above 1 always escalates to the second one.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void classify() throws IOException {
+        CascadeClassifier cascade = train();
+        String text = "Creatinine <= 5.0 mg/dL";
+
+        cascade.setThreshold(0.0);
+        assertEquals(cascade.getFirst().classify(new Document(text)).get(0).getCategory(), cascade.classify(new Document(text)).get(0).getCategory());
+
+        cascade.setThreshold(Double.POSITIVE_INFINITY);
+        List<Classification> classifications = cascade.classify(new Document(text));
+        assertEquals(cascade.getSecond().classify(new Document(text)).get(0).getProbability(), classifications.get(0).getProbability(), 0.0);
+        assertEquals("creatinine", classifications.get(0).getCategory());
+    }
+
+    /**
+     * The tuned threshold loses at most the maximum F1 loss compared to the second classifier alone.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void tune() throws IOException {
+        CascadeClassifier cascade = train();
+        Map<String, Collection<Document>> heldOut = new CSVGroundTruthReader(new File(GROUND_TRUTH)).read();
+        CascadeClassifier.Tuning tuning = cascade.tune(heldOut);
+        System.out.println(tuning);
+
+        assertEquals(22, tuning.getResults().size());
+        assertEquals(tuning.getChosen().getThreshold(), cascade.getThreshold(), 0.0);
+        assertTrue(tuning.getSecondF1() - tuning.getChosen().getF1() <= new Configuration().getCascadeMaxF1Loss());
+        CascadeClassifier.ThresholdResult always = tuning.getResults().get(tuning.getResults().size() - 1);
+        assertEquals(1.0, always.getEscalationRate(), 0.0);
+        assertEquals(tuning.getSecondF1(), always.getF1(), 0.0);
+        assertEquals(0.0, tuning.getResults().get(0).getEscalationRate(), 0.0);
+    }
+
+    /**
+     * A first classifier that cannot classify a document escalates it, and a document the second classifier cannot
+     * classify counts as a miss rather than failing the tuning.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void tuneWithEmptyClassifications() throws IOException {
+        Classifier empty = new Classifier() {
+
+            @Override
+            public void train(Map<String, Collection<Document>> trainingData) {
+            }
+
+            @Override
+            public List<Classification> classify(Document document) {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public void save(File file) {
+            }
+
+            @Override
+            public boolean isTrained() {
+                return true;
+            }
+        };
+        Map<String, Collection<Document>> heldOut = new CSVGroundTruthReader(new File(GROUND_TRUTH)).read();
+
+        CascadeClassifier.Tuning tuning = new CascadeClassifier(empty, train().getSecond(), 0.5, 0.0).tune(heldOut);
+        assertTrue(tuning.getSecondF1() > 0.0);
+        for (CascadeClassifier.ThresholdResult result : tuning.getResults()) {
+            assertEquals(1.0, result.getEscalationRate(), 0.0);
+        }
+
+        tuning = new CascadeClassifier(train().getFirst(), empty, 0.5, 1.0).tune(heldOut);
+        assertEquals(22, tuning.getResults().size());
+        assertFalse(tuning.getSecondF1() > 0.0);
+    }
+}
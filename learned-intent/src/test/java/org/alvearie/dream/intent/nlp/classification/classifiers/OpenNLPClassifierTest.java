@@ -0,0 +1,88 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.classification.classifiers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.alvearie.dream.intent.nlp.classification.Classification;
+import org.alvearie.dream.intent.nlp.classification.gt.io.CSVGroundTruthReader;
+import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.junit.Test;
+
+import opennlp.tools.ml.maxent.GISTrainer;
+
+/**
+ * Test for {@link OpenNLPClassifier}.
+ *
+ */
+public class OpenNLPClassifierTest {
+
+    private static final File GROUND_TRUTH = new File("src/test/resources/testClassificationGT.csv");
+
+    /**
+     * Classifying documents together, in parallel, gives the same results as classifying them one by one.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testClassifyAll() throws IOException {
+        OpenNLPClassifier classifier = new OpenNLPClassifier(new Configuration());
+        classifier.train(new CSVGroundTruthReader(GROUND_TRUTH).read());
+        assertTrue(classifier.isTrained());
+
+        List<Document> documents = new ArrayList<>();
+        for (Collection<Document> categoryDocuments : new CSVGroundTruthReader(GROUND_TRUTH).read().values()) {
+            documents.addAll(categoryDocuments);
+        }
+        List<List<Classification>> allClassifications = classifier.classifyAll(documents);
+        assertEquals(documents.size(), allClassifications.size());
+        for (int i = 0; i < documents.size(); i++) {
+            List<Classification> expected = classifier.classify(documents.get(i));
+            List<Classification> actual = allClassifications.get(i);
+            assertEquals(expected.get(0).getCategory(), actual.get(0).getCategory());
+            assertEquals(expected.get(0).getProbability(), actual.get(0).getProbability(), 0.0);
+        }
+    }
+
+    /**
+     * The training parameters come from the {@link Configuration}, here a maximum entropy model trained on two threads.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testMultiThreadedTraining() throws IOException {
+        Configuration configuration = new Configuration();
+        configuration.setOpenNLPAlgorithm(GISTrainer.MAXENT_VALUE);
+        configuration.setOpenNLPTrainingThreads(2);
+        configuration.setOpenNLPIterations(50);
+        OpenNLPClassifier classifier = new OpenNLPClassifier(configuration);
+        Map<String, Collection<Document>> groundTruth = new CSVGroundTruthReader(GROUND_TRUTH).read();
+        classifier.train(groundTruth);
+        assertTrue(classifier.isTrained());
+
+        int correct = 0;
+        int total = 0;
+        for (Map.Entry<String, Collection<Document>> entry : groundTruth.entrySet()) {
+            for (Document document : entry.getValue()) {
+                total++;
+                if (classifier.classify(document).get(0).getCategory().equals(entry.getKey())) {
+                    correct++;
+                }
+            }
+        }
+        assertTrue("Training accuracy too low: " + correct + "/" + total, correct > 0.9 * total);
+    }
+}
@@ -11,9 +11,11 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import org.alvearie.dream.intent.nlp.classification.Classification;
 import org.alvearie.dream.intent.nlp.classification.Classifier;
@@ -75,4 +77,29 @@ public class SmileMaxEntClassifierTest {
         assertTrue("junk text scored higher than ideal text for creatinine", creatinineClassification.getProbability() > junkClassification.getProbability());
         assertTrue("junk text scored higher than ideal text for diabetes", diabetesClassification.getProbability() > junkClassification.getProbability());
     }
+
+    /**
+     * Classifying documents together gives the same results as classifying them one by one.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testClassifyAll() throws IOException {
+        GroundTruthReader reader = new CSVGroundTruthReader(new File("src/test/resources/test-csv-ground-truth/testCriteriaClassification.csv"));
+        classifier.train(reader.read());
+        List<String> texts = Arrays.asList("Creatinine <= 5.0 mg/dL", "History of Type I diabetes", "diabetes and creatinine and legal", "zzyzx");
+        List<Document> documents = texts.stream().map(Document::new).collect(Collectors.toList());
+
+        List<List<Classification>> allClassifications = classifier.classifyAll(documents);
+        assertEquals(texts.size(), allClassifications.size());
+        for (int i = 0; i < texts.size(); i++) {
+            List<Classification> expected = classifier.classify(new Document(texts.get(i)));
+            List<Classification> actual = allClassifications.get(i);
+            assertEquals(expected.size(), actual.size());
+            for (int j = 0; j < expected.size(); j++) {
+                assertEquals(expected.get(j).getCategory(), actual.get(j).getCategory());
+                assertEquals(expected.get(j).getProbability(), actual.get(j).getProbability(), 0.0);
+            }
+        }
+    }
 }
@@ -0,0 +1,79 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.classification.classifiers.smile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.alvearie.dream.intent.nlp.classification.gt.io.CSVGroundTruthReader;
+import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.junit.Test;
+
+import smile.classification.RandomForest;
+
+/**
+ * Test for {@link FlatRandomForest}.
+ *
+ */
+public class FlatRandomForestTest {
+
+    /**
+     * The flattened forest predicts exactly the same classes and scores as the SMILE forest, from dense and sparse
+     * vectors.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void predict() throws IOException {
+        Configuration configuration = new Configuration();
+        configuration.setLemmatize(false);
+        configuration.setMinimumTokenFrequency(1);
+        configuration.setNumberOfTrees(25);
+        SmileRandomForestClassifier classifier = new SmileRandomForestClassifier(configuration);
+        classifier.train(new CSVGroundTruthReader(new File("src/test/resources/test-csv-ground-truth/testCriteriaClassification.csv")).read());
+        RandomForest forest = classifier.getRandomForest();
+        FlatRandomForest flatForest = classifier.getFlatForest();
+        assertEquals(25, flatForest.getNumberOfTrees());
+        assertTrue(flatForest.getNumberOfNodes() >= 25);
+
+        int numberOfFeatures = classifier.featureSpace.size();
+        int numberOfClasses = classifier.classes.size();
+        Random random = new Random(7);
+        for (int v = 0; v < 500; v++) {
+            // Sparse vectors, like the TF-IDF vectors of short documents
+            double[] vector = new double[numberOfFeatures];
+            List<Integer> indices = new ArrayList<>();
+            for (int i = 0; i < numberOfFeatures; i++) {
+                if (random.nextInt(8) == 0) {
+                    vector[i] = random.nextDouble();
+                    indices.add(i);
+                }
+            }
+            double[] expectedScores = new double[numberOfClasses];
+            int expected = forest.predict(vector, expectedScores);
+
+            double[] denseScores = new double[numberOfClasses];
+            assertEquals(expected, flatForest.predict(vector, denseScores));
+            assertArrayEquals(expectedScores, denseScores, 0.0);
+
+            double[] sparseScores = new double[numberOfClasses];
+            assertEquals(expected, flatForest.predict(indices.stream().mapToInt(Integer::intValue).toArray(), indices.stream().mapToDouble(i -> vector[i]).toArray(),
+                    sparseScores));
+            assertArrayEquals(expectedScores, sparseScores, 0.0);
+        }
+
+        assertEquals("creatinine", classifier.classify(new Document("Creatinine <= 5.0 mg/dL")).get(0).getCategory());
+    }
+}
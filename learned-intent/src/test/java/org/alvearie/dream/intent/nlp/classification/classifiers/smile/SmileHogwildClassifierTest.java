@@ -0,0 +1,100 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.classification.classifiers.smile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+import org.alvearie.dream.intent.nlp.classification.Classification;
+import org.alvearie.dream.intent.nlp.classification.Classifier;
+import org.alvearie.dream.intent.nlp.classification.gt.io.CSVGroundTruthReader;
+import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.junit.Test;
+
+/**
+ * Test for {@link SmileHogwildClassifier}.
+ *
+ */
+public class SmileHogwildClassifierTest {
+
+    private static final File GROUND_TRUTH = new File("src/test/resources/testClassificationGT.csv");
+
+    /**
+     * @param threads the number of training threads
+     * @return a configuration that does not need the lemmatizer
+     */
+    private static Configuration createConfiguration(int threads) {
+        Configuration configuration = new Configuration();
+        configuration.setLemmatize(false);
+        configuration.setMinimumTokenFrequency(1);
+        configuration.setParallelism(threads);
+        return configuration;
+    }
+
+    /**
+     * @param classifier a trained classifier
+     * @param groundTruth the ground truth
+     * @return the fraction of the ground truth documents the classifier classifies correctly
+     */
+    private static double accuracy(Classifier classifier, Map<String, Collection<Document>> groundTruth) {
+        int correct = 0;
+        int total = 0;
+        for (Map.Entry<String, Collection<Document>> entry : groundTruth.entrySet()) {
+            for (Document document : entry.getValue()) {
+                total++;
+                if (classifier.classify(new Document(document.getOriginalText())).get(0).getCategory().equals(entry.getKey())) {
+                    correct++;
+                }
+            }
+        }
+        return correct / (double) total;
+    }
+
+    /**
+     * The classifier trained on several threads, created from the configuration like the other classifiers, fits its
+     * training data and reports its throughput.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testParallelTraining() throws Exception {
+        Configuration configuration = createConfiguration(4);
+        configuration.setClassifierClass(SmileHogwildClassifier.class);
+        Classifier classifier = configuration.getClassifierClass().getConstructor(Configuration.class).newInstance(configuration);
+        Map<String, Collection<Document>> groundTruth = new CSVGroundTruthReader(GROUND_TRUTH).read();
+        classifier.train(groundTruth);
+
+        assertTrue(classifier.isTrained());
+        assertTrue(accuracy(classifier, groundTruth) > 0.95);
+        assertTrue(((SmileHogwildClassifier) classifier).getTrainingThroughput() > 0);
+    }
+
+    /**
+     * On a single thread the training is repeatable.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testSingleThreadedTraining() throws IOException {
+        SmileHogwildClassifier first = new SmileHogwildClassifier(createConfiguration(1));
+        first.train(new CSVGroundTruthReader(GROUND_TRUTH).read());
+        SmileHogwildClassifier second = new SmileHogwildClassifier(createConfiguration(1));
+        second.train(new CSVGroundTruthReader(GROUND_TRUTH).read());
+
+        Classification expected = first.classify(new Document("Age >= 18 years")).get(0);
+        Classification actual = second.classify(new Document("Age >= 18 years")).get(0);
+        assertEquals("agegender", expected.getCategory());
+        assertEquals(expected.getCategory(), actual.getCategory());
+        assertEquals(expected.getProbability(), actual.getProbability(), 0.0);
+    }
+}
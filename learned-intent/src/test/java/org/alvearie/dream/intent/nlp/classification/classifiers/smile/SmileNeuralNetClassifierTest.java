@@ -0,0 +1,101 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.classification.classifiers.smile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+import org.alvearie.dream.intent.nlp.classification.Classification;
+import org.alvearie.dream.intent.nlp.classification.gt.io.CSVGroundTruthReader;
+import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.alvearie.dream.intent.nlp.text.ParallelExecutor;
+import org.junit.Test;
+
+/**
+ * Test for the mini-batch training of the {@link SmileNeuralNetClassifier}.
+ *
+ */
+public class SmileNeuralNetClassifierTest {
+
+    private static final File GROUND_TRUTH = new File("src/test/resources/testClassificationGT.csv");
+
+    /**
+     * @param threads the number of training threads
+     * @return a mini-batch configuration that does not need the lemmatizer
+     */
+    private static Configuration createConfiguration(int threads) {
+        Configuration configuration = new Configuration();
+        configuration.setLemmatize(false);
+        configuration.setMinimumTokenFrequency(1);
+        configuration.setNeuralNetBatchSize(16);
+        configuration.setNeuralNetEpochs(10);
+        configuration.setParallelism(threads);
+        return configuration;
+    }
+
+    /**
+     * The network trained in mini-batches fits its training data.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testMiniBatchTraining() throws IOException {
+        SmileNeuralNetClassifier classifier = new SmileNeuralNetClassifier(createConfiguration(1), new int[] { 16 });
+        Map<String, Collection<Document>> groundTruth = new CSVGroundTruthReader(GROUND_TRUTH).read();
+        classifier.train(groundTruth);
+        assertTrue(classifier.isTrained());
+        // The sparse and dense predictions agree
+        double[] vector = new double[classifier.getNumberOfFeatures()];
+        vector[0] = 1.0;
+        vector[vector.length - 1] = 0.5;
+        double[] denseScores = new double[groundTruth.size()];
+        double[] sparseScores = new double[groundTruth.size()];
+        assertEquals(classifier.predict(vector, denseScores), classifier.predict(new int[] { 0, vector.length - 1 }, new double[] { 1.0, 0.5 }, sparseScores));
+        assertArrayEquals(denseScores, sparseScores, 0.0);
+
+        int correct = 0;
+        int total = 0;
+        for (Map.Entry<String, Collection<Document>> entry : groundTruth.entrySet()) {
+            for (Document document : entry.getValue()) {
+                total++;
+                if (classifier.classify(new Document(document.getOriginalText())).get(0).getCategory().equals(entry.getKey())) {
+                    correct++;
+                }
+            }
+        }
+        assertTrue(correct > 0.95 * total);
+    }
+
+    /**
+     * The mini-batches are the same whatever the number of threads computing their gradients, so the training gives the
+     * same network, up to rounding.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testParallelTraining() throws IOException {
+        SmileNeuralNetClassifier serial = new SmileNeuralNetClassifier(createConfiguration(1));
+        serial.train(new CSVGroundTruthReader(GROUND_TRUTH).read());
+        SmileNeuralNetClassifier parallel = new SmileNeuralNetClassifier(createConfiguration(3));
+        parallel.train(new CSVGroundTruthReader(GROUND_TRUTH).read());
+
+        Classification expected = serial.classify(new Document("Age >= 18 years")).get(0);
+        Classification actual = parallel.classify(new Document("Age >= 18 years")).get(0);
+        assertEquals("agegender", expected.getCategory());
+        assertEquals(expected.getCategory(), actual.getCategory());
+        assertEquals(expected.getProbability(), actual.getProbability(), 0.0001);
+        // The gradients are computed on the default executor, which records the stage
+        assertTrue(ParallelExecutor.getDefault().getStageMetrics().get("neural-net").getItems() > 0);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.classification.classifiers.smile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.alvearie.dream.intent.nlp.classification.Classification;
+import org.alvearie.dream.intent.nlp.classification.Classifier;
+import org.alvearie.dream.intent.nlp.classification.ClassifierManager;
+import org.alvearie.dream.intent.nlp.classification.gt.io.CSVGroundTruthReader;
+import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.junit.Test;
+
+/**
+ * Test for {@link SmileOnlineClassifier}.
+ *
+ */
+public class SmileOnlineClassifierTest {
+
+    private static final File GROUND_TRUTH = new File("src/test/resources/testClassificationGT.csv");
+
+    private static final String PLATELETS_TEXT = "Platelets >= 100,000/mcl";
+
+    /**
+     * @return a trained classifier that does not need the lemmatizer
+     * @throws IOException
+     */
+    private static SmileOnlineClassifier createTrainedClassifier() throws IOException {
+        Configuration configuration = new Configuration();
+        configuration.setLemmatize(false);
+        configuration.setMinimumTokenFrequency(1);
+        SmileOnlineClassifier classifier = new SmileOnlineClassifier(configuration);
+        classifier.train(new CSVGroundTruthReader(GROUND_TRUTH).read());
+        return classifier;
+    }
+
+    /**
+     * The fully trained classifier fits its training data.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testTrain() throws IOException {
+        SmileOnlineClassifier classifier = createTrainedClassifier();
+        assertTrue(classifier.isTrained());
+        assertEquals(0, classifier.getUpdateCount());
+
+        int correct = 0;
+        int total = 0;
+        for (Map.Entry<String, Collection<Document>> entry : new CSVGroundTruthReader(GROUND_TRUTH).read().entrySet()) {
+            for (Document document : entry.getValue()) {
+                total++;
+                if (classifier.classify(document).get(0).getCategory().equals(entry.getKey())) {
+                    correct++;
+                }
+            }
+        }
+        assertTrue(correct > 0.95 * total);
+    }
+
+    /**
+     * A category the classifier was not trained on is learned online.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testLearnNewCategory() throws IOException {
+        SmileOnlineClassifier classifier = createTrainedClassifier();
+        assertFalse(classifier.classes.contains("platelets"));
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(classifier.learn(new Document(PLATELETS_TEXT), "platelets"));
+        }
+        assertEquals(10, classifier.getUpdateCount());
+        assertTrue(classifier.classes.contains("platelets"));
+        List<Classification> classifications = classifier.classify(new Document(PLATELETS_TEXT));
+        assertEquals("platelets", classifications.get(0).getCategory());
+        assertEquals(3, classifications.size());
+    }
+
+    /**
+     * Documents without any known feature are not learned.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testLearnUnknownFeatures() throws IOException {
+        SmileOnlineClassifier classifier = createTrainedClassifier();
+        assertFalse(classifier.learn(new Document("zzyzx"), "agegender"));
+        assertEquals(0, classifier.getUpdateCount());
+    }
+
+    /**
+     * What was learned online survives saving and loading the classifier.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        SmileOnlineClassifier classifier = createTrainedClassifier();
+        for (int i = 0; i < 10; i++) {
+            classifier.learn(new Document(PLATELETS_TEXT), "platelets");
+        }
+        File file = Files.createTempFile("online", ".model").toFile();
+        file.deleteOnExit();
+        classifier.save(file);
+
+        Classifier loaded = ClassifierManager.load(file);
+        assertTrue(loaded instanceof SmileOnlineClassifier);
+        Classification expected = classifier.classify(new Document(PLATELETS_TEXT)).get(0);
+        Classification actual = loaded.classify(new Document(PLATELETS_TEXT)).get(0);
+        assertEquals(expected.getCategory(), actual.getCategory());
+        assertEquals(expected.getProbability(), actual.getProbability(), 0.0001);
+        assertTrue(((SmileOnlineClassifier) loaded).learn(new Document("Age >= 18 years"), "agegender"));
+    }
+}
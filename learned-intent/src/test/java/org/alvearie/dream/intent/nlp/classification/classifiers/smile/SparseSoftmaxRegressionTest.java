@@ -0,0 +1,62 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.classification.classifiers.smile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Test for {@link SparseSoftmaxRegression}.
+ *
+ */
+public class SparseSoftmaxRegressionTest {
+
+    private static final int FEATURES = 4;
+
+    /**
+     * The probabilities sum to 1 and the most probable class is the one with the highest score.
+     */
+    @Test
+    public void testProbabilities() {
+        double[] weights = { 1, 0, 0, 0, 0, 2, 0, 0, 0, 0, 0, 0 };
+        double[] biases = { 0, 0, 0.5 };
+        double[] probabilities = new double[biases.length];
+        int best = SparseSoftmaxRegression.probabilities(new int[] { 0, 1 }, new double[] { 1, 1 }, weights, biases, FEATURES, probabilities,
+                probabilities.length);
+        assertEquals(1, best);
+        assertEquals(1.0, probabilities[0] + probabilities[1] + probabilities[2], 1e-9);
+        assertTrue(probabilities[1] > probabilities[0] && probabilities[0] > probabilities[2]);
+
+        // Classes past the given number are left out
+        best = SparseSoftmaxRegression.probabilities(new int[] { 0, 1 }, new double[] { 1, 1 }, weights, biases, FEATURES, probabilities, 1);
+        assertEquals(0, best);
+        assertEquals(1.0, probabilities[0], 0.0);
+    }
+
+    /**
+     * A step makes the document more probable in its class and only touches the weights of its features.
+     */
+    @Test
+    public void testStep() {
+        double[] weights = new double[2 * FEATURES];
+        double[] biases = new double[2];
+        double[] probabilities = new double[biases.length];
+        int[] indices = { 1, 3 };
+        double[] values = { 0.5, 0.5 };
+        for (int i = 0; i < 10; i++) {
+            SparseSoftmaxRegression.step(indices, values, 1, 0.5, 0.001, weights, biases, FEATURES, probabilities);
+        }
+        SparseSoftmaxRegression.probabilities(indices, values, weights, biases, FEATURES, probabilities, probabilities.length);
+        assertTrue(probabilities[1] > 0.9);
+        for (int c = 0; c < biases.length; c++) {
+            assertEquals(0.0, weights[c * FEATURES], 0.0);
+            assertEquals(0.0, weights[c * FEATURES + 2], 0.0);
+        }
+    }
+}
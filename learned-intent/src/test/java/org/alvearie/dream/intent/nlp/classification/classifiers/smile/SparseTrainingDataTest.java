@@ -0,0 +1,140 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.classification.classifiers.smile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.alvearie.dream.intent.nlp.classification.Classification;
+import org.alvearie.dream.intent.nlp.classification.gt.io.CSVGroundTruthReader;
+import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.junit.Test;
+
+/**
+ * Test for {@link SparseTrainingData} and the sparse training of the {@link SmileClassifier}s.
+ *
+ */
+public class SparseTrainingDataTest {
+
+    private static final List<String> TEXTS = Arrays.asList("Creatinine <= 5.0 mg/dL", "History of Type I diabetes", "diabetes and creatinine and legal",
+            "Patients must be able to give informed consent");
+
+    private static final File SMALL_GROUND_TRUTH = new File("src/test/resources/test-csv-ground-truth/testCriteriaClassification.csv");
+
+    private static final File LARGE_GROUND_TRUTH = new File("src/test/resources/testClassificationGT.csv");
+
+    /**
+     * @return a configuration that does not need the lemmatizer
+     */
+    private static Configuration createConfiguration() {
+        Configuration configuration = new Configuration();
+        configuration.setLemmatize(false);
+        configuration.setMinimumTokenFrequency(1);
+        return configuration;
+    }
+
+    /**
+     * The sparse rows hold the same values as the dense vectors of the documents.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testToDenseMatrix() throws IOException {
+        SmileMaxEntClassifier classifier = new SmileMaxEntClassifier(createConfiguration());
+        SparseTrainingData data = classifier.prepareTrainingData(new CSVGroundTruthReader(SMALL_GROUND_TRUTH).read());
+        assertEquals(classifier.featureSpace.size(), data.getNumberOfFeatures());
+        assertEquals(classifier.classes.size(), data.getNumberOfClasses());
+        assertTrue(data.getNumberOfValues() < (long) data.size() * data.getNumberOfFeatures());
+
+        double[][] dense = data.toDenseMatrix();
+        assertEquals(data.size(), dense.length);
+        for (int row = 0; row < data.size(); row++) {
+            int[] indices = data.getIndices(row);
+            for (int i = 1; i < indices.length; i++) {
+                assertTrue(indices[i - 1] < indices[i]);
+            }
+            assertArrayEquals(dense[row], data.toDenseMatrix(row, row + 1)[0], 0.0);
+            assertEquals(Arrays.stream(data.getValues(row)).sum(), Arrays.stream(dense[row]).sum(), 1e-12);
+        }
+    }
+
+    /**
+     * With feature selection, the classifier only keeps the selected features and the rows only hold their values.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testFeatureSelection() throws IOException {
+        Configuration configuration = createConfiguration();
+        configuration.setFeatureSelectionSize(50);
+        SmileMaxEntClassifier classifier = new SmileMaxEntClassifier(configuration);
+        SparseTrainingData data = classifier.prepareTrainingData(new CSVGroundTruthReader(LARGE_GROUND_TRUTH).read());
+        assertEquals(50, classifier.featureSpace.size());
+        assertEquals(50, data.getNumberOfFeatures());
+        for (int row = 0; row < data.size(); row++) {
+            assertTrue(data.getIndices(row).length > 0);
+        }
+
+        classifier.learn(data);
+        assertEquals(classifier.classes.size(), classifier.classify(new Document(TEXTS.get(0))).size());
+    }
+
+    /**
+     * Training the maximum entropy classifier from the sparse rows gives the same model as training it from the dense
+     * matrix.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testMaxEnt() throws IOException {
+        assertSameModels(new SmileMaxEntClassifier(createConfiguration()), new SmileMaxEntClassifier(createConfiguration()), SMALL_GROUND_TRUTH);
+    }
+
+    /**
+     * Training the naive Bayes classifier from blocks of the sparse rows gives the same model as training it from the
+     * dense matrix. The ground truth has more documents than a block.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testNaiveBayes() throws IOException {
+        assertSameModels(new SmileNaiveBayesClassifier(createConfiguration()), new SmileNaiveBayesClassifier(createConfiguration()), LARGE_GROUND_TRUTH);
+    }
+
+    /**
+     * Trains the first classifier with {@link SmileClassifier#train(java.util.Map)}, the second one from the dense matrix, and
+     * checks that they classify the test texts the same.
+     *
+     * @param sparse the classifier to train from the sparse data
+     * @param dense the classifier to train from the dense matrix
+     * @param groundTruth the ground truth to train on
+     * @throws IOException
+     */
+    private static void assertSameModels(SmileClassifier sparse, SmileClassifier dense, File groundTruth) throws IOException {
+        sparse.train(new CSVGroundTruthReader(groundTruth).read());
+        SparseTrainingData data = dense.prepareTrainingData(new CSVGroundTruthReader(groundTruth).read());
+        assertTrue(data.size() > 0);
+        dense.learn(data.toDenseMatrix(), data.getNumberOfClasses(), data.getLabels());
+
+        for (String text : TEXTS) {
+            List<Classification> expected = dense.classify(new Document(text));
+            List<Classification> actual = sparse.classify(new Document(text));
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getCategory(), actual.get(i).getCategory());
+                assertEquals(expected.get(i).getProbability(), actual.get(i).getProbability(), 0.0);
+            }
+        }
+    }
+}
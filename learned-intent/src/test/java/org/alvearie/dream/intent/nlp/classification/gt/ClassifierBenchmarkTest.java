@@ -0,0 +1,71 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.alvearie.dream.intent.nlp.classification.gt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.alvearie.dream.intent.nlp.classification.classifiers.OpenNLPClassifier;
+import org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileNaiveBayesClassifier;
+import org.alvearie.dream.intent.nlp.classification.gt.io.CSVGroundTruthReader;
+import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.junit.Test;
+
+/**
+ * Test for {@link ClassifierBenchmark}.
+ *
+ */
+public class ClassifierBenchmarkTest {
+
+    private static final File GROUND_TRUTH = new File("src/test/resources/testClassificationGT.csv");
+
+    /**
+     * Each classifier is measured on each fraction, on more documents for the larger fractions and on the same test set,
+     * and the results are written one row each.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testRun() throws IOException {
+        Configuration configuration = new Configuration();
+        configuration.setLemmatize(false);
+        configuration.setMinimumTokenFrequency(1);
+        ClassifierBenchmark benchmark = new ClassifierBenchmark(new CSVGroundTruthReader(GROUND_TRUTH).read(), configuration);
+        benchmark.setFractions(Arrays.asList(0.5, 1.0));
+        benchmark.addClassifier(SmileNaiveBayesClassifier.class);
+        benchmark.addClassifier(OpenNLPClassifier.class);
+        List<ClassifierBenchmark.Result> results = benchmark.run();
+
+        assertEquals(4, results.size());
+        assertEquals("SmileNaiveBayesClassifier", results.get(0).getClassifier());
+        assertEquals("OpenNLPClassifier", results.get(2).getClassifier());
+        for (ClassifierBenchmark.Result result : results) {
+            assertNull(result.getError(), result.getError());
+            assertEquals(results.get(0).getTestDocuments(), result.getTestDocuments());
+            assertTrue(result.getTrainMillis() >= 0);
+            assertTrue(result.getModelBytes() > 0);
+            assertTrue(result.getHeapBytes() >= 0);
+            assertTrue(result.getSingleLatencyP50Micros() > 0);
+            assertTrue(result.getSingleLatencyP95Micros() >= result.getSingleLatencyP50Micros());
+            assertTrue(result.getBatchLatencyMicros() > 0);
+            assertTrue(result.getF1() > 0.5);
+        }
+        assertTrue(results.get(0).getTrainingDocuments() < results.get(1).getTrainingDocuments());
+        assertTrue(results.get(0).getFeatures() > 0);
+        assertEquals(-1, results.get(2).getFeatures());
+
+        String[] rows = ClassifierBenchmark.toCSV(results).split("\n");
+        assertEquals(5, rows.length);
+        assertEquals(13, rows[1].split(",", -1).length);
+        assertTrue(ClassifierBenchmark.toSummary(results).contains("OpenNLPClassifier"));
+    }
+}
@@ -79,4 +79,23 @@ public class ConfusionMatrixTest {
 
 	}
 
+	/**
+	 * A classification without any prediction is a missed expected category, and not a false positive of any category.
+	 */
+	@Test
+	public void testRegisterNoPrediction() {
+		ConfusionMatrix confusionMatrix = new ConfusionMatrix("A", "B");
+		confusionMatrix.register("A", "A", 3);
+		confusionMatrix.register("A", null, 1);
+
+		CategoryAccuracy aScores = confusionMatrix.getMatrix().get("A");
+		assertEquals(3, aScores.getTruePositives());
+		assertEquals(1, aScores.getFalseNegatives());
+		CategoryAccuracy bScores = confusionMatrix.getMatrix().get("B");
+		assertEquals(0, bScores.getFalsePositives());
+		assertEquals(4, bScores.getTrueNegatives());
+		assertEquals(1.0, confusionMatrix.getOverallPrecision(), 0.0);
+		assertEquals(0.75, confusionMatrix.getOverallRecall(), 0.0);
+	}
+
 }
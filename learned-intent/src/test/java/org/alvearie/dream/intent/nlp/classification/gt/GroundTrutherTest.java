@@ -5,12 +5,16 @@
  */
 package org.alvearie.dream.intent.nlp.classification.gt;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 
 import org.alvearie.dream.intent.nlp.classification.Classifier;
+import org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileMaxEntClassifier;
 import org.alvearie.dream.intent.nlp.text.Configuration;
 import org.junit.Test;
 
@@ -31,4 +35,55 @@ public class GroundTrutherTest {
         GroundTruther groundTruther = new GroundTruther(groundTruthDir, classifier);
         groundTruther.run();
     }
+
+    /**
+     * Test method for {@link GroundTruther#setFolds(int)}: every document is tested in exactly one fold, and running the
+     * folds concurrently gives the same results as running them one at a time.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testCrossValidation() throws IOException {
+        File groundTruthFile = new File("src/test/resources/testClassificationGT.csv");
+        CrossValidationResults serial = crossValidate(groundTruthFile, 1);
+        CrossValidationResults concurrent = crossValidate(groundTruthFile, 4);
+        System.out.println(concurrent);
+
+        assertEquals(5, concurrent.getFolds().size());
+        for (String category : concurrent.getCategories()) {
+            CategoryAccuracy expected = serial.getPooled().getMatrix().get(category);
+            CategoryAccuracy actual = concurrent.getPooled().getMatrix().get(category);
+            assertEquals(expected.getTruePositives(), actual.getTruePositives());
+            assertEquals(expected.getFalsePositives(), actual.getFalsePositives());
+            assertEquals(expected.getFalseNegatives(), actual.getFalseNegatives());
+            int foldTestSize = 0;
+            for (ConfusionMatrix fold : concurrent.getFolds()) {
+                foldTestSize += fold.getMatrix().get(category).getTestSize();
+            }
+            assertEquals(actual.getTestSize(), foldTestSize);
+        }
+        CrossValidationResults.Statistic f1 = concurrent.getOverallF1();
+        assertEquals(5, f1.getCount());
+        assertTrue(f1.getMean() > 0.5);
+        assertTrue(f1.getVariance() >= 0.0);
+    }
+
+    /**
+     * @param groundTruthFile the ground truth
+     * @param parallelism the maximum number of folds to run concurrently
+     * @return the results of a 5-fold cross-validation of a maximum entropy classifier
+     * @throws IOException
+     */
+    private static CrossValidationResults crossValidate(File groundTruthFile, int parallelism) throws IOException {
+        Configuration configuration = new Configuration();
+        configuration.setLemmatize(false);
+        configuration.setMinimumTokenFrequency(1);
+        configuration.setParallelism(parallelism);
+        GroundTruther groundTruther = new GroundTruther(groundTruthFile, new SmileMaxEntClassifier(configuration));
+        groundTruther.setConfiguration(configuration);
+        groundTruther.setFolds(5);
+        groundTruther.run();
+        assertEquals(groundTruther.getCrossValidationResults().getPooled(), groundTruther.getConfusionMatrix());
+        return groundTruther.getCrossValidationResults();
+    }
 }
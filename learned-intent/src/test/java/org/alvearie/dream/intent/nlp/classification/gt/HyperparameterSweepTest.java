@@ -0,0 +1,98 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.alvearie.dream.intent.nlp.classification.gt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.alvearie.dream.intent.nlp.classification.Classifier;
+import org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileMaxEntClassifier;
+import org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileNaiveBayesClassifier;
+import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.junit.Test;
+
+/**
+ * Test for {@link HyperparameterSweep}.
+ *
+ */
+public class HyperparameterSweepTest {
+
+    private static final File GROUND_TRUTH = new File("src/test/resources/testClassificationGT.csv");
+
+    /**
+     * @param cacheDirectory the preprocessing cache directory
+     * @return a sweep over two text settings and two classifiers
+     * @throws IOException
+     */
+    private static HyperparameterSweep createSweep(File cacheDirectory) throws IOException {
+        Configuration configuration = new Configuration();
+        configuration.setLemmatize(false);
+        configuration.setPreprocessingCacheDirectory(cacheDirectory.getAbsolutePath());
+        HyperparameterSweep sweep = new HyperparameterSweep(GROUND_TRUTH, configuration);
+        sweep.addParameter("nGramMaxRange", Configuration::setNGramMaxRange, Arrays.asList(1, 2));
+        sweep.addParameter("minimumTokenFrequency", Configuration::setMinimumTokenFrequency, Arrays.asList(1, 2));
+        List<Class<? extends Classifier>> classifierClasses = Arrays.asList(SmileMaxEntClassifier.class, SmileNaiveBayesClassifier.class);
+        sweep.addParameter("classifierClass", Configuration::setClassifierClass, classifierClasses);
+        return sweep;
+    }
+
+    /**
+     * The grid has every combination of values, and a random draw has distinct combinations from the grid.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testCandidates() throws IOException {
+        HyperparameterSweep sweep = createSweep(Files.createTempDirectory("sweep").toFile());
+        List<HyperparameterSweep.Candidate> grid = sweep.grid();
+        assertEquals(8, grid.size());
+        assertEquals(8, grid.stream().map(Object::toString).collect(Collectors.toSet()).size());
+        assertEquals("{nGramMaxRange=1, minimumTokenFrequency=1, classifierClass=SmileMaxEntClassifier}", grid.get(0).toString());
+        Configuration configuration = grid.get(7).apply(new Configuration());
+        assertEquals(2, configuration.getNGramMaxRange());
+        assertEquals(2, configuration.getMinimumTokenFrequency());
+        assertEquals(SmileNaiveBayesClassifier.class, configuration.getClassifierClass());
+
+        List<HyperparameterSweep.Candidate> random = sweep.random(5, 7);
+        assertEquals(5, random.size());
+        assertEquals(5, random.stream().map(Object::toString).collect(Collectors.toSet()).size());
+        assertEquals(8, sweep.random(100, 7).size());
+    }
+
+    /**
+     * All the candidates are ranked, and the ground truth is only preprocessed once for each of the two text settings.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testRun() throws IOException {
+        File cacheDirectory = Files.createTempDirectory("sweep").toFile();
+        HyperparameterSweep sweep = createSweep(cacheDirectory);
+        List<HyperparameterSweep.Result> results = sweep.run(sweep.grid());
+        System.out.println(HyperparameterSweep.toLeaderboard(results));
+
+        assertEquals(8, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertNull(results.get(i).getError());
+            assertFalse(Double.isNaN(results.get(i).getF1()));
+            if (i > 0) {
+                assertTrue(results.get(i - 1).getF1() >= results.get(i).getF1());
+            }
+        }
+        assertTrue(results.get(0).getF1() > 0.5);
+        // One cache directory for each distinct fingerprint of the text settings
+        assertEquals(2, cacheDirectory.listFiles().length);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.classification.gt.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.alvearie.dream.intent.nlp.text.DocumentWithPrediction;
+import org.junit.Test;
+
+/**
+ * Test for {@link SamplingGroundTruthReader}.
+ *
+ */
+public class SamplingGroundTruthReaderTest {
+
+    /**
+     * @return a GT reader of 100 documents of class a, a0 to a99, and 20 documents of class b, b0 to b19
+     */
+    private static GroundTruthReader createReader() {
+        return () -> {
+            Map<String, Collection<Document>> gt = new LinkedHashMap<>();
+            for (String category : new String[] { "a", "b" }) {
+                List<Document> documents = new ArrayList<>();
+                for (int i = 0; i < (category.equals("a") ? 100 : 20); i++) {
+                    documents.add(new Document(category + i));
+                }
+                gt.put(category, documents);
+            }
+            return gt;
+        };
+    }
+
+    /**
+     * @param documents sampled documents
+     * @return the number of each document
+     */
+    private static List<Integer> numbers(Collection<Document> documents) {
+        return documents.stream().map(document -> Integer.valueOf(document.getOriginalText().substring(1))).collect(Collectors.toList());
+    }
+
+    /**
+     * Capped classes are sampled at random, repeatably for a seed, and keep their GT order.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testMaxPerClass() throws IOException {
+        Map<String, Collection<Document>> gt = new SamplingGroundTruthReader(createReader(), 10, 1.0, 17).read();
+        assertEquals(10, gt.get("a").size());
+        assertEquals(10, gt.get("b").size());
+        List<Integer> numbers = numbers(gt.get("a"));
+        assertEquals(numbers.stream().sorted().collect(Collectors.toList()), numbers);
+        assertTrue(numbers.get(numbers.size() - 1) >= 10);
+
+        assertEquals(numbers, numbers(new SamplingGroundTruthReader(createReader(), 10, 1.0, 17).read().get("a")));
+        assertNotEquals(numbers, numbers(new SamplingGroundTruthReader(createReader(), 10, 1.0, 18).read().get("a")));
+    }
+
+    /**
+     * Subsampling a fraction of the GT keeps the class proportions, and at least one document per class.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testFraction() throws IOException {
+        Map<String, Collection<Document>> gt = new SamplingGroundTruthReader(createReader(), -1, 0.25, 17).read();
+        assertEquals(25, gt.get("a").size());
+        assertEquals(5, gt.get("b").size());
+        List<Integer> numbers = numbers(gt.get("a"));
+        assertEquals(numbers.stream().sorted().collect(Collectors.toList()), numbers);
+
+        gt = new SamplingGroundTruthReader(createReader(), 10, 0.25, 17).read();
+        assertEquals(10, gt.get("a").size());
+        assertEquals(5, gt.get("b").size());
+
+        gt = new SamplingGroundTruthReader(createReader(), -1, 0.01, 17).read();
+        assertEquals(1, gt.get("a").size());
+        assertEquals(1, gt.get("b").size());
+    }
+
+    /**
+     * The sampled GT is streamed with its categories, and the whole GT is streamed when nothing is sampled.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testStream() throws IOException {
+        try (Stream<DocumentWithPrediction> documents = new SamplingGroundTruthReader(createReader(), 10, 1.0, 17).stream()) {
+            Map<String, Long> counts = documents.collect(Collectors.groupingBy(DocumentWithPrediction::getPrediction, Collectors.counting()));
+            assertEquals(Long.valueOf(10), counts.get("a"));
+            assertEquals(Long.valueOf(10), counts.get("b"));
+        }
+        try (Stream<DocumentWithPrediction> documents = new SamplingGroundTruthReader(createReader(), -1, 1.0, 17).stream()) {
+            assertEquals(120, documents.count());
+        }
+    }
+
+    /**
+     *
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidFraction() {
+        new SamplingGroundTruthReader(createReader(), -1, 0.0, 17);
+    }
+}
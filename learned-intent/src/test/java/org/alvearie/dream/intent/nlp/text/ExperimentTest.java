@@ -6,6 +6,7 @@
 package org.alvearie.dream.intent.nlp.text;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -14,6 +15,8 @@ import static org.junit.Assert.fail;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.alvearie.dream.intent.nlp.Experiment;
 import org.junit.BeforeClass;
@@ -134,6 +137,32 @@ public class ExperimentTest {
         assertEquals(experiment1Name, Experiment.getCurrentExperimentName());
     }
 
+    /**
+     * Make sure a sub-experiment is the current experiment within callWith only, and only for the calling thread.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCallWith() throws Exception {
+        String experimentName = "TestCallWith" + System.currentTimeMillis();
+        Experiment experiment = Experiment.createExperiment(experimentName);
+        Experiment subExperiment = experiment.createSubExperiment("fold-1", new Configuration());
+        Experiment otherThreadExperiment = Experiment.callWith(subExperiment, () -> {
+            assertEquals(subExperiment, Experiment.getCurrentExperiment());
+            Experiment.save("TestString.dat", "Test Data");
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                return executor.submit(() -> Experiment.getCurrentExperiment()).get();
+            } finally {
+                executor.shutdown();
+            }
+        });
+        assertEquals(experiment, otherThreadExperiment);
+        assertEquals(experiment, Experiment.getCurrentExperiment());
+        assertTrue(new File(subExperiment.getExperimentDirectory(), "TestString.dat").exists());
+        assertFalse(new File(experiment.getExperimentDirectory(), "TestString.dat").exists());
+    }
+
     @Test
     public void testSaveLoad() {
         String experimentName = "TestSaveLoad" + System.currentTimeMillis();
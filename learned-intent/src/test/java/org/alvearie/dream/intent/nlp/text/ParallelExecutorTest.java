@@ -0,0 +1,158 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+public class ParallelExecutorTest {
+
+    private static final List<Integer> ITEMS = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+
+    /**
+     * Every item is processed exactly once and the stage metrics are updated.
+     */
+    @Test
+    public void forEach() {
+        try (ParallelExecutor executor = new ParallelExecutor(4)) {
+            ConcurrentHashMap<Integer, AtomicInteger> processed = new ConcurrentHashMap<>();
+            executor.forEach("test", ITEMS, i -> processed.computeIfAbsent(i, k -> new AtomicInteger()).incrementAndGet());
+
+            assertEquals(ITEMS.size(), processed.size());
+            assertTrue(processed.values().stream().allMatch(count -> count.get() == 1));
+            assertEquals(1, executor.getStageMetrics().get("test").getInvocations());
+            assertEquals(ITEMS.size(), executor.getStageMetrics().get("test").getItems());
+            assertEquals(0, executor.getStageMetrics().get("test").getActiveTasks());
+        }
+    }
+
+    /**
+     * A stage never runs on more threads than its parallelism limit, even when called from within another stage.
+     */
+    @Test
+    public void stageParallelism() {
+        try (ParallelExecutor executor = new ParallelExecutor(4)) {
+            executor.setStageParallelism("limited", 2);
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger maxRunning = new AtomicInteger();
+            executor.forEach("outer", ITEMS.subList(0, 4), outer -> executor.forEach("limited", ITEMS, i -> {
+                if (outer == 0) {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    running.decrementAndGet();
+                }
+            }));
+
+            assertEquals(2, executor.getStageParallelism("limited"));
+            assertTrue(maxRunning.get() <= 2);
+            assertEquals(4, executor.getStageMetrics().get("limited").getInvocations());
+        }
+    }
+
+    /**
+     * The parallelism limit of a stage holds across concurrent callers, and every caller gets its items processed.
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    public void stageParallelismConcurrentCallers() throws InterruptedException {
+        try (ParallelExecutor executor = new ParallelExecutor(8)) {
+            executor.setStageParallelism("limited", 2);
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger maxRunning = new AtomicInteger();
+            AtomicInteger processed = new AtomicInteger();
+            List<Thread> callers = new ArrayList<>();
+            for (int caller = 0; caller < 4; caller++) {
+                Thread thread = new Thread(() -> executor.forEach("limited", ITEMS.subList(0, 50), i -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    running.decrementAndGet();
+                    processed.incrementAndGet();
+                }));
+                callers.add(thread);
+                thread.start();
+            }
+            for (Thread thread : callers) {
+                thread.join();
+            }
+
+            assertTrue(maxRunning.get() <= 2);
+            assertEquals(4 * 50, processed.get());
+            assertEquals(4, executor.getStageMetrics().get("limited").getInvocations());
+        }
+    }
+
+    /**
+     * The work of a task run with its own executor, including its nested work, runs on that executor and not on the
+     * default one.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void callWith() throws Exception {
+        ParallelExecutor shared = ParallelExecutor.getDefault();
+        Set<ParallelExecutor> executors = ConcurrentHashMap.newKeySet();
+        ParallelExecutor taskExecutor = ParallelExecutor.callWith(2, () -> {
+            ParallelExecutor.getDefault().forEach("outer", ITEMS.subList(0, 10), outer -> {
+                executors.add(ParallelExecutor.getDefault());
+                ParallelExecutor.getDefault().forEach("inner", ITEMS.subList(0, 10), inner -> executors.add(ParallelExecutor.getDefault()));
+            });
+            return ParallelExecutor.getDefault();
+        });
+
+        assertNotSame(shared, taskExecutor);
+        assertEquals(2, taskExecutor.getParallelism());
+        assertEquals(Collections.singleton(taskExecutor), executors);
+        assertTrue(taskExecutor.isShutdown());
+        assertSame(shared, ParallelExecutor.getDefault());
+    }
+
+    /**
+     * The first exception thrown by the action is rethrown to the caller.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void forEachFailure() {
+        try (ParallelExecutor executor = new ParallelExecutor(4)) {
+            executor.forEach("test", ITEMS, i -> {
+                if (i == 500) {
+                    throw new IllegalStateException("Failed on " + i);
+                }
+            });
+        }
+    }
+
+    /**
+     * A shut down executor runs the work on the calling thread.
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    public void forEachAfterShutdown() throws InterruptedException {
+        ParallelExecutor executor = new ParallelExecutor(4);
+        assertTrue(executor.shutdown(1, TimeUnit.SECONDS));
+        AtomicInteger processed = new AtomicInteger();
+        executor.forEach("test", ITEMS, i -> processed.incrementAndGet());
+        assertEquals(ITEMS.size(), processed.get());
+    }
+}
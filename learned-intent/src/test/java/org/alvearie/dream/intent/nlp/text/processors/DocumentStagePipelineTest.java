@@ -0,0 +1,125 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.text.processors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.alvearie.dream.intent.nlp.text.Corpus;
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.alvearie.dream.intent.nlp.text.Feature;
+import org.alvearie.dream.intent.nlp.text.io.SimpleTextFileDocumentReader;
+import org.junit.Test;
+
+public class DocumentStagePipelineTest {
+
+    private static final double MARGIN_OF_ERROR = 0.0000001;
+
+    /**
+     * Every document goes through every stage, in the order of the stages.
+     */
+    @Test
+    public void process() {
+        List<Document> documents = IntStream.range(0, 500).mapToObj(i -> new Document(String.valueOf(i))).collect(Collectors.toList());
+        AtomicInteger outOfOrder = new AtomicInteger();
+        new DocumentStagePipeline(4)
+                .addStage("first", 3, document -> document.setText("first", document.getText() + " first"))
+                .addStage("second", 2, document -> {
+                    if (!document.getText().endsWith(" first")) {
+                        outOfOrder.incrementAndGet();
+                    }
+                    document.setText("second", document.getText() + " second");
+                })
+                .process(documents);
+
+        assertEquals(0, outOfOrder.get());
+        for (Document document : documents) {
+            assertEquals(document.getOriginalText() + " first second", document.getText());
+        }
+    }
+
+    /**
+     * The pipeline reuses its threads across calls, and runs the stages on the calling thread in serial mode.
+     */
+    @Test
+    public void processReusesThreads() {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        try (DocumentStagePipeline pipeline = new DocumentStagePipeline(4).addStage("first", 2, document -> threads.add(Thread.currentThread()))) {
+            for (int i = 0; i < 5; i++) {
+                pipeline.process(IntStream.range(0, 100).mapToObj(j -> new Document(String.valueOf(j))).collect(Collectors.toList()));
+            }
+            assertTrue(threads.size() <= 2);
+            assertTrue(!threads.contains(Thread.currentThread()));
+
+            threads.clear();
+            boolean serialMode = Configuration.getDefault().isSerialMode();
+            Configuration.getDefault().setSerialMode(true);
+            try {
+                pipeline.process(IntStream.range(0, 100).mapToObj(j -> new Document(String.valueOf(j))).collect(Collectors.toList()));
+            } finally {
+                Configuration.getDefault().setSerialMode(serialMode);
+            }
+            assertEquals(Collections.singleton(Thread.currentThread()), threads);
+        }
+    }
+
+    /**
+     * A failure in a stage stops the pipeline and is rethrown to the caller.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void processFailure() {
+        List<Document> documents = IntStream.range(0, 500).mapToObj(i -> new Document(String.valueOf(i))).collect(Collectors.toList());
+        new DocumentStagePipeline(4)
+                .addStage("first", 2, document -> {
+                })
+                .addStage("failing", 1, document -> {
+                    if (document.getText().equals("100")) {
+                        throw new IllegalStateException("Failed on " + document);
+                    }
+                })
+                .process(documents);
+    }
+
+    /**
+     * The pipelined vectorization must produce the same feature space and vectors as the stage by stage vectorization.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void pipelinedVectorization() throws IOException {
+        SimpleTextFileDocumentReader reader = new SimpleTextFileDocumentReader(new File("src/test/resources/small-corpus.txt"), StandardCharsets.UTF_8);
+        Configuration configuration = new Configuration();
+        configuration.setLemmatize(false);
+        Corpus expected = new Corpus(reader.read());
+        new DocumentVectorizationPipeline(configuration).vectorize(expected);
+
+        configuration.setPipelinedVectorization(true);
+        Corpus actual = new Corpus(reader.read());
+        new DocumentVectorizationPipeline(configuration).vectorize(actual);
+
+        assertTrue(!actual.getFeatureSpace().isEmpty());
+        assertEquals(new HashSet<>(expected.getFeatureSpace()), new HashSet<>(actual.getFeatureSpace()));
+        for (int i = 0; i < expected.size(); i++) {
+            for (Feature feature : expected.getFeatureSpace()) {
+                assertEquals(expected.getDocuments().get(i).getVector().getValue(feature), actual.getDocuments().get(i).getVector().getValue(feature), MARGIN_OF_ERROR);
+            }
+        }
+    }
+}
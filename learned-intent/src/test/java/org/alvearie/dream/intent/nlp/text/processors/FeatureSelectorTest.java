@@ -0,0 +1,105 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.text.processors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.alvearie.dream.intent.nlp.text.Corpus;
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.alvearie.dream.intent.nlp.text.FeatureSpace;
+import org.alvearie.dream.intent.nlp.text.NGram;
+import org.junit.Test;
+
+/**
+ * Test for {@link FeatureSelector}.
+ *
+ */
+public class FeatureSelectorTest {
+
+    private static final double MARGIN_OF_ERROR = 0.0001;
+
+    private static final NGram CREATININE = NGram.getNGram("creatinine");
+    private static final NGram PATIENT = NGram.getNGram("patient");
+    private static final NGram SERUM = NGram.getNGram("serum");
+
+    private static final int[] LABELS = { 0, 0, 1, 1 };
+
+    /**
+     * @return a corpus where creatinine is in the documents of the first class only, patient is in all the documents, and
+     *         serum is only in the first document
+     */
+    private static Corpus createCorpus() {
+        Document[] documents = new Document[4];
+        for (int i = 0; i < documents.length; i++) {
+            documents[i] = new Document("Document " + i);
+            documents[i].setNGramCount(PATIENT, 1);
+        }
+        documents[0].setNGramCount(CREATININE, 1);
+        documents[1].setNGramCount(CREATININE, 2);
+        documents[0].setNGramCount(SERUM, 1);
+        Corpus corpus = new Corpus(documents);
+        FeatureSpace featureSpace = new FeatureSpace();
+        featureSpace.addAll(Arrays.asList(PATIENT, SERUM, CREATININE));
+        corpus.setFeatureSpace(featureSpace);
+        return corpus;
+    }
+
+    /**
+     *
+     */
+    @Test
+    public void testChiSquare() {
+        double[] scores = new FeatureSelector(FeatureSelector.Method.CHI_SQUARE, 1).score(createCorpus(), LABELS, 2);
+        assertArrayEquals(new double[] { 0.0, 4.0 / 3.0, 4.0 }, scores, MARGIN_OF_ERROR);
+    }
+
+    /**
+     *
+     */
+    @Test
+    public void testMutualInformation() {
+        double[] scores = new FeatureSelector(FeatureSelector.Method.MUTUAL_INFORMATION, 1).score(createCorpus(), LABELS, 2);
+        assertEquals(0.0, scores[0], MARGIN_OF_ERROR);
+        assertTrue(scores[1] > 0.0 && scores[1] < scores[2]);
+        // Creatinine tells the class apart, which is one bit of information
+        assertEquals(Math.log(2), scores[2], MARGIN_OF_ERROR);
+    }
+
+    /**
+     * The selected features keep their feature space order and the other n-grams are removed from the documents.
+     */
+    @Test
+    public void testSelect() {
+        Corpus corpus = createCorpus();
+        // Serum scores higher than patient, but the second class only has patient, which is kept for the second class to
+        // have features
+        FeatureSpace selected = new FeatureSelector(FeatureSelector.Method.CHI_SQUARE, 2).select(corpus, LABELS, 2);
+        assertEquals(Arrays.asList(PATIENT, CREATININE), selected);
+        assertEquals(selected, corpus.getFeatureSpace());
+        assertEquals(selected, corpus.getDocuments().get(0).getFeatureSpace());
+        assertEquals(2, corpus.getDocuments().get(0).getNGrams().size());
+        assertEquals(2, corpus.getDocuments().get(1).getNGramCount(CREATININE));
+        assertEquals(Collections.singleton(PATIENT), corpus.getDocuments().get(2).getNGrams());
+    }
+
+    /**
+     * Nothing is selected when the size is not smaller than the feature space.
+     */
+    @Test
+    public void testSelectAll() {
+        Corpus corpus = createCorpus();
+        FeatureSpace featureSpace = corpus.getFeatureSpace();
+        assertEquals(featureSpace, new FeatureSelector(FeatureSelector.Method.CHI_SQUARE, -1).select(corpus, LABELS, 2));
+        assertEquals(featureSpace, new FeatureSelector(FeatureSelector.Method.CHI_SQUARE, 3).select(corpus, LABELS, 2));
+        assertEquals(2, corpus.getDocuments().get(1).getNGrams().size());
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.text.processors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.alvearie.dream.intent.nlp.text.Corpus;
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.alvearie.dream.intent.nlp.text.DocumentTextTransformer;
+import org.alvearie.dream.intent.nlp.text.DocumentTokenizer;
+import org.alvearie.dream.intent.nlp.text.DocumentVectorizer;
+import org.alvearie.dream.intent.nlp.text.Feature;
+import org.alvearie.dream.intent.nlp.text.FeatureVector;
+import org.alvearie.dream.intent.nlp.text.NGram;
+import org.alvearie.dream.intent.nlp.text.NGrammer;
+import org.alvearie.dream.intent.nlp.text.Words;
+import org.alvearie.dream.intent.nlp.text.processors.smile.SmileDocumentNGrammer;
+import org.alvearie.dream.intent.nlp.text.processors.smile.SmileDocumentNormalizer;
+import org.alvearie.dream.intent.nlp.text.processors.smile.SmileDocumentTokenizer;
+import org.junit.Test;
+
+public class IncrementalTFIDFVectorizerTest {
+
+    private static final double MARGIN_OF_ERROR = 0.0001;
+
+    private NGrammer ngrammer;
+    private DocumentTextTransformer normalizer;
+    private DocumentTokenizer tokenizer;
+    private DocumentVectorizer bow;
+
+    /**
+     *
+     */
+    public IncrementalTFIDFVectorizerTest() {
+        ngrammer = new SmileDocumentNGrammer(1, 2);
+        tokenizer = new SmileDocumentTokenizer();
+        normalizer = new SmileDocumentNormalizer(new Words("year"), new Words(), new Words(), true, 2, true, false, false, false);
+        bow = new DocumentBoWVectorizer();
+    }
+
+    /**
+     * Runs the text processing up to the BoW vectorizer on the given corpus.
+     *
+     * @param corpus the corpus
+     */
+    private void prepare(Corpus corpus) {
+        corpus.forEach(normalizer::processText);
+        corpus.forEach(tokenizer::tokenize);
+        ngrammer.ngram(corpus);
+        corpus.forEach(bow::vectorize);
+    }
+
+    /**
+     * Creates the initial corpus used by the tests in this class.
+     *
+     * @return the corpus, already BoW vectorized
+     */
+    private Corpus createInitialCorpus() {
+        Corpus corpus = new Corpus(new Document("Age: 18 to 100 years"),
+                new Document("Ages 18 to 100 year"),
+                new Document("Absolute neutrophil count >= 1500/µL"),
+                new Document("Absolute neutrophil count >= 1600/µL"));
+        prepare(corpus);
+        return corpus;
+    }
+
+    /**
+     * Creates a new document n-grammed against the given corpus's feature space and BoW vectorized.
+     *
+     * @param corpus the initial corpus
+     * @param text the text for the new document
+     * @return the new document in its own corpus
+     */
+    private Corpus createNewDocument(Corpus corpus, String text) {
+        Document document = new Document(text);
+        document.setFeatureSpace(corpus.getFeatureSpace());
+        Corpus newCorpus = new Corpus(document);
+        newCorpus.setFeatureSpace(corpus.getFeatureSpace());
+        prepare(newCorpus);
+        return newCorpus;
+    }
+
+    /**
+     * The initial vectorization must match the regular TF-IDF vectorizer.
+     */
+    @Test
+    public void vectorizeMatchesTFIDFVectorizer() {
+        Corpus corpus = createInitialCorpus();
+        Corpus expectedCorpus = createInitialCorpus();
+
+        new IncrementalTFIDFVectorizer(true, 0.05).vectorize(corpus);
+        new TFIDFVectorizer().vectorize(expectedCorpus);
+
+        for (int i = 0; i < corpus.size(); i++) {
+            FeatureVector expected = expectedCorpus.getDocuments().get(i).getVector();
+            FeatureVector actual = corpus.getDocuments().get(i).getVector();
+            for (Feature feature : corpus.getFeatureSpace()) {
+                assertEquals(expected.getValue(feature), actual.getValue(feature), MARGIN_OF_ERROR);
+            }
+        }
+    }
+
+    /**
+     * Absorbing a document within the drift bound updates the IDFs of its features and re-weights the affected documents
+     * only.
+     */
+    @Test
+    public void absorbWithinDriftBound() {
+        Corpus corpus = createInitialCorpus();
+        IncrementalTFIDFVectorizer vectorizer = new IncrementalTFIDFVectorizer(true, 1.0);
+        vectorizer.vectorize(corpus);
+        NGram count = NGram.getNGram("count");
+        NGram age = NGram.getNGram("ag");
+        int countFrequency = vectorizer.getNGramFrequency(count);
+        double ageIDF = vectorizer.getIDF(age);
+        FeatureVector ageVector = corpus.getDocuments().get(0).getVector();
+
+        Corpus newCorpus = createNewDocument(corpus, "Platelet count >= 1500/µL");
+        assertFalse(vectorizer.absorb(newCorpus));
+
+        assertEquals(5, vectorizer.getDocumentCount());
+        assertEquals(countFrequency + 1, vectorizer.getNGramFrequency(count));
+        assertEquals(Math.log(6.0 / (2.0 + countFrequency)) + 1, vectorizer.getIDF(count), MARGIN_OF_ERROR);
+        // Untouched features keep their IDFs until a rebuild, and so do the documents that contain only those
+        assertEquals(ageIDF, vectorizer.getIDF(age), 0.0);
+        assertTrue(ageVector == corpus.getDocuments().get(0).getVector());
+        assertEquals(Math.log(6.0 / 5.0), vectorizer.getIDFDrift(), MARGIN_OF_ERROR);
+        // The new document only contains the count feature
+        assertEquals(1.0, newCorpus.getDocuments().get(0).getVector().getValue(count), MARGIN_OF_ERROR);
+    }
+
+    /**
+     * Absorbing a document beyond the drift bound rebuilds every IDF.
+     */
+    @Test
+    public void absorbBeyondDriftBound() {
+        Corpus corpus = createInitialCorpus();
+        IncrementalTFIDFVectorizer vectorizer = new IncrementalTFIDFVectorizer(true, 0.0);
+        vectorizer.vectorize(corpus);
+        NGram age = NGram.getNGram("ag");
+        int ageFrequency = vectorizer.getNGramFrequency(age);
+
+        assertTrue(vectorizer.absorb(createNewDocument(corpus, "Platelet count >= 1500/µL")));
+
+        assertEquals(0.0, vectorizer.getIDFDrift(), 0.0);
+        assertEquals(Math.log(6.0 / (1.0 + ageFrequency)) + 1, vectorizer.getIDF(age), MARGIN_OF_ERROR);
+    }
+
+    /**
+     * Without tracking the documents, absorbing a document weighs it, and updates the IDFs, the same way as when they are
+     * tracked.
+     */
+    @Test
+    public void absorbUntracked() {
+        Corpus trackedCorpus = createInitialCorpus();
+        Corpus untrackedCorpus = createInitialCorpus();
+        IncrementalTFIDFVectorizer tracked = new IncrementalTFIDFVectorizer(true, 1.0);
+        IncrementalTFIDFVectorizer untracked = new IncrementalTFIDFVectorizer(true, 1.0, false);
+        tracked.vectorize(trackedCorpus);
+        untracked.vectorize(untrackedCorpus);
+
+        Corpus trackedDocument = createNewDocument(trackedCorpus, "Platelet count >= 1500/µL and age > 18");
+        Corpus untrackedDocument = createNewDocument(untrackedCorpus, "Platelet count >= 1500/µL and age > 18");
+        assertEquals(tracked.absorb(trackedDocument), untracked.absorb(untrackedDocument));
+
+        assertEquals(tracked.getDocumentCount(), untracked.getDocumentCount());
+        FeatureVector expected = trackedDocument.getDocuments().get(0).getVector();
+        FeatureVector actual = untrackedDocument.getDocuments().get(0).getVector();
+        for (Feature feature : trackedCorpus.getFeatureSpace()) {
+            assertEquals(tracked.getIDF(feature), untracked.getIDF(feature), MARGIN_OF_ERROR);
+            assertEquals(expected.getValue(feature), actual.getValue(feature), MARGIN_OF_ERROR);
+        }
+    }
+
+    /**
+     * Corpora vectorized concurrently before the vectorizer is initialized are all vectorized, and only one of them
+     * initializes it.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void vectorizeConcurrently() throws Exception {
+        Corpus corpus = createInitialCorpus();
+        Corpus newCorpus = createNewDocument(corpus, "Platelet count >= 1500/µL");
+        List<FeatureVector> bowVectors = new ArrayList<>();
+        corpus.forEach(document -> bowVectors.add(document.getVector()));
+        FeatureVector newBowVector = newCorpus.getDocuments().get(0).getVector();
+        IncrementalTFIDFVectorizer vectorizer = new IncrementalTFIDFVectorizer(true, 1.0);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> initial = executor.submit(() -> vectorizer.vectorize(corpus));
+            Future<?> other = executor.submit(() -> vectorizer.vectorize(newCorpus));
+            initial.get();
+            other.get();
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(vectorizer.getDocumentCount() == corpus.size() || vectorizer.getDocumentCount() == newCorpus.size());
+        for (int i = 0; i < corpus.size(); i++) {
+            assertNotSame(bowVectors.get(i), corpus.getDocuments().get(i).getVector());
+        }
+        assertNotSame(newBowVector, newCorpus.getDocuments().get(0).getVector());
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.text.processors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.alvearie.dream.intent.nlp.text.Corpus;
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.alvearie.dream.intent.nlp.text.Feature;
+import org.alvearie.dream.intent.nlp.text.NGram;
+import org.alvearie.dream.intent.nlp.text.processors.smile.SmileDocumentNGrammer;
+import org.alvearie.dream.intent.nlp.text.processors.smile.SmileDocumentNormalizer;
+import org.alvearie.dream.intent.nlp.text.processors.smile.SmileDocumentTokenizer;
+import org.junit.Test;
+
+public class PreprocessingCacheTest {
+
+    /**
+     * @return a configuration that does not require the lemmatizer
+     */
+    private Configuration createConfiguration() {
+        Configuration configuration = new Configuration();
+        configuration.setLemmatize(false);
+        configuration.setMinimumTokenFrequency(1);
+        return configuration;
+    }
+
+    /**
+     * @return the documents used by the tests in this class
+     */
+    private List<Document> createDocuments() {
+        return Arrays.asList(new Document("Age: 18 to 100 years"),
+                new Document("Absolute neutrophil count >= 1500/µL"),
+                new Document("Platelet count >= 100,000/µL"));
+    }
+
+    /**
+     * The second run must be served from the cache and produce the same n-grams as the regular processing.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void preprocess() throws IOException {
+        File directory = Files.createTempDirectory("preprocessing").toFile();
+        directory.deleteOnExit();
+        Configuration configuration = createConfiguration();
+
+        Corpus expected = new Corpus(createDocuments());
+        expected.forEach(new SmileDocumentNormalizer(configuration)::processText);
+        expected.forEach(new SmileDocumentTokenizer()::tokenize);
+        new SmileDocumentNGrammer(configuration).ngram(expected);
+
+        PreprocessingCache cache = new PreprocessingCache(directory, configuration);
+        cache.preprocess(createDocuments());
+        assertEquals(0, cache.getHits());
+        assertEquals(3, cache.getMisses());
+
+        cache = new PreprocessingCache(directory, configuration);
+        Corpus actual = new Corpus(createDocuments());
+        List<Map<String, Integer>> counts = cache.preprocess(actual.getDocuments());
+        assertEquals(3, cache.getHits());
+        assertEquals(0, cache.getMisses());
+        new SmileDocumentNGrammer(configuration).ngram(actual, counts);
+
+        assertEquals(expected.getFeatureSpace().size(), actual.getFeatureSpace().size());
+        for (Feature feature : expected.getFeatureSpace()) {
+            assertEquals(expected.getNGramCount((NGram) feature), actual.getNGramCount((NGram) feature));
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            Document expectedDocument = expected.getDocuments().get(i);
+            Document actualDocument = actual.getDocuments().get(i);
+            assertEquals(expectedDocument.getText(), actualDocument.getText());
+            assertEquals(expectedDocument.getTokens(), actualDocument.getTokens());
+            assertEquals(expectedDocument.getNGrams(), actualDocument.getNGrams());
+            for (NGram ngram : expectedDocument.getNGrams()) {
+                assertEquals(expectedDocument.getNGramCount(ngram), actualDocument.getNGramCount(ngram));
+            }
+        }
+    }
+
+    /**
+     * Only the text processing settings are part of the fingerprint.
+     */
+    @Test
+    public void fingerprint() {
+        Configuration configuration = createConfiguration();
+        String fingerprint = PreprocessingCache.fingerprint(configuration);
+
+        configuration.setMinimumTokenFrequency(5);
+        configuration.setNumberOfTrees(10);
+        assertEquals(fingerprint, PreprocessingCache.fingerprint(configuration));
+
+        configuration.setStem(true);
+        assertNotEquals(fingerprint, PreprocessingCache.fingerprint(configuration));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.text.processors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.alvearie.dream.intent.nlp.text.Corpus;
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.alvearie.dream.intent.nlp.text.Feature;
+import org.alvearie.dream.intent.nlp.text.FeatureSpace;
+import org.alvearie.dream.intent.nlp.text.io.DocumentReader;
+import org.alvearie.dream.intent.nlp.text.io.SimpleTextFileDocumentReader;
+import org.junit.Test;
+
+public class StreamingDocumentVectorizationPipelineTest {
+
+    private static final double MARGIN_OF_ERROR = 0.0000001;
+
+    /**
+     * @return a configuration that does not require the lemmatizer
+     */
+    private Configuration createConfiguration() {
+        Configuration configuration = new Configuration();
+        configuration.setLemmatize(false);
+        return configuration;
+    }
+
+    /**
+     * Vectorizing a source in chunks must produce the same feature space and vectors as vectorizing it in memory.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void vectorizeMatchesInMemoryPipeline() throws IOException {
+        DocumentReader reader = new SimpleTextFileDocumentReader(new File("src/test/resources/small-corpus.txt"), StandardCharsets.UTF_8);
+        Corpus corpus = new Corpus(reader.read());
+        new DocumentVectorizationPipeline(createConfiguration()).vectorize(corpus);
+
+        StreamingDocumentVectorizationPipeline pipeline = new StreamingDocumentVectorizationPipeline(createConfiguration(), 7, 1);
+        List<Document> documents = new ArrayList<>();
+        pipeline.vectorize(reader, chunk -> {
+            assertTrue(chunk.size() <= 7);
+            documents.addAll(chunk);
+        });
+
+        FeatureSpace featureSpace = pipeline.getFeatureSpace();
+        assertEquals(corpus.size(), pipeline.getDocumentCount());
+        assertEquals(new HashSet<>(corpus.getFeatureSpace()), new HashSet<>(featureSpace));
+        assertEquals(corpus.size(), documents.size());
+        for (int i = 0; i < documents.size(); i++) {
+            Document expected = corpus.getDocuments().get(i);
+            Document actual = documents.get(i);
+            assertEquals(expected.getText(), actual.getText());
+            for (Feature feature : featureSpace) {
+                assertEquals(expected.getVector().getValue(feature), actual.getVector().getValue(feature), MARGIN_OF_ERROR);
+            }
+        }
+    }
+
+    /**
+     * A source that cannot be read fails the pipeline.
+     *
+     * @throws IOException
+     */
+    @Test(expected = IOException.class)
+    public void vectorizeNotExistent() throws IOException {
+        DocumentReader reader = new SimpleTextFileDocumentReader(new File("src/test/resources/reader/does-not-exist.txt"), StandardCharsets.UTF_8);
+        new StreamingDocumentVectorizationPipeline(createConfiguration()).vectorize(reader, chunk -> {
+        });
+    }
+}
@@ -10,6 +10,11 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
 import org.alvearie.dream.intent.nlp.text.Corpus;
 import org.alvearie.dream.intent.nlp.text.Document;
 import org.alvearie.dream.intent.nlp.text.DocumentTextTransformer;
@@ -158,4 +163,63 @@ public class TFIDFVectorizerTest {
         assertTrue(vector2.isZeroVector());
     }
 
+    /**
+     * Without L2 normalization the vectors hold the raw TF-IDF weights, i.e. tf * idf where
+     * idf = log((1 + n) / (1 + corpus frequency)) + 1.
+     */
+    @Test
+    public void vectorizeWithoutL2Normalization() {
+        Document document1 = new Document("Age: 18 to 100 years");
+        Document document2 = new Document("Ages 18 to 100 year");
+        Document document3 = new Document("Absolute neutrophil count >= 1500/µL");
+        Document document4 = new Document("Absolute neutrophil count >= 1600/µL");
+        Corpus corpus = new Corpus(document1, document2, document3, document4);
+
+        corpus.forEach(normalizer::processText);
+        corpus.forEach(tokenizer::tokenize);
+        ngrammer.ngram(corpus);
+        corpus.forEach(bow::vectorize);
+        new TFIDFVectorizer(false).vectorize(corpus);
+
+        double idf = Math.log(5.0 / 3.0) + 1;
+        assertEquals(idf, document1.getVector().getValue(NGram.getNGram("ag")), MARGIN_OF_ERROR);
+        // Document 3 has 5 features, each appearing once in it and twice in the corpus
+        assertEquals(idf / 5, document3.getVector().getValue(NGram.getNGram("neutrophil")), MARGIN_OF_ERROR);
+        assertEquals(idf / 5, document3.getVector().getValue(NGram.getNGram("absolut", "neutrophil")), MARGIN_OF_ERROR);
+    }
+
+    /**
+     * A deserialized vectorizer weighs documents with the IDFs it was fitted with.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void vectorizeAfterDeserialization() throws Exception {
+        Corpus corpus = new Corpus(new Document("Age: 18 to 100 years"), new Document("Absolute neutrophil count >= 1500/µL"));
+        corpus.forEach(normalizer::processText);
+        corpus.forEach(tokenizer::tokenize);
+        ngrammer.ngram(corpus);
+        corpus.forEach(bow::vectorize);
+        TFIDFVectorizer fitted = new TFIDFVectorizer(false);
+        fitted.vectorize(corpus);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(fitted);
+        }
+        TFIDFVectorizer deserialized;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            deserialized = (TFIDFVectorizer) in.readObject();
+        }
+
+        Document document = new Document("Absolute neutrophil count >= 1600/µL");
+        Corpus single = new Corpus(document);
+        single.forEach(normalizer::processText);
+        single.forEach(tokenizer::tokenize);
+        ngrammer.ngram(single);
+        single.forEach(bow::vectorize);
+        deserialized.vectorize(single);
+        // Fitted on two documents, one of which has the feature
+        assertEquals((Math.log(3.0 / 2.0) + 1) / 5, document.getVector().getValue(NGram.getNGram("neutrophil")), MARGIN_OF_ERROR);
+    }
 }
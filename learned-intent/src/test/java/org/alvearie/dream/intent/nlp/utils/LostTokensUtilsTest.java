@@ -10,6 +10,8 @@ import static org.junit.Assert.assertEquals;
 
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import org.alvearie.dream.intent.nlp.text.Configuration;
 import org.alvearie.dream.intent.nlp.text.Document;
@@ -38,4 +40,30 @@ public class LostTokensUtilsTest {
         assertEquals(
                 new HashSet<>(Arrays.asList(".", "over", "the")), new LostTokensUtils(configuration).getLostTokens(document));
     }
+
+    @Test
+    public void getLostTokensWithStemming() {
+
+        Configuration stemmingConfiguration = new Configuration();
+        stemmingConfiguration.setLemmatize(false);
+        stemmingConfiguration.setStem(true);
+
+        // Stemmed tokens like "foxes" to "fox" and "jumped" to "jump" are not lost, but "lazy" to "lazi" is
+        assertEquals(
+                new HashSet<>(Arrays.asList(".", "lazy", "over", "the")), new LostTokensUtils(stemmingConfiguration).getLostTokens(document));
+    }
+
+    @Test
+    public void getLostTokenCounts() {
+
+        configuration.setLemmatize(false);
+
+        SortedMap<String, Integer> expected = new TreeMap<>();
+        expected.put(".", 2);
+        expected.put("over", 2);
+        expected.put("the", 3);
+        expected.put("and", 1);
+        assertEquals(expected, new LostTokensUtils(configuration).getLostTokenCounts(Arrays.asList(document, document,
+                new Document("The cat and the hat"))));
+    }
 }
@@ -0,0 +1,114 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.intent.nlp.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileClassifier;
+import org.alvearie.dream.intent.nlp.classification.classifiers.smile.SmileMaxEntClassifier;
+import org.alvearie.dream.intent.nlp.classification.gt.io.CSVGroundTruthReader;
+import org.alvearie.dream.intent.nlp.text.Configuration;
+import org.alvearie.dream.intent.nlp.text.Document;
+import org.alvearie.dream.intent.nlp.text.ParallelExecutor;
+import org.alvearie.dream.intent.nlp.text.processors.smile.SmileDocumentNGrammer;
+import org.junit.Test;
+
+public class MetricsTest {
+
+    /**
+     * Histograms are formatted with cumulative buckets and counters with their totals.
+     */
+    @Test
+    public void format() {
+        Metrics metrics = new Metrics();
+        metrics.histogram("latency_ms").record(0.3);
+        metrics.histogram("latency_ms").record(3);
+        metrics.increment("requests_total");
+        metrics.add("requests_total", 2);
+        assertEquals(3, metrics.getCount("requests_total"));
+        assertEquals(0, metrics.getCount("unknown_total"));
+
+        StringBuilder output = new StringBuilder();
+        metrics.format(output);
+        String text = output.toString();
+        assertTrue(text.contains("latency_ms_bucket{le=\"0.25\"} 0\n"));
+        assertTrue(text.contains("latency_ms_bucket{le=\"0.5\"} 1\n"));
+        assertTrue(text.contains("latency_ms_bucket{le=\"5.0\"} 2\n"));
+        assertTrue(text.contains("latency_ms_bucket{le=\"+Inf\"} 2\n"));
+        assertTrue(text.contains("latency_ms_sum 3.3\n"));
+        assertTrue(text.contains("latency_ms_count 2\n"));
+        assertTrue(text.contains("requests_total 3\n"));
+    }
+
+    /**
+     * Classifying records the latency of every stage, the documents without a prediction and the feature space lookups.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void classifierStages() throws IOException {
+        Configuration configuration = new Configuration();
+        configuration.setLemmatize(false);
+        configuration.setMinimumTokenFrequency(1);
+        SmileClassifier classifier = new SmileMaxEntClassifier(configuration);
+        Metrics metrics = Metrics.getDefault();
+        long classifyNormalizations = metrics.histogram(SmileClassifier.STAGE_PREFIX + "normalize" + SmileClassifier.BATCH_STAGE_SUFFIX).getCount();
+        classifier.train(new CSVGroundTruthReader(new File("src/test/resources/test-csv-ground-truth/testCriteriaClassification.csv")).read());
+        // Training is recorded separately from the classifications
+        assertEquals(classifyNormalizations, metrics.histogram(SmileClassifier.STAGE_PREFIX + "normalize" + SmileClassifier.BATCH_STAGE_SUFFIX).getCount());
+
+        long documents = metrics.getCount(SmileClassifier.CLASSIFIED_DOCUMENTS);
+        long noPredictions = metrics.getCount(SmileClassifier.NO_PREDICTION_DOCUMENTS);
+        long lookups = metrics.getCount(SmileDocumentNGrammer.FEATURE_SPACE_LOOKUPS);
+        long hits = metrics.getCount(SmileDocumentNGrammer.FEATURE_SPACE_HITS);
+        long predictions = metrics.histogram(SmileClassifier.STAGE_PREFIX + "predict" + SmileClassifier.STAGE_SUFFIX).getCount();
+
+        classifier.classify(new Document("Creatinine <= 5.0 mg/dL"));
+        classifier.classify(new Document("zzyzx qwxyz"));
+
+        assertEquals(documents + 2, metrics.getCount(SmileClassifier.CLASSIFIED_DOCUMENTS));
+        assertEquals(noPredictions + 1, metrics.getCount(SmileClassifier.NO_PREDICTION_DOCUMENTS));
+        assertEquals(predictions + 1, metrics.histogram(SmileClassifier.STAGE_PREFIX + "predict" + SmileClassifier.STAGE_SUFFIX).getCount());
+        assertTrue(metrics.getCount(SmileDocumentNGrammer.FEATURE_SPACE_LOOKUPS) > lookups);
+        assertTrue(metrics.getCount(SmileDocumentNGrammer.FEATURE_SPACE_HITS) > hits);
+        for (String stage : new String[] { "normalize", "tokenize", "ngram", "bow", "tfidf" }) {
+            assertTrue(stage, metrics.histogram(SmileClassifier.STAGE_PREFIX + stage + SmileClassifier.BATCH_STAGE_SUFFIX).getCount() > 0);
+            assertTrue(stage, metrics.histogram(SmileClassifier.TRAIN_STAGE_PREFIX + stage + SmileClassifier.BATCH_STAGE_SUFFIX).getCount() > 0);
+        }
+        assertTrue(metrics.histogram(SmileClassifier.STAGE_PREFIX + "densify" + SmileClassifier.STAGE_SUFFIX).getCount() > 0);
+    }
+
+    /**
+     * A classification run serially with its own registry records its metrics there rather than in the application's.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void callWith() throws Exception {
+        Configuration configuration = new Configuration();
+        configuration.setLemmatize(false);
+        configuration.setMinimumTokenFrequency(1);
+        SmileClassifier classifier = new SmileMaxEntClassifier(configuration);
+        classifier.train(new CSVGroundTruthReader(new File("src/test/resources/test-csv-ground-truth/testCriteriaClassification.csv")).read());
+        long documents = Metrics.getDefault().getCount(SmileClassifier.CLASSIFIED_DOCUMENTS);
+
+        Metrics own = new Metrics();
+        Metrics.callWith(own, () -> ParallelExecutor.callWith(1, () -> classifier.classify(new Document("Creatinine <= 5.0 mg/dL"))));
+
+        assertEquals(documents, Metrics.getDefault().getCount(SmileClassifier.CLASSIFIED_DOCUMENTS));
+        assertEquals(1, own.getCount(SmileClassifier.CLASSIFIED_DOCUMENTS));
+        assertTrue(own.histogram(SmileClassifier.STAGE_PREFIX + "tfidf" + SmileClassifier.BATCH_STAGE_SUFFIX).getCount() > 0);
+        StringBuilder output = new StringBuilder();
+        own.format(output, "shadow_");
+        assertTrue(output.toString().contains("shadow_" + SmileClassifier.CLASSIFIED_DOCUMENTS + " 1\n"));
+        assertTrue(output.toString().contains("# TYPE shadow_" + SmileClassifier.STAGE_PREFIX + "tfidf" + SmileClassifier.BATCH_STAGE_SUFFIX + " histogram\n"));
+    }
+}
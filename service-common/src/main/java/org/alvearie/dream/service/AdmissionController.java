@@ -0,0 +1,208 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package org.alvearie.dream.service;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.ws.rs.ServiceUnavailableException;
+
+/**
+ * Bounds the number of requests an endpoint processes concurrently and the number of requests waiting for their turn.
+ * <p>
+ * A request that finds a free slot is admitted right away. Otherwise it waits in the queue, unless the queue is full, in
+ * which case it is rejected. A queued request that does not get a slot within the maximum queue wait is rejected too,
+ * so the latency of admitted requests stays bounded under overload instead of growing with the backlog. Rejections are
+ * surfaced as a {@link ServiceUnavailableException}, which JAX-RS turns into a 503 response with a Retry-After header.
+ * <p>
+ * Every successful {@link #admit()} must be paired with a {@link #release()}:
+ *
+ * <pre>
+ * admission.admit();
+ * try {
+ *     ...
+ * } finally {
+ *     admission.release();
+ * }
+ * </pre>
+ *
+ */
+public class AdmissionController {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long maxQueueWaitMillis;
+    private final long retryAfterSeconds;
+    private final Semaphore slots;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Creates an {@link AdmissionController}.
+     *
+     * @param name the name of the endpoint, used to label its metrics
+     * @param maxConcurrent the maximum number of requests processed concurrently
+     * @param maxQueued the maximum number of requests waiting for a slot, 0 to reject as soon as all slots are taken
+     * @param maxQueueWaitMillis the maximum time, in milliseconds, a request waits for a slot before being rejected
+     * @param retryAfterSeconds the number of seconds rejected clients are told to wait before retrying
+     * @throws IllegalArgumentException if the maximum concurrency is not positive, or any other limit is negative
+     */
+    public AdmissionController(String name, int maxConcurrent, int maxQueued, long maxQueueWaitMillis, long retryAfterSeconds) {
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("The maximum concurrency must be positive.");
+        }
+        if (maxQueued < 0 || maxQueueWaitMillis < 0 || retryAfterSeconds < 0) {
+            throw new IllegalArgumentException("The queue limits and the retry delay cannot be negative.");
+        }
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.maxQueueWaitMillis = maxQueueWaitMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+        // Fair so that queued requests are admitted in arrival order
+        slots = new Semaphore(maxConcurrent, true);
+    }
+
+    /**
+     * Admits a request, waiting for a slot if needed.
+     *
+     * @throws ServiceUnavailableException if the queue is full or no slot became available within the maximum queue wait
+     */
+    public void admit() {
+        // Unlike tryAcquire(), a timed tryAcquire honours the fairness of the semaphore, so a new request does not take
+        // the slot just released for the oldest queued one
+        boolean free;
+        try {
+            free = slots.tryAcquire(0, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw reject();
+        }
+        if (free) {
+            admitted();
+            return;
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            throw reject();
+        }
+        boolean acquired;
+        try {
+            acquired = slots.tryAcquire(maxQueueWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        } finally {
+            queued.decrementAndGet();
+        }
+        if (!acquired) {
+            throw reject();
+        }
+        admitted();
+    }
+
+    /**
+     * Releases the slot of an admitted request.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+        slots.release();
+    }
+
+    /**
+     * Records an admission.
+     */
+    private void admitted() {
+        inFlight.incrementAndGet();
+        admitted.increment();
+    }
+
+    /**
+     * Records a rejection.
+     *
+     * @return the exception to throw to the client
+     */
+    private ServiceUnavailableException reject() {
+        rejected.increment();
+        return new ServiceUnavailableException(retryAfterSeconds);
+    }
+
+    /**
+     * @return the name of the endpoint
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the maximum number of requests processed concurrently
+     */
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * @return the number of requests being processed
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return the number of requests waiting for a slot
+     */
+    public int getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * @return the total number of admitted requests
+     */
+    public long getAdmitted() {
+        return admitted.sum();
+    }
+
+    /**
+     * @return the total number of rejected requests
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Formats the admission gauges and counters in the Prometheus text format.
+     *
+     * @return the metrics, one per line
+     */
+    public String getMetrics() {
+        String label = "{endpoint=\"" + name + "\"}";
+        StringBuilder metrics = new StringBuilder();
+        append(metrics, "admission_in_flight", "gauge", label, getInFlight());
+        append(metrics, "admission_queued", "gauge", label, getQueued());
+        append(metrics, "admission_admitted_total", "counter", label, getAdmitted());
+        append(metrics, "admission_rejected_total", "counter", label, getRejected());
+        return metrics.toString();
+    }
+
+    /**
+     * Appends a metric and its type in the Prometheus text format.
+     *
+     * @param metrics the metrics to append to
+     * @param name the name of the metric
+     * @param type the Prometheus type of the metric
+     * @param label the labels of the metric
+     * @param value the value of the metric
+     */
+    private static void append(StringBuilder metrics, String name, String type, String label, long value) {
+        metrics.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        metrics.append(name).append(label).append(' ').append(value).append('\n');
+    }
+}
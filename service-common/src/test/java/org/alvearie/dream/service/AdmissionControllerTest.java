@@ -0,0 +1,124 @@
+/*
+ * (C) Copyright IBM Corp. 2021, 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.alvearie.dream.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.ws.rs.ServiceUnavailableException;
+
+import org.junit.jupiter.api.Test;
+
+public class AdmissionControllerTest {
+
+    /**
+     * Waits for a thread to be blocked waiting for a slot.
+     *
+     * @param thread the thread
+     * @throws InterruptedException
+     */
+    private static void awaitWaiting(Thread thread) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (thread.getState() != Thread.State.TIMED_WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(Thread.State.TIMED_WAITING, thread.getState());
+    }
+
+    /**
+     * Requests beyond the concurrency and queue limits are rejected with a Retry-After.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void admit() throws Exception {
+        AdmissionController admission = new AdmissionController("test", 1, 1, 10_000, 3);
+        admission.admit();
+        assertEquals(1, admission.getInFlight());
+
+        // The second request waits in the queue until the first one is released
+        CountDownLatch admitted = new CountDownLatch(1);
+        Thread queued = new Thread(() -> {
+            admission.admit();
+            admitted.countDown();
+        });
+        queued.start();
+        awaitWaiting(queued);
+        assertEquals(1, admission.getQueued());
+
+        // The queue is full so the third request is rejected right away
+        try {
+            admission.admit();
+            fail("The request should have been rejected.");
+        } catch (ServiceUnavailableException e) {
+            assertEquals(503, e.getResponse().getStatus());
+            assertEquals("3", e.getResponse().getHeaderString("Retry-After"));
+        }
+        assertEquals(1, admission.getRejected());
+
+        admission.release();
+        assertTrue(admitted.await(10, TimeUnit.SECONDS));
+        queued.join();
+        assertEquals(1, admission.getInFlight());
+        assertEquals(0, admission.getQueued());
+        assertEquals(2, admission.getAdmitted());
+        admission.release();
+        assertEquals(0, admission.getInFlight());
+        assertTrue(admission.getMetrics().contains("admission_rejected_total{endpoint=\"test\"} 1"));
+        assertTrue(admission.getMetrics().contains("# TYPE admission_rejected_total counter\n"));
+    }
+
+    /**
+     * A queued request that does not get a slot within the maximum queue wait is rejected.
+     */
+    @Test
+    public void admitTimeout() {
+        AdmissionController admission = new AdmissionController("test", 1, 10, 20, 1);
+        admission.admit();
+        assertThrows(ServiceUnavailableException.class, admission::admit);
+    }
+
+    /**
+     * A released slot goes to the request that was queued for it, not to a request arriving at the same time.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void admitInArrivalOrder() throws Exception {
+        AdmissionController admission = new AdmissionController("test", 1, 1, 10_000, 1);
+        for (int i = 0; i < 20; i++) {
+            admission.admit();
+            AtomicBoolean queuedAdmitted = new AtomicBoolean();
+            Thread queued = new Thread(() -> {
+                admission.admit();
+                queuedAdmitted.set(true);
+                admission.release();
+            });
+            queued.start();
+            awaitWaiting(queued);
+
+            admission.release();
+            try {
+                admission.admit();
+                // Admitted only once the queued request was done with the slot
+                assertTrue(queuedAdmitted.get());
+                admission.release();
+            } catch (ServiceUnavailableException e) {
+                // The queued request had not left the queue yet, which was full
+            }
+            queued.join();
+            assertTrue(queuedAdmitted.get());
+            assertEquals(0, admission.getInFlight());
+        }
+    }
+}